@@ -0,0 +1,66 @@
+package ps.demo.jpademo.cache;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按前缀、按标签失效基准：缓存中有 1 万或 10 万个不相关的条目，每次失效 10 个匹配的条目
+ * 前缀失效走有序键索引，标签失效走标签索引，耗时应只与匹配的条目数有关，不随缓存大小增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheInvalidationBenchmark {
+
+    private static final int MATCHES = 10;
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private InMemoryGenericCache<String> cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new InMemoryGenericCache<>();
+        cache.setMaxSize(entries * 2L);
+        Map<String, String> batch = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            batch.put("user:" + i, "value");
+        }
+        cache.putAll(batch);
+        // 第一次按前缀失效时建立有序索引，不计入测量
+        cache.invalidateByPrefix("cart:");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    /**
+     * 每次调用前写回被失效的条目
+     */
+    @Setup(Level.Invocation)
+    public void addMatches() {
+        for (int i = 0; i < MATCHES; i++) {
+            cache.put("cart:" + i, "value", List.of("product:1"));
+        }
+    }
+
+    @Benchmark
+    public int invalidateByPrefix() {
+        return cache.invalidateByPrefix("cart:");
+    }
+
+    @Benchmark
+    public int invalidateByTag() {
+        return cache.invalidateByTag("product:1");
+    }
+}
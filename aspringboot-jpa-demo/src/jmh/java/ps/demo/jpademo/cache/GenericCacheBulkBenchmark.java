@@ -0,0 +1,66 @@
+package ps.demo.jpademo.cache;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量预热基准：向已满的缓存写入 10k 个新键，对比逐个 put 与 putAll 的耗时
+ * 逐个 put 每次都要获取写锁并淘汰一个条目，putAll 只加一次锁、为整批淘汰一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenericCacheBulkBenchmark {
+
+    private static final int KEYS = 10_000;
+
+    @Param({"LRU", "TINY_LFU"})
+    public EvictionPolicy policy;
+
+    private Map<String, String> existing;
+    private Map<String, String> batch;
+    private InMemoryGenericCache<String> cache;
+
+    @Setup(Level.Trial)
+    public void setUpBatch() {
+        existing = new LinkedHashMap<>();
+        batch = new LinkedHashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            existing.put("old-" + i, "value-" + i);
+            batch.put("warm-" + i, "value-" + i);
+        }
+    }
+
+    /**
+     * 每次调用前重新填满缓存，写入的键全部不在缓存中
+     */
+    @Setup(Level.Invocation)
+    public void fillCache() {
+        cache = new InMemoryGenericCache<>();
+        cache.setMaxSize(KEYS);
+        cache.setEvictionPolicy(policy);
+        cache.putAll(existing);
+    }
+
+    @Benchmark
+    public int put() {
+        int stored = 0;
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            if (cache.put(entry.getKey(), entry.getValue())) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    @Benchmark
+    public int putAll() {
+        return cache.putAll(batch);
+    }
+}
@@ -0,0 +1,122 @@
+package ps.demo.jpademo.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InMemoryGenericCache 读写吞吐基准
+ * - 每种淘汰策略分别在 80% 和 100% 容量下测试，线程数 1/4/16
+ * - 80% 容量：get 命中率约 80%，put 只覆盖已有键，不触发淘汰
+ * - 100% 容量：get 全部命中，put 的键一半不在缓存中，每次插入都要淘汰一个条目
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryGenericCacheBenchmark {
+
+    private static final int CAPACITY = 10_000;
+
+    @Param({"LRU", "LFU", "FIFO", "RANDOM", "TTL", "TINY_LFU"})
+    public EvictionPolicy policy;
+
+    /**
+     * 预填充比例（%）
+     */
+    @Param({"80", "100"})
+    public int fill;
+
+    private InMemoryGenericCache<String> cache;
+    private String[] keys;
+    private String[] values;
+    private int putRange;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[CAPACITY * 2];
+        values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key-" + i;
+            values[i] = "value-" + i;
+        }
+        cache = new InMemoryGenericCache<>();
+        cache.setMaxSize(CAPACITY);
+        cache.setEvictionPolicy(policy);
+        int filled = CAPACITY * fill / 100;
+        for (int i = 0; i < filled; i++) {
+            cache.put(keys[i], values[i]);
+        }
+        putRange = fill < 100 ? filled : keys.length;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    /**
+     * 每个线程从随机位置开始顺序取键，避免线程之间同步访问同一个键
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = ThreadLocalRandom.current().nextInt(CAPACITY * 2);
+
+        int next(int range) {
+            int index = next++ % range;
+            if (next < 0) {
+                next = 0;
+            }
+            return index;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void get1(Cursor cursor, Blackhole blackhole) {
+        get(cursor, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void get4(Cursor cursor, Blackhole blackhole) {
+        get(cursor, blackhole);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void get16(Cursor cursor, Blackhole blackhole) {
+        get(cursor, blackhole);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean put1(Cursor cursor) {
+        return put(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean put4(Cursor cursor) {
+        return put(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean put16(Cursor cursor) {
+        return put(cursor);
+    }
+
+    private void get(Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(cache.get(keys[cursor.next(CAPACITY)]));
+    }
+
+    private boolean put(Cursor cursor) {
+        int index = cursor.next(putRange);
+        return cache.put(keys[index], values[index]);
+    }
+}
@@ -0,0 +1,52 @@
+package ps.demo.jpademo.common;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringXTool 字符串相似度基准，字符串长度 10/100/1000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringXToolBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int length;
+
+    private String x;
+    private String y;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder first = new StringBuilder(length);
+        StringBuilder second = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('a' + i % 26);
+            first.append(c);
+            // 每 5 个字符改动一个
+            second.append(i % 5 == 0 ? (char) ('z' - i % 26) : c);
+        }
+        x = first.toString();
+        y = second.toString();
+    }
+
+    @Benchmark
+    public int levenshteinDistance() {
+        return StringXTool.getLevenshteinDistance(x, y);
+    }
+
+    @Benchmark
+    public double levenshteinDistanceRatio() {
+        return StringXTool.getLevenshteinDistanceRatio(x, y);
+    }
+
+    @Benchmark
+    public double longestCommonSequenceRatio() {
+        return StringXTool.getLongestCommonSequenceRatio(x, y);
+    }
+}
@@ -0,0 +1,52 @@
+package ps.demo.jpademo.common.json;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSONTokener 解析基准，分别解析约 200 字节的对象和包含 1000 个对象的数组
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONTokenerBenchmark {
+
+    @Param({"1", "1000"})
+    public int objectCount;
+
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        if (objectCount > 1) {
+            builder.append('[');
+        }
+        for (int i = 0; i < objectCount; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i)
+                    .append(",\"name\":\"Book").append(i).append("\"")
+                    .append(",\"author\":\"ps\\u4e66\"")
+                    .append(",\"price\":").append(i * 1.5)
+                    .append(",\"available\":").append(i % 2 == 0)
+                    .append(",\"publishDate\":\"2024-10-17\"")
+                    .append(",\"tags\":[\"java\",\"spring\",\"jpa\"]")
+                    .append(",\"publisher\":{\"name\":\"demo\",\"city\":null}}");
+        }
+        if (objectCount > 1) {
+            builder.append(']');
+        }
+        json = builder.toString();
+    }
+
+    @Benchmark
+    public Object nextValue() throws JSONException {
+        return new JSONTokener(json).nextValue();
+    }
+}
@@ -0,0 +1,86 @@
+package ps.demo.jpademo.mq;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量写入基准：H2 + Hibernate 建表，一次写入 2k 条消息
+ * - single：单条发送的写库方式，每条消息一个事务、一次 IDENTITY 插入
+ * - batch：批量发送的写库方式，一个事务、JDBC 批量插入
+ * 不包括 HTTP 开销，实际差距只会更大
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBatchBenchmark {
+
+    private static final int MESSAGES = 2_000;
+
+    private H2JpaTestDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private JpaMessageStore store;
+    private List<MessageEntity> messages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new H2JpaTestDatabase("message-batch-benchmark");
+        jdbcTemplate = database.jdbcTemplate();
+        transactionTemplate = database.transactionTemplate();
+        store = new JpaMessageStore(database.repository(MessageRepository.class), jdbcTemplate, 500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * 保存时会分配 id，每次调用前重新创建消息
+     */
+    @Setup(Level.Invocation)
+    public void createMessages() {
+        messages = new ArrayList<>(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageRequest request = new MessageRequest();
+            request.setContent("benchmark-" + i);
+            request.setRecipient("user-" + i % 100);
+            request.setContentType("benchmark");
+            MessageEntity message = MessageConverter.toEntity(request, "system");
+            message.setMaxRetryCount(3);
+            message.setCreatedAt(LocalDateTime.now());
+            messages.add(message);
+        }
+    }
+
+    /**
+     * 每轮迭代后清空表，插入开销不随表的大小增长
+     */
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.update("delete from messages");
+    }
+
+    @Benchmark
+    public int single() {
+        for (MessageEntity message : messages) {
+            transactionTemplate.executeWithoutResult(status -> store.save(message));
+        }
+        return messages.size();
+    }
+
+    @Benchmark
+    public int batch() {
+        transactionTemplate.executeWithoutResult(status -> store.saveAll(messages));
+        return messages.size();
+    }
+}
@@ -0,0 +1,67 @@
+package ps.demo.jpademo.urimatching;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UriPatternMatcher 匹配基准，模式数 10/1k/10k
+ * - hit：命中排在中间的模式
+ * - miss：没有模式能匹配，逐个正则匹配时需要扫描全部模式
+ * trie 为 false 时逐个正则匹配，为 true 时用前缀树查找；10k 模式的 miss，前缀树应比逐个正则匹配快 10 倍以上
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UriPatternMatcherBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int patternCount;
+
+    @Param({"false", "true"})
+    public boolean trie;
+
+    private UriPatternMatcher matcher;
+    private String hitUri;
+    private String missUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> patterns = new ArrayList<>(patternCount);
+        for (int i = 0; i < patternCount; i++) {
+            switch (i % 4) {
+                case 0 -> patterns.add("api/v1/resource" + i + "/detail");
+                case 1 -> patterns.add("api/*/resource" + i + "/*");
+                case 2 -> patterns.add("api/resource" + i + "/**");
+                default -> patterns.add("static/resource" + i + "/**/*.css");
+            }
+        }
+        matcher = UriPatternMatcher.precompile(patterns, trie);
+        int middle = patternCount / 2 / 4 * 4;
+        hitUri = "api/v1/resource" + middle + "/detail";
+        missUri = "api/v1/unknown/detail";
+        if (matcher.findFirstMatchingPattern(hitUri) == null || matcher.findFirstMatchingPattern(missUri) != null) {
+            throw new IllegalStateException("Unexpected benchmark patterns");
+        }
+    }
+
+    @Benchmark
+    public String hit() {
+        return matcher.findFirstMatchingPattern(hitUri);
+    }
+
+    @Benchmark
+    public String miss() {
+        return matcher.findFirstMatchingPattern(missUri);
+    }
+
+    @Benchmark
+    public List<String> findAll() {
+        return matcher.findAllMatchingPatterns(hitUri);
+    }
+}
@@ -0,0 +1,18 @@
+package ps.demo.jpademo.cache;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量缓存加载器，一次加载多个未命中的键（例如一条 IN 查询）
+ * @param <V> 值类型
+ */
+@FunctionalInterface
+public interface BulkCacheLoader<V> {
+
+    /**
+     * 加载一批键对应的值
+     * @return 加载到的键值对，不存在的键可以不返回（不会写入缓存）
+     */
+    Map<String, V> loadAll(Set<String> keys) throws Exception;
+}
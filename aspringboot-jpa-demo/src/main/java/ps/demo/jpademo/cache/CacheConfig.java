@@ -1,29 +1,118 @@
 package ps.demo.jpademo.cache;
 
-
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableScheduling
+@EnableCaching
 @ConfigurationProperties(prefix = "cache.memory")
 public class CacheConfig {
 
     private long maxSize = 10000;
     private long maxDataSize = 100 * 1024 * 1024; // 100MB
     private String evictionPolicy = "LRU";
+    private String engine = "default"; // default: 全局读写锁实现；segmented: 分段锁实现
+    private int concurrencyLevel = 16;
+    private boolean offHeapEnabled = false; // 仅 default 引擎支持
+    private long heapMaxDataSize = 16 * 1024 * 1024; // 16MB
+    private int offHeapBlockSize = 256;
+    private int offHeapSlabSize = 4 * 1024 * 1024; // 4MB
+    private long refreshAfter = 0; // 毫秒，0 表示不刷新
+    private String snapshotPath = ""; // 为空表示不启用快照，仅 default 引擎支持
+    private long snapshotInterval = 0; // 毫秒，0 表示只在关闭时写快照
+    private Map<String, CacheSpec> caches = new LinkedHashMap<>(); // Spring Cache 各命名缓存的配置
 
     @Bean
-    public GenericCache<Object> genericCache() {
+    public GenericCache<Object> genericCache(@Qualifier("taskExecutor") Executor taskExecutor) {
+        GenericCache<Object> cache = createCache(maxSize, maxDataSize, evictionPolicy, taskExecutor);
+        if (offHeapEnabled && cache instanceof InMemoryGenericCache<Object> inMemoryCache) {
+            inMemoryCache.enableOffHeap(new JdkCacheSerializer<>(), heapMaxDataSize, offHeapBlockSize, offHeapSlabSize);
+        }
+        return cache;
+    }
+
+    /**
+     * Spring Cache（@Cacheable 等）使用的 CacheManager，每个命名缓存是一个独立的 GenericCache，
+     * 按 cache.memory.caches.<name> 配置，未配置的项和未列出的缓存名称沿用全局配置
+     */
+    @Bean
+    public GenericCacheManager cacheManager(@Qualifier("taskExecutor") Executor taskExecutor,
+                                            ObjectProvider<MeterRegistry> meterRegistry) {
+        GenericCacheManager cacheManager = new GenericCacheManager(
+                name -> createSpringCache(name, taskExecutor), caches.keySet());
+        meterRegistry.ifAvailable(cacheManager::setMeterRegistry);
+        return cacheManager;
+    }
+
+    private GenericSpringCache createSpringCache(String name, Executor taskExecutor) {
+        CacheSpec spec = caches.getOrDefault(name, new CacheSpec());
+        GenericCache<Object> cache = createCache(
+                spec.getMaxSize() != null ? spec.getMaxSize() : maxSize,
+                spec.getMaxDataSize() != null ? spec.getMaxDataSize() : maxDataSize,
+                spec.getEvictionPolicy() != null ? spec.getEvictionPolicy() : evictionPolicy,
+                taskExecutor);
+        return new GenericSpringCache(name, cache, spec.getTtl() != null ? spec.getTtl() : 0, true);
+    }
+
+    private GenericCache<Object> createCache(long maxSize, long maxDataSize, String evictionPolicy, Executor taskExecutor) {
+        if ("segmented".equalsIgnoreCase(engine)) {
+            SegmentedGenericCache<Object> cache = new SegmentedGenericCache<>(concurrencyLevel);
+            cache.setMaxSize(maxSize);
+            cache.setMaxDataSize(maxDataSize);
+            cache.setEvictionPolicy(EvictionPolicy.valueOf(evictionPolicy.toUpperCase()));
+            cache.setExecutor(taskExecutor);
+            cache.setRefreshAfter(refreshAfter, TimeUnit.MILLISECONDS);
+            return cache;
+        }
         InMemoryGenericCache<Object> cache = new InMemoryGenericCache<>();
         cache.setMaxSize(maxSize);
         cache.setMaxDataSize(maxDataSize);
         cache.setEvictionPolicy(EvictionPolicy.valueOf(evictionPolicy.toUpperCase()));
+        cache.setExecutor(taskExecutor);
+        cache.setRefreshAfter(refreshAfter, TimeUnit.MILLISECONDS);
         return cache;
     }
 
+    /**
+     * 启用快照时启动后异步恢复、关闭时（以及按 snapshot-interval 定期）写入
+     */
+    @Bean
+    @ConditionalOnExpression("!'${cache.memory.snapshot-path:}'.isEmpty()")
+    public CacheSnapshotManager cacheSnapshotManager(@Qualifier("genericCache") GenericCache<Object> genericCache,
+                                                     @Qualifier("taskExecutor") Executor taskExecutor,
+                                                     ObjectProvider<TaskScheduler> taskScheduler) {
+        if (!(genericCache instanceof InMemoryGenericCache<Object> cache)) {
+            throw new IllegalStateException("Cache snapshots are only supported by the default cache engine");
+        }
+        return new CacheSnapshotManager(cache, Path.of(snapshotPath), taskExecutor,
+                taskScheduler.getIfAvailable(), snapshotInterval);
+    }
+
+    /**
+     * 将缓存统计注册到 Micrometer，通过 /actuator/prometheus 暴露
+     */
+    @Bean
+    public MeterBinder genericCacheMetrics(@Qualifier("genericCache") GenericCache<Object> genericCache) {
+        return new GenericCacheMetrics(genericCache, "genericCache", Tags.empty());
+    }
+
     // Getter和Setter
     public long getMaxSize() { return maxSize; }
     public void setMaxSize(long maxSize) { this.maxSize = maxSize; }
@@ -33,4 +122,34 @@ public class CacheConfig {
 
     public String getEvictionPolicy() { return evictionPolicy; }
     public void setEvictionPolicy(String evictionPolicy) { this.evictionPolicy = evictionPolicy; }
+
+    public String getEngine() { return engine; }
+    public void setEngine(String engine) { this.engine = engine; }
+
+    public int getConcurrencyLevel() { return concurrencyLevel; }
+    public void setConcurrencyLevel(int concurrencyLevel) { this.concurrencyLevel = concurrencyLevel; }
+
+    public boolean isOffHeapEnabled() { return offHeapEnabled; }
+    public void setOffHeapEnabled(boolean offHeapEnabled) { this.offHeapEnabled = offHeapEnabled; }
+
+    public long getHeapMaxDataSize() { return heapMaxDataSize; }
+    public void setHeapMaxDataSize(long heapMaxDataSize) { this.heapMaxDataSize = heapMaxDataSize; }
+
+    public int getOffHeapBlockSize() { return offHeapBlockSize; }
+    public void setOffHeapBlockSize(int offHeapBlockSize) { this.offHeapBlockSize = offHeapBlockSize; }
+
+    public int getOffHeapSlabSize() { return offHeapSlabSize; }
+    public void setOffHeapSlabSize(int offHeapSlabSize) { this.offHeapSlabSize = offHeapSlabSize; }
+
+    public long getRefreshAfter() { return refreshAfter; }
+    public void setRefreshAfter(long refreshAfter) { this.refreshAfter = refreshAfter; }
+
+    public String getSnapshotPath() { return snapshotPath; }
+    public void setSnapshotPath(String snapshotPath) { this.snapshotPath = snapshotPath; }
+
+    public long getSnapshotInterval() { return snapshotInterval; }
+    public void setSnapshotInterval(long snapshotInterval) { this.snapshotInterval = snapshotInterval; }
+
+    public Map<String, CacheSpec> getCaches() { return caches; }
+    public void setCaches(Map<String, CacheSpec> caches) { this.caches = caches; }
 }
\ No newline at end of file
@@ -2,7 +2,11 @@ package ps.demo.jpademo.cache;
 
 
 import lombok.Data;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 缓存条目
@@ -31,10 +35,30 @@ public class CacheEntry<V> {
     private LocalDateTime lastAccessTime;
 
     /**
-     * 过期时间（null表示永不过期）
+     * 过期时间（null表示永不过期），仅用于展示
      */
     private LocalDateTime expireTime;
 
+    /**
+     * 过期时刻（System.nanoTime() 基准，单调时钟），仅在 expirable 为 true 时有效
+     */
+    private long expireAtNanos;
+
+    /**
+     * 是否设置了过期时间
+     */
+    private boolean expirable;
+
+    /**
+     * 刷新时刻（System.nanoTime() 基准），仅在 refreshable 为 true 时有效
+     */
+    private long refreshAtNanos;
+
+    /**
+     * 是否设置了刷新间隔
+     */
+    private boolean refreshable;
+
     /**
      * 访问次数
      */
@@ -45,6 +69,16 @@ public class CacheEntry<V> {
      */
     private long size;
 
+    /**
+     * 堆外层中序列化值的首块下标（未写入堆外时为 -1），值被降级到堆外后 value 为 null
+     */
+    private int offHeapBlock = OffHeapStore.NIL;
+
+    /**
+     * 标签（没有标签时为空集合），用于按标签批量失效
+     */
+    private Set<String> tags = Set.of();
+
     public CacheEntry(String key, V value) {
         this.key = key;
         this.value = value;
@@ -54,11 +88,69 @@ public class CacheEntry<V> {
         this.size = 1; // 默认大小
     }
 
+    /**
+     * 设置过期时间（永不过期时传入 null）
+     */
+    public void setExpireTime(LocalDateTime expireTime) {
+        this.expireTime = expireTime;
+        this.expirable = expireTime != null;
+        if (expireTime != null) {
+            this.expireAtNanos = System.nanoTime() + Duration.between(LocalDateTime.now(), expireTime).toNanos();
+        }
+    }
+
+    /**
+     * 设置存活时间
+     * @param nowNanos 当前 System.nanoTime()
+     * @param ttlNanos 存活时间（纳秒）
+     */
+    public void setExpireAfter(long nowNanos, long ttlNanos) {
+        this.expirable = true;
+        this.expireAtNanos = nowNanos + ttlNanos;
+        this.expireTime = createTime.plusNanos(ttlNanos);
+    }
+
+    /**
+     * 设置刷新间隔，到期后读取仍返回当前值，并在后台重新加载
+     * @param nowNanos          当前 System.nanoTime()
+     * @param refreshAfterNanos 刷新间隔（纳秒）
+     */
+    public void setRefreshAfter(long nowNanos, long refreshAfterNanos) {
+        this.refreshable = true;
+        this.refreshAtNanos = nowNanos + refreshAfterNanos;
+    }
+
+    /**
+     * 检查在给定时刻（System.nanoTime() 基准）是否需要刷新
+     */
+    public boolean isRefreshDue(long nowNanos) {
+        return refreshable && nowNanos - refreshAtNanos >= 0;
+    }
+
     /**
      * 检查是否过期
      */
     public boolean isExpired() {
-        return expireTime != null && LocalDateTime.now().isAfter(expireTime);
+        return isExpired(System.nanoTime());
+    }
+
+    /**
+     * 检查在给定时刻（System.nanoTime() 基准）是否过期
+     */
+    public boolean isExpired(long nowNanos) {
+        return expirable && nowNanos - expireAtNanos >= 0;
+    }
+
+    /**
+     * 判断两个条目是否来自同一次写入（堆外模式下 getEntry 返回副本，不能只比较引用）
+     */
+    public boolean isSameWrite(CacheEntry<?> other) {
+        if (this == other) {
+            return true;
+        }
+        return other != null && key.equals(other.key) && createTime.equals(other.createTime)
+                && expirable == other.expirable && expireAtNanos == other.expireAtNanos
+                && refreshable == other.refreshable && refreshAtNanos == other.refreshAtNanos;
     }
 
     /**
@@ -80,9 +172,9 @@ public class CacheEntry<V> {
      * 获取剩余有效时间（秒）
      */
     public Long getRemainingTime() {
-        if (expireTime == null) {
+        if (!expirable) {
             return null;
         }
-        return java.time.Duration.between(LocalDateTime.now(), expireTime).getSeconds();
+        return TimeUnit.NANOSECONDS.toSeconds(expireAtNanos - System.nanoTime());
     }
 }
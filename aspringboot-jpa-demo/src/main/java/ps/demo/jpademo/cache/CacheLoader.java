@@ -0,0 +1,15 @@
+package ps.demo.jpademo.cache;
+
+/**
+ * 缓存加载器，未命中时计算键对应的值
+ * @param <V> 值类型
+ */
+@FunctionalInterface
+public interface CacheLoader<V> {
+
+    /**
+     * 加载键对应的值
+     * @return 加载到的值，返回 null 表示不存在（不会写入缓存）
+     */
+    V load(String key) throws Exception;
+}
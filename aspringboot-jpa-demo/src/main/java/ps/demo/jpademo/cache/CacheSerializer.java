@@ -0,0 +1,18 @@
+package ps.demo.jpademo.cache;
+
+/**
+ * 缓存值序列化器（堆外层使用）
+ * @param <V> 值类型
+ */
+public interface CacheSerializer<V> {
+
+    /**
+     * 序列化为字节数组
+     */
+    byte[] serialize(V value);
+
+    /**
+     * 从字节数组反序列化
+     */
+    V deserialize(byte[] bytes);
+}
@@ -0,0 +1,291 @@
+package ps.demo.jpademo.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 缓存快照文件格式（大端序）
+ * <pre>
+ * 文件头（16字节）：magic(int) version(short) flags(short) 快照时间 epoch 毫秒(long)
+ * 记录：          长度(int) CRC32(int) 记录体
+ * 记录体：        键长度(int) 键(UTF-8) 剩余存活时间纳秒(long，-1 表示永不过期)
+ *                创建时间 epoch 毫秒(long) 最后访问时间 epoch 毫秒(long) 访问次数(long)
+ *                草图频率(byte) 条目大小(long) 值长度(int) 值
+ *                标签数(int) 每个标签：长度(int) 标签(UTF-8)      —— 版本 2 起
+ * 结束标记：      长度为 0 的记录
+ * </pre>
+ * 读取兼容版本 1（没有标签）
+ * 写入时先顺序写到同目录的临时文件，写完结束标记并刷盘后再原子替换目标文件；
+ * 读取时内存映射整个文件，遇到不完整或校验失败的记录即停止，之前的记录仍然可用
+ */
+final class CacheSnapshotFile {
+
+    static final int MAGIC = 0x47435348; // "GCSH"
+    static final short VERSION = 2;
+    private static final short MIN_VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CacheSnapshotFile() {
+    }
+
+    /**
+     * 快照中的一个条目
+     * @param ttlNanos 写快照时的剩余存活时间（纳秒），-1 表示永不过期
+     */
+    record Record(String key, byte[] value, long ttlNanos, long createMillis, long lastAccessMillis,
+                  long accessCount, int frequency, long size, Set<String> tags) {
+    }
+
+    static Writer create(Path file, long snapshotMillis) throws IOException {
+        return new Writer(file, snapshotMillis);
+    }
+
+    /**
+     * 打开并校验快照文件
+     * @throws CacheException 不是快照文件或版本不受支持
+     */
+    static Reader open(Path file) throws IOException {
+        return new Reader(file);
+    }
+
+    /**
+     * 顺序写入器，只有调用 commit 后目标文件才会被替换，未提交就关闭时删除临时文件
+     */
+    static final class Writer implements Closeable {
+
+        private final Path file;
+        private final Path tempFile;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private boolean committed;
+
+        private Writer(Path file, long snapshotMillis) throws IOException {
+            this.file = file.toAbsolutePath();
+            Path directory = this.file.getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            this.tempFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(tempFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(snapshotMillis);
+        }
+
+        void append(Record record) throws IOException {
+            byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+            List<byte[]> tags = new ArrayList<>(record.tags().size());
+            int tagsLength = Integer.BYTES;
+            for (String tag : record.tags()) {
+                byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+                tags.add(bytes);
+                tagsLength += Integer.BYTES + bytes.length;
+            }
+            int bodyLength = Integer.BYTES + key.length + Long.BYTES * 4 + 1 + Long.BYTES
+                    + Integer.BYTES + record.value().length + tagsLength;
+            int recordLength = RECORD_HEADER_SIZE + bodyLength;
+            if (buffer.remaining() < recordLength) {
+                flush();
+            }
+            // 超过缓冲区的大记录单独分配
+            ByteBuffer target = recordLength <= buffer.capacity() ? buffer : ByteBuffer.allocate(recordLength);
+            int start = target.position();
+            target.putInt(bodyLength).putInt(0)
+                    .putInt(key.length).put(key)
+                    .putLong(record.ttlNanos())
+                    .putLong(record.createMillis())
+                    .putLong(record.lastAccessMillis())
+                    .putLong(record.accessCount())
+                    .put((byte) record.frequency())
+                    .putLong(record.size())
+                    .putInt(record.value().length).put(record.value())
+                    .putInt(tags.size());
+            for (byte[] tag : tags) {
+                target.putInt(tag.length).put(tag);
+            }
+            crc.reset();
+            crc.update(target.duplicate().position(start + RECORD_HEADER_SIZE).limit(target.position()));
+            target.putInt(start + Integer.BYTES, (int) crc.getValue());
+            if (target != buffer) {
+                target.flip();
+                writeFully(target);
+            }
+        }
+
+        /**
+         * 写入结束标记、刷盘并原子替换目标文件
+         */
+        void commit() throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(0);
+            flush();
+            channel.force(true);
+            channel.close();
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+
+    /**
+     * 基于内存映射的顺序读取器
+     */
+    static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final short version;
+        private final long snapshotMillis;
+        private final CRC32 crc = new CRC32();
+        private boolean complete;
+        private boolean truncated;
+
+        private Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                if (length > Integer.MAX_VALUE) {
+                    throw new CacheException("Cache snapshot too large to map: " + length + " bytes");
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                if (length < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                    throw new CacheException("Not a cache snapshot file: " + file);
+                }
+                this.version = buffer.getShort();
+                if (version < MIN_VERSION || version > VERSION) {
+                    throw new CacheException("Unsupported cache snapshot version: " + version);
+                }
+                buffer.getShort(); // flags，保留
+                this.snapshotMillis = buffer.getLong();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 写快照的时间（epoch 毫秒）
+         */
+        long snapshotMillis() {
+            return snapshotMillis;
+        }
+
+        /**
+         * 读取下一条记录
+         * @return 下一条记录，读到结束标记或不完整、损坏的记录时返回 null
+         */
+        Record next() {
+            if (complete || truncated) {
+                return null;
+            }
+            if (buffer.remaining() < Integer.BYTES) {
+                truncated = true;
+                return null;
+            }
+            int bodyLength = buffer.getInt();
+            if (bodyLength == 0) {
+                complete = true;
+                return null;
+            }
+            if (bodyLength < 0 || buffer.remaining() < Integer.BYTES + (long) bodyLength) {
+                truncated = true;
+                return null;
+            }
+            int checksum = buffer.getInt();
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.duplicate().position(start).limit(start + bodyLength));
+            if ((int) crc.getValue() != checksum) {
+                truncated = true;
+                return null;
+            }
+            try {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                long ttlNanos = buffer.getLong();
+                long createMillis = buffer.getLong();
+                long lastAccessMillis = buffer.getLong();
+                long accessCount = buffer.getLong();
+                int frequency = buffer.get();
+                long size = buffer.getLong();
+                byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                Set<String> tags = Set.of();
+                if (version >= 2) {
+                    int tagCount = buffer.getInt();
+                    tags = new HashSet<>();
+                    for (int i = 0; i < tagCount; i++) {
+                        byte[] tag = new byte[buffer.getInt()];
+                        buffer.get(tag);
+                        tags.add(new String(tag, StandardCharsets.UTF_8));
+                    }
+                }
+                return new Record(new String(key, StandardCharsets.UTF_8), value, ttlNanos,
+                        createMillis, lastAccessMillis, accessCount, frequency, size, tags);
+            } catch (RuntimeException e) {
+                // 长度字段与记录体不一致
+                truncated = true;
+                return null;
+            } finally {
+                buffer.position(Math.min(start + bodyLength, buffer.limit()));
+            }
+        }
+
+        /**
+         * 是否读到了结束标记
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * 是否因文件截断或损坏而提前停止
+         */
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
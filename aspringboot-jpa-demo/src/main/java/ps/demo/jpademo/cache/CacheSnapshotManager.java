@@ -0,0 +1,93 @@
+package ps.demo.jpademo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 缓存快照生命周期管理
+ * - 启动时在线程池中异步恢复快照，恢复期间缓存照常读写
+ * - 按固定间隔（可选）和关闭时写入快照
+ * 快照恢复完成之前不写快照，避免用只恢复了一部分的缓存覆盖完整的快照
+ */
+@Slf4j
+public class CacheSnapshotManager implements InitializingBean, DisposableBean {
+
+    private final InMemoryGenericCache<?> cache;
+    private final Path file;
+    private final Executor executor;
+    private final TaskScheduler taskScheduler;
+    private final long interval;
+
+    private volatile CompletableFuture<Integer> restore = CompletableFuture.completedFuture(0);
+    private ScheduledFuture<?> scheduledSave;
+
+    /**
+     * @param interval      定期写快照的间隔（毫秒），0 表示只在关闭时写入
+     * @param taskScheduler 定期写快照使用的调度器，interval 为 0 时可为 null
+     */
+    public CacheSnapshotManager(InMemoryGenericCache<?> cache, Path file, Executor executor,
+                                TaskScheduler taskScheduler, long interval) {
+        this.cache = cache;
+        this.file = file;
+        this.executor = executor;
+        this.taskScheduler = taskScheduler;
+        this.interval = interval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            restore = cache.loadSnapshotAsync(file, executor)
+                    .exceptionally(e -> {
+                        log.error("Failed to restore cache snapshot - file: {}", file, e);
+                        return 0;
+                    });
+        } catch (RejectedExecutionException e) {
+            log.error("Cache snapshot restore rejected by executor - file: {}", file, e);
+        }
+        if (interval > 0 && taskScheduler != null) {
+            scheduledSave = taskScheduler.scheduleWithFixedDelay(this::saveSnapshot, Duration.ofMillis(interval));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduledSave != null) {
+            scheduledSave.cancel(false);
+        }
+        saveSnapshot();
+    }
+
+    /**
+     * 写入快照，恢复尚未完成时跳过
+     * @return 写入的条目数，跳过或失败时返回 -1
+     */
+    public int saveSnapshot() {
+        if (!restore.isDone()) {
+            log.warn("Cache snapshot restore still in progress, skipping snapshot save - file: {}", file);
+            return -1;
+        }
+        try {
+            return cache.saveSnapshot(file);
+        } catch (Exception e) {
+            log.error("Failed to save cache snapshot - file: {}", file, e);
+            return -1;
+        }
+    }
+
+    /**
+     * 启动时的恢复任务，完成值为恢复的条目数
+     */
+    public CompletableFuture<Integer> getRestore() {
+        return restore;
+    }
+}
@@ -0,0 +1,30 @@
+package ps.demo.jpademo.cache;
+
+import lombok.Data;
+
+/**
+ * 单个命名缓存的配置（cache.memory.caches.&lt;name&gt;.*），未设置的项沿用 cache.memory 的全局配置
+ */
+@Data
+public class CacheSpec {
+
+    /**
+     * 最大条目数
+     */
+    private Long maxSize;
+
+    /**
+     * 最大权重（条目大小之和），条目大小由 weigher 计算，未设置 weigher 时每个条目为 1
+     */
+    private Long maxDataSize;
+
+    /**
+     * 写入后的存活时间（毫秒），0 表示永不过期
+     */
+    private Long ttl;
+
+    /**
+     * 淘汰策略：LRU, LFU, FIFO, RANDOM, TTL, TINY_LFU
+     */
+    private String evictionPolicy;
+}
@@ -68,6 +68,41 @@ public class CacheStats {
      */
     private long errorCount;
 
+    /**
+     * 写入次数
+     */
+    private long putCount;
+
+    /**
+     * 加载成功次数
+     */
+    private long loadSuccessCount;
+
+    /**
+     * 加载失败次数
+     */
+    private long loadFailureCount;
+
+    /**
+     * 加载总耗时（纳秒）
+     */
+    private long totalLoadTime;
+
+    /**
+     * 平均加载耗时（纳秒）
+     */
+    private double averageLoadPenalty;
+
+    /**
+     * 后台刷新成功次数
+     */
+    private long refreshSuccessCount;
+
+    /**
+     * 后台刷新失败次数
+     */
+    private long refreshFailureCount;
+
     public CacheStats() {
         updateRates();
     }
@@ -77,5 +112,7 @@ public class CacheStats {
         this.hitRate = totalAccess > 0 ? (double) hitCount / totalAccess : 0.0;
         this.missRate = totalAccess > 0 ? (double) missCount / totalAccess : 0.0;
         this.usageRate = maxCacheSize > 0 ? (double) cacheSize / maxCacheSize : 0.0;
+        long totalLoads = loadSuccessCount + loadFailureCount;
+        this.averageLoadPenalty = totalLoads > 0 ? (double) totalLoadTime / totalLoads : 0.0;
     }
 }
@@ -28,5 +28,10 @@ public enum EvictionPolicy {
     /**
      * 基于时间的淘汰
      */
-    TTL
+    TTL,
+
+    /**
+     * W-TinyLFU：窗口LRU + 分段LRU主区，按衰减的频率草图决定准入
+     */
+    TINY_LFU
 }
@@ -0,0 +1,102 @@
+package ps.demo.jpademo.cache;
+
+/**
+ * Count-Min 频率草图
+ * 用固定内存近似统计键的访问频率，计数上限为15；
+ * 累计增量达到采样周期后所有计数减半（衰减），使旧的热点键逐渐失去优势
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb9d3f1e5, 0x4b6a5c2d, 0x3f1d8e07};
+
+    private byte[][] table;
+    private int mask;
+    private int sampleSize;
+    private int additions;
+
+    FrequencySketch(long maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    /**
+     * 按缓存容量调整草图大小（会丢弃已有计数）
+     */
+    void ensureCapacity(long maximumSize) {
+        int width = 16;
+        long target = Math.min(Math.max(maximumSize, 1), 1 << 24);
+        while (width < target) {
+            width <<= 1;
+        }
+        if (table != null && table[0].length == width) {
+            return;
+        }
+        table = new byte[DEPTH][width];
+        mask = width - 1;
+        sampleSize = (int) Math.min(10L * Math.max(maximumSize, 1), Integer.MAX_VALUE);
+        additions = 0;
+    }
+
+    /**
+     * 估算键的访问频率（各行计数的最小值）
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * 记录一次访问；只增加各行中最小的计数（保守更新），降低高估
+     */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        int min = frequency(key);
+        if (min >= MAX_COUNT) {
+            return;
+        }
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (table[i][index] == min) {
+                table[i][index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 所有计数减半
+     */
+    void reset() {
+        for (byte[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = (byte) (row[j] >>> 1);
+            }
+        }
+        additions >>>= 1;
+    }
+
+    void clear() {
+        for (byte[] row : table) {
+            java.util.Arrays.fill(row, (byte) 0);
+        }
+        additions = 0;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -1,9 +1,15 @@
 package ps.demo.jpademo.cache;
 
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 /**
  * 通用缓存接口
@@ -18,11 +24,13 @@ public interface GenericCache<V> {
 
     /**
      * 存储缓存条目（带过期时间）
+     * @param ttl 过期时间，0 表示永不过期（此时 timeUnit 可为 null）
      */
     boolean put(String key, V value, long ttl, TimeUnit timeUnit);
 
     /**
      * 存储缓存条目（带过期时间和大小）
+     * @param ttl 过期时间，0 表示永不过期（此时 timeUnit 可为 null）
      */
     boolean put(String key, V value, long ttl, TimeUnit timeUnit, long size);
 
@@ -31,6 +39,93 @@ public interface GenericCache<V> {
      */
     Optional<V> get(String key);
 
+    /**
+     * 获取缓存条目，未命中时调用 loader 加载并写入缓存
+     * 同一个键的并发未命中只加载一次，加载失败时异常原样抛出（受检异常包装为 CacheException），不写入缓存
+     * @return 缓存或加载到的值，loader 返回 null 时为 null
+     */
+    V get(String key, CacheLoader<? extends V> loader);
+
+    /**
+     * 获取缓存条目，未命中时加载并按给定过期时间写入
+     * 超过 refreshAfter 后读取仍返回当前值，同时在后台线程池中重新加载；超过 ttl 后条目硬过期
+     * @param ttl          过期时间，0 表示永不过期
+     * @param refreshAfter 刷新间隔，0 表示使用缓存级别的设置
+     */
+    V get(String key, CacheLoader<? extends V> loader, long ttl, long refreshAfter, TimeUnit timeUnit);
+
+    /**
+     * 异步获取缓存条目，未命中时在默认线程池中加载，同一个键的并发调用方共享同一个 CompletableFuture
+     */
+    CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader);
+
+    /**
+     * 异步获取缓存条目，未命中时在指定线程池中加载
+     */
+    CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader, Executor executor);
+
+    /**
+     * 批量获取缓存条目
+     * @return 命中的键值对（保持 keys 的顺序），未命中的键不在结果中
+     */
+    default Map<String, V> getAll(Collection<String> keys) {
+        Map<String, V> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            get(key).ifPresent(value -> result.put(key, value));
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取缓存条目，所有未命中的键通过一次 loader 调用加载并写入缓存
+     * 已有在途加载的键会等待该加载，不会重复加载；加载失败时异常原样抛出，不写入缓存
+     * @return 命中或加载到的键值对，loader 未返回的键不在结果中
+     */
+    Map<String, V> getAll(Collection<String> keys, BulkCacheLoader<? extends V> loader);
+
+    /**
+     * 批量存储缓存条目（永不过期）
+     * @return 成功写入的条目数
+     */
+    default int putAll(Map<String, ? extends V> entries) {
+        int stored = 0;
+        for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+            if (put(entry.getKey(), entry.getValue())) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 批量存储缓存条目（带过期时间）
+     * @param ttl 过期时间，0 表示永不过期（此时 timeUnit 可为 null）
+     * @return 成功写入的条目数
+     */
+    default int putAll(Map<String, ? extends V> entries, long ttl, TimeUnit timeUnit) {
+        int stored = 0;
+        for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+            if (put(entry.getKey(), entry.getValue(), ttl, timeUnit)) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 批量移除缓存条目
+     * @return 实际移除的条目数
+     */
+    default int invalidateAll(Collection<String> keys) {
+        int removed = 0;
+        for (String key : keys) {
+            if (remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
     /**
      * 获取缓存条目（带元数据）
      */
@@ -76,11 +171,24 @@ public interface GenericCache<V> {
      */
     CacheStats getStats();
 
+    /**
+     * 只汇总命中、未命中、写入、加载等计数（条目数和容量为 0），不加锁，供指标抓取使用
+     */
+    default CacheStats getCounterStats() {
+        return getStats();
+    }
+
     /**
      * 设置最大缓存大小
      */
     void setMaxSize(long maxSize);
 
+    /**
+     * 设置条目大小的计算函数，作用于没有显式指定大小的写入（包括 loader 加载和批量写入）
+     * @param weigher 返回条目大小（小于 1 时按 1 计），null 表示每个条目大小为 1
+     */
+    void setWeigher(ToLongFunction<? super V> weigher);
+
     /**
      * 设置淘汰策略
      */
@@ -0,0 +1,69 @@
+package ps.demo.jpademo.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 基于 GenericCache 的 Spring CacheManager
+ * 配置中列出的缓存启动时创建，其他名称在第一次使用时按全局配置创建；
+ * 设置 MeterRegistry 后每个缓存以自己的名称绑定 GenericCacheMetrics（cache=名称）
+ */
+@Slf4j
+public class GenericCacheManager implements CacheManager {
+
+    private static final Tags METRIC_TAGS = Tags.of("cache.manager", "cacheManager");
+
+    private final Function<String, GenericSpringCache> cacheFactory;
+    private final ConcurrentMap<String, GenericSpringCache> caches = new ConcurrentHashMap<>();
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * @param cacheFactory 按名称创建缓存
+     * @param cacheNames   启动时创建的缓存名称
+     */
+    public GenericCacheManager(Function<String, GenericSpringCache> cacheFactory, Collection<String> cacheNames) {
+        this.cacheFactory = cacheFactory;
+        cacheNames.forEach(this::getCache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 绑定已有缓存和之后创建的缓存的指标
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        caches.values().forEach(cache -> bindMetrics(cache, meterRegistry));
+    }
+
+    private GenericSpringCache createCache(String name) {
+        GenericSpringCache cache = cacheFactory.apply(name);
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            bindMetrics(cache, registry);
+        }
+        log.info("Created cache: {}", name);
+        return cache;
+    }
+
+    private static void bindMetrics(GenericSpringCache cache, MeterRegistry registry) {
+        new GenericCacheMetrics(cache.getNativeCache(), cache.getName(), METRIC_TAGS).bindTo(registry);
+    }
+}
@@ -0,0 +1,121 @@
+package ps.demo.jpademo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GenericCache 的 Micrometer 指标绑定
+ * 除 CacheMeterBinder 自带的 cache.size / cache.gets / cache.puts / cache.evictions 外，
+ * 额外暴露命中率、未命中率、加权大小、加载次数与加载耗时；所有指标在抓取时才读取统计快照
+ * 计数类指标只汇总 LongAdder（getCounterStats），不获取缓存锁、不推进时间轮，抓取不会阻塞读写
+ */
+public class GenericCacheMetrics extends CacheMeterBinder<GenericCache<?>> {
+
+    public GenericCacheMetrics(GenericCache<?> cache, String cacheName, Iterable<Tag> tags) {
+        super(cache, cacheName, tags);
+    }
+
+    @Override
+    protected Long size() {
+        GenericCache<?> cache = getCache();
+        return cache == null ? null : (long) cache.size();
+    }
+
+    @Override
+    protected long hitCount() {
+        CacheStats stats = stats();
+        return stats == null ? 0 : stats.getHitCount();
+    }
+
+    @Override
+    protected Long missCount() {
+        CacheStats stats = stats();
+        return stats == null ? null : stats.getMissCount();
+    }
+
+    @Override
+    protected Long evictionCount() {
+        CacheStats stats = stats();
+        return stats == null ? null : stats.getEvictionCount();
+    }
+
+    @Override
+    protected long putCount() {
+        CacheStats stats = stats();
+        return stats == null ? 0 : stats.getPutCount();
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        GenericCache<?> cache = getCache();
+        if (cache == null) {
+            return;
+        }
+
+        Gauge.builder("cache.hit.rate", cache, c -> c.getCounterStats().getHitRate())
+                .tags(getTagsWithCacheName())
+                .description("The ratio of cache requests which were hits")
+                .register(registry);
+
+        Gauge.builder("cache.miss.rate", cache, c -> c.getCounterStats().getMissRate())
+                .tags(getTagsWithCacheName())
+                .description("The ratio of cache requests which were misses")
+                .register(registry);
+
+        Gauge.builder("cache.weighted.size", cache, GenericCache::dataSize)
+                .tags(getTagsWithCacheName())
+                .description("The sum of entry sizes in the cache")
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("cache.errors", cache, c -> c.getCounterStats().getErrorCount())
+                .tags(getTagsWithCacheName())
+                .description("The number of failed cache operations")
+                .register(registry);
+
+        FunctionCounter.builder("cache.load", cache, c -> c.getCounterStats().getLoadSuccessCount())
+                .tags(getTagsWithCacheName())
+                .tags("result", "success")
+                .description("The number of times cache lookup methods have successfully loaded a new value")
+                .register(registry);
+
+        FunctionCounter.builder("cache.load", cache, c -> c.getCounterStats().getLoadFailureCount())
+                .tags(getTagsWithCacheName())
+                .tags("result", "failure")
+                .description("The number of times cache lookup methods failed to load a new value")
+                .register(registry);
+
+        FunctionCounter.builder("cache.refresh", cache, c -> c.getCounterStats().getRefreshSuccessCount())
+                .tags(getTagsWithCacheName())
+                .tags("result", "success")
+                .description("The number of successful background refreshes")
+                .register(registry);
+
+        FunctionCounter.builder("cache.refresh", cache, c -> c.getCounterStats().getRefreshFailureCount())
+                .tags(getTagsWithCacheName())
+                .tags("result", "failure")
+                .description("The number of failed background refreshes")
+                .register(registry);
+
+        FunctionTimer.builder("cache.load.duration", cache,
+                        c -> {
+                            CacheStats stats = c.getCounterStats();
+                            return stats.getLoadSuccessCount() + stats.getLoadFailureCount();
+                        },
+                        c -> c.getCounterStats().getTotalLoadTime(), TimeUnit.NANOSECONDS)
+                .tags(getTagsWithCacheName())
+                .description("The time the cache has spent loading new values")
+                .register(registry);
+    }
+
+    private CacheStats stats() {
+        GenericCache<?> cache = getCache();
+        return cache == null ? null : cache.getCounterStats();
+    }
+}
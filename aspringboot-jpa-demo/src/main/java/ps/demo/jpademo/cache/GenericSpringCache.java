@@ -0,0 +1,95 @@
+package ps.demo.jpademo.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 GenericCache 的 Spring Cache 适配
+ * - 缓存键为 key.toString()（SimpleKey 的字符串形式包含全部参数），不同类型但字符串形式相同的键视为同一个键
+ * - 允许缓存 null 时以 NullValue 占位
+ * - get(key, valueLoader)（@Cacheable(sync = true)）走 GenericCache 的单飞加载，同一个键的并发未命中只调用一次方法
+ */
+public class GenericSpringCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final GenericCache<Object> cache;
+    private final long ttl;
+
+    /**
+     * @param ttl 写入后的存活时间（毫秒），0 表示永不过期
+     */
+    public GenericSpringCache(String name, GenericCache<Object> cache, long ttl, boolean allowNullValues) {
+        super(allowNullValues);
+        this.name = name;
+        this.cache = cache;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public GenericCache<Object> getNativeCache() {
+        return cache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        return cache.get(toKey(key)).orElse(null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object storeValue = cache.get(toKey(key), k -> {
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            // 不允许 null 时返回 null 表示不写入缓存
+            return value == null && !isAllowNullValues() ? null : toStoreValue(value);
+        }, ttl, 0, TimeUnit.MILLISECONDS);
+        return (T) fromStoreValue(storeValue);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (ttl > 0) {
+            cache.put(toKey(key), toStoreValue(value), ttl, TimeUnit.MILLISECONDS);
+        } else {
+            cache.put(toKey(key), toStoreValue(value));
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        cache.remove(toKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return cache.remove(toKey(key));
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean notEmpty = cache.size() > 0;
+        cache.clear();
+        return notEmpty;
+    }
+
+    private static String toKey(Object key) {
+        return key.toString();
+    }
+}
@@ -4,12 +4,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.function.ToLongFunction;
 
 /**
  * 通用内存缓存实现
@@ -29,14 +39,51 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
     private long maxSize = 10000; // 默认最大条目数
     private long maxDataSize = 100 * 1024 * 1024; // 默认100MB
     private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
-
-    // 统计信息
-    private final CacheStats stats = new CacheStats();
+    // 未显式指定大小的写入使用的条目大小计算函数，null 表示每个条目大小为 1
+    private volatile ToLongFunction<? super V> weigher;
+
+    // W-TinyLFU 策略状态（仅在 TINY_LFU 策略下非空）
+    private WindowTinyLfuPolicy tinyLfu;
+
+    // 键的有序索引和标签索引（写锁保护），按前缀、标签失效时只访问匹配的键
+    // 有序索引在第一次按前缀失效时才建立，之前的写入不承担 O(log n) 的维护开销
+    private NavigableSet<String> keyIndex;
+    private final Map<String, Set<String>> tagIndex = new HashMap<>();
+
+    // 过期时间轮（写锁保护），写入和清理时增量推进，不再全表扫描
+    private final TimerWheel timerWheel = new TimerWheel(System.nanoTime());
+
+    // 永不过期
+    private static final long NO_EXPIRY = -1;
+
+    // 堆外层（启用后非空）：所有值序列化写入直接内存，堆上只保留热点条目的反序列化对象
+    private volatile OffHeapStore offHeapStore;
+    private volatile CacheSerializer<V> serializer;
+    private long heapMaxDataSize;
+    // 堆上保留的值大小，读路径提升时在读锁内增加
+    private final AtomicLong heapDataSize = new AtomicLong();
+    // 值在堆上的堆外条目，按进入堆上的先后排列（读路径提升时在读锁内追加），降级从队首开始
+    private final Queue<ResidentEntry<V>> heapResident = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger heapResidentCount = new AtomicInteger();
+
+    // 降级到堆外时，堆上值大小降到上限的该比例以下，避免每次写入都触发降级
+    private static final double DEMOTE_WATERMARK = 0.8;
+    private static final int DEFAULT_OFF_HEAP_BLOCK_SIZE = 256;
+    private static final int DEFAULT_OFF_HEAP_SLAB_SIZE = 4 * 1024 * 1024;
+
+    // 恢复快照时每批写入的条目数，每批获取一次写锁
+    private static final int RESTORE_BATCH_SIZE = 256;
+
+    // 统计信息（LongAdder 计数，读取时汇总）
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    // 单飞加载，合并同一个键的并发未命中
+    private final SingleFlightLoader<V> singleFlight = new SingleFlightLoader<>(this, statsCounter, this::peek, this::putLoaded, this::replaceLoaded);
     private long totalDataSize = 0;
 
     @Override
     public boolean put(String key, V value) {
-        return putInternal(key, value, null, 1);
+        return putInternal(key, value, NO_EXPIRY, weigh(value));
     }
 
     @Override
@@ -44,17 +91,16 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
         // 参数验证
         if (ttl < 0) {
             log.warn("Invalid TTL: {}", ttl);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
 
         if (timeUnit == null && ttl > 0) {
             log.warn("TimeUnit is null but TTL is positive: {}", ttl);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
-        LocalDateTime expireTime = LocalDateTime.now().plusNanos(timeUnit.toNanos(ttl));
-        return putInternal(key, value, expireTime, 1);
+        return putInternal(key, value, ttl > 0 ? timeUnit.toNanos(ttl) : NO_EXPIRY, weigh(value));
     }
 
     @Override
@@ -62,85 +108,511 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
         // 参数验证
         if (ttl < 0) {
             log.warn("Invalid TTL: {}", ttl);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
 
         if (size <= 0) {
             log.warn("Invalid size: {}", size);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
 
         if (timeUnit == null && ttl > 0) {
             log.warn("TimeUnit is null but TTL is positive: {}", ttl);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
 
-        LocalDateTime expireTime = null;
+        long ttlNanos = NO_EXPIRY;
         if (timeUnit != null && ttl > 0) {
-            expireTime = LocalDateTime.now().plusNanos(timeUnit.toNanos(ttl));
+            ttlNanos = timeUnit.toNanos(ttl);
+        }
+
+        return putInternal(key, value, ttlNanos, size);
+    }
+
+    /**
+     * 存储带标签的缓存条目（永不过期），之后可通过 invalidateByTag 按标签失效；
+     * 覆盖同键的条目时旧标签一并替换
+     */
+    public boolean put(String key, V value, Collection<String> tags) {
+        return putInternal(key, value, NO_EXPIRY, 0, weigh(value), tagsOf(tags));
+    }
+
+    /**
+     * 存储带标签和过期时间的缓存条目
+     */
+    public boolean put(String key, V value, long ttl, TimeUnit timeUnit, Collection<String> tags) {
+        if (ttl < 0 || (timeUnit == null && ttl > 0)) {
+            log.warn("Invalid TTL: {} {}", ttl, timeUnit);
+            statsCounter.recordError();
+            return false;
+        }
+        return putInternal(key, value, ttl > 0 ? timeUnit.toNanos(ttl) : NO_EXPIRY, 0, weigh(value), tagsOf(tags));
+    }
+
+    /**
+     * 写入 loader 加载的值（ttlNanos、refreshAfterNanos 为 0 表示不设置）
+     */
+    private boolean putLoaded(String key, V value, long ttlNanos, long refreshAfterNanos) {
+        return putInternal(key, value, ttlNanos > 0 ? ttlNanos : NO_EXPIRY, refreshAfterNanos, weigh(value));
+    }
+
+    /**
+     * 写回后台刷新的结果：只有当前条目仍是触发刷新的那次写入时才替换（value 为 null 时删除），
+     * 不覆盖刷新期间的其他写入
+     */
+    private boolean replaceLoaded(String key, CacheEntry<V> expected, V value, long ttlNanos, long refreshAfterNanos) {
+        if (value != null) {
+            return putInternal(key, value, ttlNanos > 0 ? ttlNanos : NO_EXPIRY, refreshAfterNanos, weigh(value),
+                    expected.getTags(), expected);
+        }
+        try {
+            lock.writeLock().lock();
+            CacheEntry<V> current = cache.get(key);
+            return current != null && current.isSameWrite(expected) && removeInternal(key);
+        } catch (Exception e) {
+            log.error("Error removing cache entry for key: {}", key, e);
+            statsCounter.recordError();
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 未显式指定大小的写入按 weigher 计算条目大小
+     */
+    private long weigh(V value) {
+        ToLongFunction<? super V> entryWeigher = weigher;
+        if (entryWeigher == null || value == null) {
+            return 1;
         }
+        return Math.max(1, entryWeigher.applyAsLong(value));
+    }
+
+    private boolean putInternal(String key, V value, long ttlNanos, long entrySize) {
+        return putInternal(key, value, ttlNanos, 0, entrySize);
+    }
 
-        return putInternal(key, value, expireTime, size);
+    private boolean putInternal(String key, V value, long ttlNanos, long refreshAfterNanos, long entrySize) {
+        return putInternal(key, value, ttlNanos, refreshAfterNanos, entrySize, Set.of());
     }
 
-    private boolean putInternal(String key, V value, LocalDateTime expireTime, long entrySize) {
+    private boolean putInternal(String key, V value, long ttlNanos, long refreshAfterNanos, long entrySize,
+                                Set<String> tags) {
+        return putInternal(key, value, ttlNanos, refreshAfterNanos, entrySize, tags, null);
+    }
+
+    /**
+     * @param ttlNanos          存活时间（纳秒），NO_EXPIRY 表示永不过期
+     * @param refreshAfterNanos 刷新间隔（纳秒），0 表示不刷新
+     * @param tags              标签，没有标签时为空集合
+     * @param expected          非 null 时只在当前条目仍是该次写入时才写入，否则返回 false
+     */
+    private boolean putInternal(String key, V value, long ttlNanos, long refreshAfterNanos, long entrySize,
+                                Set<String> tags, CacheEntry<V> expected) {
         Objects.requireNonNull(key, "Key cannot be null");
         Objects.requireNonNull(value, "Value cannot be null");
 
+        // 启用堆外层时在锁外序列化，条目大小取实际字节数
+        byte[] bytes = null;
+        CacheSerializer<V> valueSerializer = serializer;
+        if (valueSerializer != null) {
+            try {
+                bytes = valueSerializer.serialize(value);
+                entrySize = bytes.length;
+            } catch (Exception e) {
+                log.error("Error serializing cache entry for key: {}", key, e);
+                statsCounter.recordError();
+                return false;
+            }
+        }
+
         try {
             lock.writeLock().lock();
+            if (expected != null) {
+                CacheEntry<V> current = cache.get(key);
+                if (current == null || !current.isSameWrite(expected)) {
+                    return false;
+                }
+            }
+            long now = System.nanoTime();
+            // 顺带推进时间轮，先回收已到期的条目
+            expireEntries(now);
 
             // 检查是否超过容量限制
             boolean needsEviction = cache.size() >= maxSize || totalDataSize + entrySize > maxDataSize;
-            System.out.println("Needs eviction: " + needsEviction);
-            System.out.println("Cache size: " + cache.size() + ", Max size: " + maxSize);
-            System.out.println("Total data size: " + totalDataSize + ", Entry size: " + entrySize + ", Max data size: " + maxDataSize);
-
             if (needsEviction) {
                 int evicted = evict(1);
-                System.out.println("Evicted count: " + evicted);
                 if (evicted == 0) {
                     // 无法淘汰任何条目
                     log.warn("Cache is full and eviction failed, cannot put key: {}", key);
-                    stats.setErrorCount(stats.getErrorCount() + 1);
+                    statsCounter.recordError();
                     return false;
                 }
                 // 重新检查容量
                 if (cache.size() >= maxSize || totalDataSize + entrySize > maxDataSize) {
                     log.warn("Still over capacity after eviction");
-                    stats.setErrorCount(stats.getErrorCount() + 1);
+                    statsCounter.recordError();
                     return false;
                 }
             }
 
-            CacheEntry<V> entry = new CacheEntry<>(key, value);
-            entry.setExpireTime(expireTime);
-            entry.setSize(entrySize);
-
-            // 如果键已存在，先移除旧条目
-            if (cache.containsKey(key)) {
-                removeInternal(key);
+            if (!insertEntry(key, value, bytes, ttlNanos, refreshAfterNanos, entrySize, tags, now)) {
+                return false;
+            }
+            if (heapDataSize.get() > heapMaxDataSize && offHeapStore != null) {
+                demoteColdEntries();
             }
 
-            cache.put(key, entry);
-            totalDataSize += entrySize;
-
-            updateStats();
+            statsCounter.recordPut();
             log.debug("Cache put successful - key: {}, size: {}", key, entrySize);
             return true;
 
         } catch (Exception e) {
             log.error("Error putting cache entry for key: {}", key, e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * 创建条目并写入各索引结构，替换同键的旧条目（调用方需持有写锁并已完成容量检查）
+     * @param bytes 堆外层启用时的序列化结果，否则为 null
+     * @return 堆外空间不足且无法淘汰时返回 false
+     */
+    private boolean insertEntry(String key, V value, byte[] bytes, long ttlNanos, long refreshAfterNanos,
+                                long entrySize, Set<String> tags, long now) {
+        CacheEntry<V> entry = new CacheEntry<>(key, value);
+        if (ttlNanos != NO_EXPIRY) {
+            entry.setExpireAfter(now, ttlNanos);
+        }
+        if (refreshAfterNanos > 0) {
+            entry.setRefreshAfter(now, refreshAfterNanos);
+        }
+        entry.setSize(entrySize);
+        entry.setTags(tags);
+        return insertEntry(entry, bytes);
+    }
+
+    /**
+     * 写入已构造好的条目（调用方需持有写锁并已完成容量检查）
+     */
+    private boolean insertEntry(CacheEntry<V> entry, byte[] bytes) {
+        String key = entry.getKey();
+        // 如果键已存在，先移除旧条目
+        if (cache.containsKey(key)) {
+            removeInternal(key);
+        }
+
+        if (bytes != null) {
+            int block = writeOffHeap(bytes);
+            if (block == OffHeapStore.NIL) {
+                log.warn("Off-heap store is full and eviction failed, cannot put key: {}", key);
+                statsCounter.recordError();
+                return false;
+            }
+            entry.setOffHeapBlock(block);
+            heapDataSize.addAndGet(entry.getSize());
+        }
+
+        cache.put(key, entry);
+        if (bytes != null) {
+            markResident(entry);
+            if (heapResidentCount.get() > 2L * cache.size() + 64) {
+                compactResident();
+            }
+        }
+        totalDataSize += entry.getSize();
+        if (keyIndex != null) {
+            keyIndex.add(key);
+        }
+        for (String tag : entry.getTags()) {
+            tagIndex.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+        if (entry.isExpirable()) {
+            timerWheel.schedule(key, entry.getExpireAtNanos());
+        }
+        if (tinyLfu != null) {
+            tinyLfu.onInsert(key);
+        }
+        return true;
+    }
+
+    @Override
+    public int putAll(Map<String, ? extends V> entries) {
+        return putAllInternal(entries, NO_EXPIRY);
+    }
+
+    @Override
+    public int putAll(Map<String, ? extends V> entries, long ttl, TimeUnit timeUnit) {
+        if (ttl < 0 || (timeUnit == null && ttl > 0)) {
+            log.warn("Invalid TTL: {} {}", ttl, timeUnit);
+            statsCounter.recordError();
+            return 0;
+        }
+        return putAllInternal(entries, ttl > 0 ? timeUnit.toNanos(ttl) : NO_EXPIRY);
+    }
+
+    /**
+     * 批量写入：锁外序列化，只获取一次写锁，并为整批条目做一次淘汰
+     * 超出容量、无法腾出空间的条目写入失败并计入错误数，被覆盖的键写入失败时保留旧值
+     * @return 成功写入的条目数
+     */
+    private int putAllInternal(Map<String, ? extends V> entries, long ttlNanos) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<PendingEntry<V>> batch = new ArrayList<>(entries.size());
+        CacheSerializer<V> valueSerializer = serializer;
+        for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+            String key = Objects.requireNonNull(entry.getKey(), "Key cannot be null");
+            V value = Objects.requireNonNull(entry.getValue(), "Value cannot be null");
+            byte[] bytes = null;
+            if (valueSerializer != null) {
+                try {
+                    bytes = valueSerializer.serialize(value);
+                } catch (Exception e) {
+                    log.error("Error serializing cache entry for key: {}", key, e);
+                    statsCounter.recordError();
+                    continue;
+                }
+            }
+            batch.add(new PendingEntry<>(key, value, bytes, bytes != null ? bytes.length : weigh(value)));
+        }
+
+        try {
+            lock.writeLock().lock();
+            long now = System.nanoTime();
+            expireEntries(now);
+
+            // 被覆盖的旧条目写入成功时才移除，按替换后的净增量计算需要腾出的空间，一次性淘汰
+            Set<String> batchKeys = new HashSet<>();
+            long newKeys = 0;
+            long netSize = 0;
+            for (PendingEntry<V> pending : batch) {
+                batchKeys.add(pending.key);
+                CacheEntry<V> old = cache.get(pending.key);
+                if (old == null) {
+                    newKeys++;
+                }
+                netSize += pending.size - (old == null ? 0 : old.getSize());
+            }
+            long overCount = cache.size() + newKeys - maxSize;
+            long overBytes = totalDataSize + netSize - maxDataSize;
+            if (overCount > 0 || overBytes > 0) {
+                evictForBatch(overCount, overBytes, batchKeys);
+            }
+
+            int stored = 0;
+            for (PendingEntry<V> pending : batch) {
+                CacheEntry<V> old = cache.get(pending.key);
+                long sizeAfterRemove = cache.size() - (old == null ? 0 : 1);
+                long dataSizeAfterRemove = totalDataSize - (old == null ? 0 : old.getSize());
+                if (sizeAfterRemove >= maxSize || dataSizeAfterRemove + pending.size > maxDataSize) {
+                    statsCounter.recordError();
+                    continue;
+                }
+                if (insertEntry(pending.key, pending.value, pending.bytes, ttlNanos, 0, pending.size, Set.of(), now)) {
+                    statsCounter.recordPut();
+                    stored++;
+                }
+            }
+            if (heapDataSize.get() > heapMaxDataSize && offHeapStore != null) {
+                demoteColdEntries();
+            }
+            if (stored < entries.size()) {
+                log.warn("Cache is full, stored {} of {} entries", stored, entries.size());
+            }
+            log.debug("Cache putAll successful - stored: {}", stored);
+            return stored;
+        } catch (Exception e) {
+            log.error("Error putting cache entries", e);
+            statsCounter.recordError();
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 为批量写入一次性淘汰足够的条目（调用方需持有写锁）
+     * @param entries   需要腾出的条目数
+     * @param bytes     需要腾出的数据大小
+     * @param batchKeys 本批写入的键，不作为淘汰对象（W-TinyLFU 选中时照常淘汰，但不计入腾出的空间）
+     * @return 淘汰的条目数
+     */
+    private int evictForBatch(long entries, long bytes, Set<String> batchKeys) {
+        int evictedCount = 0;
+        if (tinyLfu != null) {
+            while (entries > 0 || bytes > 0) {
+                String victim = tinyLfu.selectVictim();
+                CacheEntry<V> entry = victim == null ? null : cache.get(victim);
+                if (entry == null || !removeInternal(victim)) {
+                    break;
+                }
+                evictedCount++;
+                statsCounter.recordEviction();
+                if (!batchKeys.contains(victim)) {
+                    // 淘汰本批覆盖的键时，它的新值变为新增条目，需要腾出的空间不变
+                    entries--;
+                    bytes -= entry.getSize();
+                }
+            }
+        } else {
+            while (entries > 0 || bytes > 0) {
+                // 按需要腾出的条目数和平均条目大小估算一次选出的数量，不足时再选一轮
+                long averageSize = Math.max(1, totalDataSize / Math.max(1, cache.size()));
+                long wanted = Math.max(entries, bytes > 0 ? (bytes + averageSize - 1) / averageSize : 0);
+                List<CacheEntry<V>> victims = selectEntriesToEvict((int) Math.min(wanted, Integer.MAX_VALUE), batchKeys);
+                if (victims.isEmpty()) {
+                    break;
+                }
+                for (CacheEntry<V> entry : victims) {
+                    if (entries <= 0 && bytes <= 0) {
+                        break;
+                    }
+                    if (removeInternal(entry.getKey())) {
+                        entries--;
+                        bytes -= entry.getSize();
+                        evictedCount++;
+                        statsCounter.recordEviction();
+                    }
+                }
+            }
+        }
+        log.debug("Evicted {} cache entries for batch using policy: {}", evictedCount, evictionPolicy);
+        return evictedCount;
+    }
+
+    @Override
+    public Map<String, V> getAll(Collection<String> keys) {
+        Map<String, V> result = new LinkedHashMap<>();
+        try {
+            lock.readLock().lock();
+            long now = System.nanoTime();
+            for (String key : keys) {
+                CacheEntry<V> entry = key == null ? null : cache.get(key);
+                if (entry == null || entry.isExpired(now)) {
+                    recordMiss(key);
+                    statsCounter.recordMiss();
+                    continue;
+                }
+                V value = entry.getValue();
+                if (value == null) {
+                    value = promote(entry);
+                }
+                entry.updateAccess();
+                recordAccess(key);
+                statsCounter.recordHit();
+                result.put(key, value);
+            }
+        } catch (Exception e) {
+            log.error("Error getting cache entries", e);
+            statsCounter.recordError();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, V> getAll(Collection<String> keys, BulkCacheLoader<? extends V> loader) {
+        return singleFlight.getAll(keys, loader);
+    }
+
+    @Override
+    public int invalidateAll(Collection<String> keys) {
+        try {
+            lock.writeLock().lock();
+            int removed = 0;
+            for (String key : keys) {
+                if (key != null && removeInternal(key)) {
+                    removed++;
+                }
+            }
+            return removed;
+        } catch (Exception e) {
+            log.error("Error removing cache entries", e);
+            statsCounter.recordError();
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 失效带有指定标签的所有条目，耗时与匹配的条目数成正比
+     * @return 移除的条目数
+     */
+    public int invalidateByTag(String tag) {
+        try {
+            lock.writeLock().lock();
+            Set<String> keys = tagIndex.get(tag);
+            if (keys == null) {
+                return 0;
+            }
+            int removed = 0;
+            for (String key : new ArrayList<>(keys)) {
+                if (removeInternal(key)) {
+                    removed++;
+                }
+            }
+            log.debug("Cache invalidate by tag - tag: {}, removed: {}", tag, removed);
+            return removed;
+        } catch (Exception e) {
+            log.error("Error invalidating cache entries by tag: {}", tag, e);
+            statsCounter.recordError();
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 失效键以指定前缀开头的所有条目，在有序键索引上定位，耗时为 O(log n + 匹配的条目数)
+     * 第一次调用时用现有的键建立索引，耗时 O(n log n)
+     * @return 移除的条目数
+     */
+    public int invalidateByPrefix(String prefix) {
+        Objects.requireNonNull(prefix, "Prefix cannot be null");
+        try {
+            lock.writeLock().lock();
+            if (keyIndex == null) {
+                keyIndex = new TreeSet<>(cache.keySet());
+            }
+            List<String> keys = new ArrayList<>();
+            for (String key : keyIndex.tailSet(prefix, true)) {
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                keys.add(key);
+            }
+            int removed = 0;
+            for (String key : keys) {
+                if (removeInternal(key)) {
+                    removed++;
+                }
+            }
+            log.debug("Cache invalidate by prefix - prefix: {}, removed: {}", prefix, removed);
+            return removed;
+        } catch (Exception e) {
+            log.error("Error invalidating cache entries by prefix: {}", prefix, e);
+            statsCounter.recordError();
+            return 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Set<String> tagsOf(Collection<String> tags) {
+        return tags == null || tags.isEmpty() ? Set.of() : Set.copyOf(tags);
+    }
+
     @Override
     public Optional<V> get(String key) {
         try {
@@ -148,34 +620,77 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             CacheEntry<V> entry = cache.get(key);
 
             if (entry == null) {
-                stats.setMissCount(stats.getMissCount() + 1);
-                updateStats();
+                recordMiss(key);
+                statsCounter.recordMiss();
                 return Optional.empty();
             }
 
             if (entry.isExpired()) {
-                // 异步清理过期条目
-                scheduleCleanup();
-                stats.setMissCount(stats.getMissCount() + 1);
-                updateStats();
+                // 过期条目由时间轮在下次写入或清理时回收，读路径不做删除
+                recordMiss(key);
+                statsCounter.recordMiss();
                 return Optional.empty();
             }
 
+            V value = entry.getValue();
+            if (value == null) {
+                value = promote(entry);
+            }
             entry.updateAccess();
-            stats.setHitCount(stats.getHitCount() + 1);
-            updateStats();
+            recordAccess(key);
+            statsCounter.recordHit();
 
-            return Optional.of(entry.getValue());
+            return Optional.of(value);
 
         } catch (Exception e) {
             log.error("Error getting cache entry for key: {}", key, e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return Optional.empty();
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    @Override
+    public V get(String key, CacheLoader<? extends V> loader) {
+        return singleFlight.get(key, loader, 0, 0);
+    }
+
+    @Override
+    public V get(String key, CacheLoader<? extends V> loader, long ttl, long refreshAfter, TimeUnit timeUnit) {
+        if (ttl < 0 || refreshAfter < 0) {
+            throw new IllegalArgumentException("TTL and refreshAfter must not be negative");
+        }
+        return singleFlight.get(key, loader, timeUnit.toNanos(ttl), timeUnit.toNanos(refreshAfter));
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader) {
+        return singleFlight.getAsync(key, loader, singleFlight.getExecutor());
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader, Executor executor) {
+        return singleFlight.getAsync(key, loader, executor);
+    }
+
+    /**
+     * 查询有效值，不计统计、不更新访问信息
+     */
+    private Optional<V> peek(String key) {
+        try {
+            lock.readLock().lock();
+            CacheEntry<V> entry = cache.get(key);
+            if (entry == null || entry.isExpired()) {
+                return Optional.empty();
+            }
+            V value = entry.getValue();
+            return Optional.of(value != null ? value : promote(entry));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public Optional<CacheEntry<V>> getEntry(String key) {
         try {
@@ -183,20 +698,32 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             CacheEntry<V> entry = cache.get(key);
 
             if (entry == null || entry.isExpired()) {
-                stats.setMissCount(stats.getMissCount() + 1);
-                updateStats();
+                recordMiss(key);
+                statsCounter.recordMiss();
                 return Optional.empty();
             }
 
+            if (offHeapStore != null) {
+                // 堆外模式下条目之后可能被降级，返回带值的副本
+                V value = entry.getValue();
+                if (value == null) {
+                    value = promote(entry);
+                }
+                entry.updateAccess();
+                recordAccess(key);
+                statsCounter.recordHit();
+                return Optional.of(copyOf(entry, value));
+            }
+
             entry.updateAccess();
-            stats.setHitCount(stats.getHitCount() + 1);
-            updateStats();
+            recordAccess(key);
+            statsCounter.recordHit();
 
             return Optional.of(entry);
 
         } catch (Exception e) {
             log.error("Error getting cache entry for key: {}", key, e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return Optional.empty();
         } finally {
             lock.readLock().unlock();
@@ -210,7 +737,7 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             return removeInternal(key);
         } catch (Exception e) {
             log.error("Error removing cache entry for key: {}", key, e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         } finally {
             lock.writeLock().unlock();
@@ -221,7 +748,27 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
         CacheEntry<V> removed = cache.remove(key);
         if (removed != null) {
             totalDataSize -= removed.getSize();
-            updateStats();
+            if (keyIndex != null) {
+                keyIndex.remove(key);
+            }
+            for (String tag : removed.getTags()) {
+                Set<String> keys = tagIndex.get(tag);
+                if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                    tagIndex.remove(tag);
+                }
+            }
+            if (removed.getOffHeapBlock() != OffHeapStore.NIL) {
+                offHeapStore.free(removed.getOffHeapBlock());
+                if (removed.getValue() != null) {
+                    heapDataSize.addAndGet(-removed.getSize());
+                }
+            }
+            if (removed.isExpirable()) {
+                timerWheel.deschedule(key);
+            }
+            if (tinyLfu != null) {
+                tinyLfu.onRemove(key);
+            }
             log.debug("Cache remove successful - key: {}", key);
             return true;
         }
@@ -235,42 +782,54 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             return entry.isPresent();
         } catch (Exception e) {
             log.error("Error checking cache contains key: {}", key, e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return false;
         }
     }
 
+    /**
+     * 复制键列表本身就是 O(n)，顺带按同一时刻过滤已到期但尚未被时间轮回收的键
+     */
     @Override
     public List<String> keys() {
         try {
             lock.readLock().lock();
-            return cache.values().stream()
-                    .filter(entry -> !entry.isExpired())
-                    .map(CacheEntry::getKey)
-                    .collect(Collectors.toList());
+            long now = System.nanoTime();
+            List<String> keys = new ArrayList<>(cache.size());
+            cache.forEach((key, entry) -> {
+                if (!entry.isExpired(now)) {
+                    keys.add(key);
+                }
+            });
+            return keys;
         } catch (Exception e) {
             log.error("Error getting cache keys", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return Collections.emptyList();
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * 能拿到写锁时先推进时间轮回收到期条目（均摊 O(1)），再返回条目数；
+     * 写锁被占用时不等待，按同一时刻逐条统计未过期的条目
+     */
     @Override
     public int size() {
-        try {
-            lock.readLock().lock();
-            return (int) cache.values().stream()
-                    .filter(entry -> !entry.isExpired())
-                    .count();
-        } catch (Exception e) {
-            log.error("Error getting cache size", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
-            return 0;
-        } finally {
-            lock.readLock().unlock();
+        long now = System.nanoTime();
+        if (lock.writeLock().tryLock()) {
+            try {
+                expireEntries(now);
+                return cache.size();
+            } catch (Exception e) {
+                log.error("Error expiring cache entries", e);
+                statsCounter.recordError();
+            } finally {
+                lock.writeLock().unlock();
+            }
         }
+        return (int) cache.values().stream().filter(entry -> !entry.isExpired(now)).count();
     }
 
     @Override
@@ -280,7 +839,7 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             return totalDataSize;
         } catch (Exception e) {
             log.error("Error getting cache data size", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return 0;
         } finally {
             lock.readLock().unlock();
@@ -293,11 +852,24 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             lock.writeLock().lock();
             cache.clear();
             totalDataSize = 0;
-            updateStats();
+            if (keyIndex != null) {
+                keyIndex.clear();
+            }
+            tagIndex.clear();
+            timerWheel.clear();
+            if (offHeapStore != null) {
+                offHeapStore.clear();
+                heapDataSize.set(0);
+                heapResident.clear();
+                heapResidentCount.set(0);
+            }
+            if (tinyLfu != null) {
+                tinyLfu.clear();
+            }
             log.info("Cache cleared successfully");
         } catch (Exception e) {
             log.error("Error clearing cache", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
         } finally {
             lock.writeLock().unlock();
         }
@@ -307,37 +879,48 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
     public int cleanup() {
         try {
             lock.writeLock().lock();
-            int cleanedCount = 0;
-            Iterator<Map.Entry<String, CacheEntry<V>>> iterator = cache.entrySet().iterator();
-
-            while (iterator.hasNext()) {
-                Map.Entry<String, CacheEntry<V>> entry = iterator.next();
-                if (entry.getValue().isExpired()) {
-                    totalDataSize -= entry.getValue().getSize();
-                    iterator.remove();
-                    cleanedCount++;
-                }
+            int cleanedCount = expireEntries(System.nanoTime());
+            if (offHeapStore != null && heapDataSize.get() > heapMaxDataSize) {
+                // 读路径提升的条目可能使堆上大小超限
+                demoteColdEntries();
             }
 
             if (cleanedCount > 0) {
                 log.info("Cleaned up {} expired cache entries", cleanedCount);
             }
 
-            updateStats();
             return cleanedCount;
         } catch (Exception e) {
             log.error("Error during cache cleanup", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return 0;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * 只读路径，不推进时间轮：已到期但尚未被回收的条目按同一时刻计入过期条目数
+     */
     @Override
     public CacheStats getStats() {
         try {
             lock.readLock().lock();
+            long now = System.nanoTime();
+            long total = 0;
+            long expired = 0;
+            for (CacheEntry<V> entry : cache.values()) {
+                total++;
+                if (entry.isExpired(now)) {
+                    expired++;
+                }
+            }
+            CacheStats stats = statsCounter.snapshot();
+            stats.setTotalEntries(total);
+            stats.setActiveEntries(total - expired);
+            stats.setExpiredEntries(expired);
+            stats.setCacheSize(totalDataSize);
+            stats.setMaxCacheSize(maxDataSize);
             stats.updateRates();
             return stats;
         } catch (Exception e) {
@@ -348,29 +931,54 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
         }
     }
 
+    @Override
+    public CacheStats getCounterStats() {
+        CacheStats stats = statsCounter.snapshot();
+        stats.updateRates();
+        return stats;
+    }
+
     @Override
     public void setMaxSize(long maxSize) {
         try {
             lock.writeLock().lock();
             this.maxSize = maxSize;
+            if (tinyLfu != null) {
+                tinyLfu.resize(maxSize);
+            }
             log.info("Cache max size set to: {}", maxSize);
         } catch (Exception e) {
             log.error("Error setting max size", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    @Override
+    public void setWeigher(ToLongFunction<? super V> weigher) {
+        this.weigher = weigher;
+        log.info("Cache weigher {}", weigher == null ? "cleared" : "set");
+    }
+
     @Override
     public void setEvictionPolicy(EvictionPolicy policy) {
         try {
             lock.writeLock().lock();
             this.evictionPolicy = policy;
+            if (policy == EvictionPolicy.TINY_LFU) {
+                // 已有条目按写入顺序进入 W-TinyLFU 结构
+                tinyLfu = new WindowTinyLfuPolicy(maxSize);
+                cache.values().stream()
+                        .sorted(Comparator.comparing(CacheEntry::getCreateTime))
+                        .forEach(entry -> tinyLfu.onInsert(entry.getKey()));
+            } else {
+                tinyLfu = null;
+            }
             log.info("Cache eviction policy set to: {}", policy);
         } catch (Exception e) {
             log.error("Error setting eviction policy", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
         } finally {
             lock.writeLock().unlock();
         }
@@ -389,13 +997,27 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
                 return 0;
             }
 
-            List<CacheEntry<V>> entriesToEvict = selectEntriesToEvict(count);
             int evictedCount = 0;
+            if (tinyLfu != null) {
+                // W-TinyLFU 每次由准入过滤选出一个键，无需排序
+                for (int i = 0; i < count; i++) {
+                    String victim = tinyLfu.selectVictim();
+                    if (victim == null || !removeInternal(victim)) {
+                        break;
+                    }
+                    evictedCount++;
+                    statsCounter.recordEviction();
+                }
+                log.debug("Evicted {} cache entries using policy: {}", evictedCount, evictionPolicy);
+                return evictedCount;
+            }
+
+            List<CacheEntry<V>> entriesToEvict = selectEntriesToEvict(count, Set.of());
 
             for (CacheEntry<V> entry : entriesToEvict) {
                 if (removeInternal(entry.getKey())) {
                     evictedCount++;
-                    stats.setEvictionCount(stats.getEvictionCount() + 1);
+                    statsCounter.recordEviction();
                 }
             }
 
@@ -404,7 +1026,7 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
 
         } catch (Exception e) {
             log.error("Error during cache eviction", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
             return 0;
         } finally {
             lock.writeLock().unlock();
@@ -412,57 +1034,96 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
     }
 
     /**
-     * 根据淘汰策略选择要淘汰的条目
+     * 根据淘汰策略选择要淘汰的条目，按淘汰顺序排列
+     * 用大小为 count 的堆做有界选择，耗时 O(n log count)，不对整个缓存排序
+     * @param excluded 不参与淘汰的键
      */
-    private List<CacheEntry<V>> selectEntriesToEvict(int count) {
-        List<CacheEntry<V>> allEntries = new ArrayList<>(cache.values());
+    private List<CacheEntry<V>> selectEntriesToEvict(int count, Set<String> excluded) {
+        if (count <= 0) {
+            return List.of();
+        }
+        if (evictionPolicy == EvictionPolicy.RANDOM) {
+            return sampleEntriesToEvict(count, excluded);
+        }
+        Comparator<Candidate<V>> order = evictionOrder();
+        // 大顶堆，堆顶是已选条目中最不该被淘汰的一个
+        PriorityQueue<Candidate<V>> selected = new PriorityQueue<>(Math.min(count, cache.size()) + 1, order.reversed());
+        int index = 0;
+        for (CacheEntry<V> entry : cache.values()) {
+            if (excluded.contains(entry.getKey()) || !isEvictable(entry)) {
+                continue;
+            }
+            Candidate<V> candidate = new Candidate<>(entry, index++);
+            if (selected.size() < count) {
+                selected.add(candidate);
+            } else if (order.compare(candidate, selected.peek()) < 0) {
+                selected.poll();
+                selected.add(candidate);
+            }
+        }
+        List<Candidate<V>> candidates = new ArrayList<>(selected);
+        candidates.sort(order);
+        List<CacheEntry<V>> result = new ArrayList<>(candidates.size());
+        for (Candidate<V> candidate : candidates) {
+            result.add(candidate.entry());
+        }
+        return result;
+    }
 
+    /**
+     * 淘汰顺序，排序键相同时按遍历顺序
+     */
+    private Comparator<Candidate<V>> evictionOrder() {
+        Comparator<Candidate<V>> order;
         switch (evictionPolicy) {
             case LRU:
-                return allEntries.stream()
-                        .filter(entry -> !entry.isExpired())
-                        .sorted(Comparator.comparing(CacheEntry::getLastAccessTime))
-                        .limit(count)
-                        .collect(Collectors.toList());
-
+                order = Comparator.comparing(candidate -> candidate.entry().getLastAccessTime());
+                break;
             case LFU:
-                return allEntries.stream()
-                        .filter(entry -> !entry.isExpired())
-                        .sorted(Comparator.comparingLong(CacheEntry::getAccessCount))
-                        .limit(count)
-                        .collect(Collectors.toList());
-
+                order = Comparator.comparingLong(candidate -> candidate.entry().getAccessCount());
+                break;
             case FIFO:
-                return allEntries.stream()
-                        .filter(entry -> !entry.isExpired())
-                        .sorted(Comparator.comparing(CacheEntry::getCreateTime))
-                        .limit(count)
-                        .collect(Collectors.toList());
-
+                order = Comparator.comparing(candidate -> candidate.entry().getCreateTime());
+                break;
             case TTL:
-                return allEntries.stream()
-                        .filter(entry -> entry.getExpireTime() != null)
-                        .sorted(Comparator.comparing(CacheEntry::getExpireTime))
-                        .limit(count)
-                        .collect(Collectors.toList());
-
-            case RANDOM:
-                Collections.shuffle(allEntries);
-                return allEntries.stream()
-                        .filter(entry -> !entry.isExpired())
-                        .limit(count)
-                        .collect(Collectors.toList());
-
+                order = Comparator.comparingLong(candidate -> candidate.entry().getExpireAtNanos());
+                break;
             default:
-                return allEntries.stream()
-                        .filter(entry -> !entry.isExpired())
-                        .limit(count)
-                        .collect(Collectors.toList());
+                return Comparator.comparingInt(Candidate::index);
         }
+        return order.thenComparingInt(Candidate::index);
+    }
+
+    private boolean isEvictable(CacheEntry<V> entry) {
+        return evictionPolicy == EvictionPolicy.TTL ? entry.isExpirable() : !entry.isExpired();
+    }
+
+    /**
+     * RANDOM 策略：蓄水池抽样选出 count 个条目
+     */
+    private List<CacheEntry<V>> sampleEntriesToEvict(int count, Set<String> excluded) {
+        List<CacheEntry<V>> sample = new ArrayList<>(Math.min(count, cache.size()));
+        Random random = new Random();
+        int seen = 0;
+        for (CacheEntry<V> entry : cache.values()) {
+            if (excluded.contains(entry.getKey()) || !isEvictable(entry)) {
+                continue;
+            }
+            seen++;
+            if (sample.size() < count) {
+                sample.add(entry);
+            } else {
+                int slot = random.nextInt(seen);
+                if (slot < count) {
+                    sample.set(slot, entry);
+                }
+            }
+        }
+        return sample;
     }
 
     /**
-     * 定期清理过期条目（每分钟执行一次）
+     * 定期推进时间轮清理过期条目（每分钟执行一次），只处理到期的时间桶
      */
     @Scheduled(fixedRate = 1, timeUnit = TimeUnit.MINUTES)
     public void scheduledCleanup() {
@@ -473,41 +1134,414 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
             }
         } catch (Exception e) {
             log.error("Error during scheduled cleanup", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
         }
     }
 
     /**
-     * 异步安排清理任务
+     * 推进时间轮并删除到期条目（调用方需持有写锁）
+     * @return 删除的条目数
+     */
+    private int expireEntries(long now) {
+        return timerWheel.advance(now, key -> {
+            CacheEntry<V> entry = cache.get(key);
+            return entry != null && entry.isExpired(now) && removeInternal(key);
+        });
+    }
+
+    /**
+     * 记录命中（W-TinyLFU 频率统计与区间晋升）
      */
-    private void scheduleCleanup() {
+    private void recordAccess(String key) {
+        WindowTinyLfuPolicy policy = tinyLfu;
+        if (policy != null) {
+            policy.recordAccess(key);
+        }
+    }
+
+    /**
+     * 记录未命中（W-TinyLFU 频率统计）
+     */
+    private void recordMiss(String key) {
+        WindowTinyLfuPolicy policy = tinyLfu;
+        if (policy != null && key != null) {
+            policy.recordMiss(key);
+        }
+    }
+
+    /**
+     * 启用堆外层（使用默认块大小和 slab 大小）
+     * @see #enableOffHeap(CacheSerializer, long, int, int)
+     */
+    public void enableOffHeap(CacheSerializer<V> serializer, long heapMaxDataSize) {
+        enableOffHeap(serializer, heapMaxDataSize, DEFAULT_OFF_HEAP_BLOCK_SIZE, DEFAULT_OFF_HEAP_SLAB_SIZE);
+    }
+
+    /**
+     * 启用堆外层，只能在缓存为空时调用
+     * 启用后每个值写入时序列化到池化的直接内存 slab 中，条目大小即序列化后的字节数（忽略调用方传入的 size），
+     * maxDataSize 同时作为堆外容量；堆上只保留最近访问的值，超过 heapMaxDataSize 时按 CLOCK 把较久未访问的值降级到堆外，
+     * 读取堆外的值时反序列化并提升回堆上
+     * @param serializer      值序列化器
+     * @param heapMaxDataSize 堆上保留的值大小上限（字节）
+     * @param blockSize       堆外块大小（字节）
+     * @param slabSize        单个 slab 大小（字节）
+     */
+    public void enableOffHeap(CacheSerializer<V> serializer, long heapMaxDataSize, int blockSize, int slabSize) {
+        Objects.requireNonNull(serializer, "Serializer cannot be null");
         try {
-            new Thread(this::cleanup).start();
-        } catch (Exception e) {
-            log.warn("Failed to schedule async cleanup", e);
+            lock.writeLock().lock();
+            if (!cache.isEmpty()) {
+                throw new CacheException("Off-heap tier must be enabled before any entry is added");
+            }
+            this.offHeapStore = new OffHeapStore(maxDataSize, blockSize, slabSize);
+            this.heapMaxDataSize = heapMaxDataSize;
+            this.serializer = serializer;
+            log.info("Cache off-heap tier enabled - heap max data size: {} bytes, block size: {}, slab size: {}",
+                    heapMaxDataSize, blockSize, slabSize);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     /**
-     * 更新统计信息
+     * 堆上保留的值大小（未启用堆外层时为 0）
      */
-    private void updateStats() {
+    public long heapDataSize() {
+        return heapDataSize.get();
+    }
+
+    /**
+     * 堆外块占用的字节数（未启用堆外层时为 0）
+     */
+    public long offHeapDataSize() {
         try {
-            long total = cache.size();
-            long active = cache.values().stream()
-                    .filter(entry -> !entry.isExpired())
-                    .count();
-            long expired = total - active;
+            lock.readLock().lock();
+            return offHeapStore == null ? 0 : offHeapStore.usedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            stats.setTotalEntries(total);
-            stats.setActiveEntries(active);
-            stats.setExpiredEntries(expired);
-            stats.setCacheSize(totalDataSize);
-            stats.setMaxCacheSize(maxDataSize);
-            stats.updateRates();
-        } catch (Exception e) {
-            log.warn("Error updating cache stats", e);
+    /**
+     * 写入堆外，空间不足时按淘汰策略逐个淘汰后重试（调用方需持有写锁）
+     * @return 首块下标，无法腾出空间时返回 NIL
+     */
+    private int writeOffHeap(byte[] bytes) {
+        int block = offHeapStore.write(bytes);
+        while (block == OffHeapStore.NIL && evict(1) > 0) {
+            block = offHeapStore.write(bytes);
         }
+        return block;
+    }
+
+    /**
+     * 把堆外的值反序列化回堆上（读锁内调用，按条目加锁避免重复提升）
+     */
+    private V promote(CacheEntry<V> entry) {
+        synchronized (entry) {
+            V value = entry.getValue();
+            if (value == null) {
+                value = serializer.deserialize(offHeapStore.read(entry.getOffHeapBlock(), (int) entry.getSize()));
+                entry.setValue(value);
+                heapDataSize.addAndGet(entry.getSize());
+                markResident(entry);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 把较冷的值降级到堆外，直到堆上大小低于水位线（调用方需持有写锁）
+     * 按 CLOCK 从队首取条目：进入队列后被访问过的条目移到队尾再给一次机会，否则降级；
+     * 每次降级只访问被降级和被跳过的条目，不扫描、不排序整个缓存
+     */
+    private void demoteColdEntries() {
+        long target = (long) (heapMaxDataSize * DEMOTE_WATERMARK);
+        int demoted = 0;
+        ResidentEntry<V> resident;
+        while (heapDataSize.get() > target && (resident = heapResident.poll()) != null) {
+            heapResidentCount.decrementAndGet();
+            CacheEntry<V> entry = resident.entry();
+            if (!isResident(entry)) {
+                continue;
+            }
+            if (entry.getAccessCount() != resident.accessCount()) {
+                // 写锁内没有读取，第二轮必然降级，循环一定结束
+                markResident(entry);
+                continue;
+            }
+            entry.setValue(null);
+            heapDataSize.addAndGet(-entry.getSize());
+            demoted++;
+        }
+        log.debug("Demoted {} cold cache entries off-heap", demoted);
+    }
+
+    private void markResident(CacheEntry<V> entry) {
+        heapResident.add(new ResidentEntry<>(entry, entry.getAccessCount()));
+        heapResidentCount.incrementAndGet();
+    }
+
+    /**
+     * 条目仍在缓存中且值在堆上（已删除、被覆盖或已降级的条目在队列中留下的记录会被跳过）
+     */
+    private boolean isResident(CacheEntry<V> entry) {
+        return entry.getValue() != null && cache.get(entry.getKey()) == entry;
+    }
+
+    /**
+     * 清除队列中已失效的记录，避免只写入、删除而从不降级时队列无限增长（调用方需持有写锁）
+     */
+    private void compactResident() {
+        heapResident.removeIf(resident -> !isResident(resident.entry()));
+        heapResidentCount.set(heapResident.size());
+    }
+
+    /**
+     * 把有效条目写入快照文件，用于重启后预热
+     * 在读锁内复制条目元数据和堆外字节，在锁外序列化并顺序写入；条目按最后访问时间从新到旧写入，
+     * 恢复时容量不足会优先保留热点条目。值使用堆外层的序列化器（未启用时使用 JDK 序列化），
+     * 无法序列化的值被跳过；刷新间隔不写入快照
+     * @return 写入的条目数
+     * @throws CacheException 写文件失败
+     */
+    public int saveSnapshot(Path file) {
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        List<SnapshotItem<V>> items = new ArrayList<>();
+        try {
+            lock.readLock().lock();
+            WindowTinyLfuPolicy policy = tinyLfu;
+            for (CacheEntry<V> entry : cache.values()) {
+                if (entry.isExpired(nowNanos)) {
+                    continue;
+                }
+                byte[] bytes = entry.getOffHeapBlock() == OffHeapStore.NIL ? null
+                        : offHeapStore.read(entry.getOffHeapBlock(), (int) entry.getSize());
+                int frequency = policy != null ? policy.frequency(entry.getKey()) : 0;
+                items.add(new SnapshotItem<>(copyOf(entry, entry.getValue()), bytes, frequency));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        items.sort(Comparator.comparing((SnapshotItem<V> item) -> item.entry().getLastAccessTime()).reversed());
+
+        CacheSerializer<V> valueSerializer = snapshotSerializer();
+        int written = 0;
+        try (CacheSnapshotFile.Writer writer = CacheSnapshotFile.create(file, nowMillis)) {
+            for (SnapshotItem<V> item : items) {
+                CacheEntry<V> entry = item.entry();
+                byte[] bytes = item.bytes();
+                if (bytes == null) {
+                    try {
+                        bytes = valueSerializer.serialize(entry.getValue());
+                    } catch (Exception e) {
+                        log.warn("Skipping cache entry that cannot be serialized for snapshot - key: {}", entry.getKey(), e);
+                        continue;
+                    }
+                }
+                long ttlNanos = entry.isExpirable() ? Math.max(1, entry.getExpireAtNanos() - nowNanos) : NO_EXPIRY;
+                writer.append(new CacheSnapshotFile.Record(entry.getKey(), bytes, ttlNanos,
+                        toEpochMillis(entry.getCreateTime()), toEpochMillis(entry.getLastAccessTime()),
+                        entry.getAccessCount(), item.frequency(), entry.getSize(), entry.getTags()));
+                written++;
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new CacheException("Failed to write cache snapshot: " + file, e);
+        }
+        log.info("Cache snapshot saved - file: {}, entries: {}, skipped: {}", file, written, items.size() - written);
+        return written;
+    }
+
+    /**
+     * 从快照文件恢复条目
+     * 内存映射读取文件，每解析一批条目获取一次写锁写入，恢复过程中已写入的条目即可读取；
+     * 剩余存活时间扣除快照写入后经过的时间，已过期和无法反序列化的条目被跳过；
+     * 已存在的键（启动后新写入的值）不会被覆盖，容量不足时停止恢复；
+     * 文件截断或末尾损坏时恢复到最后一条完整的记录为止
+     * @return 恢复的条目数，文件不存在时返回 0
+     * @throws CacheException 不是快照文件、版本不受支持或读取失败
+     */
+    public int loadSnapshot(Path file) {
+        if (!Files.exists(file)) {
+            log.info("Cache snapshot not found, starting cold - file: {}", file);
+            return 0;
+        }
+        CacheSerializer<V> valueSerializer = snapshotSerializer();
+        boolean offHeap = serializer != null;
+        RestoreProgress progress = new RestoreProgress();
+        int records = 0;
+        boolean truncated;
+        try (CacheSnapshotFile.Reader reader = CacheSnapshotFile.open(file)) {
+            long elapsedNanos = TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0, System.currentTimeMillis() - reader.snapshotMillis()));
+            List<RestoredEntry<V>> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+            CacheSnapshotFile.Record record;
+            while (!progress.full && (record = reader.next()) != null) {
+                records++;
+                long ttlNanos = record.ttlNanos();
+                if (ttlNanos != NO_EXPIRY) {
+                    ttlNanos -= elapsedNanos;
+                    if (ttlNanos <= 0) {
+                        continue;
+                    }
+                }
+                V value;
+                try {
+                    value = valueSerializer.deserialize(record.value());
+                } catch (Exception e) {
+                    log.warn("Skipping cache snapshot entry that cannot be deserialized - key: {}", record.key(), e);
+                    continue;
+                }
+                CacheEntry<V> entry = new CacheEntry<>(record.key(), value);
+                if (ttlNanos != NO_EXPIRY) {
+                    entry.setExpireAfter(System.nanoTime(), ttlNanos);
+                }
+                entry.setCreateTime(fromEpochMillis(record.createMillis()));
+                entry.setLastAccessTime(fromEpochMillis(record.lastAccessMillis()));
+                entry.setAccessCount(record.accessCount());
+                entry.setTags(Set.copyOf(record.tags()));
+                entry.setSize(offHeap ? record.value().length : record.size());
+                batch.add(new RestoredEntry<>(entry, offHeap ? record.value() : null, record.frequency()));
+                if (batch.size() >= RESTORE_BATCH_SIZE) {
+                    restoreBatch(batch, progress);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                restoreBatch(batch, progress);
+            }
+            truncated = reader.isTruncated();
+        } catch (IOException e) {
+            throw new CacheException("Failed to read cache snapshot: " + file, e);
+        }
+        if (truncated) {
+            log.warn("Cache snapshot is truncated or corrupted, restored entries up to the last complete record - file: {}", file);
+        }
+        if (progress.full) {
+            log.warn("Cache is full, stopped restoring snapshot after {} entries", progress.restored);
+        }
+        log.info("Cache snapshot loaded - file: {}, records: {}, restored: {}", file, records, progress.restored);
+        return progress.restored;
+    }
+
+    /**
+     * 在 executor 中异步恢复快照，返回恢复的条目数
+     * @see #loadSnapshot(Path)
+     */
+    public CompletableFuture<Integer> loadSnapshotAsync(Path file, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> loadSnapshot(file), executor);
+    }
+
+    /**
+     * 在一次写锁内写入一批恢复的条目
+     */
+    private void restoreBatch(List<RestoredEntry<V>> batch, RestoreProgress progress) {
+        try {
+            lock.writeLock().lock();
+            expireEntries(System.nanoTime());
+            for (RestoredEntry<V> restored : batch) {
+                CacheEntry<V> entry = restored.entry();
+                if (cache.containsKey(entry.getKey())) {
+                    continue;
+                }
+                if (cache.size() >= maxSize || totalDataSize + entry.getSize() > maxDataSize) {
+                    progress.full = true;
+                    break;
+                }
+                if (insertEntry(entry, restored.bytes())) {
+                    if (tinyLfu != null) {
+                        tinyLfu.restoreFrequency(entry.getKey(), restored.frequency());
+                    }
+                    progress.restored++;
+                }
+            }
+            if (heapDataSize.get() > heapMaxDataSize && offHeapStore != null) {
+                demoteColdEntries();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private CacheSerializer<V> snapshotSerializer() {
+        CacheSerializer<V> valueSerializer = serializer;
+        return valueSerializer != null ? valueSerializer : new JdkCacheSerializer<>();
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 写快照时在读锁内复制的条目（堆外的值附带序列化字节）
+     */
+    private record SnapshotItem<V>(CacheEntry<V> entry, byte[] bytes, int frequency) {
+    }
+
+    /**
+     * 从快照解析出、待写入的条目（启用堆外层时附带序列化字节）
+     */
+    private record RestoredEntry<V>(CacheEntry<V> entry, byte[] bytes, int frequency) {
+    }
+
+    private static final class RestoreProgress {
+        private int restored;
+        private boolean full;
+    }
+
+    /**
+     * 值在堆上的堆外条目，accessCount 为进入队列时的访问次数，用于判断之后是否被访问过
+     */
+    private record ResidentEntry<V>(CacheEntry<V> entry, long accessCount) {
+    }
+
+    /**
+     * 淘汰候选条目，index 为遍历顺序，排序键相同时先遍历到的先淘汰
+     */
+    private record Candidate<V>(CacheEntry<V> entry, int index) {
+    }
+
+    /**
+     * 批量写入中待写入的条目
+     */
+    private record PendingEntry<V>(String key, V value, byte[] bytes, long size) {
+    }
+
+    private static <V> CacheEntry<V> copyOf(CacheEntry<V> entry, V value) {
+        CacheEntry<V> copy = new CacheEntry<>(entry.getKey(), value);
+        copy.setCreateTime(entry.getCreateTime());
+        copy.setLastAccessTime(entry.getLastAccessTime());
+        copy.setExpireTime(entry.getExpireTime());
+        copy.setExpirable(entry.isExpirable());
+        copy.setExpireAtNanos(entry.getExpireAtNanos());
+        copy.setRefreshable(entry.isRefreshable());
+        copy.setRefreshAtNanos(entry.getRefreshAtNanos());
+        copy.setAccessCount(entry.getAccessCount());
+        copy.setSize(entry.getSize());
+        copy.setTags(entry.getTags());
+        return copy;
+    }
+
+    /**
+     * 设置异步加载和后台刷新使用的线程池（默认 ForkJoinPool.commonPool()）
+     */
+    public void setExecutor(Executor executor) {
+        singleFlight.setExecutor(executor);
+    }
+
+    /**
+     * 设置缓存级别的刷新间隔，作用于之后通过 loader 加载的条目，0 表示不刷新
+     */
+    public void setRefreshAfter(long refreshAfter, TimeUnit timeUnit) {
+        singleFlight.setRefreshAfterNanos(timeUnit.toNanos(refreshAfter));
+        log.info("Cache refresh after set to: {} {}", refreshAfter, timeUnit);
     }
 
     /**
@@ -517,10 +1551,13 @@ public class InMemoryGenericCache<V> implements GenericCache<V> {
         try {
             lock.writeLock().lock();
             this.maxDataSize = maxDataSize;
+            if (offHeapStore != null) {
+                offHeapStore.setCapacity(maxDataSize);
+            }
             log.info("Cache max data size set to: {} bytes", maxDataSize);
         } catch (Exception e) {
             log.error("Error setting max data size", e);
-            stats.setErrorCount(stats.getErrorCount() + 1);
+            statsCounter.recordError();
         } finally {
             lock.writeLock().unlock();
         }
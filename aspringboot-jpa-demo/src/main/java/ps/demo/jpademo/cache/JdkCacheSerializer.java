@@ -0,0 +1,30 @@
+package ps.demo.jpademo.cache;
+
+import java.io.*;
+
+/**
+ * 基于 JDK 序列化的默认序列化器，值类型需实现 Serializable
+ */
+public class JdkCacheSerializer<V> implements CacheSerializer<V> {
+
+    @Override
+    public byte[] serialize(V value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new CacheException("Failed to serialize cache value: " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (V) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Failed to deserialize cache value", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ps.demo.jpademo.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外块存储
+ * 直接内存按 slab 分配（池化，按需增长，清空后复用不归还），slab 再切成定长块：
+ * - 每块前4字节为下一块的下标，其余为数据，一个值占用一条块链
+ * - 空闲块用同样的方式串成空闲链表，分配和释放均为 O(块数)，没有外部碎片
+ * 写入和释放由调用方在写锁内调用；读取只使用绝对位置访问，可在读锁内并发调用
+ */
+final class OffHeapStore {
+
+    static final int NIL = -1;
+
+    private static final int HEADER = Integer.BYTES;
+
+    private final int blockSize;
+    private final int payloadSize;
+    private final int blocksPerSlab;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    private long maxBlocks;
+    // 已切分过的块数（下标小于它的块要么在用，要么在空闲链表中）
+    private int carvedBlocks;
+    private int freeHead = NIL;
+    private long usedBlocks;
+
+    /**
+     * @param capacity  数据容量（字节）
+     * @param blockSize 块大小（字节，含4字节链接头）
+     * @param slabSize  单个 slab 大小（字节）
+     */
+    OffHeapStore(long capacity, int blockSize, int slabSize) {
+        if (blockSize <= HEADER || slabSize < blockSize) {
+            throw new IllegalArgumentException("Invalid off-heap block size " + blockSize + " or slab size " + slabSize);
+        }
+        this.blockSize = blockSize;
+        this.payloadSize = blockSize - HEADER;
+        this.blocksPerSlab = slabSize / blockSize;
+        setCapacity(capacity);
+    }
+
+    /**
+     * 调整数据容量，已分配的 slab 不会归还
+     */
+    void setCapacity(long capacity) {
+        this.maxBlocks = Math.min(Integer.MAX_VALUE, (capacity + payloadSize - 1) / payloadSize);
+    }
+
+    /**
+     * 写入一个值
+     * @return 首块下标，容量不足时返回 NIL
+     */
+    int write(byte[] bytes) {
+        int needed = blocksFor(bytes.length);
+        if (usedBlocks + needed > maxBlocks) {
+            return NIL;
+        }
+        int first = NIL;
+        int previous = NIL;
+        for (int offset = 0, i = 0; i < needed; i++, offset += payloadSize) {
+            int block = takeBlock();
+            if (previous == NIL) {
+                first = block;
+            } else {
+                setNext(previous, block);
+            }
+            int length = Math.min(payloadSize, bytes.length - offset);
+            slab(block).put(position(block) + HEADER, bytes, offset, length);
+            previous = block;
+        }
+        setNext(previous, NIL);
+        usedBlocks += needed;
+        return first;
+    }
+
+    /**
+     * 读取一个值
+     * @param first  首块下标
+     * @param length 值的字节数
+     */
+    byte[] read(int first, int length) {
+        byte[] bytes = new byte[length];
+        int block = first;
+        for (int offset = 0; offset < length; offset += payloadSize) {
+            slab(block).get(position(block) + HEADER, bytes, offset, Math.min(payloadSize, length - offset));
+            block = next(block);
+        }
+        return bytes;
+    }
+
+    /**
+     * 释放一条块链
+     */
+    void free(int first) {
+        int block = first;
+        while (block != NIL) {
+            int next = next(block);
+            setNext(block, freeHead);
+            freeHead = block;
+            usedBlocks--;
+            block = next;
+        }
+    }
+
+    /**
+     * 释放全部块，slab 保留复用
+     */
+    void clear() {
+        carvedBlocks = 0;
+        freeHead = NIL;
+        usedBlocks = 0;
+    }
+
+    /**
+     * 在用块占用的字节数
+     */
+    long usedBytes() {
+        return usedBlocks * blockSize;
+    }
+
+    /**
+     * 已申请的直接内存字节数
+     */
+    long reservedBytes() {
+        return (long) slabs.size() * blocksPerSlab * blockSize;
+    }
+
+    private int blocksFor(int length) {
+        return Math.max(1, (length + payloadSize - 1) / payloadSize);
+    }
+
+    private int takeBlock() {
+        if (freeHead != NIL) {
+            int block = freeHead;
+            freeHead = next(block);
+            return block;
+        }
+        int block = carvedBlocks++;
+        if (block / blocksPerSlab >= slabs.size()) {
+            slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+        }
+        return block;
+    }
+
+    private ByteBuffer slab(int block) {
+        return slabs.get(block / blocksPerSlab);
+    }
+
+    private int position(int block) {
+        return (block % blocksPerSlab) * blockSize;
+    }
+
+    private int next(int block) {
+        return slab(block).getInt(position(block));
+    }
+
+    private void setNext(int block, int next) {
+        slab(block).putInt(position(block), next);
+    }
+}
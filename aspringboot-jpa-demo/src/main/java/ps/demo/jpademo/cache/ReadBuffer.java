@@ -0,0 +1,79 @@
+package ps.demo.jpademo.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有损的分段读缓冲区：读路径只把键写入按线程选择的环形缓冲，不加锁；
+ * 缓冲区满或写入竞争失败时丢弃该次记录，由持有策略锁的线程批量取出
+ */
+final class ReadBuffer {
+
+    // 每段容量，必须是 2 的幂
+    private static final int STRIPE_SIZE = 16;
+    private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    ReadBuffer() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * 写入一个键
+     * @return 所在段已满时返回 false，调用方应尝试取出后重试或丢弃
+     */
+    boolean offer(String key) {
+        Stripe stripe = stripes[probe() & stripeMask];
+        long tail = stripe.writeCounter.get();
+        if (tail - stripe.readCounter >= STRIPE_SIZE) {
+            return false;
+        }
+        if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+            stripe.buffer.lazySet((int) (tail & STRIPE_MASK), key);
+        }
+        // 竞争失败时丢弃，读记录允许丢失
+        return true;
+    }
+
+    /**
+     * 取出所有已写入的键（调用方需持有策略锁，同一时间只有一个线程取出）
+     */
+    void drainTo(Consumer<String> consumer) {
+        for (Stripe stripe : stripes) {
+            long head = stripe.readCounter;
+            long tail = stripe.writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & STRIPE_MASK);
+                String key = stripe.buffer.get(index);
+                if (key == null) {
+                    // 计数已推进但键还未发布，下次再取
+                    break;
+                }
+                stripe.buffer.lazySet(index, null);
+                consumer.accept(key);
+                head++;
+            }
+            stripe.readCounter = head;
+        }
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe {
+        private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+    }
+}
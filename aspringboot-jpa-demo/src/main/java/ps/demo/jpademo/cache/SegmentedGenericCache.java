@@ -0,0 +1,1297 @@
+package ps.demo.jpademo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * 分段锁内存缓存实现
+ * 按键哈希把数据分到多个段，每段独立加锁，并按淘汰策略维护有序结构：
+ * - LRU/FIFO: 双向链表，O(1)
+ * - LFU:      频次桶链表，O(1)
+ * - RANDOM:   数组下标交换删除，O(1)
+ * - TTL:      按过期时间排序的段内有序集合，O(log n)
+ * 不支持 TINY_LFU，需要该策略时请使用 InMemoryGenericCache
+ * 淘汰时从随机起点取最多 EVICTION_SAMPLE_SEGMENTS 个非空段比较候选条目，近似全局淘汰顺序，
+ * 不锁住全部段，也不对全部条目排序；
+ * 每段用分层时间轮回收过期条目，清理时不扫描全表
+ */
+@Slf4j
+public class SegmentedGenericCache<V> implements GenericCache<V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    // 每次淘汰最多比较的非空段数
+    private static final int EVICTION_SAMPLE_SEGMENTS = 4;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    // 缓存配置
+    private volatile long maxSize = 10000; // 默认最大条目数
+    private volatile long maxDataSize = 100 * 1024 * 1024; // 默认100MB
+    private volatile EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+    // 未显式指定大小的写入使用的条目大小计算函数，null 表示每个条目大小为 1
+    private volatile ToLongFunction<? super V> weigher;
+
+    // 统计信息
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    // 单飞加载，合并同一个键的并发未命中
+    private final SingleFlightLoader<V> singleFlight = new SingleFlightLoader<>(this, statsCounter, this::peek, this::putLoaded, this::replaceLoaded);
+
+    public SegmentedGenericCache() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public SegmentedGenericCache(int concurrencyLevel) {
+        int size = 1;
+        while (size < Math.max(1, concurrencyLevel)) {
+            size <<= 1;
+        }
+        @SuppressWarnings("unchecked")
+        Segment<V>[] s = (Segment<V>[]) new Segment<?>[size];
+        this.segments = s;
+        this.segmentMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment<>(evictionPolicy);
+        }
+    }
+
+    @Override
+    public boolean put(String key, V value) {
+        return putInternal(key, value, 0, weigh(value));
+    }
+
+    @Override
+    public boolean put(String key, V value, long ttl, TimeUnit timeUnit) {
+        // 参数验证
+        if (ttl < 0) {
+            log.warn("Invalid TTL: {}", ttl);
+            statsCounter.recordError();
+            return false;
+        }
+
+        if (timeUnit == null && ttl > 0) {
+            log.warn("TimeUnit is null but TTL is positive: {}", ttl);
+            statsCounter.recordError();
+            return false;
+        }
+        return putInternal(key, value, ttl > 0 ? timeUnit.toNanos(ttl) : 0, weigh(value));
+    }
+
+    @Override
+    public boolean put(String key, V value, long ttl, TimeUnit timeUnit, long size) {
+        // 参数验证
+        if (ttl < 0) {
+            log.warn("Invalid TTL: {}", ttl);
+            statsCounter.recordError();
+            return false;
+        }
+
+        if (size <= 0) {
+            log.warn("Invalid size: {}", size);
+            statsCounter.recordError();
+            return false;
+        }
+
+        if (timeUnit == null && ttl > 0) {
+            log.warn("TimeUnit is null but TTL is positive: {}", ttl);
+            statsCounter.recordError();
+            return false;
+        }
+
+        long ttlNanos = 0;
+        if (timeUnit != null && ttl > 0) {
+            ttlNanos = timeUnit.toNanos(ttl);
+        }
+
+        return putInternal(key, value, ttlNanos, size);
+    }
+
+    /**
+     * 写入 loader 加载的值（ttlNanos、refreshAfterNanos 为 0 表示不设置）
+     */
+    private boolean putLoaded(String key, V value, long ttlNanos, long refreshAfterNanos) {
+        return putInternal(key, value, ttlNanos, refreshAfterNanos, weigh(value));
+    }
+
+    /**
+     * 写回后台刷新的结果：只有当前条目仍是触发刷新的那次写入时才替换（value 为 null 时删除），
+     * 不覆盖刷新期间的其他写入
+     */
+    private boolean replaceLoaded(String key, CacheEntry<V> expected, V value, long ttlNanos, long refreshAfterNanos) {
+        if (value != null) {
+            return putInternal(key, value, ttlNanos, refreshAfterNanos, weigh(value), expected);
+        }
+        Segment<V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            Node<V> node = segment.map.get(key);
+            if (node == null || !node.entry.isSameWrite(expected)) {
+                return false;
+            }
+            segment.remove(node);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * 未显式指定大小的写入按 weigher 计算条目大小
+     */
+    private long weigh(V value) {
+        ToLongFunction<? super V> entryWeigher = weigher;
+        if (entryWeigher == null || value == null) {
+            return 1;
+        }
+        return Math.max(1, entryWeigher.applyAsLong(value));
+    }
+
+    private boolean putInternal(String key, V value, long ttlNanos, long entrySize) {
+        return putInternal(key, value, ttlNanos, 0, entrySize);
+    }
+
+    private boolean putInternal(String key, V value, long ttlNanos, long refreshAfterNanos, long entrySize) {
+        return putInternal(key, value, ttlNanos, refreshAfterNanos, entrySize, null);
+    }
+
+    /**
+     * @param ttlNanos          存活时间（纳秒），0 表示永不过期
+     * @param refreshAfterNanos 刷新间隔（纳秒），0 表示不刷新
+     * @param expected          非 null 时只在当前条目仍是该次写入时才写入，否则返回 false
+     */
+    private boolean putInternal(String key, V value, long ttlNanos, long refreshAfterNanos, long entrySize,
+                                CacheEntry<V> expected) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(value, "Value cannot be null");
+
+        try {
+            if (maxSize <= 0 || entrySize > maxDataSize) {
+                log.warn("Cache is full and eviction failed, cannot put key: {}", key);
+                statsCounter.recordError();
+                return false;
+            }
+
+            long now = System.nanoTime();
+            CacheEntry<V> entry = new CacheEntry<>(key, value);
+            entry.setSize(entrySize);
+            if (ttlNanos > 0) {
+                entry.setExpireAfter(now, ttlNanos);
+            }
+            if (refreshAfterNanos > 0) {
+                entry.setRefreshAfter(now, refreshAfterNanos);
+            }
+            Node<V> node = new Node<>(key, entry, entrySize, now, ttlNanos > 0 ? now + ttlNanos : 0);
+
+            Segment<V> segment = segmentFor(key);
+            segment.lock.lock();
+            try {
+                if (expected != null) {
+                    Node<V> current = segment.map.get(key);
+                    if (current == null || !current.entry.isSameWrite(expected)) {
+                        return false;
+                    }
+                }
+                segment.expire(now);
+                segment.insert(node);
+            } finally {
+                segment.lock.unlock();
+            }
+
+            // 新条目不参与本轮淘汰，与原实现“先淘汰再写入”的语义一致
+            while (isOverCapacity()) {
+                if (!evictOne(node)) {
+                    log.warn("Cache is full and eviction failed, cannot put key: {}", key);
+                    segment.lock.lock();
+                    try {
+                        segment.removeIfSame(node);
+                    } finally {
+                        segment.lock.unlock();
+                    }
+                    statsCounter.recordError();
+                    return false;
+                }
+            }
+
+            statsCounter.recordPut();
+            log.debug("Cache put successful - key: {}, size: {}", key, entrySize);
+            return true;
+
+        } catch (Exception e) {
+            log.error("Error putting cache entry for key: {}", key, e);
+            statsCounter.recordError();
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<V> get(String key) {
+        return getNode(key).map(node -> node.entry.getValue());
+    }
+
+    @Override
+    public V get(String key, CacheLoader<? extends V> loader) {
+        return singleFlight.get(key, loader, 0, 0);
+    }
+
+    @Override
+    public V get(String key, CacheLoader<? extends V> loader, long ttl, long refreshAfter, TimeUnit timeUnit) {
+        if (ttl < 0 || refreshAfter < 0) {
+            throw new IllegalArgumentException("TTL and refreshAfter must not be negative");
+        }
+        return singleFlight.get(key, loader, timeUnit.toNanos(ttl), timeUnit.toNanos(refreshAfter));
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader) {
+        return singleFlight.getAsync(key, loader, singleFlight.getExecutor());
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader, Executor executor) {
+        return singleFlight.getAsync(key, loader, executor);
+    }
+
+    @Override
+    public Optional<CacheEntry<V>> getEntry(String key) {
+        return getNode(key).map(node -> node.entry);
+    }
+
+    @Override
+    public int putAll(Map<String, ? extends V> entries) {
+        return putAllInternal(entries, 0);
+    }
+
+    @Override
+    public int putAll(Map<String, ? extends V> entries, long ttl, TimeUnit timeUnit) {
+        if (ttl < 0 || (timeUnit == null && ttl > 0)) {
+            log.warn("Invalid TTL: {} {}", ttl, timeUnit);
+            statsCounter.recordError();
+            return 0;
+        }
+        return putAllInternal(entries, ttl > 0 ? timeUnit.toNanos(ttl) : 0);
+    }
+
+    /**
+     * 批量写入：每段只加一次锁写入本段的全部条目，之后统一淘汰到容量以内
+     * @return 成功写入的条目数
+     */
+    private int putAllInternal(Map<String, ? extends V> entries, long ttlNanos) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        if (maxSize <= 0) {
+            log.warn("Cache is full and eviction failed, cannot put {} entries", entries.size());
+            entries.forEach((key, value) -> statsCounter.recordError());
+            return 0;
+        }
+        long now = System.nanoTime();
+        Map<Segment<V>, List<Node<V>>> groups = new HashMap<>();
+        // 批内条目的访问/写入时间依次加 1 纳秒，保持与逐个 put 相同的先后顺序
+        long stamp = now;
+        for (Map.Entry<String, ? extends V> e : entries.entrySet()) {
+            String key = Objects.requireNonNull(e.getKey(), "Key cannot be null");
+            V value = Objects.requireNonNull(e.getValue(), "Value cannot be null");
+            long entrySize = weigh(value);
+            CacheEntry<V> entry = new CacheEntry<>(key, value);
+            entry.setSize(entrySize);
+            if (ttlNanos > 0) {
+                entry.setExpireAfter(now, ttlNanos);
+            }
+            Node<V> node = new Node<>(key, entry, entrySize, stamp++, ttlNanos > 0 ? now + ttlNanos : 0);
+            groups.computeIfAbsent(segmentFor(key), s -> new ArrayList<>()).add(node);
+        }
+
+        try {
+            for (Map.Entry<Segment<V>, List<Node<V>>> group : groups.entrySet()) {
+                Segment<V> segment = group.getKey();
+                segment.lock.lock();
+                try {
+                    segment.expire(now);
+                    for (Node<V> node : group.getValue()) {
+                        segment.insert(node);
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+
+            // 整批写入后统一淘汰，新条目按策略排在最后，只有整批超过容量时才会被淘汰
+            int evicted = 0;
+            while (isOverCapacity() && evictOne(null)) {
+                evicted++;
+            }
+            if (isOverCapacity()) {
+                log.warn("Cache is full and eviction failed after batch put");
+                statsCounter.recordError();
+            }
+            int stored = 0;
+            for (Map.Entry<Segment<V>, List<Node<V>>> group : groups.entrySet()) {
+                Segment<V> segment = group.getKey();
+                segment.lock.lock();
+                try {
+                    for (Node<V> node : group.getValue()) {
+                        if (segment.map.get(node.key) == node) {
+                            stored++;
+                            statsCounter.recordPut();
+                        }
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            log.debug("Cache putAll successful - stored: {}, evicted: {}", stored, evicted);
+            return stored;
+        } catch (Exception e) {
+            log.error("Error putting cache entries", e);
+            statsCounter.recordError();
+            return 0;
+        }
+    }
+
+    @Override
+    public Map<String, V> getAll(Collection<String> keys) {
+        Map<String, V> found = new HashMap<>();
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<Segment<V>, List<String>> group : groupBySegment(keys).entrySet()) {
+                Segment<V> segment = group.getKey();
+                segment.lock.lock();
+                try {
+                    for (String key : group.getValue()) {
+                        Node<V> node = segment.map.get(key);
+                        if (node == null || node.isExpired(now)) {
+                            if (node != null) {
+                                segment.remove(node);
+                            }
+                            statsCounter.recordMiss();
+                            continue;
+                        }
+                        segment.access(node, now);
+                        statsCounter.recordHit();
+                        found.put(key, node.entry.getValue());
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error getting cache entries", e);
+            statsCounter.recordError();
+        }
+        Map<String, V> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, V> getAll(Collection<String> keys, BulkCacheLoader<? extends V> loader) {
+        return singleFlight.getAll(keys, loader);
+    }
+
+    @Override
+    public int invalidateAll(Collection<String> keys) {
+        int removed = 0;
+        try {
+            for (Map.Entry<Segment<V>, List<String>> group : groupBySegment(keys).entrySet()) {
+                Segment<V> segment = group.getKey();
+                segment.lock.lock();
+                try {
+                    for (String key : group.getValue()) {
+                        Node<V> node = segment.map.get(key);
+                        if (node != null) {
+                            segment.remove(node);
+                            removed++;
+                        }
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error removing cache entries", e);
+            statsCounter.recordError();
+        }
+        return removed;
+    }
+
+    /**
+     * 按段分组（忽略 null 键）
+     */
+    private Map<Segment<V>, List<String>> groupBySegment(Collection<String> keys) {
+        Map<Segment<V>, List<String>> groups = new HashMap<>();
+        for (String key : keys) {
+            if (key != null) {
+                groups.computeIfAbsent(segmentFor(key), s -> new ArrayList<>()).add(key);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 查询有效值，不计统计、不更新访问信息
+     */
+    private Optional<V> peek(String key) {
+        Segment<V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            Node<V> node = segment.map.get(key);
+            if (node == null || node.isExpired(System.nanoTime())) {
+                return Optional.empty();
+            }
+            return Optional.of(node.entry.getValue());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private Optional<Node<V>> getNode(String key) {
+        if (key == null) {
+            statsCounter.recordMiss();
+            return Optional.empty();
+        }
+        try {
+            Segment<V> segment = segmentFor(key);
+            long now = System.nanoTime();
+            segment.lock.lock();
+            try {
+                Node<V> node = segment.map.get(key);
+                if (node == null) {
+                    statsCounter.recordMiss();
+                    return Optional.empty();
+                }
+                if (node.isExpired(now)) {
+                    // 惰性删除过期条目，不再为此创建线程
+                    segment.remove(node);
+                    statsCounter.recordMiss();
+                    return Optional.empty();
+                }
+                segment.access(node, now);
+                statsCounter.recordHit();
+                return Optional.of(node);
+            } finally {
+                segment.lock.unlock();
+            }
+        } catch (Exception e) {
+            log.error("Error getting cache entry for key: {}", key, e);
+            statsCounter.recordError();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        if (key == null) {
+            return false;
+        }
+        try {
+            Segment<V> segment = segmentFor(key);
+            segment.lock.lock();
+            try {
+                Node<V> node = segment.map.get(key);
+                if (node == null) {
+                    return false;
+                }
+                segment.remove(node);
+                log.debug("Cache remove successful - key: {}", key);
+                return true;
+            } finally {
+                segment.lock.unlock();
+            }
+        } catch (Exception e) {
+            log.error("Error removing cache entry for key: {}", key, e);
+            statsCounter.recordError();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getEntry(key).isPresent();
+    }
+
+    @Override
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Node<V> node : segment.map.values()) {
+                    if (!node.isExpired(now)) {
+                        keys.add(node.key);
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public int size() {
+        int count = 0;
+        long now = System.nanoTime();
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Node<V> node : segment.map.values()) {
+                    if (!node.isExpired(now)) {
+                        count++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long dataSize() {
+        long total = 0;
+        for (Segment<V> segment : segments) {
+            total += segment.weight;
+        }
+        return total;
+    }
+
+    private long entryCount() {
+        long total = 0;
+        for (Segment<V> segment : segments) {
+            total += segment.count;
+        }
+        return total;
+    }
+
+    private boolean isOverCapacity() {
+        return entryCount() > maxSize || dataSize() > maxDataSize;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        log.info("Cache cleared successfully");
+    }
+
+    @Override
+    public int cleanup() {
+        int cleanedCount = 0;
+        long now = System.nanoTime();
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                cleanedCount += segment.expire(now);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        if (cleanedCount > 0) {
+            log.info("Cleaned up {} expired cache entries", cleanedCount);
+        }
+        return cleanedCount;
+    }
+
+    /**
+     * 定期推进各段时间轮清理过期条目（每分钟执行一次），与 InMemoryGenericCache 一致
+     */
+    @Scheduled(fixedRate = 1, timeUnit = TimeUnit.MINUTES)
+    public void scheduledCleanup() {
+        try {
+            int cleaned = cleanup();
+            if (cleaned > 0) {
+                log.debug("Scheduled cleanup removed {} expired entries", cleaned);
+            }
+        } catch (Exception e) {
+            log.error("Error during scheduled cleanup", e);
+            statsCounter.recordError();
+        }
+    }
+
+    @Override
+    public CacheStats getStats() {
+        CacheStats stats = statsCounter.snapshot();
+        long total = 0;
+        long now = System.nanoTime();
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                // 先回收段内到期条目，剩余条目均有效，无需逐条检查
+                segment.expire(now);
+                total += segment.count;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        stats.setTotalEntries(total);
+        stats.setActiveEntries(total);
+        stats.setExpiredEntries(0);
+        stats.setCacheSize(dataSize());
+        stats.setMaxCacheSize(maxDataSize);
+        stats.updateRates();
+        return stats;
+    }
+
+    @Override
+    public CacheStats getCounterStats() {
+        CacheStats stats = statsCounter.snapshot();
+        stats.updateRates();
+        return stats;
+    }
+
+    @Override
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        log.info("Cache max size set to: {}", maxSize);
+    }
+
+    /**
+     * 设置异步加载和后台刷新使用的线程池（默认 ForkJoinPool.commonPool()）
+     */
+    public void setExecutor(Executor executor) {
+        singleFlight.setExecutor(executor);
+    }
+
+    /**
+     * 设置缓存级别的刷新间隔，作用于之后通过 loader 加载的条目，0 表示不刷新
+     */
+    public void setRefreshAfter(long refreshAfter, TimeUnit timeUnit) {
+        singleFlight.setRefreshAfterNanos(timeUnit.toNanos(refreshAfter));
+        log.info("Cache refresh after set to: {} {}", refreshAfter, timeUnit);
+    }
+
+    /**
+     * 设置最大数据大小
+     */
+    public void setMaxDataSize(long maxDataSize) {
+        this.maxDataSize = maxDataSize;
+        log.info("Cache max data size set to: {} bytes", maxDataSize);
+    }
+
+    @Override
+    public void setWeigher(ToLongFunction<? super V> weigher) {
+        this.weigher = weigher;
+        log.info("Cache weigher {}", weigher == null ? "cleared" : "set");
+    }
+
+    @Override
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        Objects.requireNonNull(policy, "Eviction policy cannot be null");
+        if (policy == EvictionPolicy.TINY_LFU) {
+            // W-TinyLFU 依赖全局的窗口/主区顺序，分段实现无法在段内独立维护
+            throw new CacheException("Eviction policy " + policy + " is not supported by the segmented engine");
+        }
+        this.evictionPolicy = policy;
+        // 切换策略时按新策略重建各段的有序结构
+        for (Segment<V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.rebuild(policy);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        log.info("Cache eviction policy set to: {}", policy);
+    }
+
+    @Override
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    @Override
+    public int evict(int count) {
+        int evictedCount = 0;
+        try {
+            while (evictedCount < count && evictOne(null)) {
+                evictedCount++;
+            }
+            log.debug("Evicted {} cache entries using policy: {}", evictedCount, evictionPolicy);
+        } catch (Exception e) {
+            log.error("Error during cache eviction", e);
+            statsCounter.recordError();
+        }
+        return evictedCount;
+    }
+
+    /**
+     * 淘汰一个条目：从随机起点依次查看非空段的候选条目，取满 EVICTION_SAMPLE_SEGMENTS 个后按当前策略选出最优者删除
+     * 空段不加锁直接跳过；同一时间最多只持有一个段锁，避免段间死锁
+     *
+     * @param exclude 不参与淘汰的条目（刚写入的条目），可为 null
+     * @return 是否淘汰成功
+     */
+    private boolean evictOne(Node<V> exclude) {
+        EvictionPolicy policy = evictionPolicy;
+        int start = ThreadLocalRandom.current().nextInt(segments.length);
+        for (;;) {
+            Segment<V> bestSegment = null;
+            Node<V> best = null;
+            long bestRank = 0;
+            long bestTieBreak = 0;
+            int sampled = 0;
+
+            for (int i = 0; i < segments.length && sampled < EVICTION_SAMPLE_SEGMENTS; i++) {
+                Segment<V> segment = segments[(start + i) & segmentMask];
+                if (segment.count == 0) {
+                    continue;
+                }
+                segment.lock.lock();
+                try {
+                    Node<V> candidate = segment.queue.peekVictim(exclude);
+                    if (candidate == null) {
+                        continue;
+                    }
+                    sampled++;
+                    long rank = rankOf(candidate, policy);
+                    long tieBreak = candidate.accessTime;
+                    if (best == null || rank - bestRank < 0 || (rank == bestRank && tieBreak - bestTieBreak < 0)) {
+                        best = candidate;
+                        bestSegment = segment;
+                        bestRank = rank;
+                        bestTieBreak = tieBreak;
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+                if (policy == EvictionPolicy.RANDOM && best != null) {
+                    break;
+                }
+            }
+
+            if (best == null) {
+                return false;
+            }
+
+            bestSegment.lock.lock();
+            try {
+                if (bestSegment.removeIfSame(best)) {
+                    statsCounter.recordEviction();
+                    return true;
+                }
+            } finally {
+                bestSegment.lock.unlock();
+            }
+            // 候选条目已被并发删除，重新选择
+        }
+    }
+
+    /**
+     * 候选条目的排序值，越小越先淘汰；比较时使用差值以兼容 nanoTime 溢出
+     */
+    private static long rankOf(Node<?> node, EvictionPolicy policy) {
+        switch (policy) {
+            case LFU:
+                return node.frequency;
+            case FIFO:
+                return node.insertTime;
+            case TTL:
+                return node.expireAt;
+            case RANDOM:
+                return 0;
+            case LRU:
+            default:
+                return node.accessTime;
+        }
+    }
+
+    private Segment<V> segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    /**
+     * 缓存节点：条目本身加上淘汰结构所需的链接和排序字段
+     */
+    static final class Node<V> {
+        final String key;
+        final CacheEntry<V> entry;
+        final long weight;
+        final long insertTime;
+        final long expireAt; // System.nanoTime() 基准，0 表示永不过期
+
+        long accessTime;
+        long frequency;
+
+        // LRU/FIFO 链表或 LFU 频次桶内链表
+        Node<V> prev;
+        Node<V> next;
+        // LFU 所在频次桶
+        FrequencyBucket<V> bucket;
+        // RANDOM 数组下标
+        int index = -1;
+
+        Node(String key, CacheEntry<V> entry, long weight, long now, long expireAt) {
+            this.key = key;
+            this.entry = entry;
+            this.weight = weight;
+            this.insertTime = now;
+            this.accessTime = now;
+            this.expireAt = expireAt;
+        }
+
+        boolean hasExpiry() {
+            return expireAt != 0;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt > 0;
+        }
+    }
+
+    /**
+     * 缓存段：一把锁保护一个哈希表、一个淘汰队列和一个过期时间轮
+     */
+    static final class Segment<V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<String, Node<V>> map = new HashMap<>();
+        final TimerWheel wheel = new TimerWheel(System.nanoTime());
+        EvictionQueue<V> queue;
+
+        // 由段锁保护写入，volatile 便于容量检查时无锁读取
+        volatile long count;
+        volatile long weight;
+
+        Segment(EvictionPolicy policy) {
+            this.queue = EvictionQueue.create(policy);
+        }
+
+        void insert(Node<V> node) {
+            Node<V> old = map.put(node.key, node);
+            if (old != null) {
+                detach(old);
+            }
+            queue.add(node);
+            count++;
+            weight += node.weight;
+            if (node.hasExpiry()) {
+                wheel.schedule(node.key, node.expireAt);
+            }
+        }
+
+        /**
+         * 推进时间轮，删除到期条目
+         * @return 删除的条目数
+         */
+        int expire(long now) {
+            return wheel.advance(now, key -> {
+                Node<V> node = map.get(key);
+                if (node == null || !node.isExpired(now)) {
+                    return false;
+                }
+                remove(node);
+                return true;
+            });
+        }
+
+        void access(Node<V> node, long now) {
+            node.accessTime = now;
+            node.frequency++;
+            node.entry.updateAccess();
+            queue.access(node);
+        }
+
+        void remove(Node<V> node) {
+            map.remove(node.key);
+            detach(node);
+        }
+
+        boolean removeIfSame(Node<V> node) {
+            if (map.get(node.key) != node) {
+                return false;
+            }
+            remove(node);
+            return true;
+        }
+
+        /**
+         * 从淘汰队列、时间轮和计数中摘除节点（调用方负责哈希表）
+         */
+        void detach(Node<V> node) {
+            queue.remove(node);
+            count--;
+            weight -= node.weight;
+            if (node.hasExpiry()) {
+                wheel.deschedule(node.key);
+            }
+        }
+
+        void clear() {
+            map.clear();
+            wheel.clear();
+            queue = EvictionQueue.create(queue.policy());
+            count = 0;
+            weight = 0;
+        }
+
+        void rebuild(EvictionPolicy policy) {
+            List<Node<V>> nodes = new ArrayList<>(map.values());
+            nodes.sort(Comparator.comparingLong(n -> n.insertTime));
+            queue = EvictionQueue.create(policy);
+            for (Node<V> node : nodes) {
+                node.prev = null;
+                node.next = null;
+                node.bucket = null;
+                node.index = -1;
+                queue.add(node);
+            }
+        }
+    }
+
+    /**
+     * 段内淘汰队列，所有方法均在段锁内调用
+     */
+    interface EvictionQueue<V> {
+
+        EvictionPolicy policy();
+
+        void add(Node<V> node);
+
+        void access(Node<V> node);
+
+        void remove(Node<V> node);
+
+        /**
+         * 返回本段最应被淘汰的节点（跳过 exclude），没有则返回 null
+         */
+        Node<V> peekVictim(Node<V> exclude);
+
+        static <V> EvictionQueue<V> create(EvictionPolicy policy) {
+            switch (policy) {
+                case LRU:
+                    return new LinkedQueue<>(policy, true);
+                case FIFO:
+                    return new LinkedQueue<>(policy, false);
+                case LFU:
+                    return new FrequencyQueue<>();
+                case TTL:
+                    return new ExpiryQueue<>();
+                case RANDOM:
+                    return new RandomQueue<>();
+                default:
+                    throw new CacheException("Unsupported eviction policy: " + policy);
+            }
+        }
+    }
+
+    /**
+     * LRU/FIFO：头部为最久未访问（或最早写入）的节点
+     */
+    static final class LinkedQueue<V> implements EvictionQueue<V> {
+        private final EvictionPolicy policy;
+        private final boolean accessOrder;
+        private Node<V> head;
+        private Node<V> tail;
+
+        LinkedQueue(EvictionPolicy policy, boolean accessOrder) {
+            this.policy = policy;
+            this.accessOrder = accessOrder;
+        }
+
+        @Override
+        public EvictionPolicy policy() {
+            return policy;
+        }
+
+        @Override
+        public void add(Node<V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        @Override
+        public void access(Node<V> node) {
+            if (accessOrder && node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        @Override
+        public void remove(Node<V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        @Override
+        public Node<V> peekVictim(Node<V> exclude) {
+            Node<V> victim = head;
+            return victim != null && victim == exclude ? victim.next : victim;
+        }
+    }
+
+    /**
+     * LFU：按访问次数升序排列的频次桶，桶内按进入顺序排列
+     */
+    static final class FrequencyQueue<V> implements EvictionQueue<V> {
+        private FrequencyBucket<V> first;
+
+        @Override
+        public EvictionPolicy policy() {
+            return EvictionPolicy.LFU;
+        }
+
+        @Override
+        public void add(Node<V> node) {
+            FrequencyBucket<V> bucket = first;
+            FrequencyBucket<V> prev = null;
+            while (bucket != null && bucket.frequency < node.frequency) {
+                prev = bucket;
+                bucket = bucket.next;
+            }
+            if (bucket == null || bucket.frequency != node.frequency) {
+                bucket = insertBucketAfter(prev, node.frequency);
+            }
+            bucket.append(node);
+        }
+
+        @Override
+        public void access(Node<V> node) {
+            // node.frequency 已递增，移动到相邻的下一个频次桶
+            FrequencyBucket<V> current = node.bucket;
+            FrequencyBucket<V> target = current.next;
+            if (target == null || target.frequency != node.frequency) {
+                target = insertBucketAfter(current, node.frequency);
+            }
+            current.unlink(node);
+            target.append(node);
+            if (current.isEmpty()) {
+                removeBucket(current);
+            }
+        }
+
+        @Override
+        public void remove(Node<V> node) {
+            FrequencyBucket<V> bucket = node.bucket;
+            if (bucket == null) {
+                return;
+            }
+            bucket.unlink(node);
+            if (bucket.isEmpty()) {
+                removeBucket(bucket);
+            }
+        }
+
+        @Override
+        public Node<V> peekVictim(Node<V> exclude) {
+            for (FrequencyBucket<V> bucket = first; bucket != null; bucket = bucket.next) {
+                Node<V> victim = bucket.head;
+                if (victim == exclude) {
+                    victim = victim.next;
+                }
+                if (victim != null) {
+                    return victim;
+                }
+            }
+            return null;
+        }
+
+        private FrequencyBucket<V> insertBucketAfter(FrequencyBucket<V> prev, long frequency) {
+            FrequencyBucket<V> bucket = new FrequencyBucket<>(frequency);
+            bucket.prev = prev;
+            bucket.next = prev == null ? first : prev.next;
+            if (bucket.next != null) {
+                bucket.next.prev = bucket;
+            }
+            if (prev == null) {
+                first = bucket;
+            } else {
+                prev.next = bucket;
+            }
+            return bucket;
+        }
+
+        private void removeBucket(FrequencyBucket<V> bucket) {
+            if (bucket.prev == null) {
+                first = bucket.next;
+            } else {
+                bucket.prev.next = bucket.next;
+            }
+            if (bucket.next != null) {
+                bucket.next.prev = bucket.prev;
+            }
+        }
+    }
+
+    /**
+     * LFU 频次桶
+     */
+    static final class FrequencyBucket<V> {
+        final long frequency;
+        FrequencyBucket<V> prev;
+        FrequencyBucket<V> next;
+        Node<V> head;
+        Node<V> tail;
+
+        FrequencyBucket(long frequency) {
+            this.frequency = frequency;
+        }
+
+        void append(Node<V> node) {
+            node.bucket = this;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void unlink(Node<V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.bucket = null;
+        }
+
+        boolean isEmpty() {
+            return head == null;
+        }
+    }
+
+    /**
+     * TTL：只有设置了过期时间的条目可被淘汰，最早过期者优先
+     */
+    static final class ExpiryQueue<V> implements EvictionQueue<V> {
+        private final TreeSet<Node<V>> nodes = new TreeSet<>((a, b) -> {
+            int c = Long.signum(a.expireAt - b.expireAt);
+            if (c != 0) {
+                return c;
+            }
+            c = Long.signum(a.insertTime - b.insertTime);
+            return c != 0 ? c : Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
+        });
+
+        @Override
+        public EvictionPolicy policy() {
+            return EvictionPolicy.TTL;
+        }
+
+        @Override
+        public void add(Node<V> node) {
+            if (node.hasExpiry()) {
+                nodes.add(node);
+            }
+        }
+
+        @Override
+        public void access(Node<V> node) {
+            // 访问不改变过期顺序
+        }
+
+        @Override
+        public void remove(Node<V> node) {
+            if (node.hasExpiry()) {
+                nodes.remove(node);
+            }
+        }
+
+        @Override
+        public Node<V> peekVictim(Node<V> exclude) {
+            if (nodes.isEmpty()) {
+                return null;
+            }
+            Node<V> victim = nodes.first();
+            return victim == exclude ? nodes.higher(victim) : victim;
+        }
+    }
+
+    /**
+     * RANDOM：数组存放节点，删除时与末尾交换
+     */
+    static final class RandomQueue<V> implements EvictionQueue<V> {
+        private final List<Node<V>> nodes = new ArrayList<>();
+
+        @Override
+        public EvictionPolicy policy() {
+            return EvictionPolicy.RANDOM;
+        }
+
+        @Override
+        public void add(Node<V> node) {
+            node.index = nodes.size();
+            nodes.add(node);
+        }
+
+        @Override
+        public void access(Node<V> node) {
+            // 随机淘汰与访问无关
+        }
+
+        @Override
+        public void remove(Node<V> node) {
+            int index = node.index;
+            if (index < 0) {
+                return;
+            }
+            Node<V> last = nodes.remove(nodes.size() - 1);
+            if (last != node) {
+                nodes.set(index, last);
+                last.index = index;
+            }
+            node.index = -1;
+        }
+
+        @Override
+        public Node<V> peekVictim(Node<V> exclude) {
+            int size = nodes.size();
+            if (size == 0 || (size == 1 && nodes.get(0) == exclude)) {
+                return null;
+            }
+            Node<V> victim = nodes.get(ThreadLocalRandom.current().nextInt(size));
+            if (victim == exclude) {
+                victim = nodes.get((victim.index + 1) % size);
+            }
+            return victim;
+        }
+    }
+}
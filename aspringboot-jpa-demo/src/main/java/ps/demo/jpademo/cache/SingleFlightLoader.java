@@ -0,0 +1,322 @@
+package ps.demo.jpademo.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * 单飞加载：同一个键并发未命中时只执行一次加载，其他调用方共享同一个 CompletableFuture
+ * - 加载成功的值写入缓存，加载失败或返回 null 不写入缓存
+ * - 加载耗时记录到统计信息
+ * - 条目超过刷新间隔后，读取仍返回当前值，同时在线程池中后台重新加载（同样按键去重）；
+ *   刷新失败保留当前值，直到条目硬过期；刷新结果沿用条目原来的过期时刻，
+ *   且只在条目未被其他写入替换时写回
+ * - 批量获取时所有未命中且没有在途加载的键通过一次 BulkCacheLoader 调用加载，批量加载的条目不参与刷新
+ * 加载完成后先写入缓存再移出在途表；抢到加载权后会再查一次缓存（不计统计），
+ * 避免在上一次加载刚完成时重复加载
+ */
+@Slf4j
+final class SingleFlightLoader<V> {
+
+    /**
+     * 写入加载结果（带过期时间和刷新间隔，纳秒，0 表示不设置）
+     */
+    @FunctionalInterface
+    interface Writer<V> {
+        boolean write(String key, V value, long ttlNanos, long refreshAfterNanos);
+    }
+
+    /**
+     * 写回刷新结果：只有当前条目仍是 expected 那次写入时才替换，value 为 null 时删除该条目
+     */
+    @FunctionalInterface
+    interface Replacer<V> {
+        boolean replace(String key, CacheEntry<V> expected, V value, long ttlNanos, long refreshAfterNanos);
+    }
+
+    private final GenericCache<V> cache;
+    private final StatsCounter statsCounter;
+    // 不计统计、不更新访问信息的查询
+    private final Function<String, Optional<V>> peek;
+    private final Writer<V> writer;
+    private final Replacer<V> replacer;
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile Executor executor = ForkJoinPool.commonPool();
+    // 缓存级别的刷新间隔（纳秒），0 表示不刷新
+    private volatile long refreshAfterNanos;
+
+    SingleFlightLoader(GenericCache<V> cache, StatsCounter statsCounter,
+                       Function<String, Optional<V>> peek, Writer<V> writer, Replacer<V> replacer) {
+        this.cache = cache;
+        this.statsCounter = statsCounter;
+        this.peek = peek;
+        this.writer = writer;
+        this.replacer = replacer;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "Executor cannot be null");
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    void setRefreshAfterNanos(long refreshAfterNanos) {
+        this.refreshAfterNanos = Math.max(0, refreshAfterNanos);
+    }
+
+    /**
+     * 同步获取，未命中时在调用线程中加载（或等待在途的加载）
+     * @param ttlNanos          过期时间（纳秒），0 表示永不过期
+     * @param refreshAfterNanos 刷新间隔（纳秒），0 表示使用缓存级别的设置
+     */
+    V get(String key, CacheLoader<? extends V> loader, long ttlNanos, long refreshAfterNanos) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        long refreshNanos = refreshAfterNanos > 0 ? refreshAfterNanos : this.refreshAfterNanos;
+        Optional<V> cached = lookup(key, loader, ttlNanos, refreshNanos, executor);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        if (!completeFromCache(key, future)) {
+            load(key, loader, ttlNanos, refreshNanos, future);
+        }
+        return join(future);
+    }
+
+    /**
+     * 异步获取，未命中时在 executor 中加载（或返回在途的加载）
+     */
+    CompletableFuture<V> getAsync(String key, CacheLoader<? extends V> loader, Executor executor) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(executor, "Executor cannot be null");
+        long refreshNanos = this.refreshAfterNanos;
+        Optional<V> cached = lookup(key, loader, 0, refreshNanos, executor);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        if (completeFromCache(key, future)) {
+            return future;
+        }
+        try {
+            executor.execute(() -> load(key, loader, 0, refreshNanos, future));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cache load rejected by executor - key: {}", key);
+            statsCounter.recordLoadFailure(0);
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 批量获取，未命中的键中已有在途加载的等待该加载，其余的通过一次 loader 调用加载
+     */
+    Map<String, V> getAll(Collection<String> keys, BulkCacheLoader<? extends V> loader) {
+        Objects.requireNonNull(keys, "Keys cannot be null");
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Map<String, V> cached = cache.getAll(keys);
+        Map<String, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<V>> waiting = new HashMap<>();
+        for (String key : keys) {
+            if (key == null || cached.containsKey(key) || owned.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                waiting.put(key, existing);
+            } else if (!completeFromCache(key, future)) {
+                owned.put(key, future);
+            } else {
+                waiting.put(key, future);
+            }
+        }
+        if (!owned.isEmpty()) {
+            loadAll(owned, loader);
+        }
+
+        Map<String, V> result = new LinkedHashMap<>();
+        for (String key : keys) {
+            V value = cached.get(key);
+            if (value == null) {
+                CompletableFuture<V> future = owned.containsKey(key) ? owned.get(key) : waiting.get(key);
+                value = future == null ? null : join(future);
+            }
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在途加载（含后台刷新）数量
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 查询缓存，命中且到达刷新时刻时触发后台刷新
+     */
+    private Optional<V> lookup(String key, CacheLoader<? extends V> loader,
+                               long ttlNanos, long refreshNanos, Executor executor) {
+        Optional<CacheEntry<V>> cached = cache.getEntry(key);
+        if (cached.isEmpty()) {
+            return Optional.empty();
+        }
+        CacheEntry<V> entry = cached.get();
+        if (entry.isRefreshDue(System.nanoTime())) {
+            refresh(key, entry, loader, ttlNanos, refreshNanos, executor);
+        }
+        return Optional.of(entry.getValue());
+    }
+
+    private void refresh(String key, CacheEntry<V> entry, CacheLoader<? extends V> loader,
+                         long ttlNanos, long refreshNanos, Executor executor) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, future) != null) {
+            // 已有加载或刷新在进行
+            return;
+        }
+        try {
+            executor.execute(() -> reload(key, entry, loader, ttlNanos, refreshNanos, future));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cache refresh rejected by executor - key: {}", key);
+            statsCounter.recordRefreshFailure();
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @param entry 触发刷新的条目，调用方未指定过期时间时沿用它的过期时刻
+     */
+    private void reload(String key, CacheEntry<V> entry, CacheLoader<? extends V> loader,
+                        long ttlNanos, long refreshNanos, CompletableFuture<V> future) {
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable e) {
+            statsCounter.recordRefreshFailure();
+            log.warn("Cache refresh failed, keeping current value - key: {}", key, e);
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return;
+        }
+        long ttl = ttlNanos;
+        if (ttl <= 0 && entry.isExpirable()) {
+            // 刷新不延长条目的硬过期时刻
+            ttl = Math.max(1, entry.getExpireAtNanos() - System.nanoTime());
+        }
+        // 数据源中已不存在时 value 为 null，删除条目
+        if (!replacer.replace(key, entry, value, ttl, refreshNanos)) {
+            log.debug("Cache refresh result discarded, entry was replaced during reload - key: {}", key);
+        }
+        statsCounter.recordRefreshSuccess();
+        log.debug("Cache refresh successful - key: {}", key);
+        inFlight.remove(key, future);
+        future.complete(value);
+    }
+
+    private boolean completeFromCache(String key, CompletableFuture<V> future) {
+        Optional<V> loaded = peek.apply(key);
+        if (loaded.isEmpty()) {
+            return false;
+        }
+        inFlight.remove(key, future);
+        future.complete(loaded.get());
+        return true;
+    }
+
+    private void load(String key, CacheLoader<? extends V> loader,
+                      long ttlNanos, long refreshNanos, CompletableFuture<V> future) {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            log.warn("Cache load failed - key: {}", key, e);
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return;
+        }
+        long loadTime = System.nanoTime() - start;
+        if (value == null) {
+            statsCounter.recordLoadFailure(loadTime);
+        } else {
+            statsCounter.recordLoadSuccess(loadTime);
+            writer.write(key, value, ttlNanos, refreshNanos);
+        }
+        inFlight.remove(key, future);
+        future.complete(value);
+    }
+
+    private void loadAll(Map<String, CompletableFuture<V>> owned, BulkCacheLoader<? extends V> loader) {
+        long start = System.nanoTime();
+        Map<String, ? extends V> loaded;
+        try {
+            loaded = loader.loadAll(Collections.unmodifiableSet(owned.keySet()));
+        } catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            log.warn("Cache bulk load failed - keys: {}", owned.size(), e);
+            owned.forEach((key, future) -> {
+                inFlight.remove(key, future);
+                future.completeExceptionally(e);
+            });
+            return;
+        }
+        long loadTime = System.nanoTime() - start;
+        Map<String, V> found = new LinkedHashMap<>();
+        if (loaded != null) {
+            for (String key : owned.keySet()) {
+                V value = loaded.get(key);
+                if (value != null) {
+                    found.put(key, value);
+                }
+            }
+        }
+        if (found.isEmpty()) {
+            statsCounter.recordLoadFailure(loadTime);
+        } else {
+            statsCounter.recordLoadSuccess(loadTime);
+            cache.putAll(found);
+        }
+        owned.forEach((key, future) -> {
+            inFlight.remove(key, future);
+            future.complete(found.get(key));
+        });
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new CacheException("Failed to load cache value", cause);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ps.demo.jpademo.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存统计计数器
+ * 各计数使用 LongAdder，高并发下无需加锁也不会丢失计数；
+ * 读取统计时再汇总为 CacheStats 快照
+ */
+public final class StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder refreshSuccessCount = new LongAdder();
+    private final LongAdder refreshFailureCount = new LongAdder();
+
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    public void recordPut() {
+        putCount.increment();
+    }
+
+    public void recordEviction() {
+        evictionCount.increment();
+    }
+
+    public void recordError() {
+        errorCount.increment();
+    }
+
+    /**
+     * 记录一次成功的加载
+     * @param loadTimeNanos 加载耗时（纳秒）
+     */
+    public void recordLoadSuccess(long loadTimeNanos) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTimeNanos);
+    }
+
+    /**
+     * 记录一次失败的加载
+     * @param loadTimeNanos 加载耗时（纳秒）
+     */
+    public void recordLoadFailure(long loadTimeNanos) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTimeNanos);
+    }
+
+    public void recordRefreshSuccess() {
+        refreshSuccessCount.increment();
+    }
+
+    public void recordRefreshFailure() {
+        refreshFailureCount.increment();
+    }
+
+    /**
+     * 汇总计数为统计快照（条目数和容量由调用方填充）
+     */
+    public CacheStats snapshot() {
+        CacheStats stats = new CacheStats();
+        stats.setHitCount(hitCount.sum());
+        stats.setMissCount(missCount.sum());
+        stats.setPutCount(putCount.sum());
+        stats.setEvictionCount(evictionCount.sum());
+        stats.setErrorCount(errorCount.sum());
+        stats.setLoadSuccessCount(loadSuccessCount.sum());
+        stats.setLoadFailureCount(loadFailureCount.sum());
+        stats.setTotalLoadTime(totalLoadTime.sum());
+        stats.setRefreshSuccessCount(refreshSuccessCount.sum());
+        stats.setRefreshFailureCount(refreshFailureCount.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,186 @@
+package ps.demo.jpademo.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 分层时间轮
+ * 按过期时刻（System.nanoTime() 基准）把键挂到不同精度的桶中，推进时只处理经过的桶：
+ * - 第0层：约1毫秒/桶，64桶（约67毫秒）
+ * - 第1层：约67毫秒/桶，64桶（约4.3秒）
+ * - 第2层：约4.3秒/桶，64桶（约4.6分钟）
+ * - 第3层：约4.6分钟/桶，64桶（约4.9小时）
+ * - 第4层：约4.9小时/桶，64桶（约13天）
+ * - 第5层：溢出桶
+ * 高层桶到期时把其中的键重新分配到更精细的层，调度和取消均为 O(1)，推进为均摊 O(1)
+ * 非线程安全，由调用方加锁
+ */
+final class TimerWheel {
+
+    private static final int[] SHIFTS = {20, 26, 32, 38, 44, 50};
+    private static final int[] BUCKETS = {64, 64, 64, 64, 64, 1};
+
+    private final Node[][] wheel;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private long nanos;
+
+    TimerWheel(long nowNanos) {
+        this.nanos = nowNanos;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * 调度键在指定时刻过期，已调度的键会被重新调度
+     */
+    void schedule(String key, long expireAtNanos) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            node = new Node(key);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+        }
+        node.expireAt = expireAtNanos;
+        link(node);
+    }
+
+    /**
+     * 取消键的过期调度
+     */
+    void deschedule(String key) {
+        Node node = nodes.remove(key);
+        if (node != null) {
+            node.unlink();
+        }
+    }
+
+    /**
+     * 推进时间轮，对每个已过期的键调用 expirer
+     * @return expirer 返回 true 的次数
+     */
+    int advance(long nowNanos, Predicate<String> expirer) {
+        long previous = nanos;
+        nanos = nowNanos;
+        int expired = 0;
+        for (int level = 0; level < BUCKETS.length; level++) {
+            long previousTicks = previous >>> SHIFTS[level];
+            long currentTicks = nowNanos >>> SHIFTS[level];
+            // 第0层总是重新处理当前桶，以覆盖调度时已到期的键
+            long firstTick = level == 0 ? previousTicks : previousTicks + 1;
+            if (currentTicks - firstTick < 0) {
+                break;
+            }
+            expired += expireLevel(level, firstTick, currentTicks, nowNanos, expirer);
+        }
+        return expired;
+    }
+
+    /**
+     * 已调度的键数量
+     */
+    int size() {
+        return nodes.size();
+    }
+
+    void clear() {
+        for (Node[] buckets : wheel) {
+            for (Node sentinel : buckets) {
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+            }
+        }
+        for (Node node : nodes.values()) {
+            node.prev = null;
+            node.next = null;
+        }
+        nodes.clear();
+    }
+
+    private int expireLevel(int level, long firstTick, long lastTick, long nowNanos, Predicate<String> expirer) {
+        int mask = BUCKETS[level] - 1;
+        long ticks = Math.min(lastTick - firstTick + 1, BUCKETS[level]);
+        int expired = 0;
+        for (long i = 0; i < ticks; i++) {
+            Node sentinel = wheel[level][(int) ((firstTick + i) & mask)];
+            // 先摘下整条链表，未到期的键重新调度后不会在本轮被重复处理
+            Node node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (nowNanos - node.expireAt >= 0) {
+                    nodes.remove(node.key);
+                    if (expirer.test(node.key)) {
+                        expired++;
+                    }
+                } else {
+                    link(node);
+                }
+                node = next;
+            }
+        }
+        return expired;
+    }
+
+    private void link(Node node) {
+        long delay = node.expireAt - nanos;
+        Node sentinel;
+        if (delay <= 0) {
+            // 已到期：放入第0层当前桶，下次推进时处理
+            sentinel = wheel[0][(int) ((nanos >>> SHIFTS[0]) & (BUCKETS[0] - 1))];
+        } else {
+            int level = BUCKETS.length - 1;
+            for (int i = 0; i < BUCKETS.length - 1; i++) {
+                if (delay < (1L << SHIFTS[i + 1])) {
+                    level = i;
+                    break;
+                }
+            }
+            int index = (int) ((node.expireAt >>> SHIFTS[level]) & (BUCKETS[level] - 1));
+            sentinel = wheel[level][index];
+        }
+        node.next = sentinel;
+        node.prev = sentinel.prev;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /**
+     * 时间轮节点（桶内双向循环链表）
+     */
+    private static final class Node {
+        final String key;
+        long expireAt;
+        Node prev;
+        Node next;
+
+        Node(String key) {
+            this.key = key;
+        }
+
+        static Node sentinel() {
+            Node sentinel = new Node(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
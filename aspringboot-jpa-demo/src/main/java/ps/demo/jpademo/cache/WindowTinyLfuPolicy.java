@@ -0,0 +1,237 @@
+package ps.demo.jpademo.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU 淘汰策略
+ * - 窗口区（约1%容量，LRU）：新写入的键先进入窗口，吸收突发的新访问
+ * - 主区（SLRU）：试用区 + 保护区（约80%主区容量），试用区命中后晋升到保护区
+ * - 准入过滤：窗口满时，窗口最旧的键（候选者）与试用区最旧的键（受害者）比较草图频率，
+ *   频率更高者留下，避免只访问一次的键冲掉工作集
+ * 只维护键的顺序，条目本身仍由缓存保存
+ * 命中和未命中由读路径写入有损的读缓冲区，不获取策略锁；缓冲区满时 tryLock 取出，
+ * 写路径的方法在策略锁内先取出缓冲区再更新各区和频率草图
+ */
+final class WindowTinyLfuPolicy {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReadBuffer accessBuffer = new ReadBuffer();
+    private final ReadBuffer missBuffer = new ReadBuffer();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long windowMaxSize;
+    private long protectedMaxSize;
+
+    WindowTinyLfuPolicy(long maximumSize) {
+        this.sketch = new FrequencySketch(maximumSize);
+        resizeInternal(maximumSize);
+    }
+
+    /**
+     * 按新的最大条目数调整各区配额
+     */
+    void resize(long maximumSize) {
+        lock.lock();
+        try {
+            drainBuffers();
+            resizeInternal(maximumSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void resizeInternal(long maximumSize) {
+        long max = Math.max(1, maximumSize);
+        this.windowMaxSize = Math.max(1, (long) (max * WINDOW_RATIO));
+        this.protectedMaxSize = (long) ((max - windowMaxSize) * PROTECTED_RATIO);
+        sketch.ensureCapacity(max);
+        while (window.size() > windowMaxSize) {
+            probation.put(removeEldest(window), Boolean.TRUE);
+        }
+        while (protectedSegment.size() > protectedMaxSize) {
+            probation.put(removeEldest(protectedSegment), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 记录一次命中（读路径调用，不阻塞）
+     */
+    void recordAccess(String key) {
+        record(accessBuffer, key);
+    }
+
+    /**
+     * 记录一次未命中，使之后写入的键带着历史频率参与准入（读路径调用，不阻塞）
+     */
+    void recordMiss(String key) {
+        record(missBuffer, key);
+    }
+
+    /**
+     * 写入读缓冲区，所在段已满时尝试取出后重试一次，拿不到锁则丢弃这次记录
+     */
+    private void record(ReadBuffer buffer, String key) {
+        if (buffer.offer(key)) {
+            return;
+        }
+        if (lock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                lock.unlock();
+            }
+            buffer.offer(key);
+        }
+    }
+
+    /**
+     * 取出读缓冲区，更新频率草图和各区顺序（调用方需持有策略锁）
+     */
+    private void drainBuffers() {
+        missBuffer.drainTo(sketch::increment);
+        accessBuffer.drainTo(this::onAccess);
+    }
+
+    private void onAccess(String key) {
+        sketch.increment(key);
+        if (window.get(key) != null || protectedSegment.get(key) != null) {
+            // 访问顺序的 LinkedHashMap 在 get 时已移动到尾部
+            return;
+        }
+        if (probation.remove(key) != null) {
+            protectedSegment.put(key, Boolean.TRUE);
+            if (protectedSegment.size() > protectedMaxSize) {
+                probation.put(removeEldest(protectedSegment), Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * 新键写入窗口区，窗口溢出的键降入试用区
+     */
+    void onInsert(String key) {
+        lock.lock();
+        try {
+            drainBuffers();
+            sketch.increment(key);
+            window.put(key, Boolean.TRUE);
+            while (window.size() > windowMaxSize) {
+                probation.put(removeEldest(window), Boolean.TRUE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onRemove(String key) {
+        lock.lock();
+        try {
+            if (window.remove(key) == null && probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 选出下一个要淘汰的键（调用方负责真正删除并回调 onRemove）
+     * @return 要淘汰的键，没有可淘汰的键时返回 null
+     */
+    String selectVictim() {
+        lock.lock();
+        try {
+            drainBuffers();
+            return selectVictimInternal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String selectVictimInternal() {
+        String candidate = window.size() >= windowMaxSize ? eldest(window) : null;
+        String victim = eldest(probation);
+        if (victim == null) {
+            victim = eldest(protectedSegment);
+        }
+
+        if (candidate == null) {
+            return victim != null ? victim : eldest(window);
+        }
+        if (victim == null) {
+            return candidate;
+        }
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            // 候选者胜出，进入试用区，淘汰受害者
+            window.remove(candidate);
+            probation.put(candidate, Boolean.TRUE);
+            return victim;
+        }
+        return candidate;
+    }
+
+    /**
+     * 估算键的访问频率
+     */
+    int frequency(String key) {
+        lock.lock();
+        try {
+            drainBuffers();
+            return sketch.frequency(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把键的草图频率补到指定值（从快照恢复时使用）
+     */
+    void restoreFrequency(String key, int frequency) {
+        lock.lock();
+        try {
+            drainBuffers();
+            for (int i = sketch.frequency(key); i < frequency; i++) {
+                sketch.increment(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            // 丢弃缓冲区中清空之前的记录
+            missBuffer.drainTo(key -> { });
+            accessBuffer.drainTo(key -> { });
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            sketch.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String eldest(Map<String, Boolean> segment) {
+        Iterator<String> iterator = segment.keySet().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static String removeEldest(Map<String, Boolean> segment) {
+        Iterator<String> iterator = segment.keySet().iterator();
+        String key = iterator.next();
+        iterator.remove();
+        return key;
+    }
+}
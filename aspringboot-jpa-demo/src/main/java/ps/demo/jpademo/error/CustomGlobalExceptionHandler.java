@@ -8,6 +8,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
 import ps.demo.jpademo.common.CodeEnum;
 import ps.demo.jpademo.dto.BaseErrorResp;
 
@@ -23,6 +24,16 @@ public class CustomGlobalExceptionHandler {//extends ResponseEntityExceptionHand
         return new ResponseEntity<>(baseErrorResp, HttpStatus.valueOf(ex.getCodeEnum().getHttpCode()));
     }
 
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<BaseErrorResp> handleResponseStatusException(ResponseStatusException ex) {
+        log.warn("Handle response status exception, status={}, reason={}", ex.getStatusCode(), ex.getReason());
+        BaseErrorResp resp = new BaseErrorResp();
+        resp.setCode(String.valueOf(ex.getStatusCode().value()));
+        resp.setMessage(ex.getReason());
+        resp.setDetailMessage(ex.getMessage());
+        return new ResponseEntity<>(resp, ex.getStatusCode());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<BaseErrorResp> handleException(Exception ex) {
         log.error("Handle exception, ex={}", ex.getMessage(), ex);
@@ -0,0 +1,210 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消息接收准入控制
+ * - 已接收未投递完的消息（PENDING + DISPATCHING）就是接收队列，按 sample-interval 从 MessageStore 采样积压，
+ *   加上本实例采样后接收的消息数作为当前深度；多个实例共享 jpa 存储时看到的是全局积压
+ * - contentType 分到优先级通道，每个通道有自己的高低水位：深度达到高水位后拒绝这个通道的消息，
+ *   降到低水位以下才重新接收，避免在水位附近反复切换
+ * - 拒绝在写库之前进行，不占用事务和连接，调用方收到 429 和 Retry-After
+ */
+@Slf4j
+public class AdmissionControl implements InitializingBean, DisposableBean, MeterBinder {
+
+    public static final String DEFAULT_LANE = "default";
+
+    private final MessageStore messageStore;
+    private final AdmissionProperties properties;
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final Map<String, Lane> lanesByContentType = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public AdmissionControl(MessageStore messageStore, AdmissionProperties properties) {
+        this.messageStore = messageStore;
+        this.properties = properties;
+        lanes.put(DEFAULT_LANE, new Lane(DEFAULT_LANE, properties.getHighWatermark(), properties.getLowWatermark()));
+        properties.getLanes().forEach((name, lane) -> {
+            Lane created = new Lane(name, lane.getHighWatermark(), lane.getLowWatermark());
+            lanes.put(name, created);
+            lane.getContentTypes().forEach(contentType -> lanesByContentType.put(contentType, created));
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mq-admission-"));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        sample();
+        scheduler.scheduleWithFixedDelay(this::sample, properties.getSampleInterval(), properties.getSampleInterval(),
+                TimeUnit.MILLISECONDS);
+        log.info("Admission control started - lanes: {}", lanes.keySet());
+    }
+
+    /**
+     * 接收一条消息
+     * @throws AdmissionRejectedException 积压达到 contentType 所在通道的高水位
+     */
+    public void admit(String contentType) {
+        Lane lane = laneFor(contentType);
+        long depth = depth();
+        if (properties.isEnabled() && lane.saturated(depth)) {
+            lane.rejected.incrementAndGet();
+            throw new AdmissionRejectedException(lane.name, depth, properties.getRetryAfter());
+        }
+        lane.admittedSinceSample.incrementAndGet();
+        lane.admitted.incrementAndGet();
+    }
+
+    /**
+     * 记录消息从接收到开始分发的时间
+     */
+    public void recordQueueTime(String contentType, Duration queueTime) {
+        Timer timer = laneFor(contentType).queueTime;
+        if (timer != null && !queueTime.isNegative()) {
+            timer.record(queueTime);
+        }
+    }
+
+    /**
+     * 当前积压：最近一次采样加上之后本实例接收的消息数
+     */
+    public long depth() {
+        return lanes.values().stream().mapToLong(Lane::depth).sum();
+    }
+
+    public long depth(String lane) {
+        return lanes.get(lane).depth();
+    }
+
+    public boolean isSaturated(String lane) {
+        return lanes.get(lane).saturated;
+    }
+
+    public String laneOf(String contentType) {
+        return laneFor(contentType).name;
+    }
+
+    public Collection<String> getLanes() {
+        return lanes.keySet();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        lanes.values().forEach(lane -> {
+            Gauge.builder("mq.admission.queue.depth", lane, Lane::depth)
+                    .description("Accepted messages not yet delivered, by admission lane")
+                    .tag("lane", lane.name)
+                    .register(registry);
+            Gauge.builder("mq.admission.saturated", lane, l -> l.saturated ? 1 : 0)
+                    .description("Whether the admission lane is rejecting messages")
+                    .tag("lane", lane.name)
+                    .register(registry);
+            FunctionCounter.builder("mq.admission.admitted", lane.admitted, AtomicLong::get)
+                    .description("Messages accepted by admission control")
+                    .tag("lane", lane.name)
+                    .register(registry);
+            FunctionCounter.builder("mq.admission.rejected", lane.rejected, AtomicLong::get)
+                    .description("Messages rejected by admission control")
+                    .tag("lane", lane.name)
+                    .register(registry);
+            lane.queueTime = Timer.builder("mq.admission.queue.time")
+                    .description("Time from accepting a message to dispatching it")
+                    .tag("lane", lane.name)
+                    .register(registry);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 采样积压，采样期间接收的消息留到下次采样
+     */
+    void sample() {
+        try {
+            Map<Lane, Long> admittedBefore = new HashMap<>();
+            lanes.values().forEach(lane -> admittedBefore.put(lane, lane.admittedSinceSample.get()));
+            Map<Lane, Long> sampled = new HashMap<>();
+            messageStore.countBacklog().forEach((contentType, count) -> sampled.merge(laneFor(contentType), count, Long::sum));
+            long depth = 0;
+            for (Lane lane : lanes.values()) {
+                lane.sampled = sampled.getOrDefault(lane, 0L);
+                lane.admittedSinceSample.addAndGet(-admittedBefore.get(lane));
+                depth += lane.sampled;
+            }
+            for (Lane lane : lanes.values()) {
+                boolean wasSaturated = lane.saturated;
+                if (lane.saturated(depth) != wasSaturated) {
+                    log.warn("Admission lane {} {} - backlog: {}", lane.name, wasSaturated ? "resumed" : "saturated", depth);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to sample message backlog", e);
+        }
+    }
+
+    private Lane laneFor(String contentType) {
+        Lane lane = contentType == null ? null : lanesByContentType.get(contentType);
+        return lane != null ? lane : lanes.get(DEFAULT_LANE);
+    }
+
+    private static final class Lane {
+
+        private final String name;
+        private final long highWatermark;
+        private final long lowWatermark;
+        private final AtomicLong admittedSinceSample = new AtomicLong();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private volatile long sampled;
+        private volatile boolean saturated;
+        private volatile Timer queueTime;
+
+        private Lane(String name, long highWatermark, long lowWatermark) {
+            if (lowWatermark > highWatermark) {
+                throw new IllegalArgumentException("Low watermark of admission lane " + name + " is above its high watermark");
+            }
+            this.name = name;
+            this.highWatermark = highWatermark;
+            this.lowWatermark = lowWatermark;
+        }
+
+        private long depth() {
+            return sampled + Math.max(0, admittedSinceSample.get());
+        }
+
+        /**
+         * 按总积压更新这个通道的拒绝状态
+         */
+        private boolean saturated(long depth) {
+            if (depth >= highWatermark) {
+                saturated = true;
+            } else if (depth <= lowWatermark) {
+                saturated = false;
+            }
+            return saturated;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 消息接收准入控制配置（mq.admission.*）
+ */
+@Data
+public class AdmissionProperties {
+
+    /**
+     * 关闭时只统计积压，不拒绝
+     */
+    private boolean enabled = true;
+
+    /**
+     * default 通道的高水位：积压（PENDING + DISPATCHING）达到后拒绝新消息
+     */
+    private long highWatermark = 10000;
+
+    /**
+     * default 通道的低水位：拒绝后积压降到这里才重新接收
+     */
+    private long lowWatermark = 8000;
+
+    /**
+     * 拒绝时 Retry-After 响应头的秒数
+     */
+    private long retryAfter = 1;
+
+    /**
+     * 从存储中采样积压的间隔（毫秒）
+     */
+    private long sampleInterval = 200;
+
+    /**
+     * 优先级通道，按 contentType 分配，没有配置的 contentType 使用 default 通道；
+     * 水位高的通道在积压更多时才被拒绝，低优先级的消息先被拒绝
+     */
+    private Map<String, LaneProperties> lanes = new LinkedHashMap<>();
+
+    @Data
+    public static class LaneProperties {
+
+        private List<String> contentTypes = new ArrayList<>();
+
+        private long highWatermark;
+
+        private long lowWatermark;
+    }
+}
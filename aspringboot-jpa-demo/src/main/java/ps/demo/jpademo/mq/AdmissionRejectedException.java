@@ -0,0 +1,24 @@
+package ps.demo.jpademo.mq;
+
+/**
+ * 积压超过通道高水位时拒绝接收消息，MessageController 返回 429 和 Retry-After
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String lane;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String lane, long depth, long retryAfterSeconds) {
+        super("Message backlog " + depth + " is above the high watermark of lane " + lane);
+        this.lane = lane;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,20 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 批量发送配置（mq.batch.*）
+ */
+@Data
+public class BatchProperties {
+
+    /**
+     * POST /api/messages/batch 一次最多接收的消息数，超过时整批返回 413
+     */
+    private int maxSize = 10000;
+
+    /**
+     * jpa 存储批量插入时每次 executeBatch 的条数
+     */
+    private int jdbcBatchSize = 500;
+}
@@ -6,7 +6,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/dead-letters")
@@ -14,7 +19,10 @@ import org.springframework.web.bind.annotation.*;
 public class DeadLetterController {
 
     @Autowired
-    private DeadLetterRepository deadLetterRepository;
+    private DeadLetterStore deadLetterStore;
+
+    @Autowired
+    private DeadLetterReplayer deadLetterReplayer;
 
     @GetMapping
     @Operation(summary = "Get all dead letters with pagination")
@@ -22,7 +30,7 @@ public class DeadLetterController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return deadLetterRepository.findAll(pageable);
+        return deadLetterStore.findAll(pageable);
     }
 
     @GetMapping("/by-message-id/{messageId}")
@@ -32,6 +40,86 @@ public class DeadLetterController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return deadLetterRepository.findByMessageId(messageId, pageable);
+        return deadLetterStore.findByMessageId(messageId, pageable);
+    }
+
+    /**
+     * 游标分页，按 (createdAt, id) 排序，深页与首页代价相同；size 为 1 到 1000，count=true 时才统计总数
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Scroll all dead letters by cursor")
+    public KeysetPage<DeadLetterEntity> scrollDeadLetters(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        Window<DeadLetterEntity> window = deadLetterStore.scrollAll(KeysetCursor.decode(cursor, "createdAt"), KeysetCursor.size(size));
+        return KeysetPage.of(window, "createdAt", count ? deadLetterStore.count() : null);
+    }
+
+    @GetMapping("/by-message-id/{messageId}/scroll")
+    @Operation(summary = "Scroll dead letters of a message by cursor")
+    public KeysetPage<DeadLetterEntity> scrollDeadLettersByMessageId(
+            @PathVariable Long messageId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        Window<DeadLetterEntity> window = deadLetterStore.scrollByMessageId(messageId, KeysetCursor.decode(cursor, "createdAt"), KeysetCursor.size(size));
+        return KeysetPage.of(window, "createdAt", count ? deadLetterStore.countByMessageId(messageId) : null);
+    }
+
+    /**
+     * 创建重放任务，按筛选条件流式读取死信重新投递，立即返回任务；进度通过 GET /replays/{id} 查看
+     */
+    @PostMapping("/replays")
+    @Operation(summary = "Start replaying dead letters")
+    public DeadLetterReplayEntity startReplay(@RequestBody DeadLetterReplayRequest request) {
+        try {
+            return deadLetterReplayer.start(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/replays")
+    @Operation(summary = "Get dead letter replays, newest first")
+    public Page<DeadLetterReplayEntity> getReplays(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        return deadLetterReplayer.findAll(PageRequest.of(page, size));
+    }
+
+    @GetMapping("/replays/{id}")
+    @Operation(summary = "Get the progress of a dead letter replay")
+    public DeadLetterReplayEntity getReplay(@PathVariable Long id) {
+        return deadLetterReplayer.find(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Dead letter replay " + id + " does not exist"));
+    }
+
+    @PostMapping("/replays/{id}/pause")
+    @Operation(summary = "Pause a dead letter replay")
+    public DeadLetterReplayEntity pauseReplay(@PathVariable Long id) {
+        return changeReplay(() -> deadLetterReplayer.pause(id));
+    }
+
+    @PostMapping("/replays/{id}/resume")
+    @Operation(summary = "Resume a paused or failed dead letter replay from its checkpoint")
+    public DeadLetterReplayEntity resumeReplay(@PathVariable Long id) {
+        return changeReplay(() -> deadLetterReplayer.resume(id));
+    }
+
+    @PostMapping("/replays/{id}/cancel")
+    @Operation(summary = "Cancel a dead letter replay")
+    public DeadLetterReplayEntity cancelReplay(@PathVariable Long id) {
+        return changeReplay(() -> deadLetterReplayer.cancel(id));
+    }
+
+    private static DeadLetterReplayEntity changeReplay(Supplier<DeadLetterReplayEntity> change) {
+        try {
+            return change.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
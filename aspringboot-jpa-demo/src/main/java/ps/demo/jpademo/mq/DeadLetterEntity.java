@@ -6,7 +6,10 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "dead_letters")
+@Table(name = "dead_letters", indexes = {
+        @Index(name = "idx_dead_letters_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_dead_letters_message_id_created_at", columnList = "message_id, created_at")
+})
 @Getter
 @Setter
 public class DeadLetterEntity {
@@ -18,7 +21,10 @@ public class DeadLetterEntity {
     @Column(nullable = false)
     private Long messageId;
 
-    @Column(nullable = false)
+    /**
+     * 消息级失败（如查询订阅者失败）时为空
+     */
+    @Column
     private Long subscriberId;
 
     @Column(nullable = false)
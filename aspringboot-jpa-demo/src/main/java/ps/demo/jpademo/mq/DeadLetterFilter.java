@@ -0,0 +1,19 @@
+package ps.demo.jpademo.mq;
+
+import java.time.LocalDateTime;
+
+/**
+ * 死信重放的筛选条件，为空的条件不过滤
+ * @param createdFrom 包含
+ * @param createdTo 不包含
+ * @param reason 死信原因包含的文本
+ */
+public record DeadLetterFilter(Long subscriberId, LocalDateTime createdFrom, LocalDateTime createdTo, String reason) {
+
+    public boolean matches(DeadLetterEntity deadLetter) {
+        return (subscriberId == null || subscriberId.equals(deadLetter.getSubscriberId()))
+                && (createdFrom == null || !deadLetter.getCreatedAt().isBefore(createdFrom))
+                && (createdTo == null || deadLetter.getCreatedAt().isBefore(createdTo))
+                && (reason == null || (deadLetter.getReason() != null && deadLetter.getReason().contains(reason)));
+    }
+}
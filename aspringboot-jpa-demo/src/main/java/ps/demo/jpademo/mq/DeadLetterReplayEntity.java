@@ -0,0 +1,118 @@
+package ps.demo.jpademo.mq;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * 一次死信重放任务：筛选条件、限速、并行度、断点和进度
+ * 断点 (cursorCreatedAt, cursorId) 之前（含）的死信都已重放结束，任务中断后从断点之后继续
+ */
+@Entity
+@Table(name = "dead_letter_replays", indexes = {
+        @Index(name = "idx_dead_letter_replays_status_heartbeat_at", columnList = "status, heartbeat_at")
+})
+@Getter
+@Setter
+public class DeadLetterReplayEntity {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String PAUSED = "PAUSED";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String status;
+
+    @Column
+    private Long subscriberId;
+
+    @Column
+    private LocalDateTime createdFrom;
+
+    /**
+     * 不包含；请求中没有指定时为任务创建时间，重放中再次进入死信的不会被同一任务重放
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdTo;
+
+    @Column
+    private String reason;
+
+    /**
+     * 每秒最多重放的死信数
+     */
+    @Column(nullable = false)
+    private Integer rate;
+
+    /**
+     * 同时重放中的最大死信数
+     */
+    @Column(nullable = false)
+    private Integer parallelism;
+
+    @Column
+    private LocalDateTime cursorCreatedAt;
+
+    @Column
+    private Long cursorId;
+
+    /**
+     * 创建时匹配的死信数
+     */
+    @Column(nullable = false)
+    private Long total;
+
+    @Column(nullable = false)
+    private Long delivered;
+
+    /**
+     * 再次投递失败（已安排重试或再次进入死信）
+     */
+    @Column(nullable = false)
+    private Long failed;
+
+    /**
+     * 消息或订阅者已被删除
+     */
+    @Column(nullable = false)
+    private Long skipped;
+
+    /**
+     * 正在执行任务的实例
+     */
+    @Column
+    private String owner;
+
+    /**
+     * 执行实例每次保存断点时更新，超过 stale-timeout 没有更新的 RUNNING 任务由任意实例接管
+     */
+    @Column
+    private LocalDateTime heartbeatAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column
+    private LocalDateTime completedAt;
+
+    /**
+     * 已重放结束的比例（0 - 1），中断恢复后断点之后已重放过的死信会被再次计入
+     */
+    public double getProgress() {
+        long processed = delivered + failed + skipped;
+        return total == 0 ? 1 : Math.min(1, (double) processed / total);
+    }
+}
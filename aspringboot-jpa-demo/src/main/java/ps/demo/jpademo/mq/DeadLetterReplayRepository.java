@@ -0,0 +1,77 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DeadLetterReplayRepository extends JpaRepository<DeadLetterReplayEntity, Long> {
+
+    Page<DeadLetterReplayEntity> findByOrderByIdDesc(Pageable pageable);
+
+    List<DeadLetterReplayEntity> findByStatusAndHeartbeatAtBefore(String status, LocalDateTime before);
+
+    @Query("select r.status from DeadLetterReplayEntity r where r.id = :id")
+    String findStatusById(@Param("id") Long id);
+
+    /**
+     * 接管心跳超时的 RUNNING 任务，多个实例同时接管时只有一个成功
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update DeadLetterReplayEntity r set r.owner = :owner, r.heartbeatAt = :now, r.updatedAt = :now
+            where r.id = :id and r.status = 'RUNNING' and r.heartbeatAt < :staleBefore
+            """)
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * 状态从 from 之一改为 to，owner 不为空时同时接管任务
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update DeadLetterReplayEntity r
+            set r.status = :to, r.owner = coalesce(:owner, r.owner), r.heartbeatAt = :now, r.updatedAt = :now
+            where r.id = :id and r.status in :from
+            """)
+    int transition(@Param("id") Long id, @Param("from") Collection<String> from, @Param("to") String to,
+                   @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    /**
+     * 保存断点和进度，任务已被其他实例接管时不更新
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update DeadLetterReplayEntity r
+            set r.cursorCreatedAt = :#{#job.cursorCreatedAt}, r.cursorId = :#{#job.cursorId},
+                r.delivered = :#{#job.delivered}, r.failed = :#{#job.failed}, r.skipped = :#{#job.skipped},
+                r.heartbeatAt = :#{#job.heartbeatAt}, r.updatedAt = :#{#job.heartbeatAt}
+            where r.id = :#{#job.id} and r.owner = :#{#job.owner}
+            """)
+    int checkpoint(@Param("job") DeadLetterReplayEntity job);
+
+    /**
+     * 执行结束，任务仍为 RUNNING 且属于 owner 时改为 COMPLETED 或 FAILED
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update DeadLetterReplayEntity r
+            set r.status = :status, r.lastError = :lastError, r.completedAt = :now, r.updatedAt = :now
+            where r.id = :id and r.owner = :owner and r.status = 'RUNNING'
+            """)
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("status") String status,
+               @Param("lastError") String lastError, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,21 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 创建死信重放任务，为空的筛选条件不过滤，rate / parallelism 为空时使用 mq.replay 的默认值
+ */
+@Getter
+@Setter
+public class DeadLetterReplayRequest {
+
+    private Long subscriberId;
+    private LocalDateTime createdFrom;
+    private LocalDateTime createdTo;
+    private String reason;
+    private Integer rate;
+    private Integer parallelism;
+}
@@ -0,0 +1,441 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 死信批量重放
+ * - 每个任务一个线程，按 (createdAt, id) 游标从 DeadLetterStore 逐段读取匹配的死信，内存中只有一段（batch-size 条），
+ *   不做 offset 分页也不一次性加载
+ * - 每条死信交给 MessageService 重新投递，经过投递引擎和重试调度；按 rate 限速，同时重放中的不超过 parallelism
+ * - 重放并行结束的顺序不固定，断点只推进到之前全部已结束的死信，按 checkpoint-interval 连同进度和心跳保存到
+ *   dead_letter_replays；实例宕机后心跳超过 stale-timeout 的任务由任意实例从断点接管，断点之后已重放过的死信会再重放一次
+ * - 暂停、取消在下一次保存断点时生效，已开始的重放会等到结束
+ */
+@Slf4j
+public class DeadLetterReplayer implements InitializingBean, DisposableBean, MeterBinder {
+
+    /**
+     * 一条死信的重放结果
+     */
+    public enum Outcome {
+        DELIVERED, FAILED, SKIPPED
+    }
+
+    private final DeadLetterStore deadLetterStore;
+    private final DeadLetterReplayRepository repository;
+    private final MessageService messageService;
+    private final ReplayProperties properties;
+    private final String owner;
+    private final ConcurrentMap<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<Outcome, AtomicLong> replayed = new EnumMap<>(Outcome.class);
+    private final ScheduledExecutorService scheduler;
+
+    public DeadLetterReplayer(DeadLetterStore deadLetterStore, DeadLetterReplayRepository repository,
+                              MessageService messageService, ReplayProperties properties) {
+        this.deadLetterStore = deadLetterStore;
+        this.repository = repository;
+        this.messageService = messageService;
+        this.properties = properties;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        for (Outcome outcome : Outcome.values()) {
+            replayed.put(outcome, new AtomicLong());
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mq-replay-"));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long interval = Math.max(properties.getCheckpointInterval(), properties.getStaleTimeout() / 2);
+        scheduler.scheduleWithFixedDelay(this::takeOverStaleJobs, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 创建并开始一个重放任务；没有指定 createdTo 时只重放创建之前进入死信的
+     * @throws IllegalArgumentException rate 或 parallelism 超出范围
+     */
+    public DeadLetterReplayEntity start(DeadLetterReplayRequest request) {
+        int rate = request.getRate() != null ? request.getRate() : properties.getRate();
+        int parallelism = request.getParallelism() != null ? request.getParallelism() : properties.getParallelism();
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Replay rate must be positive");
+        }
+        if (parallelism <= 0 || parallelism > properties.getMaxParallelism()) {
+            throw new IllegalArgumentException("Replay parallelism must be between 1 and " + properties.getMaxParallelism());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        DeadLetterReplayEntity job = new DeadLetterReplayEntity();
+        job.setStatus(DeadLetterReplayEntity.RUNNING);
+        job.setSubscriberId(request.getSubscriberId());
+        job.setCreatedFrom(request.getCreatedFrom());
+        job.setCreatedTo(request.getCreatedTo() != null && request.getCreatedTo().isBefore(now) ? request.getCreatedTo() : now);
+        job.setReason(request.getReason());
+        job.setRate(rate);
+        job.setParallelism(parallelism);
+        job.setTotal(deadLetterStore.countByFilter(filterOf(job)));
+        job.setDelivered(0L);
+        job.setFailed(0L);
+        job.setSkipped(0L);
+        job.setOwner(owner);
+        job.setHeartbeatAt(now);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        job = repository.save(job);
+        log.info("Starting dead letter replay {} - dead letters: {}, rate: {}/s, parallelism: {}",
+                job.getId(), job.getTotal(), rate, parallelism);
+        launch(job);
+        return job;
+    }
+
+    /**
+     * @throws IllegalStateException 任务不是 RUNNING
+     */
+    public DeadLetterReplayEntity pause(Long id) {
+        return transition(id, List.of(DeadLetterReplayEntity.RUNNING), DeadLetterReplayEntity.PAUSED, null);
+    }
+
+    /**
+     * 从断点继续暂停或失败的任务，由本实例执行
+     * @throws IllegalStateException 任务不是 PAUSED 或 FAILED，或本实例上一次执行还没有停下
+     */
+    public DeadLetterReplayEntity resume(Long id) {
+        if (jobs.containsKey(id)) {
+            throw new IllegalStateException("Dead letter replay " + id + " is still stopping");
+        }
+        DeadLetterReplayEntity job = transition(id, List.of(DeadLetterReplayEntity.PAUSED, DeadLetterReplayEntity.FAILED),
+                DeadLetterReplayEntity.RUNNING, owner);
+        launch(job);
+        return job;
+    }
+
+    /**
+     * @throws IllegalStateException 任务不是 RUNNING 或 PAUSED
+     */
+    public DeadLetterReplayEntity cancel(Long id) {
+        return transition(id, List.of(DeadLetterReplayEntity.RUNNING, DeadLetterReplayEntity.PAUSED),
+                DeadLetterReplayEntity.CANCELLED, null);
+    }
+
+    public Optional<DeadLetterReplayEntity> find(Long id) {
+        return repository.findById(id);
+    }
+
+    public Page<DeadLetterReplayEntity> findAll(Pageable pageable) {
+        return repository.findByOrderByIdDesc(pageable);
+    }
+
+    /**
+     * 本实例正在执行的任务数
+     */
+    public int getRunning() {
+        return jobs.size();
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mq.replay.running", jobs, Map::size)
+                .description("Dead letter replays running on this instance")
+                .register(registry);
+        replayed.forEach((outcome, count) -> FunctionCounter.builder("mq.replay.replayed", count, AtomicLong::get)
+                .description("Dead letters replayed by this instance")
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(registry));
+    }
+
+    /**
+     * 停止本实例上的任务，任务保持 RUNNING，心跳超时后由其他实例或重启后的本实例从断点接管
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        scheduler.shutdownNow();
+        jobs.values().forEach(job -> job.stopped = true);
+        for (Job job : jobs.values()) {
+            job.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * 接管心跳超时的任务
+     */
+    void takeOverStaleJobs() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime staleBefore = now.minusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getStaleTimeout()));
+            for (DeadLetterReplayEntity job : repository.findByStatusAndHeartbeatAtBefore(DeadLetterReplayEntity.RUNNING, staleBefore)) {
+                if (!jobs.containsKey(job.getId()) && repository.claim(job.getId(), owner, now, staleBefore) == 1) {
+                    log.warn("Taking over dead letter replay {} from {} - last heartbeat: {}, cursor id: {}",
+                            job.getId(), job.getOwner(), job.getHeartbeatAt(), job.getCursorId());
+                    job.setOwner(owner);
+                    job.setHeartbeatAt(now);
+                    launch(job);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to take over stale dead letter replays", e);
+        }
+    }
+
+    private DeadLetterReplayEntity transition(Long id, List<String> from, String to, String newOwner) {
+        if (repository.transition(id, from, to, newOwner, LocalDateTime.now()) == 0) {
+            String status = repository.findStatusById(id);
+            throw status == null
+                    ? new IllegalArgumentException("Dead letter replay " + id + " does not exist")
+                    : new IllegalStateException("Dead letter replay " + id + " is " + status + ", expected one of " + from);
+        }
+        Job job = jobs.get(id);
+        if (job != null && !DeadLetterReplayEntity.RUNNING.equals(to)) {
+            job.stopped = true;
+        }
+        log.info("Dead letter replay {} is now {}", id, to);
+        return repository.findById(id).orElseThrow();
+    }
+
+    private void launch(DeadLetterReplayEntity state) {
+        Job job = new Job(state);
+        if (jobs.putIfAbsent(state.getId(), job) != null) {
+            throw new IllegalStateException("Dead letter replay " + state.getId() + " is already running");
+        }
+        job.thread.start();
+    }
+
+    private static DeadLetterFilter filterOf(DeadLetterReplayEntity job) {
+        return new DeadLetterFilter(job.getSubscriberId(), job.getCreatedFrom(), job.getCreatedTo(), job.getReason());
+    }
+
+    /**
+     * 已开始重放的死信，按读取顺序排队，前面的都结束后才推进断点
+     */
+    private static final class Pending {
+
+        private final LocalDateTime createdAt;
+        private final Long id;
+        private boolean done;
+
+        private Pending(LocalDateTime createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+    }
+
+    private final class Job {
+
+        private final DeadLetterReplayEntity state;
+        private final DeadLetterFilter filter;
+        private final Semaphore permits;
+        private final long intervalNanos;
+        private final Deque<Pending> pending = new ArrayDeque<>();
+        private final AtomicLong delivered;
+        private final AtomicLong failed;
+        private final AtomicLong skipped;
+        private final Thread thread;
+
+        private volatile boolean stopped;
+        private LocalDateTime cursorCreatedAt;
+        private Long cursorId;
+        private long nextPermitNanos;
+        private long lastCheckpointNanos;
+
+        private Job(DeadLetterReplayEntity state) {
+            this.state = state;
+            this.filter = filterOf(state);
+            this.permits = new Semaphore(state.getParallelism());
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / state.getRate();
+            this.delivered = new AtomicLong(state.getDelivered());
+            this.failed = new AtomicLong(state.getFailed());
+            this.skipped = new AtomicLong(state.getSkipped());
+            this.cursorCreatedAt = state.getCursorCreatedAt();
+            this.cursorId = state.getCursorId();
+            this.thread = new Thread(this::run, "mq-replay-" + state.getId());
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            lastCheckpointNanos = System.nanoTime();
+            nextPermitNanos = System.nanoTime();
+            try {
+                KeysetScrollPosition position = cursorId == null ? ScrollPosition.keyset()
+                        : KeysetCursor.of("createdAt", cursorCreatedAt, cursorId);
+                boolean more = true;
+                while (more && !stopped) {
+                    Window<DeadLetterEntity> window = deadLetterStore.scrollByFilter(filter, position, properties.getBatchSize());
+                    for (DeadLetterEntity deadLetter : window) {
+                        if (!acquire()) {
+                            break;
+                        }
+                        replay(deadLetter);
+                    }
+                    more = window.hasNext();
+                    if (!window.isEmpty()) {
+                        position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+                    }
+                }
+                drain();
+                checkpoint();
+                if (!stopped) {
+                    repository.finish(state.getId(), owner, DeadLetterReplayEntity.COMPLETED, null, LocalDateTime.now());
+                    log.info("Dead letter replay {} completed - delivered: {}, failed: {}, skipped: {}",
+                            state.getId(), delivered.get(), failed.get(), skipped.get());
+                } else {
+                    log.info("Dead letter replay {} stopped at cursor id {}", state.getId(), cursorId);
+                }
+            } catch (Exception e) {
+                log.error("Dead letter replay {} failed at cursor id {}", state.getId(), cursorId, e);
+                try {
+                    drain();
+                    checkpoint();
+                    repository.finish(state.getId(), owner, DeadLetterReplayEntity.FAILED, truncate(e.toString()),
+                            LocalDateTime.now());
+                } catch (Exception suppressed) {
+                    log.error("Failed to save the state of dead letter replay {}", state.getId(), suppressed);
+                }
+            } finally {
+                jobs.remove(state.getId(), this);
+            }
+        }
+
+        /**
+         * 等待并行度许可和限速间隔，等待期间按时保存断点
+         * @return 任务已停止时为 false
+         */
+        private boolean acquire() throws InterruptedException {
+            while (!stopped) {
+                checkpointIfDue();
+                if (permits.tryAcquire(properties.getCheckpointInterval(), TimeUnit.MILLISECONDS)) {
+                    long now = System.nanoTime();
+                    if (nextPermitNanos > now) {
+                        LockSupport.parkNanos(this, nextPermitNanos - now);
+                    }
+                    nextPermitNanos = Math.max(nextPermitNanos, now) + intervalNanos;
+                    if (stopped) {
+                        permits.release();
+                        return false;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void replay(DeadLetterEntity deadLetter) {
+            Pending item = new Pending(deadLetter.getCreatedAt(), deadLetter.getId());
+            synchronized (pending) {
+                pending.addLast(item);
+            }
+            CompletableFuture<Outcome> replay;
+            try {
+                replay = messageService.replay(deadLetter);
+            } catch (RuntimeException e) {
+                replay = CompletableFuture.failedFuture(e);
+            }
+            replay.whenComplete((result, failure) -> {
+                Outcome outcome = result;
+                if (failure != null) {
+                    log.warn("Failed to replay dead letter {} - messageId: {}", deadLetter.getId(), deadLetter.getMessageId(), failure);
+                    outcome = Outcome.FAILED;
+                }
+                switch (outcome) {
+                    case DELIVERED -> delivered.incrementAndGet();
+                    case FAILED -> failed.incrementAndGet();
+                    case SKIPPED -> skipped.incrementAndGet();
+                }
+                replayed.get(outcome).incrementAndGet();
+                settle(item);
+                permits.release();
+            });
+        }
+
+        /**
+         * 标记结束，断点推进到最前面连续已结束的死信
+         */
+        private void settle(Pending item) {
+            synchronized (pending) {
+                item.done = true;
+                while (!pending.isEmpty() && pending.peekFirst().done) {
+                    Pending head = pending.pollFirst();
+                    cursorCreatedAt = head.createdAt;
+                    cursorId = head.id;
+                }
+            }
+        }
+
+        /**
+         * 等待已开始的重放全部结束
+         */
+        private void drain() throws InterruptedException {
+            int parallelism = state.getParallelism();
+            while (!permits.tryAcquire(parallelism, properties.getCheckpointInterval(), TimeUnit.MILLISECONDS)) {
+                checkpointIfDue();
+            }
+            permits.release(parallelism);
+        }
+
+        /**
+         * 保存断点，并检查任务是否已被暂停、取消或接管
+         */
+        private void checkpointIfDue() {
+            if (System.nanoTime() - lastCheckpointNanos < TimeUnit.MILLISECONDS.toNanos(properties.getCheckpointInterval())) {
+                return;
+            }
+            checkpoint();
+            String status = repository.findStatusById(state.getId());
+            if (!stopped && !DeadLetterReplayEntity.RUNNING.equals(status)) {
+                log.info("Dead letter replay {} is {}, stopping", state.getId(), status);
+                stopped = true;
+            }
+        }
+
+        private void checkpoint() {
+            lastCheckpointNanos = System.nanoTime();
+            synchronized (pending) {
+                state.setCursorCreatedAt(cursorCreatedAt);
+                state.setCursorId(cursorId);
+            }
+            state.setDelivered(delivered.get());
+            state.setFailed(failed.get());
+            state.setSkipped(skipped.get());
+            state.setHeartbeatAt(LocalDateTime.now());
+            if (repository.checkpoint(state) == 0 && !stopped) {
+                log.warn("Dead letter replay {} was taken over by another instance, stopping", state.getId());
+                stopped = true;
+            }
+        }
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
@@ -1,12 +1,66 @@
 package ps.demo.jpademo.mq;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
 public interface DeadLetterRepository extends JpaRepository<DeadLetterEntity, Long> {
 
     Page<DeadLetterEntity> findByMessageId(Long messageId, Pageable pageable);
+
+    /**
+     * 游标分页，走 idx_dead_letters_created_at_id
+     */
+    Window<DeadLetterEntity> findByOrderByCreatedAtAscIdAsc(ScrollPosition position, Limit limit);
+
+    /**
+     * 游标分页，走 idx_dead_letters_message_id_created_at
+     */
+    Window<DeadLetterEntity> findByMessageIdOrderByCreatedAtAscIdAsc(Long messageId, ScrollPosition position, Limit limit);
+
+    long countByMessageId(Long messageId);
+
+    /**
+     * 死信重放按条件逐段读取，(createdAt, id) 在 after 之后，after 为空时从头开始；走 idx_dead_letters_created_at_id
+     * @param reason like 模式，为空时不过滤
+     */
+    @Query("""
+            select d from DeadLetterEntity d
+            where (:subscriberId is null or d.subscriberId = :subscriberId)
+              and (:createdFrom is null or d.createdAt >= :createdFrom)
+              and (:createdTo is null or d.createdAt < :createdTo)
+              and (:reason is null or d.reason like :reason)
+              and (:afterCreatedAt is null or d.createdAt > :afterCreatedAt
+                   or (d.createdAt = :afterCreatedAt and d.id > :afterId))
+            order by d.createdAt, d.id
+            """)
+    List<DeadLetterEntity> findByFilterAfter(@Param("subscriberId") Long subscriberId,
+                                             @Param("createdFrom") LocalDateTime createdFrom,
+                                             @Param("createdTo") LocalDateTime createdTo,
+                                             @Param("reason") String reason,
+                                             @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                             @Param("afterId") Long afterId,
+                                             Pageable pageable);
+
+    @Query("""
+            select count(d) from DeadLetterEntity d
+            where (:subscriberId is null or d.subscriberId = :subscriberId)
+              and (:createdFrom is null or d.createdAt >= :createdFrom)
+              and (:createdTo is null or d.createdAt < :createdTo)
+              and (:reason is null or d.reason like :reason)
+            """)
+    long countByFilter(@Param("subscriberId") Long subscriberId,
+                       @Param("createdFrom") LocalDateTime createdFrom,
+                       @Param("createdTo") LocalDateTime createdTo,
+                       @Param("reason") String reason);
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+
+/**
+ * 死信存储 SPI，mq.storage.type=jpa（默认）时为 JpaDeadLetterStore，log 时为 LogDeadLetterStore
+ */
+public interface DeadLetterStore {
+
+    DeadLetterEntity save(DeadLetterEntity deadLetter);
+
+    Page<DeadLetterEntity> findAll(Pageable pageable);
+
+    Page<DeadLetterEntity> findByMessageId(Long messageId, Pageable pageable);
+
+    /**
+     * 按 (createdAt, id) 从游标之后读取最多 limit 条，不统计总数，读取代价与游标的深度无关
+     */
+    Window<DeadLetterEntity> scrollAll(KeysetScrollPosition position, int limit);
+
+    Window<DeadLetterEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit);
+
+    long count();
+
+    long countByMessageId(Long messageId);
+
+    /**
+     * 按条件、按 (createdAt, id) 从游标之后读取最多 limit 条，死信重放用它逐段读完全部匹配的死信
+     */
+    Window<DeadLetterEntity> scrollByFilter(DeadLetterFilter filter, KeysetScrollPosition position, int limit);
+
+    long countByFilter(DeadLetterFilter filter);
+}
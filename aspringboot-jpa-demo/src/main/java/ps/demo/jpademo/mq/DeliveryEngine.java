@@ -0,0 +1,175 @@
+package ps.demo.jpademo.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.*;
+
+/**
+ * 消息投递引擎
+ * - 每次投递在独立的投递线程中执行（Java 21 上为虚拟线程，否则为专用线程池），不占用公共 ForkJoinPool，
+ *   阻塞的推送不会拖慢 JVM 中其他 parallelStream / CompletableFuture 默认任务
+ * - 每个订阅者一个信号量，同一订阅者同时进行的投递数不超过 max-concurrency-per-subscriber，
+ *   一个慢订阅者只会占满自己的许可，不影响其他订阅者
+ * - 每次投递有超时，超时后中断投递线程（等待许可或阻塞在推送中）并以 TimeoutException 结束
+ */
+@Slf4j
+public class DeliveryEngine implements DisposableBean {
+
+    /**
+     * 一次推送
+     */
+    @FunctionalInterface
+    public interface PushTask {
+        void push() throws Exception;
+    }
+
+    private final DeliveryProperties properties;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final ConcurrentMap<Long, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public DeliveryEngine(DeliveryProperties properties) {
+        this.properties = properties;
+        this.executor = createExecutor(properties);
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mq-delivery-timeout-"));
+    }
+
+    /**
+     * 异步投递给订阅者
+     * @param subscriberId 用于并发限制的订阅者，null 表示不限制
+     * @return 推送成功时正常完成；推送抛出异常、超时或被拒绝时异常完成
+     */
+    public CompletableFuture<Void> deliver(Long subscriberId, PushTask task) {
+        Delivery delivery = new Delivery(subscriberId, task);
+        try {
+            executor.execute(delivery);
+        } catch (RejectedExecutionException e) {
+            delivery.completeExceptionally(e);
+            return delivery;
+        }
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(delivery::timeout, properties.getTimeout(), TimeUnit.MILLISECONDS);
+        delivery.whenComplete((ignored, e) -> timeout.cancel(false));
+        return delivery;
+    }
+
+    /**
+     * 订阅者当前可用的并发许可数
+     */
+    public int availablePermits(Long subscriberId) {
+        Semaphore semaphore = permits.get(subscriberId);
+        return semaphore != null ? semaphore.availablePermits() : properties.getMaxConcurrencyPerSubscriber();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(properties.getTimeout(), TimeUnit.MILLISECONDS)) {
+            log.warn("Delivery engine did not terminate within {} ms, interrupting deliveries", properties.getTimeout());
+            executor.shutdownNow();
+        }
+        timeoutScheduler.shutdownNow();
+    }
+
+    private Semaphore permitsOf(Long subscriberId) {
+        return permits.computeIfAbsent(subscriberId, id -> new Semaphore(properties.getMaxConcurrencyPerSubscriber()));
+    }
+
+    private static ExecutorService createExecutor(DeliveryProperties properties) {
+        if ("virtual".equalsIgnoreCase(properties.getExecutor())) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                log.info("Delivery engine using virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads not available on Java {}, delivery engine falling back to a platform thread pool",
+                        Runtime.version().feature());
+            }
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("mq-delivery-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        log.info("Delivery engine using a platform thread pool - size: {}", properties.getPoolSize());
+        return executor;
+    }
+
+    /**
+     * 一次投递，自身即结果
+     * 投递线程只在执行期间登记，超时中断只作用于仍在执行这次投递的线程，不会误中断线程池中之后的任务
+     */
+    private final class Delivery extends CompletableFuture<Void> implements Runnable {
+
+        private final Long subscriberId;
+        private final PushTask task;
+        private Thread worker;
+        private boolean timedOut;
+
+        private Delivery(Long subscriberId, PushTask task) {
+            this.subscriberId = subscriberId;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    // 排队期间已超时
+                    return;
+                }
+                worker = Thread.currentThread();
+            }
+            Semaphore semaphore = subscriberId != null ? permitsOf(subscriberId) : null;
+            boolean acquired = false;
+            Exception failure = null;
+            try {
+                if (semaphore != null) {
+                    semaphore.acquire();
+                    acquired = true;
+                }
+                task.push();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                if (acquired) {
+                    semaphore.release();
+                }
+                synchronized (this) {
+                    worker = null;
+                    if (timedOut) {
+                        failure = timeoutException();
+                    }
+                }
+                // 清除超时中断留下的中断状态
+                Thread.interrupted();
+            }
+            // 先释放许可再完成，后续阶段不占用这次投递的许可
+            if (failure != null) {
+                completeExceptionally(failure);
+            } else {
+                complete(null);
+            }
+        }
+
+        private void timeout() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                timedOut = true;
+                if (worker != null) {
+                    // 不响应中断的推送会一直占用许可直到返回，但调用方按时得到超时结果
+                    worker.interrupt();
+                }
+            }
+            completeExceptionally(timeoutException());
+        }
+
+        private TimeoutException timeoutException() {
+            return new TimeoutException("Delivery to subscriber " + subscriberId + " timed out after "
+                    + properties.getTimeout() + " ms");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按订阅者和 contentType 统计投递指标
+ * - mq.delivery.latency：消息接收到投递给订阅者的时间，含排队、有序通道等待和重试退避
+ * - mq.delivery.attempt：单次推送的耗时，mq.delivery.attempt.failures 为失败的推送次数（含投递引擎拒绝）
+ * - mq.delivery.retries：投递结束（成功或进入死信）时用掉的重试次数
+ * - mq.delivery.delivered / mq.delivery.dead.letters：投递成功和进入死信的次数，两者之比就是死信率
+ * 百分位由 Micrometer 在本地按 window 滚动统计（底层为 HdrHistogram），
+ * /actuator/mqdelivery 直接读取，不查数据库就能找到慢的订阅者
+ */
+public class DeliveryMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+    private final MetricsProperties properties;
+    private final Map<Key, Meters> meters = new ConcurrentHashMap<>();
+
+    public DeliveryMetrics(MeterRegistry registry, MetricsProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    /**
+     * 记录一次推送的耗时
+     */
+    public void recordAttempt(SubscriberEntity subscriber, String contentType, long durationNanos) {
+        meters(subscriber, contentType).attempt.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailedAttempt(SubscriberEntity subscriber, String contentType) {
+        meters(subscriber, contentType).failedAttempts.increment();
+    }
+
+    /**
+     * 投递成功
+     * @param createdAt 消息接收时间，为空时不记录接收到投递的时间
+     * @param retries 成功前的重试次数
+     */
+    public void recordDelivered(SubscriberEntity subscriber, String contentType, LocalDateTime createdAt, int retries) {
+        Meters m = meters(subscriber, contentType);
+        if (createdAt != null) {
+            Duration latency = Duration.between(createdAt, LocalDateTime.now());
+            if (!latency.isNegative()) {
+                m.latency.record(latency);
+            }
+        }
+        m.retries.record(retries);
+        m.delivered.increment();
+    }
+
+    /**
+     * 重试次数用完，进入死信
+     */
+    public void recordDeadLetter(SubscriberEntity subscriber, String contentType, int retries) {
+        Meters m = meters(subscriber, contentType);
+        m.retries.record(retries);
+        m.deadLetters.increment();
+    }
+
+    /**
+     * 每个订阅者和 contentType 的投递摘要，按接收到投递 p99 从慢到快排序
+     */
+    public List<SubscriberSummary> summaries() {
+        return meters.entrySet().stream()
+                .map(entry -> summary(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingDouble((SubscriberSummary s) -> s.latency().p99()).reversed()
+                        .thenComparing(Comparator.comparingDouble(SubscriberSummary::deadLetterRate).reversed()))
+                .toList();
+    }
+
+    public MetricsProperties getProperties() {
+        return properties;
+    }
+
+    private SubscriberSummary summary(Key key, Meters m) {
+        long delivered = (long) m.delivered.count();
+        long deadLetters = (long) m.deadLetters.count();
+        long finished = delivered + deadLetters;
+        Percentiles latency = percentiles(m.latency.takeSnapshot());
+        HistogramSnapshot retries = m.retries.takeSnapshot();
+        return new SubscriberSummary(key.subscriberId(), key.subscriber(), key.contentType(),
+                delivered, deadLetters, (long) m.failedAttempts.count(),
+                finished == 0 ? 0 : (double) deadLetters / finished,
+                retries.count() == 0 ? 0 : retries.total() / retries.count(),
+                latency, percentiles(m.attempt.takeSnapshot()),
+                latency.p99() <= properties.getLatencyObjective());
+    }
+
+    private static Percentiles percentiles(HistogramSnapshot snapshot) {
+        double[] values = new double[PERCENTILES.length];
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (value.percentile() == PERCENTILES[i]) {
+                    values[i] = value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        return new Percentiles(values[0], values[1], values[2], snapshot.max(TimeUnit.MILLISECONDS));
+    }
+
+    private Meters meters(SubscriberEntity subscriber, String contentType) {
+        return meters.computeIfAbsent(new Key(subscriber.getId(), subscriber.getName(),
+                contentType != null ? contentType : "none"), this::register);
+    }
+
+    private Meters register(Key key) {
+        Tags tags = Tags.of("subscriber", key.subscriber() != null ? key.subscriber() : String.valueOf(key.subscriberId()),
+                "content.type", key.contentType());
+        Duration window = Duration.ofMillis(properties.getWindow());
+        return new Meters(
+                Timer.builder("mq.delivery.latency")
+                        .description("Time from accepting a message to delivering it to the subscriber")
+                        .tags(tags)
+                        .publishPercentiles(PERCENTILES)
+                        .percentilePrecision(2)
+                        .publishPercentileHistogram(properties.isPercentileHistogram())
+                        .distributionStatisticExpiry(window)
+                        .distributionStatisticBufferLength(properties.getBuffers())
+                        .register(registry),
+                Timer.builder("mq.delivery.attempt")
+                        .description("Duration of a single push to the subscriber")
+                        .tags(tags)
+                        .publishPercentiles(PERCENTILES)
+                        .percentilePrecision(2)
+                        .publishPercentileHistogram(properties.isPercentileHistogram())
+                        .distributionStatisticExpiry(window)
+                        .distributionStatisticBufferLength(properties.getBuffers())
+                        .register(registry),
+                DistributionSummary.builder("mq.delivery.retries")
+                        .description("Retries used by a delivery that was delivered or dead-lettered")
+                        .tags(tags)
+                        .distributionStatisticExpiry(window)
+                        .distributionStatisticBufferLength(properties.getBuffers())
+                        .register(registry),
+                Counter.builder("mq.delivery.delivered")
+                        .description("Deliveries to the subscriber that succeeded")
+                        .tags(tags)
+                        .register(registry),
+                Counter.builder("mq.delivery.dead.letters")
+                        .description("Deliveries to the subscriber that ran out of retries")
+                        .tags(tags)
+                        .register(registry),
+                Counter.builder("mq.delivery.attempt.failures")
+                        .description("Pushes to the subscriber that failed or were rejected by the delivery engine")
+                        .tags(tags)
+                        .register(registry));
+    }
+
+    /**
+     * 毫秒
+     */
+    public record Percentiles(double p50, double p99, double p999, double max) {
+    }
+
+    /**
+     * @param delivered 启动以来投递成功的次数
+     * @param deadLetters 启动以来进入死信的次数
+     * @param deadLetterRate 死信 / (成功 + 死信)
+     * @param retriesPerDelivery 每次投递结束时平均用掉的重试次数
+     * @param latency 滚动窗口内接收到投递的时间
+     * @param attempt 滚动窗口内单次推送的耗时
+     * @param withinObjective latency p99 不超过 latency-objective
+     */
+    public record SubscriberSummary(Long subscriberId, String subscriber, String contentType,
+                                    long delivered, long deadLetters, long failedAttempts, double deadLetterRate,
+                                    double retriesPerDelivery, Percentiles latency, Percentiles attempt,
+                                    boolean withinObjective) {
+    }
+
+    private record Key(Long subscriberId, String subscriber, String contentType) {
+    }
+
+    private record Meters(Timer latency, Timer attempt, DistributionSummary retries,
+                          Counter delivered, Counter deadLetters, Counter failedAttempts) {
+    }
+}
@@ -0,0 +1,43 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/mqdelivery：按订阅者和 contentType 汇总滚动窗口内的投递 p50/p99/p999，最慢的排在最前；
+ * /actuator/mqdelivery/{subscriber} 只看一个订阅者
+ */
+@Endpoint(id = "mqdelivery")
+public class DeliveryMetricsEndpoint {
+
+    private final DeliveryMetrics deliveryMetrics;
+
+    public DeliveryMetricsEndpoint(DeliveryMetrics deliveryMetrics) {
+        this.deliveryMetrics = deliveryMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> summary() {
+        return summary(deliveryMetrics.summaries());
+    }
+
+    @ReadOperation
+    public Map<String, Object> subscriber(@Selector String subscriber) {
+        return summary(deliveryMetrics.summaries().stream()
+                .filter(s -> subscriber.equals(s.subscriber()) || subscriber.equals(String.valueOf(s.subscriberId())))
+                .toList());
+    }
+
+    private Map<String, Object> summary(List<DeliveryMetrics.SubscriberSummary> summaries) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowMillis", deliveryMetrics.getProperties().getWindow());
+        result.put("latencyObjectiveMillis", deliveryMetrics.getProperties().getLatencyObjective());
+        result.put("subscribers", summaries);
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 消息投递引擎配置（mq.delivery.*）
+ */
+@Data
+public class DeliveryProperties {
+
+    /**
+     * 投递线程：virtual（每次投递一个虚拟线程，需要 Java 21，低版本自动退回 platform）, platform（固定大小线程池）
+     */
+    private String executor = "virtual";
+
+    /**
+     * platform 线程池大小
+     */
+    private int poolSize = 64;
+
+    /**
+     * platform 线程池队列容量，队列满时投递直接失败
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每个订阅者同时进行的最大投递数
+     */
+    private int maxConcurrencyPerSubscriber = 4;
+
+    /**
+     * 单次投递超时（毫秒），从提交开始计算，包括排队和等待订阅者并发许可的时间
+     */
+    private long timeout = 5000;
+}
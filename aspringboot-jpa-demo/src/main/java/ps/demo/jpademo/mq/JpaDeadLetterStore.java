@@ -0,0 +1,81 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 基于 dead_letters 表的死信存储
+ */
+public class JpaDeadLetterStore implements DeadLetterStore {
+
+    private final DeadLetterRepository deadLetterRepository;
+
+    public JpaDeadLetterStore(DeadLetterRepository deadLetterRepository) {
+        this.deadLetterRepository = deadLetterRepository;
+    }
+
+    @Override
+    public DeadLetterEntity save(DeadLetterEntity deadLetter) {
+        return deadLetterRepository.save(deadLetter);
+    }
+
+    @Override
+    public Page<DeadLetterEntity> findAll(Pageable pageable) {
+        return deadLetterRepository.findAll(pageable);
+    }
+
+    @Override
+    public Page<DeadLetterEntity> findByMessageId(Long messageId, Pageable pageable) {
+        return deadLetterRepository.findByMessageId(messageId, pageable);
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollAll(KeysetScrollPosition position, int limit) {
+        return deadLetterRepository.findByOrderByCreatedAtAscIdAsc(position, Limit.of(limit));
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit) {
+        return deadLetterRepository.findByMessageIdOrderByCreatedAtAscIdAsc(messageId, position, Limit.of(limit));
+    }
+
+    @Override
+    public long count() {
+        return deadLetterRepository.count();
+    }
+
+    @Override
+    public long countByMessageId(Long messageId) {
+        return deadLetterRepository.countByMessageId(messageId);
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollByFilter(DeadLetterFilter filter, KeysetScrollPosition position, int limit) {
+        LocalDateTime afterCreatedAt = position.isInitial() ? null : (LocalDateTime) position.getKeys().get("createdAt");
+        Long afterId = position.isInitial() ? null : ((Number) position.getKeys().get("id")).longValue();
+        // 多读一条判断是否还有下一段
+        List<DeadLetterEntity> content = deadLetterRepository.findByFilterAfter(filter.subscriberId(), filter.createdFrom(),
+                filter.createdTo(), reasonPattern(filter), afterCreatedAt, afterId, PageRequest.ofSize(limit + 1));
+        boolean hasNext = content.size() > limit;
+        List<DeadLetterEntity> window = hasNext ? content.subList(0, limit) : content;
+        return Window.from(window, index -> KeysetCursor.of("createdAt", window.get(index).getCreatedAt(),
+                window.get(index).getId()), hasNext);
+    }
+
+    @Override
+    public long countByFilter(DeadLetterFilter filter) {
+        return deadLetterRepository.countByFilter(filter.subscriberId(), filter.createdFrom(), filter.createdTo(),
+                reasonPattern(filter));
+    }
+
+    private static String reasonPattern(DeadLetterFilter filter) {
+        return filter.reason() == null ? null : "%" + filter.reason() + "%";
+    }
+}
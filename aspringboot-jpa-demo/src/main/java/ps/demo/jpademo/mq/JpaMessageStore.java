@@ -0,0 +1,113 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 基于 messages 表的消息存储，认领用带 status = 'PENDING' 条件的 update，多个实例可以共享
+ * MessageEntity 的主键是 IDENTITY，Hibernate 无法批量插入，saveAll 绕过 JPA 用 JDBC 批量插入并读回生成的 id
+ */
+public class JpaMessageStore implements MessageStore {
+
+    static final String INSERT_SQL = "insert into messages (content, recipient, content_type, status, retry_count, "
+            + "max_retry_count, ordered, partition_key, created_at, created_by, updated_at, updated_by) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final MessageRepository messageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int jdbcBatchSize;
+
+    public JpaMessageStore(MessageRepository messageRepository, JdbcTemplate jdbcTemplate, int jdbcBatchSize) {
+        this.messageRepository = messageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
+    @Override
+    public MessageEntity save(MessageEntity message) {
+        return messageRepository.save(message);
+    }
+
+    @Override
+    public List<MessageEntity> saveAll(List<MessageEntity> messages) {
+        if (messages.isEmpty()) {
+            return messages;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"})) {
+                for (int from = 0; from < messages.size(); from += jdbcBatchSize) {
+                    List<MessageEntity> chunk = messages.subList(from, Math.min(from + jdbcBatchSize, messages.size()));
+                    for (MessageEntity message : chunk) {
+                        setValues(ps, message);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (MessageEntity message : chunk) {
+                            if (!keys.next()) {
+                                throw new SQLException("Missing generated id for batch inserted message");
+                            }
+                            message.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+        return messages;
+    }
+
+    @Override
+    public Optional<MessageEntity> findById(Long id) {
+        return messageRepository.findById(id);
+    }
+
+    @Override
+    public List<MessageEntity> claimPending(String owner, int limit) {
+        List<Long> ids = messageRepository.findIdsByStatus("PENDING", PageRequest.of(0, limit));
+        if (ids.isEmpty() || messageRepository.claim(ids, owner, LocalDateTime.now()) == 0) {
+            return List.of();
+        }
+        return messageRepository.findByIdInAndClaimedByAndStatusOrderById(ids, owner, "DISPATCHING");
+    }
+
+    @Override
+    public int releaseExpiredClaims(LocalDateTime before) {
+        return messageRepository.releaseExpiredClaims(before);
+    }
+
+    private static void setValues(PreparedStatement ps, MessageEntity message) throws SQLException {
+        ps.setString(1, message.getContent());
+        ps.setString(2, message.getRecipient());
+        ps.setString(3, message.getContentType());
+        ps.setString(4, message.getStatus());
+        ps.setInt(5, message.getRetryCount());
+        ps.setInt(6, message.getMaxRetryCount());
+        ps.setBoolean(7, message.getOrdered());
+        ps.setString(8, message.getPartitionKey());
+        ps.setTimestamp(9, Timestamp.valueOf(message.getCreatedAt()));
+        ps.setString(10, message.getCreatedBy());
+        ps.setTimestamp(11, Timestamp.valueOf(message.getUpdatedAt()));
+        ps.setString(12, message.getUpdatedBy());
+    }
+
+    @Override
+    public Map<String, Long> countBacklog() {
+        Map<String, Long> backlog = new HashMap<>();
+        for (Object[] row : messageRepository.countBacklogByContentType()) {
+            backlog.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return backlog;
+    }
+}
@@ -0,0 +1,71 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+
+/**
+ * 基于 tracking 表的投递跟踪存储，写入经 TrackingWriter 异步批量插入
+ */
+public class JpaTrackingStore implements TrackingStore {
+
+    private final TrackingWriter trackingWriter;
+    private final TrackingRepository trackingRepository;
+
+    public JpaTrackingStore(TrackingWriter trackingWriter, TrackingRepository trackingRepository) {
+        this.trackingWriter = trackingWriter;
+        this.trackingRepository = trackingRepository;
+    }
+
+    @Override
+    public void track(TrackingEvent event) {
+        trackingWriter.track(event);
+    }
+
+    @Override
+    public Page<TrackingEntity> findAll(Pageable pageable) {
+        return trackingRepository.findAll(pageable);
+    }
+
+    @Override
+    public Page<TrackingEntity> findByMessageId(Long messageId, Pageable pageable) {
+        return trackingRepository.findByMessageId(messageId, pageable);
+    }
+
+    @Override
+    public Page<TrackingEntity> findByStatus(String status, Pageable pageable) {
+        return trackingRepository.findByStatus(status, pageable);
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollAll(KeysetScrollPosition position, int limit) {
+        return trackingRepository.findByOrderByTimestampAscIdAsc(position, Limit.of(limit));
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit) {
+        return trackingRepository.findByMessageIdOrderByTimestampAscIdAsc(messageId, position, Limit.of(limit));
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollByStatus(String status, KeysetScrollPosition position, int limit) {
+        return trackingRepository.findByStatusOrderByTimestampAscIdAsc(status, position, Limit.of(limit));
+    }
+
+    @Override
+    public long count() {
+        return trackingRepository.count();
+    }
+
+    @Override
+    public long countByMessageId(Long messageId) {
+        return trackingRepository.countByMessageId(messageId);
+    }
+
+    @Override
+    public long countByStatus(String status) {
+        return trackingRepository.countByStatus(status);
+    }
+}
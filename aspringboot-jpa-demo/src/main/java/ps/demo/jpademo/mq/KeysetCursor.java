@@ -0,0 +1,76 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按 (时间, id) 排序的游标：对调用方不透明的 base64url 字符串，内容为最后一条记录的时间和 id
+ */
+public final class KeysetCursor {
+
+    /**
+     * 一页最多返回的记录数
+     */
+    public static final int MAX_SIZE = 1000;
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * @return 校验后的每页记录数
+     * @throws ResponseStatusException 400，size 不在 [1, MAX_SIZE] 之内
+     */
+    public static int size(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_SIZE + ": " + size);
+        }
+        return size;
+    }
+
+    /**
+     * @param cursor 为空时从第一条开始
+     * @param timeProperty 排序时间字段，tracking 为 timestamp，死信为 createdAt
+     * @throws ResponseStatusException 400，游标格式不对
+     */
+    public static KeysetScrollPosition decode(String cursor, String timeProperty) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            return of(timeProperty, LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public static KeysetScrollPosition of(String timeProperty, LocalDateTime time, Long id) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(timeProperty, time);
+        keys.put("id", id);
+        return ScrollPosition.forward(keys);
+    }
+
+    /**
+     * @return 下一页的游标，没有下一页时为空
+     */
+    public static String next(Window<?> window, String timeProperty) {
+        if (!window.hasNext() || window.isEmpty()) {
+            return null;
+        }
+        KeysetScrollPosition position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        String value = position.getKeys().get(timeProperty) + "|" + position.getKeys().get("id");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
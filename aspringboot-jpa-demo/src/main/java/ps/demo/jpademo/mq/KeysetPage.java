@@ -0,0 +1,31 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，nextCursor 为空表示没有下一页；只有请求 count=true 时才统计 totalElements
+ */
+@Getter
+@Setter
+public class KeysetPage<T> {
+
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+
+    public static <T> KeysetPage<T> of(Window<T> window, String timeProperty, Long totalElements) {
+        KeysetPage<T> page = new KeysetPage<>();
+        page.setContent(window.getContent());
+        page.setSize(window.size());
+        page.setHasNext(window.hasNext());
+        page.setNextCursor(KeysetCursor.next(window, timeProperty));
+        page.setTotalElements(totalElements);
+        return page;
+    }
+}
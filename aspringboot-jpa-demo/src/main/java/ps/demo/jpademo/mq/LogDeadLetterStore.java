@@ -0,0 +1,76 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.util.Objects;
+
+/**
+ * 基于分段日志的死信存储，id 为记录的偏移
+ */
+public class LogDeadLetterStore extends LogStoreSupport<DeadLetterEntity> implements DeadLetterStore {
+
+    public LogDeadLetterStore(SegmentedLog segmentedLog) {
+        super(segmentedLog, DeadLetterEntity.class);
+    }
+
+    @Override
+    public DeadLetterEntity save(DeadLetterEntity deadLetter) {
+        deadLetter.setId(segmentedLog.append(encode(deadLetter)));
+        return deadLetter;
+    }
+
+    @Override
+    public Page<DeadLetterEntity> findAll(Pageable pageable) {
+        return page(pageable);
+    }
+
+    @Override
+    public Page<DeadLetterEntity> findByMessageId(Long messageId, Pageable pageable) {
+        return scan(entity -> Objects.equals(entity.getMessageId(), messageId), pageable);
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollAll(KeysetScrollPosition position, int limit) {
+        return scroll(null, position, limit, LogDeadLetterStore::positionOf);
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit) {
+        return scroll(entity -> Objects.equals(entity.getMessageId(), messageId), position, limit, LogDeadLetterStore::positionOf);
+    }
+
+    @Override
+    public long count() {
+        return count(null);
+    }
+
+    @Override
+    public long countByMessageId(Long messageId) {
+        return count(entity -> Objects.equals(entity.getMessageId(), messageId));
+    }
+
+    @Override
+    public Window<DeadLetterEntity> scrollByFilter(DeadLetterFilter filter, KeysetScrollPosition position, int limit) {
+        return scroll(filter::matches, position, limit, LogDeadLetterStore::positionOf);
+    }
+
+    @Override
+    public long countByFilter(DeadLetterFilter filter) {
+        return count(filter::matches);
+    }
+
+    private static ScrollPosition positionOf(DeadLetterEntity entity) {
+        return KeysetCursor.of("createdAt", entity.getCreatedAt(), entity.getId());
+    }
+
+    @Override
+    protected DeadLetterEntity decode(LogRecord record) {
+        DeadLetterEntity entity = super.decode(record);
+        entity.setId(record.offset());
+        return entity;
+    }
+}
@@ -0,0 +1,209 @@
+package ps.demo.jpademo.mq;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 基于分段日志的消息存储
+ * - 每次保存追加消息的一个新版本，内存中按 id 记录最新版本的偏移，findById 一次定位读取
+ * - 待分发（PENDING）和已认领（DISPATCHING）的 id 也只保存在内存中，认领在本实例内进行，不能多实例共享
+ * - 打开时从头扫描日志恢复 id 到偏移的映射和待分发状态
+ * - 保留策略删除段之前把 id 序列的高水位写入元数据，最大 id 的消息随段删除后重启也不会重复分配 id
+ * - 保留策略删除段之前，把最新版本在其中的待分发、已认领消息，以及失败后还在 retention-ms 内、
+ *   可能被死信重放的消息重新追加到活动段；其余最新版本已被删除的消息视为不存在
+ */
+@Slf4j
+public class LogMessageStore extends LogStoreSupport<MessageEntity> implements MessageStore {
+
+    private final ConcurrentMap<Long, Long> latest = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<Long, LocalDateTime> claims = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> backlog = new ConcurrentHashMap<>();
+    // FAILED 消息的 id 到第一次写入 FAILED 的时间（epoch 毫秒）
+    private final ConcurrentMap<Long, Long> failed = new ConcurrentHashMap<>();
+    private long nextId = 1;
+
+    private static final String NEXT_ID_METADATA = "next-id";
+
+    public LogMessageStore(SegmentedLog segmentedLog) {
+        super(segmentedLog, MessageEntity.class);
+        restore();
+        segmentedLog.setCompactor(this::compact);
+    }
+
+    @Override
+    public synchronized MessageEntity save(MessageEntity message) {
+        if (message.getId() == null) {
+            message.setId(nextId++);
+        }
+        long offset = segmentedLog.append(encode(message));
+        latest.put(message.getId(), offset);
+        index(message, offset);
+        return message;
+    }
+
+    @Override
+    public synchronized List<MessageEntity> saveAll(List<MessageEntity> messages) {
+        messages.forEach(this::save);
+        return messages;
+    }
+
+    @Override
+    public Optional<MessageEntity> findById(Long id) {
+        Long offset = latest.get(id);
+        if (offset == null) {
+            return Optional.empty();
+        }
+        Optional<LogRecord> record = segmentedLog.read(offset);
+        if (record.isEmpty()) {
+            latest.remove(id, offset);
+        }
+        return record.map(this::decode);
+    }
+
+    @Override
+    public synchronized List<MessageEntity> claimPending(String owner, int limit) {
+        List<MessageEntity> claimed = new ArrayList<>();
+        Long id;
+        while (claimed.size() < limit && (id = pending.pollFirst()) != null) {
+            MessageEntity message = findById(id).orElse(null);
+            if (message == null || !"PENDING".equals(message.getStatus())) {
+                continue;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            message.setStatus("DISPATCHING");
+            message.setClaimedBy(owner);
+            message.setClaimedAt(now);
+            message.setUpdatedAt(now);
+            claimed.add(save(message));
+        }
+        return claimed;
+    }
+
+    @Override
+    public synchronized int releaseExpiredClaims(LocalDateTime before) {
+        int released = 0;
+        for (Map.Entry<Long, LocalDateTime> claim : claims.entrySet()) {
+            if (!claim.getValue().isBefore(before)) {
+                continue;
+            }
+            MessageEntity message = findById(claim.getKey()).orElse(null);
+            if (message == null || !"DISPATCHING".equals(message.getStatus())) {
+                claims.remove(claim.getKey());
+                continue;
+            }
+            message.setStatus("PENDING");
+            message.setClaimedBy(null);
+            message.setClaimedAt(null);
+            save(message);
+            released++;
+        }
+        return released;
+    }
+
+    @Override
+    public Map<String, Long> countBacklog() {
+        Map<String, Long> counts = new HashMap<>();
+        backlog.values().forEach(contentType -> counts.merge(contentType, 1L, Long::sum));
+        return counts;
+    }
+
+    /**
+     * 保留策略删除 [fromOffset, toOffset) 之前，把最新版本在其中、仍然有效的消息原样重新追加
+     * @return 重新追加的消息数
+     */
+    synchronized int compact(long fromOffset, long toOffset) {
+        // 删除的段中可能有最大 id 的消息，先保存 id 序列
+        segmentedLog.writeMetadata(NEXT_ID_METADATA, Long.toString(nextId));
+        Set<Long> live = new TreeSet<>(pending);
+        live.addAll(claims.keySet());
+        for (Map.Entry<Long, Long> entry : failed.entrySet()) {
+            if (segmentedLog.isRetained(entry.getValue())) {
+                live.add(entry.getKey());
+            } else if (inRange(latest.get(entry.getKey()), fromOffset, toOffset)) {
+                failed.remove(entry.getKey());
+            }
+        }
+        int moved = 0;
+        for (Long id : live) {
+            Long offset = latest.get(id);
+            if (!inRange(offset, fromOffset, toOffset)) {
+                continue;
+            }
+            Optional<LogRecord> record = segmentedLog.read(offset);
+            if (record.isPresent()) {
+                latest.put(id, segmentedLog.append(record.get().payload()));
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            log.info("Compacted {} live messages out of offsets [{}, {})", moved, fromOffset, toOffset);
+        }
+        return moved;
+    }
+
+    private static boolean inRange(Long offset, long fromOffset, long toOffset) {
+        return offset != null && offset >= fromOffset && offset < toOffset;
+    }
+
+    private void index(MessageEntity message, long offset) {
+        if ("FAILED".equals(message.getStatus())) {
+            failed.computeIfAbsent(message.getId(),
+                    id -> segmentedLog.read(offset).map(LogRecord::timestamp).orElse(System.currentTimeMillis()));
+        } else {
+            failed.remove(message.getId());
+        }
+        if ("PENDING".equals(message.getStatus())) {
+            claims.remove(message.getId());
+            pending.add(message.getId());
+        } else if ("DISPATCHING".equals(message.getStatus())) {
+            pending.remove(message.getId());
+            claims.put(message.getId(), message.getClaimedAt() != null ? message.getClaimedAt() : LocalDateTime.now());
+        } else {
+            pending.remove(message.getId());
+            claims.remove(message.getId());
+            backlog.remove(message.getId());
+            return;
+        }
+        backlog.put(message.getId(), message.getContentType() != null ? message.getContentType() : "");
+    }
+
+    private void restore() {
+        nextId = segmentedLog.readMetadata(NEXT_ID_METADATA).map(Long::parseLong).orElse(1L);
+        Map<Long, MessageEntity> states = new HashMap<>();
+        long offset = segmentedLog.startOffset();
+        List<LogRecord> records;
+        while (!(records = segmentedLog.read(offset, 1000)).isEmpty()) {
+            for (LogRecord record : records) {
+                MessageEntity message = decode(record);
+                latest.put(message.getId(), record.offset());
+                nextId = Math.max(nextId, message.getId() + 1);
+                if ("PENDING".equals(message.getStatus()) || "DISPATCHING".equals(message.getStatus())) {
+                    states.put(message.getId(), message);
+                } else {
+                    states.remove(message.getId());
+                }
+                if ("FAILED".equals(message.getStatus())) {
+                    failed.putIfAbsent(message.getId(), record.timestamp());
+                } else {
+                    failed.remove(message.getId());
+                }
+            }
+            offset = records.get(records.size() - 1).offset() + 1;
+        }
+        states.values().forEach(message -> index(message, latest.get(message.getId())));
+        log.info("Restored message store - messages: {}, pending: {}, claimed: {}", latest.size(), pending.size(), claims.size());
+    }
+}
@@ -0,0 +1,9 @@
+package ps.demo.jpademo.mq;
+
+/**
+ * 日志中的一条记录
+ * @param offset 在日志中的偏移，从 0 开始连续递增
+ * @param timestamp 写入时间 epoch 毫秒
+ */
+public record LogRecord(long offset, long timestamp, byte[] payload) {
+}
@@ -0,0 +1,279 @@
+package ps.demo.jpademo.mq;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 日志段，一对内存映射文件（大端序）
+ * <pre>
+ * {baseOffset}.log   记录：长度(int) CRC32(int) 写入时间 epoch 毫秒(long) 记录体，CRC32 覆盖写入时间和记录体
+ * {baseOffset}.index 稠密偏移索引：第 n 个 int 是偏移 baseOffset + n 的记录在 .log 中的位置
+ * </pre>
+ * - 活动段按 segment-bytes / index-bytes 预分配并以读写方式映射，只有 SegmentedLog 的写锁持有者追加
+ * - 写满或滚动时封存：刷盘后把两个文件截断到实际大小，重新以只读方式映射
+ * - 打开未封存的段（最后一个段，或滚动时宕机留下的段）时从头扫描 .log 重建索引，
+ *   遇到长度为 0、越界或校验失败的记录即停止，之后的内容视为未写入
+ * - 读取使用绝对位置的 get，不改变缓冲区状态，可以与追加并发进行；entries 是 volatile，
+ *   追加先写记录和索引再增加 entries，读到的 entries 之内的记录都已完整写入
+ */
+final class LogSegment {
+
+    static final int RECORD_HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 4;
+
+    private final long baseOffset;
+    private final Path logFile;
+    private final Path indexFile;
+    private final int segmentBytes;
+    private final int indexBytes;
+
+    private volatile MappedByteBuffer log;
+    private volatile MappedByteBuffer index;
+    private volatile int entries;
+    private volatile boolean sealed;
+    private volatile long lastTimestamp;
+    private long firstTimestamp;
+    private int position;
+
+    private LogSegment(Path directory, long baseOffset, int segmentBytes, int indexBytes) {
+        this.baseOffset = baseOffset;
+        this.logFile = directory.resolve(fileName(baseOffset, ".log"));
+        this.indexFile = directory.resolve(fileName(baseOffset, ".index"));
+        this.segmentBytes = segmentBytes;
+        this.indexBytes = indexBytes;
+    }
+
+    static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    /**
+     * 创建新的活动段
+     */
+    static LogSegment create(Path directory, long baseOffset, int segmentBytes, int indexBytes, long nowMillis)
+            throws IOException {
+        LogSegment segment = new LogSegment(directory, baseOffset, segmentBytes, indexBytes);
+        segment.mapWritable();
+        segment.firstTimestamp = nowMillis;
+        segment.lastTimestamp = nowMillis;
+        return segment;
+    }
+
+    /**
+     * 打开已有的段，已封存的直接只读映射，否则扫描恢复
+     * @param active 是否继续作为活动段追加，否则恢复后立即封存
+     */
+    static LogSegment open(Path directory, long baseOffset, int segmentBytes, int indexBytes, boolean active)
+            throws IOException {
+        LogSegment segment = new LogSegment(directory, baseOffset, segmentBytes, indexBytes);
+        long logSize = Files.size(segment.logFile);
+        long indexSize = Files.exists(segment.indexFile) ? Files.size(segment.indexFile) : -1;
+        boolean wasSealed = indexSize >= 0 && indexSize < indexBytes && logSize < segmentBytes
+                && indexSize % INDEX_ENTRY_SIZE == 0;
+        if (wasSealed && !active) {
+            segment.mapReadOnly((int) logSize, (int) indexSize);
+            segment.entries = (int) (indexSize / INDEX_ENTRY_SIZE);
+            segment.sealed = true;
+            if (segment.entries > 0) {
+                segment.firstTimestamp = segment.timestampAt(0);
+                segment.lastTimestamp = segment.timestampAt(segment.entries - 1);
+            } else {
+                segment.lastTimestamp = Files.getLastModifiedTime(segment.logFile).toMillis();
+            }
+            return segment;
+        }
+        segment.mapWritable();
+        segment.recover();
+        if (segment.entries == 0) {
+            segment.firstTimestamp = Files.getLastModifiedTime(segment.logFile).toMillis();
+            segment.lastTimestamp = segment.firstTimestamp;
+        }
+        if (!active) {
+            segment.seal();
+        }
+        return segment;
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * 下一条记录的偏移
+     */
+    long nextOffset() {
+        return baseOffset + entries;
+    }
+
+    int entries() {
+        return entries;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    long sizeInBytes() {
+        return sealed ? log.capacity() : position;
+    }
+
+    boolean hasRoom(int payloadLength) {
+        return !sealed && (long) position + RECORD_HEADER_SIZE + payloadLength <= segmentBytes
+                && (long) (entries + 1) * INDEX_ENTRY_SIZE <= indexBytes;
+    }
+
+    /**
+     * 追加一条记录，调用方保证单线程并且已用 hasRoom 检查空间
+     * @return 记录的偏移
+     */
+    long append(byte[] payload, long timestamp) {
+        MappedByteBuffer buffer = log;
+        int start = position;
+        buffer.putInt(start, payload.length);
+        buffer.putInt(start + 4, checksum(timestamp, payload));
+        buffer.putLong(start + 8, timestamp);
+        buffer.put(start + RECORD_HEADER_SIZE, payload);
+        index.putInt(entries * INDEX_ENTRY_SIZE, start);
+        position = start + RECORD_HEADER_SIZE + payload.length;
+        if (entries == 0) {
+            firstTimestamp = timestamp;
+        }
+        lastTimestamp = timestamp;
+        long offset = baseOffset + entries;
+        entries = entries + 1;
+        return offset;
+    }
+
+    /**
+     * 读取偏移对应的记录，偏移不在本段中时返回 null
+     */
+    LogRecord read(long offset) {
+        long relative = offset - baseOffset;
+        if (relative < 0 || relative >= entries) {
+            return null;
+        }
+        MappedByteBuffer buffer = log;
+        int start = index.getInt((int) relative * INDEX_ENTRY_SIZE);
+        int length = buffer.getInt(start);
+        long timestamp = buffer.getLong(start + 8);
+        byte[] payload = new byte[length];
+        buffer.get(start + RECORD_HEADER_SIZE, payload);
+        return new LogRecord(offset, timestamp, payload);
+    }
+
+    void flush() {
+        if (!sealed) {
+            log.force();
+            index.force();
+        }
+    }
+
+    /**
+     * 封存：刷盘、截断到实际大小并重新只读映射，之后不能再追加
+     */
+    void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        flush();
+        int indexSize = entries * INDEX_ENTRY_SIZE;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            channel.truncate(indexSize);
+        }
+        mapReadOnly(position, indexSize);
+        sealed = true;
+    }
+
+    /**
+     * 删除段文件，已映射的缓冲区在被回收前仍可读取
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(indexFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete log segment " + logFile, e);
+        }
+    }
+
+    private void recover() {
+        MappedByteBuffer buffer = log;
+        int count = 0;
+        int start = 0;
+        long timestamp = 0;
+        while (start + RECORD_HEADER_SIZE <= segmentBytes && (long) (count + 1) * INDEX_ENTRY_SIZE <= indexBytes) {
+            int length = buffer.getInt(start);
+            if (length <= 0 || (long) start + RECORD_HEADER_SIZE + length > segmentBytes) {
+                break;
+            }
+            timestamp = buffer.getLong(start + 8);
+            byte[] payload = new byte[length];
+            buffer.get(start + RECORD_HEADER_SIZE, payload);
+            if (buffer.getInt(start + 4) != checksum(timestamp, payload)) {
+                break;
+            }
+            if (count == 0) {
+                firstTimestamp = timestamp;
+            }
+            index.putInt(count * INDEX_ENTRY_SIZE, start);
+            start += RECORD_HEADER_SIZE + length;
+            count++;
+        }
+        position = start;
+        lastTimestamp = timestamp;
+        entries = count;
+    }
+
+    private long timestampAt(int relative) {
+        return log.getLong(index.getInt(relative * INDEX_ENTRY_SIZE) + 8);
+    }
+
+    private void mapWritable() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            log = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            index = channel.map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+        }
+    }
+
+    private void mapReadOnly(int logSize, int indexSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, logSize);
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+        }
+    }
+
+    private static int checksum(long timestamp, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (timestamp >>> shift));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
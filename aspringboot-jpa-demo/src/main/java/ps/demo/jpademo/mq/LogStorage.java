@@ -0,0 +1,98 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mq.storage.type=log 时的日志文件：directory 下 messages、tracking、dead-letters 三个分段日志
+ * 后台线程按 flush-interval 刷盘，按 retention-check-interval 执行保留策略
+ */
+@Slf4j
+public class LogStorage implements InitializingBean, DisposableBean, MeterBinder {
+
+    private final StorageProperties properties;
+    private final Map<String, SegmentedLog> logs = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public LogStorage(StorageProperties properties) {
+        this.properties = properties;
+        Path directory = Path.of(properties.getDirectory());
+        for (String name : new String[]{"messages", "tracking", "dead-letters"}) {
+            logs.put(name, new SegmentedLog(directory.resolve(name), properties));
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mq-log-storage-"));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        scheduler.scheduleWithFixedDelay(this::flush, properties.getFlushInterval(), properties.getFlushInterval(),
+                TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::applyRetention, properties.getRetentionCheckInterval(),
+                properties.getRetentionCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    public SegmentedLog messages() {
+        return logs.get("messages");
+    }
+
+    public SegmentedLog tracking() {
+        return logs.get("tracking");
+    }
+
+    public SegmentedLog deadLetters() {
+        return logs.get("dead-letters");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        logs.forEach((name, segmentedLog) -> {
+            Gauge.builder("mq.log.size", segmentedLog, SegmentedLog::sizeInBytes)
+                    .description("Bytes written to the log segments")
+                    .baseUnit("bytes")
+                    .tag("log", name)
+                    .register(registry);
+            Gauge.builder("mq.log.segments", segmentedLog, SegmentedLog::segmentCount)
+                    .description("Segments in the log")
+                    .tag("log", name)
+                    .register(registry);
+            Gauge.builder("mq.log.end.offset", segmentedLog, SegmentedLog::endOffset)
+                    .description("Offset of the next record appended to the log")
+                    .tag("log", name)
+                    .register(registry);
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        logs.values().forEach(SegmentedLog::close);
+    }
+
+    private void flush() {
+        try {
+            logs.values().forEach(SegmentedLog::flush);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush mq logs", e);
+        }
+    }
+
+    private void applyRetention() {
+        try {
+            logs.values().forEach(SegmentedLog::deleteExpiredSegments);
+        } catch (RuntimeException e) {
+            log.error("Failed to apply retention to mq logs", e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ps.demo.jpademo.mq;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 基于 SegmentedLog 的存储的公共部分：记录体为实体的 JSON，分页查询
+ * - 不带条件的分页按偏移直接定位，第 n 页从 startOffset + n * size 开始读，不扫描
+ * - 带条件的分页从头顺序扫描日志，只适合运维查询；排序参数被忽略，结果总是按写入顺序
+ * - 游标分页按写入顺序（偏移，与时间顺序基本一致），从游标记录的下一个偏移开始读，不带条件时不扫描
+ */
+abstract class LogStoreSupport<T> {
+
+    private static final int SCAN_BATCH = 1000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    protected final SegmentedLog segmentedLog;
+    private final Class<T> type;
+
+    protected LogStoreSupport(SegmentedLog segmentedLog, Class<T> type) {
+        this.segmentedLog = segmentedLog;
+        this.type = type;
+    }
+
+    protected byte[] encode(T entity) {
+        try {
+            return MAPPER.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode " + type.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 解码记录，子类可以用偏移补充 id 等字段
+     */
+    protected T decode(LogRecord record) {
+        try {
+            return MAPPER.readValue(record.payload(), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + type.getSimpleName() + " at offset " + record.offset(), e);
+        }
+    }
+
+    protected Page<T> page(Pageable pageable) {
+        long start = segmentedLog.startOffset();
+        List<T> content = new ArrayList<>(pageable.getPageSize());
+        for (LogRecord record : segmentedLog.read(start + pageable.getOffset(), pageable.getPageSize())) {
+            content.add(decode(record));
+        }
+        return new PageImpl<>(content, pageable, segmentedLog.endOffset() - start);
+    }
+
+    /**
+     * @param filter 为空时不过滤
+     * @param positionOf 记录在游标中的位置
+     */
+    protected Window<T> scroll(Predicate<T> filter, KeysetScrollPosition position, int limit,
+                               Function<T, ScrollPosition> positionOf) {
+        long offset = position.isInitial() ? segmentedLog.startOffset()
+                : ((Number) position.getKeys().get("id")).longValue() + 1;
+        List<T> content = new ArrayList<>(limit + 1);
+        List<LogRecord> records;
+        while (content.size() <= limit
+                && !(records = segmentedLog.read(offset, filter == null ? limit + 1 - content.size() : SCAN_BATCH)).isEmpty()) {
+            for (LogRecord record : records) {
+                T entity = decode(record);
+                if (filter == null || filter.test(entity)) {
+                    content.add(entity);
+                    if (content.size() > limit) {
+                        break;
+                    }
+                }
+            }
+            offset = records.get(records.size() - 1).offset() + 1;
+        }
+        boolean hasNext = content.size() > limit;
+        List<T> window = hasNext ? content.subList(0, limit) : content;
+        return Window.from(window, index -> positionOf.apply(window.get(index)), hasNext);
+    }
+
+    protected long count(Predicate<T> filter) {
+        if (filter == null) {
+            return segmentedLog.endOffset() - segmentedLog.startOffset();
+        }
+        long matched = 0;
+        long offset = segmentedLog.startOffset();
+        List<LogRecord> records;
+        while (!(records = segmentedLog.read(offset, SCAN_BATCH)).isEmpty()) {
+            for (LogRecord record : records) {
+                if (filter.test(decode(record))) {
+                    matched++;
+                }
+            }
+            offset = records.get(records.size() - 1).offset() + 1;
+        }
+        return matched;
+    }
+
+    protected Page<T> scan(Predicate<T> filter, Pageable pageable) {
+        List<T> content = new ArrayList<>(pageable.getPageSize());
+        long matched = 0;
+        long offset = segmentedLog.startOffset();
+        List<LogRecord> records;
+        while (!(records = segmentedLog.read(offset, SCAN_BATCH)).isEmpty()) {
+            for (LogRecord record : records) {
+                T entity = decode(record);
+                if (filter.test(entity)) {
+                    if (matched >= pageable.getOffset() && content.size() < pageable.getPageSize()) {
+                        content.add(entity);
+                    }
+                    matched++;
+                }
+            }
+            offset = records.get(records.size() - 1).offset() + 1;
+        }
+        return new PageImpl<>(content, pageable, matched);
+    }
+}
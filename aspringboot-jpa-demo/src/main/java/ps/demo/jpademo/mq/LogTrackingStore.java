@@ -0,0 +1,88 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+
+import java.util.Objects;
+
+/**
+ * 基于分段日志的投递跟踪存储，每条状态变化直接追加一条记录，id 为记录的偏移
+ */
+public class LogTrackingStore extends LogStoreSupport<TrackingEntity> implements TrackingStore {
+
+    public LogTrackingStore(SegmentedLog segmentedLog) {
+        super(segmentedLog, TrackingEntity.class);
+    }
+
+    @Override
+    public void track(TrackingEvent event) {
+        TrackingEntity entity = new TrackingEntity();
+        entity.setMessageId(event.messageId());
+        entity.setSubscriberId(event.subscriberId());
+        entity.setSubscriberName(event.subscriberName());
+        entity.setSubscriberEndpoint(event.subscriberEndpoint());
+        entity.setStatus(event.status());
+        entity.setDetails(event.details());
+        entity.setTimestamp(event.timestamp());
+        segmentedLog.append(encode(entity));
+    }
+
+    @Override
+    public Page<TrackingEntity> findAll(Pageable pageable) {
+        return page(pageable);
+    }
+
+    @Override
+    public Page<TrackingEntity> findByMessageId(Long messageId, Pageable pageable) {
+        return scan(entity -> Objects.equals(entity.getMessageId(), messageId), pageable);
+    }
+
+    @Override
+    public Page<TrackingEntity> findByStatus(String status, Pageable pageable) {
+        return scan(entity -> Objects.equals(entity.getStatus(), status), pageable);
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollAll(KeysetScrollPosition position, int limit) {
+        return scroll(null, position, limit, LogTrackingStore::positionOf);
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit) {
+        return scroll(entity -> Objects.equals(entity.getMessageId(), messageId), position, limit, LogTrackingStore::positionOf);
+    }
+
+    @Override
+    public Window<TrackingEntity> scrollByStatus(String status, KeysetScrollPosition position, int limit) {
+        return scroll(entity -> Objects.equals(entity.getStatus(), status), position, limit, LogTrackingStore::positionOf);
+    }
+
+    @Override
+    public long count() {
+        return count(null);
+    }
+
+    @Override
+    public long countByMessageId(Long messageId) {
+        return count(entity -> Objects.equals(entity.getMessageId(), messageId));
+    }
+
+    @Override
+    public long countByStatus(String status) {
+        return count(entity -> Objects.equals(entity.getStatus(), status));
+    }
+
+    private static ScrollPosition positionOf(TrackingEntity entity) {
+        return KeysetCursor.of("timestamp", entity.getTimestamp(), entity.getId());
+    }
+
+    @Override
+    protected TrackingEntity decode(LogRecord record) {
+        TrackingEntity entity = super.decode(record);
+        entity.setId(record.offset());
+        return entity;
+    }
+}
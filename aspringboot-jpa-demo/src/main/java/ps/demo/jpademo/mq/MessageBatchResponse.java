@@ -0,0 +1,35 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量发送结果，items 与请求中的消息一一对应
+ */
+@Getter
+@Setter
+public class MessageBatchResponse {
+
+    private int accepted;
+    private int rejected;
+    private List<Item> items = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Item {
+
+        private int index;
+
+        /**
+         * ACCEPTED：已写入，等待投递；REJECTED：积压超过准入水位，稍后重试；INVALID：消息不完整
+         */
+        private String result;
+
+        private Long id;
+        private String status;
+        private String error;
+    }
+}
@@ -1,9 +1,23 @@
 package ps.demo.jpademo.mq;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ps.demo.jpademo.dto.BaseErrorResp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -13,9 +27,132 @@ public class MessageController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private MqConfig mqConfig;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     @Operation(summary = "Send a message")
     public MessageResponse sendMessage(@RequestBody MessageRequest request) {
+        admissionControl.admit(request.getContentType());
         return messageService.sendMessage(request);
     }
-}
\ No newline at end of file
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Send a batch of messages")
+    public ResponseEntity<MessageBatchResponse> sendMessages(@RequestBody List<MessageRequest> requests) {
+        checkBatchSize(requests.size());
+        return sendBatch(requests);
+    }
+
+    /**
+     * 每行一个 MessageRequest，边读边检查条数，超过 max-size 时不再继续读取
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Send a batch of messages as newline delimited JSON")
+    public ResponseEntity<MessageBatchResponse> sendMessagesNdjson(InputStream body) throws IOException {
+        List<MessageRequest> requests = new ArrayList<>();
+        try (MappingIterator<MessageRequest> iterator = objectMapper.readerFor(MessageRequest.class).readValues(body)) {
+            while (iterator.hasNextValue()) {
+                checkBatchSize(requests.size() + 1);
+                requests.add(iterator.nextValue());
+            }
+        }
+        return sendBatch(requests);
+    }
+
+    /**
+     * 积压超过高水位时快速返回 429，不记录异常堆栈
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<BaseErrorResp> handleAdmissionRejected(AdmissionRejectedException ex) {
+        BaseErrorResp resp = new BaseErrorResp();
+        resp.setCode(String.valueOf(HttpStatus.TOO_MANY_REQUESTS.value()));
+        resp.setMessage("Too many pending messages, please retry later");
+        resp.setDetailMessage(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(resp);
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<BaseErrorResp> handleMalformedBatch(JsonProcessingException ex) {
+        BaseErrorResp resp = new BaseErrorResp();
+        resp.setCode(String.valueOf(HttpStatus.BAD_REQUEST.value()));
+        resp.setMessage("Malformed message batch");
+        resp.setDetailMessage(ex.getOriginalMessage());
+        return ResponseEntity.badRequest().body(resp);
+    }
+
+    /**
+     * 逐条校验并做准入控制，通过的消息在一个事务中批量写入；
+     * 有消息因积压被拒绝时带 Retry-After，全部被拒绝时返回 429
+     */
+    private ResponseEntity<MessageBatchResponse> sendBatch(List<MessageRequest> requests) {
+        MessageBatchResponse response = new MessageBatchResponse();
+        List<MessageRequest> accepted = new ArrayList<>();
+        List<MessageBatchResponse.Item> acceptedItems = new ArrayList<>();
+        long retryAfter = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            MessageRequest request = requests.get(i);
+            MessageBatchResponse.Item item = new MessageBatchResponse.Item();
+            item.setIndex(i);
+            response.getItems().add(item);
+            String error = validate(request);
+            if (error != null) {
+                item.setResult("INVALID");
+                item.setError(error);
+                continue;
+            }
+            try {
+                admissionControl.admit(request.getContentType());
+            } catch (AdmissionRejectedException e) {
+                item.setResult("REJECTED");
+                item.setError(e.getMessage());
+                retryAfter = Math.max(retryAfter, e.getRetryAfterSeconds());
+                continue;
+            }
+            accepted.add(request);
+            acceptedItems.add(item);
+        }
+
+        List<MessageResponse> saved = accepted.isEmpty() ? List.of() : messageService.sendMessages(accepted);
+        for (int i = 0; i < saved.size(); i++) {
+            MessageBatchResponse.Item item = acceptedItems.get(i);
+            item.setResult("ACCEPTED");
+            item.setId(saved.get(i).getId());
+            item.setStatus(saved.get(i).getStatus());
+        }
+        response.setAccepted(saved.size());
+        response.setRejected(requests.size() - saved.size());
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(
+                saved.isEmpty() && retryAfter > 0 ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.OK);
+        if (retryAfter > 0) {
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        }
+        return builder.body(response);
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > mqConfig.getBatch().getMaxSize()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Batch exceeds the maximum of " + mqConfig.getBatch().getMaxSize() + " messages");
+        }
+    }
+
+    private static String validate(MessageRequest request) {
+        if (request == null) {
+            return "Message is null";
+        }
+        if (request.getContent() == null || request.getRecipient() == null || request.getContentType() == null) {
+            return "content, recipient and contentType are required";
+        }
+        return null;
+    }
+}
@@ -1,15 +1,21 @@
 package ps.demo.jpademo.mq;
 
+import java.time.LocalDateTime;
+
 public class MessageConverter {
 
     public static MessageEntity toEntity(MessageRequest request, String createdBy) {
         MessageEntity entity = new MessageEntity();
         entity.setContent(request.getContent());
         entity.setRecipient(request.getRecipient());
+        entity.setContentType(request.getContentType());
         entity.setStatus("PENDING");
         entity.setRetryCount(0);
-        entity.setOrdered(request.getOrdered());
+        entity.setOrdered(Boolean.TRUE.equals(request.getOrdered()));
+        entity.setPartitionKey(request.getPartitionKey());
+        entity.setCreatedAt(LocalDateTime.now());
         entity.setCreatedBy(createdBy);
+        entity.setUpdatedAt(entity.getCreatedAt());
         entity.setUpdatedBy(createdBy);
         return entity;
     }
@@ -19,8 +25,10 @@ public class MessageConverter {
         response.setId(entity.getId());
         response.setContent(entity.getContent());
         response.setRecipient(entity.getRecipient());
+        response.setContentType(entity.getContentType());
         response.setStatus(entity.getStatus());
         response.setOrdered(entity.getOrdered());
+        response.setPartitionKey(entity.getPartitionKey());
         return response;
     }
 }
\ No newline at end of file
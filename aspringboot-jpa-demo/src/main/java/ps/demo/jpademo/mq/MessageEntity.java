@@ -6,7 +6,7 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = @Index(name = "idx_messages_status_id", columnList = "status, id"))
 @Getter
 @Setter
 public class MessageEntity {
@@ -39,6 +39,21 @@ public class MessageEntity {
     @Column(nullable = false)
     private Boolean ordered;
 
+    /**
+     * 有序消息的分区键，相同分区键的消息按发送顺序投递，为空时使用 recipient
+     */
+    @Column
+    private String partitionKey;
+
+    /**
+     * 认领这条消息的发件箱分发实例
+     */
+    @Column
+    private String claimedBy;
+
+    @Column
+    private LocalDateTime claimedAt;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
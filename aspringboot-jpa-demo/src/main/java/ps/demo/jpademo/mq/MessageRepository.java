@@ -1,8 +1,48 @@
 package ps.demo.jpademo.mq;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface MessageRepository extends JpaRepository<MessageEntity, Long> {
-}
\ No newline at end of file
+
+    @Query("select m.id from MessageEntity m where m.status = :status order by m.id")
+    List<Long> findIdsByStatus(@Param("status") String status, Pageable pageable);
+
+    /**
+     * 认领仍是 PENDING 的消息，已被其他实例认领的跳过
+     * @return 认领到的消息数
+     */
+    @Modifying
+    @Transactional
+    @Query("update MessageEntity m set m.status = 'DISPATCHING', m.claimedBy = :owner, m.claimedAt = :now, m.updatedAt = :now "
+            + "where m.id in :ids and m.status = 'PENDING'")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    List<MessageEntity> findByIdInAndClaimedByAndStatusOrderById(Collection<Long> ids, String claimedBy, String status);
+
+    /**
+     * 把认领超时的消息放回 PENDING
+     * @return 放回的消息数
+     */
+    @Modifying
+    @Transactional
+    @Query("update MessageEntity m set m.status = 'PENDING', m.claimedBy = null, m.claimedAt = null "
+            + "where m.status = 'DISPATCHING' and m.claimedAt < :before")
+    int releaseExpiredClaims(@Param("before") LocalDateTime before);
+
+    /**
+     * @return [contentType, count]
+     */
+    @Query("select m.contentType, count(m) from MessageEntity m where m.status in ('PENDING', 'DISPATCHING') group by m.contentType")
+    List<Object[]> countBacklogByContentType();
+}
@@ -9,5 +9,7 @@ public class MessageRequest {
 
     private String content;
     private String recipient;
+    private String contentType;
     private Boolean ordered;
+    private String partitionKey;
 }
\ No newline at end of file
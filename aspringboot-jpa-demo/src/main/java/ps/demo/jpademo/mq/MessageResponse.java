@@ -10,6 +10,8 @@ public class MessageResponse {
     private Long id;
     private String content;
     private String recipient;
+    private String contentType;
     private String status;
     private Boolean ordered;
+    private String partitionKey;
 }
\ No newline at end of file
@@ -1,89 +1,261 @@
 package ps.demo.jpademo.mq;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
 
+@Slf4j
 @Service
 public class MessageService {
 
     @Autowired
-    private MessageRepository messageRepository;
+    private MessageStore messageStore;
 
     @Autowired
-    private DeadLetterRepository deadLetterRepository;
+    private DeadLetterStore deadLetterStore;
 
     @Autowired
-    private TrackingRepository trackingRepository;
+    private TrackingStore trackingStore;
+
+    @Autowired
+    private DeliveryEngine deliveryEngine;
+
+    @Autowired
+    private RetryScheduler retryScheduler;
+
+    @Autowired
+    private PartitionedLanes partitionedLanes;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private DeliveryMetrics deliveryMetrics;
 
     @Autowired
     private SubscriberRepository subscriberRepository;
 
     @Autowired
-    private SubscriptionRepository subscriptionRepository;
+    private SubscriptionRoutingTable subscriptionRoutingTable;
+
+    @Autowired
+    private ObjectProvider<OutboxDispatcher> outboxDispatcher;
+
+    /**
+     * 启动完成后恢复持久化的重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRetries() {
+        retryScheduler.start(this::retryDelivery);
+    }
 
+    /**
+     * 发件箱模式下只写入 PENDING 消息，提交后唤醒发件箱分发线程认领投递；否则提交后直接投递
+     */
     @Transactional
     public MessageResponse sendMessage(MessageRequest request) {
         MessageEntity entity = MessageConverter.toEntity(request, "system");
         entity.setMaxRetryCount(3); // Default max retry count
-        messageRepository.save(entity);
+        messageStore.save(entity);
         trackMessage(entity.getId(), null, "PENDING", "Message created");
-        processMessageAsync(entity);
+        scheduleDeliveries(List.of(entity));
         return MessageConverter.toResponse(entity);
     }
 
-    @Async
-    public CompletableFuture<Void> processMessageAsync(MessageEntity entity) {
-        try {
-            List<SubscriberEntity> subscribers = getSubscribersForMessage(entity);
-            if (entity.getOrdered()) {
-                subscribers.forEach(subscriber -> pushMessageToSubscriber(entity, subscriber));
-            } else {
-                subscribers.parallelStream().forEach(subscriber -> pushMessageToSubscriber(entity, subscriber));
+    /**
+     * 批量发送：一次批量插入、一个事务，提交后只唤醒一次发件箱分发线程
+     * @return 与请求顺序一致
+     */
+    @Transactional
+    public List<MessageResponse> sendMessages(List<MessageRequest> requests) {
+        List<MessageEntity> entities = new ArrayList<>(requests.size());
+        for (MessageRequest request : requests) {
+            MessageEntity entity = MessageConverter.toEntity(request, "system");
+            entity.setMaxRetryCount(3); // Default max retry count
+            entities.add(entity);
+        }
+        messageStore.saveAll(entities);
+        entities.forEach(entity -> trackMessage(entity.getId(), null, "PENDING", "Message created"));
+        scheduleDeliveries(entities);
+        return entities.stream().map(MessageConverter::toResponse).toList();
+    }
+
+    /**
+     * 事务提交后再唤醒发件箱或开始投递，投递时消息一定已经提交；不在事务中时立即执行
+     */
+    private void scheduleDeliveries(List<MessageEntity> entities) {
+        OutboxDispatcher dispatcher = outboxDispatcher.getIfAvailable();
+        Runnable deliveries = dispatcher != null ? dispatcher::wakeUp : () -> entities.forEach(this::dispatch);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliveries.run();
+                }
+            });
+        } else {
+            deliveries.run();
+        }
+    }
+
+    /**
+     * 有序消息按分区键（默认 recipient）进入分区通道，同一分区键的消息在前一条投递结束后才开始投递；
+     * 一条消息的各个订阅者之间并行投递
+     * @return 消息状态更新为 SENT 或 FAILED 后完成
+     */
+    public CompletableFuture<Void> dispatch(MessageEntity entity) {
+        return deliver(entity).thenApply(delivered -> null);
+    }
+
+    /**
+     * 分发给所有订阅者；有订阅者的重试次数用完时 handleFailure 已把消息改为 FAILED，不再改为 SENT
+     * @return 所有订阅者都投递成功为 true，有订阅者已安排重试、进入死信或分发失败为 false
+     */
+    private CompletableFuture<Boolean> deliver(MessageEntity entity) {
+        if (entity.getCreatedAt() != null) {
+            admissionControl.recordQueueTime(entity.getContentType(), Duration.between(entity.getCreatedAt(), LocalDateTime.now()));
+        }
+        CompletableFuture<Boolean> deliveries = entity.getOrdered()
+                ? partitionedLanes.submit(partitionKey(entity), () -> pushMessageToSubscribers(entity))
+                : pushMessageToSubscribers(entity);
+        return deliveries.handle((delivered, failure) -> {
+            try {
+                if (failure != null) {
+                    throw unwrap(failure);
+                }
+                if (!"FAILED".equals(entity.getStatus())) {
+                    entity.setStatus("SENT");
+                    messageStore.save(entity);
+                    trackMessage(entity.getId(), null, "SENT", "Message sent to all subscribers");
+                }
+                return delivered;
+            } catch (Exception e) {
+                handleFailure(entity, null, e);
+                return false;
             }
-            entity.setStatus("SENT");
-            messageRepository.save(entity);
-            trackMessage(entity.getId(), null, "SENT", "Message sent to all subscribers");
-        } catch (Exception e) {
-            handleFailure(entity, null, e);
+        });
+    }
+
+    /**
+     * 重放一条死信：订阅者级的死信重新投递给这个订阅者，重试次数重新计算；消息级的死信重新分发给所有订阅者
+     * @return 投递成功为 DELIVERED，再次失败（已安排重试或再次进入死信）为 FAILED，消息或订阅者已被删除为 SKIPPED
+     */
+    public CompletableFuture<DeadLetterReplayer.Outcome> replay(DeadLetterEntity deadLetter) {
+        MessageEntity entity = messageStore.findById(deadLetter.getMessageId()).orElse(null);
+        if (entity == null) {
+            return CompletableFuture.completedFuture(DeadLetterReplayer.Outcome.SKIPPED);
         }
-        return CompletableFuture.completedFuture(null);
+        if (deadLetter.getSubscriberId() == null) {
+            trackMessage(entity.getId(), null, "REPLAYING", "Replaying dead letter " + deadLetter.getId());
+            // 重新分发前清除上次的 FAILED（不保存），再次进入死信时由 handleFailure 重新写入
+            entity.setStatus("DISPATCHING");
+            return deliver(entity).thenApply(delivered -> delivered
+                    ? DeadLetterReplayer.Outcome.DELIVERED : DeadLetterReplayer.Outcome.FAILED);
+        }
+        SubscriberEntity subscriber = subscriberRepository.findById(deadLetter.getSubscriberId()).orElse(null);
+        if (subscriber == null) {
+            return CompletableFuture.completedFuture(DeadLetterReplayer.Outcome.SKIPPED);
+        }
+        trackMessage(entity.getId(), subscriber, "REPLAYING", "Replaying dead letter " + deadLetter.getId() + " to subscriber: " + subscriber.getName());
+        return pushMessageToSubscriber(entity, subscriber, 0).thenApply(delivered -> delivered
+                ? DeadLetterReplayer.Outcome.DELIVERED : DeadLetterReplayer.Outcome.FAILED);
     }
 
-    private List<SubscriberEntity> getSubscribersForMessage(MessageEntity entity) {
-        return subscriptionRepository.findByMessageType(entity.getContentType())
-                .stream()
-                .map(SubscriptionEntity::getSubscriber)
-                .collect(Collectors.toList());
+    private static String partitionKey(MessageEntity entity) {
+        return entity.getPartitionKey() != null ? entity.getPartitionKey() : entity.getRecipient();
     }
 
-    private void pushMessageToSubscriber(MessageEntity entity, SubscriberEntity subscriber) {
+    /**
+     * @return 所有订阅者的投递都结束（成功、已安排重试或已进入死信）后完成，全部投递成功为 true
+     */
+    private CompletableFuture<Boolean> pushMessageToSubscribers(MessageEntity entity) {
+        List<SubscriberEntity> subscribers;
         try {
-            // Simulate pushing message to subscriber endpoint
-            Thread.sleep(100);
-            trackMessage(entity.getId(), subscriber.getId(), "DELIVERED", "Message delivered to subscriber: " + subscriber.getName());
+            subscribers = getSubscribersForMessage(entity);
         } catch (Exception e) {
-            trackMessage(entity.getId(), subscriber.getId(), "FAILED", "Failed to deliver to subscriber: " + subscriber.getName() + ", Reason: " + e.getMessage());
-            if (entity.getRetryCount() < entity.getMaxRetryCount()) {
-                entity.setRetryCount(entity.getRetryCount() + 1);
-                messageRepository.save(entity);
-                pushMessageToSubscriber(entity, subscriber);
-            } else {
-                handleFailure(entity, subscriber, e);
-            }
+            return CompletableFuture.failedFuture(e);
+        }
+        List<CompletableFuture<Boolean>> results = subscribers.stream()
+                .map(subscriber -> pushMessageToSubscriber(entity, subscriber, 0))
+                .toList();
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> results.stream().allMatch(CompletableFuture::join));
+    }
+
+    private List<SubscriberEntity> getSubscribersForMessage(MessageEntity entity) {
+        return subscriptionRoutingTable.route(entity.getContentType());
+    }
+
+    /**
+     * 通过投递引擎推送，失败时交给重试调度按退避时间重新投递，这个订阅者的重试次数用完后进入死信
+     * @param attempt 第几次重试，首次投递为 0
+     * @return 本次投递成功（true）、已安排重试或已进入死信（false）后完成
+     */
+    private CompletableFuture<Boolean> pushMessageToSubscriber(MessageEntity entity, SubscriberEntity subscriber, int attempt) {
+        return deliveryEngine.deliver(subscriber.getId(), () -> {
+                    long start = System.nanoTime();
+                    try {
+                        // Simulate pushing message to subscriber endpoint
+                        Thread.sleep(100);
+                    } finally {
+                        deliveryMetrics.recordAttempt(subscriber, entity.getContentType(), System.nanoTime() - start);
+                    }
+                })
+                .handle((ignored, failure) -> {
+                    if (failure == null) {
+                        deliveryMetrics.recordDelivered(subscriber, entity.getContentType(), entity.getCreatedAt(), attempt);
+                        retryScheduler.completed(entity.getId(), subscriber.getId());
+                        trackMessage(entity.getId(), subscriber, "DELIVERED", "Message delivered to subscriber: " + subscriber.getName());
+                        return true;
+                    }
+                    Exception e = unwrap(failure);
+                    deliveryMetrics.recordFailedAttempt(subscriber, entity.getContentType());
+                    trackMessage(entity.getId(), subscriber, "FAILED", "Failed to deliver to subscriber: " + subscriber.getName() + ", Reason: " + e.getMessage());
+                    if (!retryScheduler.scheduleRetry(entity.getId(), subscriber.getId(), entity.getMaxRetryCount(), e.getMessage())) {
+                        deliveryMetrics.recordDeadLetter(subscriber, entity.getContentType(), attempt);
+                        handleFailure(entity, subscriber, e);
+                    }
+                    return false;
+                });
+    }
+
+    /**
+     * 重试到期时重新投递，消息或订阅者已被删除时放弃
+     */
+    private void retryDelivery(Long messageId, Long subscriberId, int attempt) {
+        MessageEntity entity = messageStore.findById(messageId).orElse(null);
+        SubscriberEntity subscriber = subscriberRepository.findById(subscriberId).orElse(null);
+        if (entity == null || subscriber == null) {
+            log.warn("Dropping retry {} - message or subscriber no longer exists, messageId: {}, subscriberId: {}",
+                    attempt, messageId, subscriberId);
+            retryScheduler.completed(messageId, subscriberId);
+            return;
         }
+        pushMessageToSubscriber(entity, subscriber, attempt);
+    }
+
+    private static Exception unwrap(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof Exception e ? e : new CompletionException(cause);
     }
 
     private void handleFailure(MessageEntity entity, SubscriberEntity subscriber, Exception e) {
         entity.setStatus("FAILED");
-        messageRepository.save(entity);
-        trackMessage(entity.getId(), subscriber != null ? subscriber.getId() : null, "FAILED", "Message failed after max retries: " + e.getMessage());
+        messageStore.save(entity);
+        trackMessage(entity.getId(), subscriber, "FAILED", "Message failed after max retries: " + e.getMessage());
         DeadLetterEntity deadLetter = new DeadLetterEntity();
         deadLetter.setMessageId(entity.getId());
         if (subscriber != null) {
@@ -93,24 +265,12 @@ public class MessageService {
         }
         deadLetter.setReason(e.getMessage());
         deadLetter.setStackTrace(e.toString());
+        deadLetter.setCreatedAt(LocalDateTime.now());
         deadLetter.setCreatedBy("system");
-        deadLetterRepository.save(deadLetter);
+        deadLetterStore.save(deadLetter);
     }
 
-    private void trackMessage(Long messageId, Long subscriberId, String status, String details) {
-        TrackingEntity tracking = new TrackingEntity();
-        tracking.setMessageId(messageId);
-        tracking.setSubscriberId(subscriberId);
-        tracking.setStatus(status);
-        tracking.setTimestamp(LocalDateTime.now());
-        tracking.setDetails(details);
-        if (subscriberId != null) {
-            SubscriberEntity subscriber = subscriberRepository.findById(subscriberId).orElse(null);
-            if (subscriber != null) {
-                tracking.setSubscriberName(subscriber.getName());
-                tracking.setSubscriberEndpoint(subscriber.getEndpoint());
-            }
-        }
-        trackingRepository.save(tracking);
+    private void trackMessage(Long messageId, SubscriberEntity subscriber, String status, String details) {
+        trackingStore.track(TrackingEvent.of(messageId, subscriber, status, details));
     }
-}
\ No newline at end of file
+}
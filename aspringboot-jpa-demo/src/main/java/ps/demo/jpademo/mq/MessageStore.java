@@ -0,0 +1,41 @@
+package ps.demo.jpademo.mq;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 消息存储 SPI，mq.storage.type=jpa（默认）时为 JpaMessageStore，log 时为 LogMessageStore
+ */
+public interface MessageStore {
+
+    /**
+     * 保存消息，新消息分配 id
+     */
+    MessageEntity save(MessageEntity message);
+
+    /**
+     * 批量保存新消息并按顺序分配 id，调用方在事务中时与调用方一起提交
+     */
+    List<MessageEntity> saveAll(List<MessageEntity> messages);
+
+    Optional<MessageEntity> findById(Long id);
+
+    /**
+     * 按 id 顺序认领最多 limit 条 PENDING 消息，状态改为 DISPATCHING 并记录认领者
+     * @return 本次认领到的消息，已被其他认领者抢先认领的不包括在内
+     */
+    List<MessageEntity> claimPending(String owner, int limit);
+
+    /**
+     * 把认领时间早于 before 的 DISPATCHING 消息放回 PENDING
+     * @return 放回的消息数
+     */
+    int releaseExpiredClaims(LocalDateTime before);
+
+    /**
+     * 按 contentType 统计已接收未投递完（PENDING 和 DISPATCHING）的消息数
+     */
+    Map<String, Long> countBacklog();
+}
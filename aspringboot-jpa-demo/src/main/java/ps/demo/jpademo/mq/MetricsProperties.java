@@ -0,0 +1,30 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 投递指标配置（mq.metrics.*）
+ */
+@Data
+public class MetricsProperties {
+
+    /**
+     * 百分位统计的滚动窗口（毫秒），p50/p99/p999 只反映最近这段时间的投递
+     */
+    private long window = 60000;
+
+    /**
+     * 滚动窗口分成的桶数，每过 window / buffers 轮换一个桶
+     */
+    private int buffers = 3;
+
+    /**
+     * 同时导出百分位直方图桶，用于在 Prometheus 中跨实例聚合；每个订阅者和 contentType 会多出几十个时间序列
+     */
+    private boolean percentileHistogram = false;
+
+    /**
+     * 接收到投递完成的 p99 目标（毫秒），/actuator/mqdelivery 标记超过目标的订阅者
+     */
+    private long latencyObjective = 1000;
+}
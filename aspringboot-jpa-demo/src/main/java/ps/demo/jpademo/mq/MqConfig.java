@@ -0,0 +1,243 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@ConfigurationProperties(prefix = "mq")
+public class MqConfig {
+
+    private TrackingProperties tracking = new TrackingProperties();
+    private DeliveryProperties delivery = new DeliveryProperties();
+    private RetryProperties retry = new RetryProperties();
+    private OrderingProperties ordering = new OrderingProperties();
+    private OutboxProperties outbox = new OutboxProperties();
+    private StorageProperties storage = new StorageProperties();
+    private RoutingProperties routing = new RoutingProperties();
+    private AdmissionProperties admission = new AdmissionProperties();
+    private BatchProperties batch = new BatchProperties();
+    private MetricsProperties metrics = new MetricsProperties();
+    private ReplayProperties replay = new ReplayProperties();
+
+    /**
+     * tracking 表的异步批量写入器，作为 MeterBinder 自动注册 mq.tracking.* 指标
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "jpa", matchIfMissing = true)
+    public TrackingWriter trackingWriter(JdbcTemplate jdbcTemplate) {
+        return new TrackingWriter(jdbcTemplate, tracking);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "jpa", matchIfMissing = true)
+    public MessageStore jpaMessageStore(MessageRepository messageRepository, JdbcTemplate jdbcTemplate) {
+        return new JpaMessageStore(messageRepository, jdbcTemplate, batch.getJdbcBatchSize());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "jpa", matchIfMissing = true)
+    public TrackingStore jpaTrackingStore(TrackingWriter trackingWriter, TrackingRepository trackingRepository) {
+        return new JpaTrackingStore(trackingWriter, trackingRepository);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "jpa", matchIfMissing = true)
+    public DeadLetterStore jpaDeadLetterStore(DeadLetterRepository deadLetterRepository) {
+        return new JpaDeadLetterStore(deadLetterRepository);
+    }
+
+    /**
+     * 消息、tracking、死信写入本地分段日志文件，作为 MeterBinder 自动注册 mq.log.* 指标
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "log")
+    public LogStorage logStorage() {
+        return new LogStorage(storage);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "log")
+    public MessageStore logMessageStore(LogStorage logStorage) {
+        return new LogMessageStore(logStorage.messages());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "log")
+    public TrackingStore logTrackingStore(LogStorage logStorage) {
+        return new LogTrackingStore(logStorage.tracking());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.storage", name = "type", havingValue = "log")
+    public DeadLetterStore logDeadLetterStore(LogStorage logStorage) {
+        return new LogDeadLetterStore(logStorage.deadLetters());
+    }
+
+    /**
+     * 订阅者推送使用的投递引擎，不占用公共 ForkJoinPool
+     */
+    @Bean
+    public DeliveryEngine deliveryEngine() {
+        return new DeliveryEngine(delivery);
+    }
+
+    /**
+     * 投递失败后的退避重试，重试状态持久化在 delivery_retries 表
+     */
+    @Bean
+    public RetryScheduler retryScheduler(RetryRepository retryRepository) {
+        return new RetryScheduler(retryRepository, retry);
+    }
+
+    /**
+     * 有序消息按分区键分到单线程通道，作为 MeterBinder 自动注册 mq.ordering.* 指标
+     */
+    @Bean
+    public PartitionedLanes partitionedLanes() {
+        return new PartitionedLanes(ordering);
+    }
+
+    /**
+     * 发件箱分发，mq.outbox.enabled=false 时 sendMessage 直接投递
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "mq.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public OutboxDispatcher outboxDispatcher(MessageStore messageStore, MessageService messageService) {
+        return new OutboxDispatcher(messageStore, messageService, outbox);
+    }
+
+    /**
+     * 订阅路由表，作为 MeterBinder 自动注册 mq.routing.* 指标
+     */
+    @Bean
+    public SubscriptionRoutingTable subscriptionRoutingTable(SubscriptionRepository subscriptionRepository) {
+        return new SubscriptionRoutingTable(subscriptionRepository, routing);
+    }
+
+    @Bean
+    public SubscriptionRoutingEndpoint subscriptionRoutingEndpoint(SubscriptionRoutingTable subscriptionRoutingTable) {
+        return new SubscriptionRoutingEndpoint(subscriptionRoutingTable);
+    }
+
+    /**
+     * POST /api/messages 的准入控制，作为 MeterBinder 自动注册 mq.admission.* 指标
+     */
+    @Bean
+    public AdmissionControl admissionControl(MessageStore messageStore) {
+        return new AdmissionControl(messageStore, admission);
+    }
+
+    /**
+     * 按订阅者和 contentType 的投递指标，标签随订阅者动态增加，所以直接使用 MeterRegistry 而不是 MeterBinder
+     */
+    @Bean
+    public DeliveryMetrics deliveryMetrics(MeterRegistry meterRegistry) {
+        return new DeliveryMetrics(meterRegistry, metrics);
+    }
+
+    @Bean
+    public DeliveryMetricsEndpoint deliveryMetricsEndpoint(DeliveryMetrics deliveryMetrics) {
+        return new DeliveryMetricsEndpoint(deliveryMetrics);
+    }
+
+    /**
+     * 死信批量重放，任务状态和断点保存在 dead_letter_replays 表，作为 MeterBinder 自动注册 mq.replay.* 指标
+     */
+    @Bean
+    public DeadLetterReplayer deadLetterReplayer(DeadLetterStore deadLetterStore, DeadLetterReplayRepository deadLetterReplayRepository,
+                                                 MessageService messageService) {
+        return new DeadLetterReplayer(deadLetterStore, deadLetterReplayRepository, messageService, replay);
+    }
+
+    public TrackingProperties getTracking() {
+        return tracking;
+    }
+
+    public void setTracking(TrackingProperties tracking) {
+        this.tracking = tracking;
+    }
+
+    public DeliveryProperties getDelivery() {
+        return delivery;
+    }
+
+    public void setDelivery(DeliveryProperties delivery) {
+        this.delivery = delivery;
+    }
+
+    public RetryProperties getRetry() {
+        return retry;
+    }
+
+    public void setRetry(RetryProperties retry) {
+        this.retry = retry;
+    }
+
+    public OrderingProperties getOrdering() {
+        return ordering;
+    }
+
+    public void setOrdering(OrderingProperties ordering) {
+        this.ordering = ordering;
+    }
+
+    public OutboxProperties getOutbox() {
+        return outbox;
+    }
+
+    public void setOutbox(OutboxProperties outbox) {
+        this.outbox = outbox;
+    }
+
+    public StorageProperties getStorage() {
+        return storage;
+    }
+
+    public void setStorage(StorageProperties storage) {
+        this.storage = storage;
+    }
+
+    public RoutingProperties getRouting() {
+        return routing;
+    }
+
+    public void setRouting(RoutingProperties routing) {
+        this.routing = routing;
+    }
+
+    public AdmissionProperties getAdmission() {
+        return admission;
+    }
+
+    public void setAdmission(AdmissionProperties admission) {
+        this.admission = admission;
+    }
+
+    public BatchProperties getBatch() {
+        return batch;
+    }
+
+    public void setBatch(BatchProperties batch) {
+        this.batch = batch;
+    }
+
+    public MetricsProperties getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsProperties metrics) {
+        this.metrics = metrics;
+    }
+
+    public ReplayProperties getReplay() {
+        return replay;
+    }
+
+    public void setReplay(ReplayProperties replay) {
+        this.replay = replay;
+    }
+}
@@ -0,0 +1,25 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 有序消息分区配置（mq.ordering.*）
+ */
+@Data
+public class OrderingProperties {
+
+    /**
+     * 分区通道数，每个通道一个线程，0 表示使用 CPU 核数
+     */
+    private int lanes = 0;
+
+    /**
+     * 每个通道的队列容量，队列满时消息直接失败
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 关闭时等待通道处理完队列中消息的最长时间（毫秒）
+     */
+    private long shutdownTimeout = 10000;
+}
@@ -0,0 +1,166 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 消息发件箱分发
+ * - sendMessage 只在请求事务中写入 PENDING 消息，HTTP 响应时间与订阅者数量无关
+ * - 分发线程通过 MessageStore 按 id 顺序批量认领 PENDING 消息；jpa 存储用带 status = 'PENDING' 条件的 update 认领，
+ *   多个实例同时认领同一条消息时只有一个成功，各实例分担分发
+ * - 认领到的消息交给 MessageService 异步投递，本实例投递中的消息数达到 max-in-flight 时暂停认领
+ * - 实例宕机时认领的消息在 claim-timeout 后放回 PENDING 由任意实例重新认领，投递语义为至少一次
+ */
+@Slf4j
+public class OutboxDispatcher implements InitializingBean, DisposableBean, MeterBinder {
+
+    private final MessageStore messageStore;
+    private final MessageService messageService;
+    private final OutboxProperties properties;
+    private final String owner;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+
+    private volatile boolean closed;
+    private Thread dispatcherThread;
+    private long lastReleaseNanos;
+
+    public OutboxDispatcher(MessageStore messageStore, MessageService messageService, OutboxProperties properties) {
+        this.messageStore = messageStore;
+        this.messageService = messageService;
+        this.properties = properties;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        lastReleaseNanos = System.nanoTime();
+        dispatcherThread = new Thread(this::run, "mq-outbox-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+        log.info("Outbox dispatcher started - owner: {}", owner);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        if (dispatcherThread != null) {
+            LockSupport.unpark(dispatcherThread);
+            dispatcherThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        // 投递中的消息由投递引擎关闭时处理，没有投递结束的在认领超时后由其他实例重新认领
+        log.info("Outbox dispatcher stopped - in flight: {}", inFlight.get());
+    }
+
+    /**
+     * 立即认领一次，不等轮询间隔，本实例发送的消息提交后调用
+     */
+    public void wakeUp() {
+        Thread thread = dispatcherThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 本实例投递中的消息数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mq.outbox.in.flight", inFlight, AtomicInteger::get)
+                .description("Messages claimed by this instance and still being delivered")
+                .register(registry);
+        FunctionCounter.builder("mq.outbox.claimed", claimed, AtomicLong::get)
+                .description("Messages claimed from the outbox by this instance")
+                .register(registry);
+        FunctionCounter.builder("mq.outbox.released", released, AtomicLong::get)
+                .description("Expired claims put back to PENDING")
+                .register(registry);
+    }
+
+    private void run() {
+        while (!closed) {
+            int limit = 0;
+            int count = 0;
+            try {
+                releaseExpiredClaims();
+                limit = Math.min(properties.getBatchSize(), properties.getMaxInFlight() - inFlight.get());
+                count = limit > 0 ? dispatchBatch(limit) : 0;
+            } catch (Exception e) {
+                log.error("Failed to dispatch outbox messages", e);
+            }
+            // 认领满一批说明还有积压，立即继续
+            if (limit <= 0 || count < limit) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(properties.getPollInterval()));
+            }
+        }
+    }
+
+    /**
+     * 认领并投递一批消息
+     * @return 认领到的消息数
+     */
+    int dispatchBatch(int limit) {
+        List<MessageEntity> messages = messageStore.claimPending(owner, limit);
+        claimed.addAndGet(messages.size());
+        for (MessageEntity message : messages) {
+            inFlight.incrementAndGet();
+            CompletableFuture<Void> delivery;
+            try {
+                delivery = messageService.dispatch(message);
+            } catch (RuntimeException e) {
+                // 留在 DISPATCHING，认领超时后重新认领
+                inFlight.decrementAndGet();
+                log.error("Failed to dispatch message - messageId: {}", message.getId(), e);
+                continue;
+            }
+            delivery.whenComplete((ignored, failure) -> {
+                // 从 max-in-flight 降下来时唤醒，不等轮询间隔
+                if (inFlight.decrementAndGet() == properties.getMaxInFlight() - 1) {
+                    wakeUp();
+                }
+            });
+        }
+        return messages.size();
+    }
+
+    private void releaseExpiredClaims() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(Math.max(properties.getPollInterval(), properties.getClaimTimeout() / 2));
+        if (System.nanoTime() - lastReleaseNanos < interval) {
+            return;
+        }
+        lastReleaseNanos = System.nanoTime();
+        int count = messageStore.releaseExpiredClaims(
+                LocalDateTime.now().minus(properties.getClaimTimeout(), ChronoUnit.MILLIS));
+        if (count > 0) {
+            released.addAndGet(count);
+            log.warn("Released {} outbox messages whose claim expired after {} ms", count, properties.getClaimTimeout());
+        }
+    }
+}
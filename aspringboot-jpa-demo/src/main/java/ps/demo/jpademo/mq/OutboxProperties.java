@@ -0,0 +1,35 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 消息发件箱配置（mq.outbox.*）
+ */
+@Data
+public class OutboxProperties {
+
+    /**
+     * 开启后 sendMessage 只写入消息，由发件箱分发线程认领后投递；关闭时在 sendMessage 中直接投递
+     */
+    private boolean enabled = true;
+
+    /**
+     * 没有待分发消息时的轮询间隔（毫秒），本实例发送的消息提交后会立即唤醒分发线程
+     */
+    private long pollInterval = 500;
+
+    /**
+     * 每次认领的最大消息数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 本实例同时在投递中的最大消息数，达到后暂停认领，留给其他实例
+     */
+    private int maxInFlight = 1000;
+
+    /**
+     * 认领超时（毫秒），超过这个时间仍未投递结束的消息（实例宕机等）放回待分发，由任意实例重新认领
+     */
+    private long claimTimeout = 300000;
+}
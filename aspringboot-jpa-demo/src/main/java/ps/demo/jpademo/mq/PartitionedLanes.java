@@ -0,0 +1,177 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 有序消息的分区通道
+ * - 按分区键的 hash 把任务分到 N 个通道，每个通道一个线程按提交顺序逐个执行，
+ *   同一分区键的任务先进先出，不同分区键分散在各个通道上并行
+ * - 任务返回 CompletableFuture，通道等它完成后才开始下一个任务，所以异步的投递也不会乱序
+ * - 通道队列有界，队列满或已关闭时任务以 RejectedExecutionException 失败
+ * - 关闭时等待通道处理完已提交的任务，超时后剩余任务以 RejectedExecutionException 失败
+ */
+@Slf4j
+public class PartitionedLanes implements InitializingBean, DisposableBean, MeterBinder {
+
+    private final OrderingProperties properties;
+    private final Lane[] lanes;
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public PartitionedLanes(OrderingProperties properties) {
+        this.properties = properties;
+        int count = properties.getLanes() > 0 ? properties.getLanes() : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i, properties.getQueueCapacity());
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+        log.info("Partitioned lanes started - lanes: {}", lanes.length);
+    }
+
+    /**
+     * 在分区键对应的通道中执行任务
+     * @param key 分区键，相同的键按提交顺序执行
+     * @param task 在通道线程中调用，返回的 future 完成后通道才执行下一个任务
+     * @return 任务返回的 future 完成后以相同结果完成；任务被拒绝时异常完成
+     */
+    public <T> CompletableFuture<T> submit(String key, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Lane lane = lanes[laneOf(key)];
+        if (closed || !lane.queue.offer(new LaneTask<>(task, result))) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException(closed
+                    ? "Partitioned lanes are shut down"
+                    : "Lane " + lane.index + " is full, capacity: " + properties.getQueueCapacity()));
+        }
+        return result;
+    }
+
+    /**
+     * 分区键对应的通道
+     */
+    public int laneOf(String key) {
+        return key == null ? 0 : Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * 通道中等待执行的任务数
+     */
+    public int depth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Lane lane : lanes) {
+            Gauge.builder("mq.ordering.lane.depth", lane.queue, BlockingQueue::size)
+                    .description("Ordered messages waiting in a partition lane")
+                    .tag("lane", String.valueOf(lane.index))
+                    .register(registry);
+        }
+        FunctionCounter.builder("mq.ordering.rejected", rejected, AtomicLong::get)
+                .description("Ordered messages rejected because the lane was full or shut down")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getShutdownTimeout());
+        for (Lane lane : lanes) {
+            lane.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        int abandoned = 0;
+        for (Lane lane : lanes) {
+            if (lane.thread.isAlive()) {
+                lane.thread.interrupt();
+            }
+            LaneTask<?> task;
+            while ((task = lane.queue.poll()) != null) {
+                task.result.completeExceptionally(new RejectedExecutionException("Partitioned lanes are shut down"));
+                abandoned++;
+            }
+        }
+        if (abandoned > 0) {
+            log.warn("Partitioned lanes did not drain within {} ms, abandoned tasks: {}", properties.getShutdownTimeout(), abandoned);
+        }
+    }
+
+    private record LaneTask<T>(Supplier<CompletableFuture<T>> task, CompletableFuture<T> result) {
+
+        private void run() throws InterruptedException, ExecutionException {
+            CompletableFuture<T> future;
+            try {
+                future = task.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            // 等任务完成后通道线程才取下一个任务
+            CompletableFuture<Void> done = future.handle((value, failure) -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(value);
+                }
+                return null;
+            });
+            done.get();
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final BlockingQueue<LaneTask<?>> queue;
+        private final Thread thread;
+
+        private Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            this.thread = new Thread(this::run, "mq-ordered-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            while (!closed || !queue.isEmpty()) {
+                try {
+                    LaneTask<?> task = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.error("Unexpected error in lane {}", index, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 死信重放配置（mq.replay.*）
+ */
+@Data
+public class ReplayProperties {
+
+    /**
+     * 每次从死信存储读取的条数，内存中最多保留这么多条待重放的死信
+     */
+    private int batchSize = 500;
+
+    /**
+     * 请求中没有指定时每秒重放的死信数
+     */
+    private int rate = 100;
+
+    /**
+     * 请求中没有指定时同时重放中的死信数
+     */
+    private int parallelism = 8;
+
+    /**
+     * 请求允许的最大并行度
+     */
+    private int maxParallelism = 64;
+
+    /**
+     * 保存断点和心跳的间隔（毫秒）
+     */
+    private long checkpointInterval = 1000;
+
+    /**
+     * 心跳超过这个时间（毫秒）没有更新的 RUNNING 任务视为执行实例已宕机，由任意实例从断点接管
+     */
+    private long staleTimeout = 60000;
+}
@@ -0,0 +1,60 @@
+package ps.demo.jpademo.mq;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * 一个（消息, 订阅者）的重试状态，投递成功或进入死信后删除
+ * 重试由 owner 实例调度，租约过期后由任意实例接管
+ */
+@Entity
+@Table(name = "delivery_retries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_delivery_retries_message_subscriber",
+                columnNames = {"message_id", "subscriber_id"}),
+        indexes = @Index(name = "idx_delivery_retries_lease_until", columnList = "lease_until"))
+@Getter
+@Setter
+public class RetryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long messageId;
+
+    @Column(nullable = false)
+    private Long subscriberId;
+
+    /**
+     * 已安排的重试次数
+     */
+    @Column(nullable = false)
+    private Integer attempt;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    /**
+     * 调度这次重试的实例，为空表示没有实例持有
+     */
+    @Column
+    private String owner;
+
+    /**
+     * 租约到期时间，owner 在此之前没有完成重试时由任意实例接管
+     */
+    @Column
+    private LocalDateTime leaseUntil;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,40 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 投递重试配置（mq.retry.*），每个（消息, 订阅者）的重试次数上限为消息的 maxRetryCount
+ */
+@Data
+public class RetryProperties {
+
+    /**
+     * 第一次重试的延迟（毫秒）
+     */
+    private long initialDelay = 1000;
+
+    /**
+     * 每次重试延迟的倍数
+     */
+    private double multiplier = 2.0;
+
+    /**
+     * 重试延迟上限（毫秒）
+     */
+    private long maxDelay = 60000;
+
+    /**
+     * 随机抖动比例，实际延迟在 delay * (1 ± jitter) 之间，避免同一时刻失败的投递同时重试
+     */
+    private double jitter = 0.2;
+
+    /**
+     * 重试租约时长（毫秒）：到期时间之后这么久 owner 还没有完成重试时，由其他实例接管
+     */
+    private long leaseTimeout = 300000;
+
+    /**
+     * 扫描租约过期的重试的间隔（毫秒）
+     */
+    private long scanInterval = 30000;
+}
@@ -0,0 +1,53 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RetryRepository extends JpaRepository<RetryEntity, Long> {
+
+    Optional<RetryEntity> findByMessageIdAndSubscriberId(Long messageId, Long subscriberId);
+
+    /**
+     * 没有实例持有或租约已过期的重试
+     */
+    @Query("select r from RetryEntity r where r.owner is null or r.leaseUntil < :now")
+    List<RetryEntity> findClaimable(@Param("now") LocalDateTime now);
+
+    /**
+     * 到期时认领重试：仍是同一次重试，且属于 owner、没有实例持有或租约已过期，多个实例同时认领时只有一个成功
+     * @return 认领成功返回 1
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update RetryEntity r set r.owner = :owner, r.leaseUntil = :leaseUntil, r.updatedAt = :now
+            where r.messageId = :messageId and r.subscriberId = :subscriberId and r.attempt = :attempt
+              and (r.owner = :owner or r.owner is null or r.leaseUntil < :now)
+            """)
+    int claim(@Param("messageId") Long messageId, @Param("subscriberId") Long subscriberId,
+              @Param("attempt") Integer attempt, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * 释放 owner 持有的重试，停机后其他实例或重启后的实例立即接管
+     * @return 释放的重试数
+     */
+    @Modifying
+    @Transactional
+    @Query("update RetryEntity r set r.owner = null, r.leaseUntil = null where r.owner = :owner")
+    int releaseLeases(@Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RetryEntity r where r.messageId = :messageId and r.subscriberId = :subscriberId")
+    int deleteByMessageIdAndSubscriberId(@Param("messageId") Long messageId, @Param("subscriberId") Long subscriberId);
+}
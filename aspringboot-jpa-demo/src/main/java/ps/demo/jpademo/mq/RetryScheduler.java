@@ -0,0 +1,280 @@
+package ps.demo.jpademo.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 投递重试调度
+ * - 重试状态按（消息, 订阅者）记录在 delivery_retries 表，每个订阅者有自己的重试次数，互不占用
+ * - 重试延迟按指数退避并加随机抖动：min(max-delay, initial-delay * multiplier^(attempt-1)) * (1 ± jitter)
+ * - 等待中的重试放在 DelayQueue 中，由一个调度线程在到期时交给 RetryHandler，等待期间不占用投递线程
+ * - 下次重试时间持久化，安排重试的实例持有租约（下次重试时间 + lease-timeout），到期时用条件更新认领后再重试，
+ *   多个实例不会重复重试；停机时释放租约，实例宕机时租约过期后由任意实例接管，已经过期的立即重试
+ */
+@Slf4j
+public class RetryScheduler implements DisposableBean {
+
+    /**
+     * 到期重试的处理，在调度线程中调用，应尽快把投递交给投递引擎后返回
+     */
+    @FunctionalInterface
+    public interface RetryHandler {
+        void retry(Long messageId, Long subscriberId, int attempt);
+    }
+
+    private record RetryKey(Long messageId, Long subscriberId) {
+    }
+
+    private static final class ScheduledRetry implements Delayed {
+
+        private final RetryKey key;
+        private final int attempt;
+        private final long dueNanos;
+
+        private ScheduledRetry(RetryKey key, int attempt, long dueNanos) {
+            this.key = key;
+            this.attempt = attempt;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((ScheduledRetry) other).dueNanos);
+        }
+    }
+
+    private final RetryRepository retryRepository;
+    private final RetryProperties properties;
+    private final DelayQueue<ScheduledRetry> queue = new DelayQueue<>();
+    // 本实例调度中的（消息, 订阅者）及最新一次重试的序号，投递成功时只有在这里面才需要删除记录
+    private final Map<RetryKey, Integer> pending = new ConcurrentHashMap<>();
+    private final String owner;
+
+    private volatile RetryHandler handler;
+    private Thread dispatcher;
+
+    public RetryScheduler(RetryRepository retryRepository, RetryProperties properties) {
+        this.retryRepository = retryRepository;
+        this.properties = properties;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 加载没有实例持有或租约已过期的重试并启动调度线程
+     * @return 加载的重试数
+     */
+    public synchronized int start(RetryHandler handler) {
+        if (dispatcher != null) {
+            throw new IllegalStateException("Retry scheduler already started");
+        }
+        this.handler = handler;
+        int restored = loadClaimable();
+        dispatcher = new Thread(this::dispatch, "mq-retry-scheduler");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("Retry scheduler started - owner: {}, restored retries: {}", owner, restored);
+        return restored;
+    }
+
+    /**
+     * 投递失败后安排下一次重试，重试状态总是从数据库读取，包括启动前和其他实例写入的
+     * @param maxAttempts 这个订阅者的重试次数上限
+     * @return 已安排重试返回 true；重试次数已用完返回 false 并清除重试状态，调用方进入死信处理
+     */
+    public boolean scheduleRetry(Long messageId, Long subscriberId, int maxAttempts, String error) {
+        return scheduleRetry(messageId, subscriberId, maxAttempts, error, true);
+    }
+
+    private boolean scheduleRetry(Long messageId, Long subscriberId, int maxAttempts, String error, boolean retryOnConflict) {
+        RetryKey key = new RetryKey(messageId, subscriberId);
+        RetryEntity retry = retryRepository.findByMessageIdAndSubscriberId(messageId, subscriberId).orElse(null);
+        int attempt = retry != null ? retry.getAttempt() : 0;
+        if (attempt >= maxAttempts) {
+            pending.remove(key);
+            if (retry != null) {
+                retryRepository.deleteByMessageIdAndSubscriberId(messageId, subscriberId);
+            }
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        boolean inserting = retry == null;
+        if (inserting) {
+            retry = new RetryEntity();
+            retry.setMessageId(messageId);
+            retry.setSubscriberId(subscriberId);
+            retry.setCreatedAt(now);
+        }
+        long delayMillis = backoff(attempt + 1);
+        LocalDateTime nextAttemptAt = now.plus(Duration.ofMillis(delayMillis));
+        retry.setAttempt(attempt + 1);
+        retry.setNextAttemptAt(nextAttemptAt);
+        retry.setLastError(truncate(error));
+        retry.setOwner(owner);
+        retry.setLeaseUntil(nextAttemptAt.plus(Duration.ofMillis(properties.getLeaseTimeout())));
+        retry.setUpdatedAt(now);
+        try {
+            retryRepository.save(retry);
+        } catch (DataIntegrityViolationException e) {
+            if (!inserting || !retryOnConflict) {
+                throw e;
+            }
+            // 其他实例同时插入了这一行，重新读取后在它的基础上计数
+            return scheduleRetry(messageId, subscriberId, maxAttempts, error, false);
+        }
+        pending.put(key, attempt + 1);
+        queue.add(new ScheduledRetry(key, attempt + 1, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+        log.info("Scheduled retry {}/{} in {} ms - messageId: {}, subscriberId: {}",
+                attempt + 1, maxAttempts, delayMillis, messageId, subscriberId);
+        return true;
+    }
+
+    /**
+     * 投递成功或放弃后清除重试状态
+     */
+    public void completed(Long messageId, Long subscriberId) {
+        RetryKey key = new RetryKey(messageId, subscriberId);
+        if (pending.remove(key) != null) {
+            retryRepository.deleteByMessageIdAndSubscriberId(messageId, subscriberId);
+        }
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * 等待到期的重试数
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 第 attempt 次重试的延迟（毫秒），含抖动
+     */
+    long backoff(int attempt) {
+        double delay = Math.min(properties.getMaxDelay(),
+                properties.getInitialDelay() * Math.pow(properties.getMultiplier(), attempt - 1));
+        double jitter = properties.getJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, Math.round(delay * (1 + jitter)));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = dispatcher;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(1000);
+        }
+        // 未到期的重试保留在表中并释放租约，由其他实例或重启后的实例继续
+        int released = 0;
+        try {
+            released = retryRepository.releaseLeases(owner);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release retry leases, they will be taken over after lease-timeout - owner: {}", owner, e);
+        }
+        log.info("Retry scheduler stopped - pending retries: {}, released leases: {}", queue.size(), released);
+    }
+
+    /**
+     * 把没有实例持有或租约已过期、本实例还没有调度的重试加入队列，到期时认领成功才重试
+     * @return 加入的重试数
+     */
+    int loadClaimable() {
+        LocalDateTime now = LocalDateTime.now();
+        int loaded = 0;
+        for (RetryEntity retry : retryRepository.findClaimable(now)) {
+            RetryKey key = new RetryKey(retry.getMessageId(), retry.getSubscriberId());
+            if (retry.getAttempt().equals(pending.get(key))) {
+                // 本实例已在调度这一次重试
+                continue;
+            }
+            pending.put(key, retry.getAttempt());
+            long delayNanos = Math.max(0, Duration.between(now, retry.getNextAttemptAt()).toNanos());
+            queue.add(new ScheduledRetry(key, retry.getAttempt(), System.nanoTime() + delayNanos));
+            loaded++;
+        }
+        return loaded;
+    }
+
+    private void dispatch() {
+        long scanNanos = TimeUnit.MILLISECONDS.toNanos(properties.getScanInterval());
+        long nextScan = System.nanoTime() + scanNanos;
+        while (!Thread.currentThread().isInterrupted()) {
+            ScheduledRetry retry;
+            try {
+                retry = queue.poll(Math.max(0, nextScan - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (retry == null) {
+                nextScan = System.nanoTime() + scanNanos;
+                try {
+                    int loaded = loadClaimable();
+                    if (loaded > 0) {
+                        log.info("Taking over {} retries whose lease expired", loaded);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to load retries whose lease expired", e);
+                }
+                continue;
+            }
+            try {
+                if (!claim(retry)) {
+                    continue;
+                }
+                handler.retry(retry.key.messageId(), retry.key.subscriberId(), retry.attempt);
+            } catch (RuntimeException e) {
+                // 同一次重试稍后再试，不消耗重试次数
+                long delayMillis = backoff(retry.attempt);
+                log.error("Retry failed to start, trying again in {} ms - messageId: {}, subscriberId: {}, attempt: {}",
+                        delayMillis, retry.key.messageId(), retry.key.subscriberId(), retry.attempt, e);
+                queue.add(new ScheduledRetry(retry.key, retry.attempt,
+                        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+            }
+        }
+    }
+
+    /**
+     * 到期时认领重试，本实例已安排了更新的一次重试、重试已完成或已被其他实例接管时返回 false
+     */
+    private boolean claim(ScheduledRetry retry) {
+        if (!Integer.valueOf(retry.attempt).equals(pending.get(retry.key))) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plus(Duration.ofMillis(properties.getLeaseTimeout()));
+        if (retryRepository.claim(retry.key.messageId(), retry.key.subscriberId(), retry.attempt, owner, now, leaseUntil) == 1) {
+            return true;
+        }
+        pending.remove(retry.key, retry.attempt);
+        log.debug("Skipping retry {} - completed or taken over by another instance, messageId: {}, subscriberId: {}",
+                retry.attempt, retry.key.messageId(), retry.key.subscriberId());
+        return false;
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+}
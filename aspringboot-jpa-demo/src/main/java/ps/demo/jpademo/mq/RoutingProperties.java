@@ -0,0 +1,15 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 订阅路由表配置（mq.routing.*）
+ */
+@Data
+public class RoutingProperties {
+
+    /**
+     * 定期全量重新加载的间隔（毫秒），兜底事件通知之外的订阅变化（如直接改库、其他实例修改）
+     */
+    private long reconcileInterval = 60000;
+}
@@ -0,0 +1,283 @@
+package ps.demo.jpademo.mq;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的分段日志
+ * - 记录按追加顺序分配连续的偏移，写入最后一个（活动）段，段文件为内存映射文件，追加不经过系统调用
+ * - 活动段写满 segment-bytes / index-bytes，或第一条记录写入后超过 segment-ms 时封存并滚动到新段
+ * - 按偏移读取时先按段的起始偏移找到段，再查段内稠密索引，读取与追加可以并发
+ * - 保留策略只删除已封存的段：最后一条记录早于 retention-ms 的段，以及总大小超过 retention-bytes 时最早的段；
+ *   删除前交给 Compactor 把段中仍然有效的记录重新追加到活动段
+ * - 打开时加载目录中已有的段，最后一个段扫描恢复后继续追加
+ * - 目录中可以保存少量不随段删除的元数据文件（如 id 序列的高水位）
+ */
+@Slf4j
+public class SegmentedLog implements Closeable {
+
+    /**
+     * 保留策略删除段之前的回调，在追加锁之外调用，可以追加记录
+     */
+    @FunctionalInterface
+    public interface Compactor {
+
+        /**
+         * 把偏移在 [fromOffset, toOffset) 之间、仍然有效的记录重新追加到日志
+         */
+        void compact(long fromOffset, long toOffset);
+    }
+
+    private final Path directory;
+    private final StorageProperties properties;
+    private final LongSupplier clock;
+    private final ConcurrentNavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object retentionLock = new Object();
+
+    private volatile LogSegment active;
+    private volatile boolean closed;
+    private volatile Compactor compactor;
+
+    public SegmentedLog(Path directory, StorageProperties properties) {
+        this(directory, properties, System::currentTimeMillis);
+    }
+
+    SegmentedLog(Path directory, StorageProperties properties, LongSupplier clock) {
+        this.directory = directory;
+        this.properties = properties;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            List<Long> baseOffsets;
+            try (Stream<Path> files = Files.list(directory)) {
+                baseOffsets = files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(".log"))
+                        .map(name -> Long.parseLong(name.substring(0, name.length() - ".log".length())))
+                        .sorted()
+                        .toList();
+            }
+            for (int i = 0; i < baseOffsets.size(); i++) {
+                boolean last = i == baseOffsets.size() - 1;
+                LogSegment segment = LogSegment.open(directory, baseOffsets.get(i),
+                        properties.getSegmentBytes(), properties.getIndexBytes(), last);
+                segments.put(segment.baseOffset(), segment);
+            }
+            if (segments.isEmpty()) {
+                LogSegment segment = LogSegment.create(directory, 0, properties.getSegmentBytes(),
+                        properties.getIndexBytes(), clock.getAsLong());
+                segments.put(0L, segment);
+            }
+            active = segments.lastEntry().getValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open log " + directory, e);
+        }
+        log.info("Opened log {} - segments: {}, offsets: [{}, {})", directory, segments.size(), startOffset(), endOffset());
+    }
+
+    /**
+     * 追加一条记录
+     * @return 记录的偏移
+     * @throws IllegalArgumentException 记录超过单个段的容量
+     */
+    public synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Log " + directory + " is closed");
+        }
+        if ((long) payload.length + LogSegment.RECORD_HEADER_SIZE > properties.getSegmentBytes()) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment of "
+                    + properties.getSegmentBytes() + " bytes");
+        }
+        long now = clock.getAsLong();
+        LogSegment segment = active;
+        if (!segment.hasRoom(payload.length)
+                || (segment.entries() > 0 && now - segment.firstTimestamp() >= properties.getSegmentMs())) {
+            segment = roll(now);
+        }
+        return segment.append(payload, now);
+    }
+
+    /**
+     * 按偏移读取一条记录，偏移不存在（已被保留策略删除或尚未写入）时为空
+     */
+    public Optional<LogRecord> read(long offset) {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.getValue().read(offset));
+    }
+
+    /**
+     * 从偏移开始顺序读取，fromOffset 早于 startOffset 时从 startOffset 开始
+     * @return 最多 maxRecords 条，偏移连续
+     */
+    public List<LogRecord> read(long fromOffset, int maxRecords) {
+        List<LogRecord> records = new ArrayList<>(Math.min(maxRecords, 1024));
+        long offset = Math.max(fromOffset, startOffset());
+        Long floor = segments.floorKey(offset);
+        if (floor == null) {
+            return records;
+        }
+        for (LogSegment segment : segments.tailMap(floor, true).values()) {
+            while (records.size() < maxRecords) {
+                LogRecord record = segment.read(offset);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+                offset++;
+            }
+            if (records.size() >= maxRecords) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 最早可读的偏移
+     */
+    public long startOffset() {
+        Map.Entry<Long, LogSegment> first = segments.firstEntry();
+        return first == null ? 0 : first.getKey();
+    }
+
+    /**
+     * 下一条记录的偏移
+     */
+    public long endOffset() {
+        return active.nextOffset();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long sizeInBytes() {
+        return segments.values().stream().mapToLong(LogSegment::sizeInBytes).sum();
+    }
+
+    /**
+     * 活动段刷盘
+     */
+    public void flush() {
+        active.flush();
+    }
+
+    public void setCompactor(Compactor compactor) {
+        this.compactor = compactor;
+    }
+
+    /**
+     * 读取元数据文件，不存在时为空
+     */
+    public Optional<String> readMetadata(String name) {
+        Path file = directory.resolve(name + ".meta");
+        try {
+            return Files.exists(file) ? Optional.of(Files.readString(file).trim()) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read metadata " + file, e);
+        }
+    }
+
+    /**
+     * 写入元数据文件：先写临时文件再原子替换，中途宕机时保留旧值
+     */
+    public synchronized void writeMetadata(String name, String value) {
+        Path file = directory.resolve(name + ".meta");
+        Path temp = directory.resolve(name + ".meta.tmp");
+        try {
+            Files.writeString(temp, value);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write metadata " + file, e);
+        }
+    }
+
+    /**
+     * 按保留策略时间计算，timestamp 写入的记录是否还在保留期内
+     */
+    boolean isRetained(long timestamp) {
+        return properties.getRetentionMs() <= 0 || clock.getAsLong() - timestamp <= properties.getRetentionMs();
+    }
+
+    /**
+     * 按保留策略删除已封存的段，删除前先把其中仍然有效的记录交给 Compactor 重新追加
+     * @return 删除的段数
+     */
+    public int deleteExpiredSegments() {
+        synchronized (retentionLock) {
+            List<LogSegment> expired = expiredSegments();
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            Compactor current = compactor;
+            if (current != null) {
+                // 在追加锁之外调用，Compactor 可以先获取自己的锁再追加
+                current.compact(expired.get(0).baseOffset(), expired.get(expired.size() - 1).nextOffset());
+            }
+            synchronized (this) {
+                for (LogSegment segment : expired) {
+                    segments.remove(segment.baseOffset());
+                    segment.delete();
+                }
+            }
+            log.info("Deleted {} segments from log {} - start offset now {}", expired.size(), directory, startOffset());
+            return expired.size();
+        }
+    }
+
+    private synchronized List<LogSegment> expiredSegments() {
+        long now = clock.getAsLong();
+        long size = sizeInBytes();
+        List<LogSegment> expired = new ArrayList<>();
+        for (LogSegment segment : segments.values()) {
+            if (segment == active) {
+                break;
+            }
+            boolean expiredByTime = properties.getRetentionMs() > 0 && now - segment.lastTimestamp() > properties.getRetentionMs();
+            boolean oversize = properties.getRetentionBytes() > 0 && size > properties.getRetentionBytes();
+            if (!expiredByTime && !oversize) {
+                break;
+            }
+            size -= segment.sizeInBytes();
+            expired.add(segment);
+        }
+        return expired;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            active.flush();
+        }
+    }
+
+    private LogSegment roll(long now) {
+        try {
+            LogSegment current = active;
+            current.seal();
+            LogSegment next = LogSegment.create(directory, current.nextOffset(), properties.getSegmentBytes(),
+                    properties.getIndexBytes(), now);
+            segments.put(next.baseOffset(), next);
+            active = next;
+            log.debug("Rolled log {} to a new segment at offset {}", directory, next.baseOffset());
+            return next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll log " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * 消息存储配置（mq.storage.*）
+ */
+@Data
+public class StorageProperties {
+
+    /**
+     * 存储引擎：jpa（默认，messages / tracking / dead_letters 表）, log（本地追加写的分段日志文件）
+     */
+    private String type = "jpa";
+
+    /**
+     * log 引擎的数据目录，messages、tracking、dead-letters 各一个子目录
+     */
+    private String directory = "data/mq-log";
+
+    /**
+     * 单个日志段的最大字节数，写满后滚动到新段
+     */
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * 单个日志段索引文件的最大字节数，每条记录 4 字节，写满后滚动到新段
+     */
+    private int indexBytes = 4 * 1024 * 1024;
+
+    /**
+     * 日志段的最长时间（毫秒），第一条记录写入后超过这个时间滚动到新段
+     */
+    private long segmentMs = 60 * 60 * 1000L;
+
+    /**
+     * 保留时间（毫秒），最后一条记录早于这个时间的已封存段被删除，0 表示不按时间删除
+     */
+    private long retentionMs = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * 每个日志保留的最大字节数，超出时从最早的已封存段开始删除，0 表示不按大小删除
+     */
+    private long retentionBytes = 0;
+
+    /**
+     * 检查保留策略的间隔（毫秒）
+     */
+    private long retentionCheckInterval = 60000;
+
+    /**
+     * 活动段刷盘间隔（毫秒），两次刷盘之间宕机可能丢失已写入页缓存的记录
+     */
+    private long flushInterval = 1000;
+}
@@ -0,0 +1,26 @@
+package ps.demo.jpademo.mq;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * SubscriptionEntity / SubscriberEntity 的实体监听器，写入后发布 SubscriptionChangedEvent
+ * 由 Hibernate 通过 Spring 创建，脱离 Spring 使用实体时 publisher 为空，不发布
+ */
+public class SubscriptionChangeListener {
+
+    @Autowired(required = false)
+    private ApplicationEventPublisher publisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        if (publisher != null) {
+            publisher.publishEvent(new SubscriptionChangedEvent(entity));
+        }
+    }
+}
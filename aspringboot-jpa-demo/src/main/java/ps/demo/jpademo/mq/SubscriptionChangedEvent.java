@@ -0,0 +1,8 @@
+package ps.demo.jpademo.mq;
+
+/**
+ * 订阅或订阅者新增、修改、删除
+ * @param source 变化的 SubscriptionEntity 或 SubscriberEntity
+ */
+public record SubscriptionChangedEvent(Object source) {
+}
@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "subscriptions")
+@EntityListeners(SubscriptionChangeListener.class)
 @Getter
 @Setter
 public class SubscriptionEntity {
@@ -1,6 +1,7 @@
 package ps.demo.jpademo.mq;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -8,4 +9,10 @@ import java.util.List;
 public interface SubscriptionRepository extends JpaRepository<SubscriptionEntity, Long> {
 
     List<SubscriptionEntity> findByMessageType(String messageType);
+
+    /**
+     * 全部订阅及其订阅者，一次查询加载
+     */
+    @Query("select s from SubscriptionEntity s join fetch s.subscriber order by s.id")
+    List<SubscriptionEntity> findAllWithSubscriber();
 }
\ No newline at end of file
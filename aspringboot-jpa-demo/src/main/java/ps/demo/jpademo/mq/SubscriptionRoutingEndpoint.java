@@ -0,0 +1,43 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/mqrouting：查看订阅路由表，POST 立即从数据库重新加载
+ */
+@Endpoint(id = "mqrouting")
+public class SubscriptionRoutingEndpoint {
+
+    private final SubscriptionRoutingTable routingTable;
+
+    public SubscriptionRoutingEndpoint(SubscriptionRoutingTable routingTable) {
+        this.routingTable = routingTable;
+    }
+
+    @ReadOperation
+    public Map<String, Object> routes() {
+        Map<String, Object> routes = new LinkedHashMap<>();
+        routingTable.getRoutes().forEach((contentType, subscribers) -> routes.put(contentType, subscribers.stream()
+                .map(subscriber -> Map.of(
+                        "id", subscriber.getId(),
+                        "name", subscriber.getName(),
+                        "endpoint", subscriber.getEndpoint()))
+                .toList()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", routingTable.getVersion());
+        result.put("loadedAt", routingTable.getLoadedAt());
+        result.put("routes", routes);
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> reload() {
+        routingTable.reload();
+        return routes();
+    }
+}
@@ -0,0 +1,195 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订阅路由表：contentType 到订阅者列表的内存快照
+ * - 一次 join fetch 查询加载全部订阅，路由时只读一次 Map，不访问数据库
+ * - 快照不可变，重新加载时整体替换，正在路由的消息继续使用旧快照
+ * - 订阅或订阅者变化的事务提交后重新加载，加载排队期间的多次变化合并为一次
+ * - 按 reconcile-interval 定期重新加载，兜底直接改库或其他实例的修改
+ */
+@Slf4j
+public class SubscriptionRoutingTable implements InitializingBean, DisposableBean, MeterBinder {
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final RoutingProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    private final AtomicLong reloadFailures = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), 0, null);
+
+    public SubscriptionRoutingTable(SubscriptionRepository subscriptionRepository, RoutingProperties properties) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("mq-routing-"));
+    }
+
+    /**
+     * 启动时同步加载，发件箱分发线程启动后马上就会路由
+     */
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            reloadFailures.incrementAndGet();
+            log.error("Failed to load subscription routing table, will retry on reconcile", e);
+        }
+        if (properties.getReconcileInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::reconcile, properties.getReconcileInterval(),
+                    properties.getReconcileInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 启动完成后再加载一次，包含启动期间初始化脚本写入的订阅
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        requestReload();
+    }
+
+    /**
+     * 变化所在事务提交后重新加载，没有事务时立即重新加载
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        requestReload();
+    }
+
+    /**
+     * @return contentType 的订阅者，不可修改；没有订阅时为空列表
+     */
+    public List<SubscriberEntity> route(String contentType) {
+        List<SubscriberEntity> subscribers = contentType == null ? null : snapshot.routes().get(contentType);
+        return subscribers != null ? subscribers : List.of();
+    }
+
+    /**
+     * 全部路由，不可修改
+     */
+    public Map<String, List<SubscriberEntity>> getRoutes() {
+        return snapshot.routes();
+    }
+
+    /**
+     * 当前快照的版本，每次重新加载加一
+     */
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return snapshot.loadedAt();
+    }
+
+    /**
+     * 从数据库重新加载并替换快照
+     */
+    public synchronized void reload() {
+        Map<String, List<SubscriberEntity>> collected = new LinkedHashMap<>();
+        Map<Long, SubscriberEntity> copies = new HashMap<>();
+        for (SubscriptionEntity subscription : subscriptionRepository.findAllWithSubscriber()) {
+            SubscriberEntity subscriber = copies.computeIfAbsent(subscription.getSubscriber().getId(),
+                    id -> copyOf(subscription.getSubscriber()));
+            List<SubscriberEntity> subscribers = collected.computeIfAbsent(subscription.getMessageType(),
+                    type -> new ArrayList<>());
+            if (!subscribers.contains(subscriber)) {
+                subscribers.add(subscriber);
+            }
+        }
+        Map<String, List<SubscriberEntity>> routes = new LinkedHashMap<>();
+        collected.forEach((type, subscribers) -> routes.put(type, List.copyOf(subscribers)));
+        snapshot = new Snapshot(Collections.unmodifiableMap(routes), snapshot.version() + 1, LocalDateTime.now());
+        log.info("Subscription routing table loaded - version: {}, content types: {}, subscribers: {}",
+                snapshot.version(), routes.size(), copies.size());
+    }
+
+    /**
+     * 在后台重新加载，已有排队的重新加载时不重复提交
+     */
+    public void requestReload() {
+        if (reloadPending.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    reloadPending.set(false);
+                    reconcile();
+                });
+            } catch (RejectedExecutionException e) {
+                reloadPending.set(false);
+                log.debug("Routing table is shut down, reload skipped");
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mq.routing.content.types", this, table -> table.snapshot.routes().size())
+                .description("Content types in the subscription routing table")
+                .register(registry);
+        Gauge.builder("mq.routing.version", this, SubscriptionRoutingTable::getVersion)
+                .description("Version of the subscription routing table snapshot")
+                .register(registry);
+        FunctionCounter.builder("mq.routing.reload.failures", reloadFailures, AtomicLong::get)
+                .description("Failed reloads of the subscription routing table")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private void reconcile() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            reloadFailures.incrementAndGet();
+            log.error("Failed to reload subscription routing table, keeping version {}", snapshot.version(), e);
+        }
+    }
+
+    /**
+     * 脱离持久化上下文的副本，路由线程读取时不会触发懒加载
+     */
+    private static SubscriberEntity copyOf(SubscriberEntity source) {
+        SubscriberEntity copy = new SubscriberEntity();
+        copy.setId(source.getId());
+        copy.setName(source.getName());
+        copy.setEndpoint(source.getEndpoint());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setCreatedBy(source.getCreatedBy());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setUpdatedBy(source.getUpdatedBy());
+        return copy;
+    }
+
+    private record Snapshot(Map<String, List<SubscriberEntity>> routes, long version, LocalDateTime loadedAt) {
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -14,7 +15,7 @@ import org.springframework.web.bind.annotation.*;
 public class TrackingController {
 
     @Autowired
-    private TrackingRepository trackingRepository;
+    private TrackingStore trackingStore;
 
     @GetMapping
     @Operation(summary = "Get all tracking records with pagination")
@@ -22,7 +23,7 @@ public class TrackingController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return trackingRepository.findAll(pageable);
+        return trackingStore.findAll(pageable);
     }
 
     @GetMapping("/by-message-id/{messageId}")
@@ -32,7 +33,7 @@ public class TrackingController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return trackingRepository.findByMessageId(messageId, pageable);
+        return trackingStore.findByMessageId(messageId, pageable);
     }
 
     @GetMapping("/by-status/{status}")
@@ -42,6 +43,41 @@ public class TrackingController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return trackingRepository.findByStatus(status, pageable);
+        return trackingStore.findByStatus(status, pageable);
+    }
+
+    /**
+     * 游标分页，按 (timestamp, id) 排序，深页与首页代价相同；size 为 1 到 1000，count=true 时才统计总数
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Scroll all tracking records by cursor")
+    public KeysetPage<TrackingEntity> scrollTrackingRecords(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        Window<TrackingEntity> window = trackingStore.scrollAll(KeysetCursor.decode(cursor, "timestamp"), KeysetCursor.size(size));
+        return KeysetPage.of(window, "timestamp", count ? trackingStore.count() : null);
+    }
+
+    @GetMapping("/by-message-id/{messageId}/scroll")
+    @Operation(summary = "Scroll tracking records of a message by cursor")
+    public KeysetPage<TrackingEntity> scrollTrackingRecordsByMessageId(
+            @PathVariable Long messageId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        Window<TrackingEntity> window = trackingStore.scrollByMessageId(messageId, KeysetCursor.decode(cursor, "timestamp"), KeysetCursor.size(size));
+        return KeysetPage.of(window, "timestamp", count ? trackingStore.countByMessageId(messageId) : null);
+    }
+
+    @GetMapping("/by-status/{status}/scroll")
+    @Operation(summary = "Scroll tracking records by status and cursor")
+    public KeysetPage<TrackingEntity> scrollTrackingRecordsByStatus(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        Window<TrackingEntity> window = trackingStore.scrollByStatus(status, KeysetCursor.decode(cursor, "timestamp"), KeysetCursor.size(size));
+        return KeysetPage.of(window, "timestamp", count ? trackingStore.countByStatus(status) : null);
     }
 }
\ No newline at end of file
@@ -6,7 +6,11 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tracking")
+@Table(name = "tracking", indexes = {
+        @Index(name = "idx_tracking_timestamp_id", columnList = "timestamp, id"),
+        @Index(name = "idx_tracking_message_id_timestamp", columnList = "message_id, timestamp"),
+        @Index(name = "idx_tracking_status_timestamp", columnList = "status, timestamp")
+})
 @Getter
 @Setter
 public class TrackingEntity {
@@ -18,7 +22,7 @@ public class TrackingEntity {
     @Column(nullable = false)
     private Long messageId;
 
-    @Column(nullable = false)
+    @Column
     private Long subscriberId;
 
     @Column(nullable = false)
@@ -0,0 +1,22 @@
+package ps.demo.jpademo.mq;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一条待写入 tracking 表的消息状态变化
+ * @param subscriberId 消息级别的状态变化（创建、全部发送完成）为 null
+ */
+public record TrackingEvent(Long messageId, Long subscriberId, String subscriberName, String subscriberEndpoint,
+                            String status, String details, LocalDateTime timestamp) {
+
+    /**
+     * 订阅者名称和地址直接取自已加载的订阅者，不再查库
+     */
+    public static TrackingEvent of(Long messageId, SubscriberEntity subscriber, String status, String details) {
+        return new TrackingEvent(messageId,
+                subscriber != null ? subscriber.getId() : null,
+                subscriber != null ? subscriber.getName() : null,
+                subscriber != null ? subscriber.getEndpoint() : null,
+                status, details, LocalDateTime.now());
+    }
+}
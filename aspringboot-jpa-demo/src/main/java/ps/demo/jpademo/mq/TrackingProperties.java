@@ -0,0 +1,35 @@
+package ps.demo.jpademo.mq;
+
+import lombok.Data;
+
+/**
+ * tracking 批量写入配置（mq.tracking.*）
+ */
+@Data
+public class TrackingProperties {
+
+    /**
+     * 内存队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每批最多写入的条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 批次未满时最长等待时间（毫秒），从批次中第一条事件出队开始计算
+     */
+    private long flushInterval = 100;
+
+    /**
+     * 队列满时入队的最长等待时间（毫秒），超时后在调用线程中直接写入
+     */
+    private long offerTimeout = 50;
+
+    /**
+     * 关闭时等待写入线程写完队列的最长时间（毫秒）
+     */
+    private long shutdownTimeout = 10000;
+}
@@ -1,7 +1,10 @@
 package ps.demo.jpademo.mq;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -11,4 +14,23 @@ public interface TrackingRepository extends JpaRepository<TrackingEntity, Long>
     Page<TrackingEntity> findByMessageId(Long messageId, Pageable pageable);
 
     Page<TrackingEntity> findByStatus(String status, Pageable pageable);
+
+    /**
+     * 游标分页，走 idx_tracking_timestamp_id
+     */
+    Window<TrackingEntity> findByOrderByTimestampAscIdAsc(ScrollPosition position, Limit limit);
+
+    /**
+     * 游标分页，走 idx_tracking_message_id_timestamp
+     */
+    Window<TrackingEntity> findByMessageIdOrderByTimestampAscIdAsc(Long messageId, ScrollPosition position, Limit limit);
+
+    /**
+     * 游标分页，走 idx_tracking_status_timestamp
+     */
+    Window<TrackingEntity> findByStatusOrderByTimestampAscIdAsc(String status, ScrollPosition position, Limit limit);
+
+    long countByMessageId(Long messageId);
+
+    long countByStatus(String status);
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package ps.demo.jpademo.mq;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Window;
+
+/**
+ * 投递跟踪存储 SPI，mq.storage.type=jpa（默认）时为 JpaTrackingStore，log 时为 LogTrackingStore
+ */
+public interface TrackingStore {
+
+    /**
+     * 记录一条状态变化，可以异步写入
+     */
+    void track(TrackingEvent event);
+
+    Page<TrackingEntity> findAll(Pageable pageable);
+
+    Page<TrackingEntity> findByMessageId(Long messageId, Pageable pageable);
+
+    Page<TrackingEntity> findByStatus(String status, Pageable pageable);
+
+    /**
+     * 按 (timestamp, id) 从游标之后读取最多 limit 条，不统计总数，读取代价与游标的深度无关
+     */
+    Window<TrackingEntity> scrollAll(KeysetScrollPosition position, int limit);
+
+    Window<TrackingEntity> scrollByMessageId(Long messageId, KeysetScrollPosition position, int limit);
+
+    Window<TrackingEntity> scrollByStatus(String status, KeysetScrollPosition position, int limit);
+
+    long count();
+
+    long countByMessageId(Long messageId);
+
+    long countByStatus(String status);
+}
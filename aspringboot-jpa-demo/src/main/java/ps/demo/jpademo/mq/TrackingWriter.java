@@ -0,0 +1,224 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * tracking 表的异步批量写入器
+ * - 状态变化先进入有界内存队列，由单独的写入线程攒批后用 JDBC 批量插入，
+ *   批次攒满 batch-size 条或第一条出队后超过 flush-interval 即写入
+ * - TrackingEntity 的主键是 IDENTITY，Hibernate 无法批量插入，所以这里绕过 JPA 直接用 JdbcTemplate
+ * - 队列满时调用线程最多等待 offer-timeout，仍然放不进去就在调用线程中直接写入，不丢事件
+ * - 关闭时等待写入线程把队列写完，剩余的事件在关闭线程中写入
+ * - 每次写入都在独立事务（REQUIRES_NEW）中进行：批量写入失败时整批回滚再逐条重试，不会重复写入；
+ *   在调用线程中写入时也不参与、不影响调用方的事务；逐条重试仍然失败的事件记录日志后丢弃
+ */
+@Slf4j
+public class TrackingWriter implements InitializingBean, DisposableBean, MeterBinder {
+
+    static final String INSERT_SQL = "insert into tracking (message_id, subscriber_id, subscriber_name, subscriber_endpoint, "
+            + "status, details, timestamp) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final ParameterizedPreparedStatementSetter<TrackingEvent> SETTER = (ps, event) -> {
+        ps.setLong(1, event.messageId());
+        if (event.subscriberId() != null) {
+            ps.setLong(2, event.subscriberId());
+        } else {
+            ps.setNull(2, Types.BIGINT);
+        }
+        ps.setString(3, event.subscriberName());
+        ps.setString(4, event.subscriberEndpoint());
+        ps.setString(5, event.status());
+        ps.setString(6, event.details());
+        ps.setTimestamp(7, Timestamp.valueOf(event.timestamp()));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TrackingProperties properties;
+    private final BlockingQueue<TrackingEvent> queue;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong overflow = new AtomicLong();
+
+    private volatile boolean closed;
+    private volatile Timer flushTimer;
+    private Thread writerThread;
+
+    public TrackingWriter(JdbcTemplate jdbcTemplate, TrackingProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        writerThread = new Thread(this::run, "mq-tracking-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        if (writerThread != null) {
+            writerThread.join(properties.getShutdownTimeout());
+            if (writerThread.isAlive()) {
+                log.warn("Tracking writer did not finish within {} ms, flushing remaining events on shutdown thread",
+                        properties.getShutdownTimeout());
+            }
+        }
+        List<TrackingEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += properties.getBatchSize()) {
+            write(remaining.subList(from, Math.min(from + properties.getBatchSize(), remaining.size())));
+        }
+        log.info("Tracking writer stopped - written: {}, failed: {}, overflow: {}", written.get(), failed.get(), overflow.get());
+    }
+
+    /**
+     * 提交一条状态变化，队列满时短暂阻塞，超时后在调用线程中直接写入
+     */
+    public void track(TrackingEvent event) {
+        boolean queued;
+        try {
+            queued = queue.offer(event, properties.getOfferTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            overflow.incrementAndGet();
+            write(List.of(event));
+        } else if (closed && queue.remove(event)) {
+            // 已经关闭，写入线程和关闭时的清空都可能错过这条事件
+            write(List.of(event));
+        }
+    }
+
+    /**
+     * 队列中等待写入的事件数
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mq.tracking.queue.depth", queue, BlockingQueue::size)
+                .description("Tracking events waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("mq.tracking.written", written, AtomicLong::get)
+                .description("Tracking events written to the database")
+                .register(registry);
+        FunctionCounter.builder("mq.tracking.failed", failed, AtomicLong::get)
+                .description("Tracking events dropped because they could not be written")
+                .register(registry);
+        FunctionCounter.builder("mq.tracking.overflow", overflow, AtomicLong::get)
+                .description("Tracking events written on the caller thread because the queue was full")
+                .register(registry);
+        flushTimer = Timer.builder("mq.tracking.flush")
+                .description("Time spent writing one batch of tracking events")
+                .register(registry);
+    }
+
+    private void run() {
+        List<TrackingEvent> batch = new ArrayList<>(properties.getBatchSize());
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval());
+        while (!closed || !queue.isEmpty()) {
+            try {
+                TrackingEvent first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < properties.getBatchSize()) {
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= properties.getBatchSize() || remaining <= 0 || closed) {
+                        break;
+                    }
+                    TrackingEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(batch);
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in tracking writer, {} events dropped", batch.size(), e);
+                failed.addAndGet(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<TrackingEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), SETTER));
+            written.addAndGet(batch.size());
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Batch insert of {} tracking events failed, retrying one by one", batch.size(), e);
+            for (TrackingEvent event : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            jdbcTemplate.update(INSERT_SQL, ps -> SETTER.setValues(ps, event)));
+                    written.incrementAndGet();
+                } catch (DataAccessException | TransactionException ex) {
+                    failed.incrementAndGet();
+                    log.error("Failed to write tracking event - messageId: {}, subscriberId: {}, status: {}",
+                            event.messageId(), event.subscriberId(), event.status(), ex);
+                }
+            }
+        } finally {
+            Timer timer = flushTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,7 +13,7 @@ import java.util.List;
  * - .    : 匹配单个路径段中的任意字符（除了/）
  * - *    : 匹配单个路径段
  * - **   : 匹配多个路径段（包括空段）
- * - {var}: 路径变量（可选功能）
+ * - {var}: 路径变量，整段为 {name} 时与 * 一样匹配一个非空路径段
  */
 @Slf4j
 public class PatternCompiler {
@@ -30,9 +31,13 @@ public class PatternCompiler {
             {")", "\\)"},
             {"[", "\\["},
             {"]", "\\]"},
-            {"|", "\\|"}
+            {"|", "\\|"},
+            {".", "\\."},
+            {"*", "\\*"}
     };
 
+    private static final Pattern VARIABLE_SEGMENT = Pattern.compile("\\{[^/{}]+\\}");
+
     private PatternCompiler() {
         // 工具类，禁止实例化
     }
@@ -51,7 +56,8 @@ public class PatternCompiler {
             int priority = calculatePriority(pattern);
 
             String regex = convertToRegex(normalizedPattern);
-            Pattern compiledPattern = Pattern.compile(regex);
+            // DOTALL：** 与单段通配符一样匹配换行等行终止符
+            Pattern compiledPattern = Pattern.compile(regex, Pattern.DOTALL);
 
             log.debug("Compiled pattern: '{}' -> '{}'", pattern, regex);
             return new UriPattern(pattern, compiledPattern, priority, hasDoubleAsterisk);
@@ -75,7 +81,7 @@ public class PatternCompiler {
     /**
      * 规范化模式
      */
-    private static String normalizePattern(String pattern) {
+    static String normalizePattern(String pattern) {
         if (pattern == null) {
             throw new PatternSyntaxException("Pattern cannot be null", "null");
         }
@@ -110,17 +116,19 @@ public class PatternCompiler {
     private static int calculatePriority(String pattern) {
         int priority = 0;
 
+        String[] segments = pattern.split("/");
+
         // 不含通配符的模式优先级最高
-        if (!pattern.contains("*") && !pattern.contains(".")) {
+        if (!pattern.contains("*") && !pattern.contains(".")
+                && Arrays.stream(segments).noneMatch(PatternCompiler::isVariableSegment)) {
             priority += 1000;
         }
 
         // 计算具体路径段的权重
-        String[] segments = pattern.split("/");
         for (String segment : segments) {
             if (segment.equals("**")) {
                 priority -= 100; // 双星号降低优先级
-            } else if (segment.contains("*")) {
+            } else if (segment.contains("*") || isVariableSegment(segment)) {
                 priority -= 50;  // 单星号降低优先级
             } else if (segment.contains(".")) {
                 priority -= 25;  // 点号降低优先级
@@ -146,22 +154,7 @@ public class PatternCompiler {
         }
 
         StringBuilder regex = new StringBuilder("^");
-        String[] segments = pattern.split("/");
-        List<String> processedSegments = new ArrayList<>();
-
-        // 预处理段，合并连续的双星号
-        for (String segment : segments) {
-            if (segment.isEmpty()) continue;
-
-            if (segment.equals("**")) {
-                // 如果前一个段也是双星号，跳过（避免重复）
-                if (processedSegments.isEmpty() || !processedSegments.get(processedSegments.size() - 1).equals("**")) {
-                    processedSegments.add("**");
-                }
-            } else {
-                processedSegments.add(segment);
-            }
-        }
+        List<String> processedSegments = splitSegments(pattern);
 
         // 构建正则表达式
         for (int i = 0; i < processedSegments.size(); i++) {
@@ -196,11 +189,38 @@ public class PatternCompiler {
         return regex.toString();
     }
 
+    /**
+     * 按 / 拆分规范化后的模式，跳过空段并合并连续的双星号
+     */
+    static List<String> splitSegments(String pattern) {
+        List<String> processedSegments = new ArrayList<>();
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) continue;
+
+            if (segment.equals("**")) {
+                // 如果前一个段也是双星号，跳过（避免重复）
+                if (processedSegments.isEmpty() || !processedSegments.get(processedSegments.size() - 1).equals("**")) {
+                    processedSegments.add("**");
+                }
+            } else {
+                processedSegments.add(segment);
+            }
+        }
+        return processedSegments;
+    }
+
+    /**
+     * 是否为整段的路径变量 {name}
+     */
+    static boolean isVariableSegment(String segment) {
+        return VARIABLE_SEGMENT.matcher(segment).matches();
+    }
+
     /**
      * 转换单个路径段为正则表达式
      */
-    private static String convertSegmentToRegex(String segment) {
-        if (segment.equals("*")) {
+    static String convertSegmentToRegex(String segment) {
+        if (segment.equals("*") || isVariableSegment(segment)) {
             // 单星号：匹配非空路径段
             return "[^/]+";
         }
@@ -9,6 +9,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 /**
  * URI模式匹配器工具类
  * 支持高性能的模式匹配和缓存
+ * 默认用按路径段组织的前缀树（UriPatternTrie）查找，查找开销取决于 URI 的段数；
+ * -Durimatching.trie=false 时退回按优先级逐个正则匹配
  */
 @Slf4j
 public class UriPatternMatcher {
@@ -19,11 +21,16 @@ public class UriPatternMatcher {
     // 预编译的模式列表（按优先级排序）
     private final List<UriPattern> compiledPatterns = new CopyOnWriteArrayList<>();
 
+    // 为 null 时逐个正则匹配
+    private final UriPatternTrie trie;
+
+    private static final boolean TRIE_ENABLED = Boolean.parseBoolean(System.getProperty("urimatching.trie", "true"));
+
     // 单例实例
-    private static final UriPatternMatcher INSTANCE = new UriPatternMatcher();
+    private static final UriPatternMatcher INSTANCE = new UriPatternMatcher(TRIE_ENABLED);
 
-    private UriPatternMatcher() {
-        // 私有构造函数
+    private UriPatternMatcher(boolean trieEnabled) {
+        this.trie = trieEnabled ? new UriPatternTrie() : null;
     }
 
     public static UriPatternMatcher getInstance() {
@@ -38,6 +45,9 @@ public class UriPatternMatcher {
         compiledPatterns.add(compiled);
         // 按优先级排序（高优先级在前）
         compiledPatterns.sort((p1, p2) -> Integer.compare(p2.getPriority(), p1.getPriority()));
+        if (trie != null) {
+            trie.add(compiled);
+        }
     }
 
     /**
@@ -56,6 +66,9 @@ public class UriPatternMatcher {
         UriPattern compiled = patternCache.get(pattern);
         if (compiled != null) {
             compiledPatterns.remove(compiled);
+            if (trie != null) {
+                trie.remove(compiled);
+            }
             patternCache.remove(pattern);
             return true;
         }
@@ -67,6 +80,9 @@ public class UriPatternMatcher {
      */
     public void clearPatterns() {
         compiledPatterns.clear();
+        if (trie != null) {
+            trie.clear();
+        }
         patternCache.clear();
     }
 
@@ -81,6 +97,9 @@ public class UriPatternMatcher {
      * 匹配URI（返回所有匹配的模式）
      */
     public List<String> findAllMatchingPatterns(String uri) {
+        if (trie != null) {
+            return trie.findAll(uri);
+        }
         List<String> matchingPatterns = new ArrayList<>();
         for (UriPattern pattern : compiledPatterns) {
             if (pattern.matches(uri)) {
@@ -94,6 +113,9 @@ public class UriPatternMatcher {
      * 查找第一个匹配的模式
      */
     public String findFirstMatchingPattern(String uri) {
+        if (trie != null) {
+            return trie.findFirst(uri);
+        }
         for (UriPattern pattern : compiledPatterns) {
             if (pattern.matches(uri)) {
                 return pattern.getOriginalPattern();
@@ -123,6 +145,13 @@ public class UriPatternMatcher {
         return compiledPatterns.size();
     }
 
+    /**
+     * 是否使用前缀树查找
+     */
+    public boolean isTrieEnabled() {
+        return trie != null;
+    }
+
     public static String normalizeUri(String uri) {
         if (uri == null) return "";
 
@@ -188,7 +217,14 @@ public class UriPatternMatcher {
      * 预编译模式并返回匹配器
      */
     public static UriPatternMatcher precompile(Collection<String> patterns) {
-        UriPatternMatcher matcher = new UriPatternMatcher();
+        return precompile(patterns, TRIE_ENABLED);
+    }
+
+    /**
+     * 预编译模式并返回匹配器，trieEnabled 为 false 时逐个正则匹配
+     */
+    public static UriPatternMatcher precompile(Collection<String> patterns, boolean trieEnabled) {
+        UriPatternMatcher matcher = new UriPatternMatcher(trieEnabled);
         matcher.addPatterns(patterns);
         return matcher;
     }
@@ -0,0 +1,300 @@
+package ps.demo.jpademo.urimatching;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 按路径段组织的模式前缀树
+ * - 字面量段：子节点 Map，按段精确查找
+ * - * 和 {var}：匹配一个非空段
+ * - 段内含 . 或 * 的段：用该段的正则匹配一个段
+ * - **：跳过任意个段后继续匹配，作为最后一段时至少还剩一个段
+ * 查找开销取决于 URI 的段数而不是模式数量；多个模式都能匹配时按优先级降序、添加顺序升序取第一个，
+ * 与按优先级稳定排序后逐个正则匹配的结果一致
+ * 写操作串行执行，读操作不加锁
+ */
+class UriPatternTrie {
+
+    private static final String DOUBLE_ASTERISK = "**";
+
+    private volatile Node root = new Node();
+
+    // 规范化后为空的模式（如 "/"）：匹配只由斜杠组成的 URI
+    private final List<Entry> slashOnly = new CopyOnWriteArrayList<>();
+
+    // 规范化后只剩斜杠的模式（如 "///"）：只匹配空 URI
+    private final List<Entry> emptyOnly = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger nodeIds = new AtomicInteger();
+
+    private long sequence;
+
+    /**
+     * 添加已编译的模式，同一模式添加多次时保留多份
+     */
+    synchronized void add(UriPattern pattern) {
+        Entry entry = new Entry(pattern, sequence++);
+        String normalized = PatternCompiler.normalizePattern(pattern.getOriginalPattern());
+        if (normalized.isEmpty()) {
+            slashOnly.add(entry);
+            return;
+        }
+        List<String> segments = PatternCompiler.splitSegments(normalized);
+        if (segments.isEmpty()) {
+            emptyOnly.add(entry);
+            return;
+        }
+        Node node = root;
+        for (String segment : segments) {
+            node = node.child(segment, nodeIds);
+        }
+        node.entries.add(entry);
+    }
+
+    /**
+     * 移除最早添加的一份模式
+     */
+    synchronized boolean remove(UriPattern pattern) {
+        String normalized = PatternCompiler.normalizePattern(pattern.getOriginalPattern());
+        if (normalized.isEmpty()) {
+            return removeFirst(slashOnly, pattern);
+        }
+        List<String> segments = PatternCompiler.splitSegments(normalized);
+        if (segments.isEmpty()) {
+            return removeFirst(emptyOnly, pattern);
+        }
+        Node node = root;
+        for (String segment : segments) {
+            node = node.existingChild(segment);
+            if (node == null) {
+                return false;
+            }
+        }
+        return removeFirst(node.entries, pattern);
+    }
+
+    synchronized void clear() {
+        root = new Node();
+        slashOnly.clear();
+        emptyOnly.clear();
+    }
+
+    /**
+     * 查找优先级最高的匹配模式，没有匹配时返回 null
+     */
+    String findFirst(String uri) {
+        Search search = new Search(uri, false);
+        search.run();
+        return search.best == null ? null : search.best.pattern.getOriginalPattern();
+    }
+
+    /**
+     * 查找所有匹配的模式，按优先级降序、添加顺序升序排列
+     */
+    List<String> findAll(String uri) {
+        Search search = new Search(uri, true);
+        search.run();
+        List<String> matchingPatterns = new ArrayList<>(search.all.size());
+        for (Entry entry : search.all) {
+            matchingPatterns.add(entry.pattern.getOriginalPattern());
+        }
+        return matchingPatterns;
+    }
+
+    private static boolean isSlashOnly(String uri) {
+        for (int i = 0; i < uri.length(); i++) {
+            if (uri.charAt(i) != '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean removeFirst(List<Entry> entries, UriPattern pattern) {
+        Entry first = null;
+        for (Entry entry : entries) {
+            if (entry.pattern.equals(pattern) && (first == null || entry.sequence < first.sequence)) {
+                first = entry;
+            }
+        }
+        return first != null && entries.remove(first);
+    }
+
+    /**
+     * 一次查找：URI 按 / 拆分（保留空段，与正则对原始字符串的匹配一致），从根节点逐段向下
+     */
+    private final class Search {
+
+        private final String uri;
+        private final String[] tokens;
+        private final TreeSet<Entry> all;
+        private Entry best;
+        // 经过 ** 之后同一节点可能从不同的段位置到达多次，记录已访问的 (节点, 段位置)
+        private Set<Long> visited;
+
+        Search(String uri, boolean collectAll) {
+            this.uri = uri;
+            this.tokens = uri.split("/", -1);
+            this.all = collectAll ? new TreeSet<>() : null;
+        }
+
+        void run() {
+            if (uri.isEmpty()) {
+                offer(emptyOnly);
+            }
+            if (isSlashOnly(uri)) {
+                offer(slashOnly);
+            }
+            visit(root, 0);
+        }
+
+        private void visit(Node node, int index) {
+            if (visited != null && !visited.add(((long) node.id << 32) | index)) {
+                return;
+            }
+            if (index == tokens.length) {
+                offer(node.entries);
+            } else {
+                String token = tokens[index];
+                Node literal = node.literals.get(token);
+                if (literal != null) {
+                    visit(literal, index + 1);
+                }
+                Node single = node.single;
+                if (single != null && !token.isEmpty()) {
+                    visit(single, index + 1);
+                }
+                for (Glob glob : node.globs.values()) {
+                    if (glob.regex.matcher(token).matches()) {
+                        visit(glob.child, index + 1);
+                    }
+                }
+            }
+            Node doubleStar = node.doubleStar;
+            if (doubleStar != null) {
+                // ** 作为最后一段：后面至少还有一个段
+                if (index < tokens.length) {
+                    offer(doubleStar.entries);
+                }
+                if (visited == null) {
+                    visited = new HashSet<>();
+                }
+                // ** 后面还有段：跳过任意个段后匹配下一段
+                for (int next = index; next < tokens.length; next++) {
+                    visit(doubleStar, next);
+                }
+            }
+        }
+
+        private void offer(List<Entry> entries) {
+            for (Entry entry : entries) {
+                if (all != null) {
+                    all.add(entry);
+                }
+                if (best == null || entry.compareTo(best) < 0) {
+                    best = entry;
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private final int id;
+        private final Map<String, Node> literals = new ConcurrentHashMap<>();
+        private final Map<String, Glob> globs = new ConcurrentHashMap<>();
+        private final List<Entry> entries = new CopyOnWriteArrayList<>();
+        // * 和 {var}
+        private volatile Node single;
+        private volatile Node doubleStar;
+
+        Node() {
+            this(0);
+        }
+
+        Node(int id) {
+            this.id = id;
+        }
+
+        Node child(String segment, AtomicInteger ids) {
+            if (segment.equals(DOUBLE_ASTERISK)) {
+                if (doubleStar == null) {
+                    doubleStar = new Node(ids.incrementAndGet());
+                }
+                return doubleStar;
+            }
+            if (isSingle(segment)) {
+                if (single == null) {
+                    single = new Node(ids.incrementAndGet());
+                }
+                return single;
+            }
+            String literal = toLiteral(segment);
+            if (literal != null) {
+                return literals.computeIfAbsent(literal, k -> new Node(ids.incrementAndGet()));
+            }
+            return globs.computeIfAbsent(segment, k -> new Glob(
+                    Pattern.compile(PatternCompiler.convertSegmentToRegex(k)), new Node(ids.incrementAndGet()))).child;
+        }
+
+        Node existingChild(String segment) {
+            if (segment.equals(DOUBLE_ASTERISK)) {
+                return doubleStar;
+            }
+            if (isSingle(segment)) {
+                return single;
+            }
+            String literal = toLiteral(segment);
+            if (literal != null) {
+                return literals.get(literal);
+            }
+            Glob glob = globs.get(segment);
+            return glob == null ? null : glob.child;
+        }
+
+        private static boolean isSingle(String segment) {
+            return segment.equals("*") || PatternCompiler.isVariableSegment(segment);
+        }
+
+        /**
+         * 不含未转义的 . 和 * 时返回去掉转义后的字面量，否则返回 null
+         */
+        private static String toLiteral(String segment) {
+            StringBuilder literal = new StringBuilder(segment.length());
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '\\' && i + 1 < segment.length()) {
+                    literal.append(segment.charAt(++i));
+                } else if (c == '.' || c == '*') {
+                    return null;
+                } else {
+                    literal.append(c);
+                }
+            }
+            return literal.toString();
+        }
+    }
+
+    private record Glob(Pattern regex, Node child) {
+    }
+
+    /**
+     * 一份添加的模式，按优先级降序、添加顺序升序比较
+     */
+    private record Entry(UriPattern pattern, long sequence) implements Comparable<Entry> {
+
+        @Override
+        public int compareTo(Entry other) {
+            int byPriority = Integer.compare(other.pattern.getPriority(), pattern.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
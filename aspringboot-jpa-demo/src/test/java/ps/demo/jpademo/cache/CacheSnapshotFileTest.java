@@ -0,0 +1,162 @@
+package ps.demo.jpademo.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存快照文件格式单元测试
+ */
+@DisplayName("缓存快照文件测试")
+class CacheSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("写入后读取，大记录超过缓冲区也能完整读回")
+    void testWriteAndRead() throws IOException {
+        Path file = tempDir.resolve("cache.snapshot");
+        List<CacheSnapshotFile.Record> written = writeRecords(file, 100);
+
+        try (CacheSnapshotFile.Reader reader = CacheSnapshotFile.open(file)) {
+            assertEquals(1234L, reader.snapshotMillis());
+            List<CacheSnapshotFile.Record> read = readAll(reader);
+            assertEquals(written.size(), read.size());
+            for (int i = 0; i < written.size(); i++) {
+                assertRecordEquals(written.get(i), read.get(i));
+            }
+            assertTrue(reader.isComplete());
+            assertFalse(reader.isTruncated());
+        }
+        assertFalse(Files.exists(tempDir.resolve("cache.snapshot.tmp")));
+    }
+
+    @Test
+    @DisplayName("文件在任意位置截断时读取到最后一条完整记录为止")
+    void testTruncatedFile() throws IOException {
+        Path file = tempDir.resolve("cache.snapshot");
+        List<CacheSnapshotFile.Record> written = writeRecords(file, 5);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path truncatedFile = tempDir.resolve("truncated.snapshot");
+        // 文件头之后的每一个截断位置
+        for (int length = 16; length < bytes.length; length++) {
+            Files.write(truncatedFile, Arrays.copyOf(bytes, length));
+            try (CacheSnapshotFile.Reader reader = CacheSnapshotFile.open(truncatedFile)) {
+                List<CacheSnapshotFile.Record> read = readAll(reader);
+                // 只缺结束标记时所有记录都可读，但仍视为截断
+                assertTrue(read.size() < written.size() || length >= bytes.length - Integer.BYTES);
+                for (int i = 0; i < read.size(); i++) {
+                    assertRecordEquals(written.get(i), read.get(i));
+                }
+                assertFalse(reader.isComplete());
+                assertTrue(reader.isTruncated());
+            }
+        }
+
+        // 记录体损坏时校验失败
+        byte[] corrupted = bytes.clone();
+        corrupted[bytes.length - 10] ^= 0x5a;
+        Files.write(truncatedFile, corrupted);
+        try (CacheSnapshotFile.Reader reader = CacheSnapshotFile.open(truncatedFile)) {
+            assertEquals(written.size() - 1, readAll(reader).size());
+            assertTrue(reader.isTruncated());
+        }
+    }
+
+    @Test
+    @DisplayName("不是快照文件或版本不受支持时拒绝读取")
+    void testInvalidHeader() throws IOException {
+        Path file = tempDir.resolve("cache.snapshot");
+        Files.write(file, "not a snapshot file".getBytes(StandardCharsets.UTF_8));
+        assertThrows(CacheException.class, () -> CacheSnapshotFile.open(file));
+
+        ByteBuffer header = ByteBuffer.allocate(20)
+                .putInt(CacheSnapshotFile.MAGIC).putShort((short) (CacheSnapshotFile.VERSION + 1))
+                .putShort((short) 0).putLong(0).putInt(0);
+        Files.write(file, header.array());
+        CacheException e = assertThrows(CacheException.class, () -> CacheSnapshotFile.open(file));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    @DisplayName("兼容读取版本 1 的快照（没有标签）")
+    void testReadVersion1() throws IOException {
+        byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+        byte[] value = {1, 2, 3};
+        ByteBuffer body = ByteBuffer.allocate(Integer.BYTES + key.length + Long.BYTES * 5 + 1 + Integer.BYTES + value.length)
+                .putInt(key.length).put(key)
+                .putLong(-1).putLong(1000L).putLong(2000L).putLong(3L)
+                .put((byte) 4).putLong(5L)
+                .putInt(value.length).put(value);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        ByteBuffer file = ByteBuffer.allocate(16 + 8 + body.capacity() + 4)
+                .putInt(CacheSnapshotFile.MAGIC).putShort((short) 1).putShort((short) 0).putLong(1234L)
+                .putInt(body.capacity()).putInt((int) crc.getValue()).put(body.array())
+                .putInt(0);
+        Path path = tempDir.resolve("v1.snapshot");
+        Files.write(path, file.array());
+
+        try (CacheSnapshotFile.Reader reader = CacheSnapshotFile.open(path)) {
+            List<CacheSnapshotFile.Record> read = readAll(reader);
+            assertEquals(1, read.size());
+            assertRecordEquals(new CacheSnapshotFile.Record("key", value, -1, 1000L, 2000L, 3L, 4, 5L, Set.of()),
+                    read.get(0));
+            assertTrue(reader.isComplete());
+        }
+    }
+
+    private static List<CacheSnapshotFile.Record> writeRecords(Path file, int count) throws IOException {
+        List<CacheSnapshotFile.Record> records = new ArrayList<>();
+        try (CacheSnapshotFile.Writer writer = CacheSnapshotFile.create(file, 1234L)) {
+            for (int i = 0; i < count; i++) {
+                // 每10条中有一条超过64KB写缓冲区
+                byte[] value = new byte[i % 10 == 9 ? 100_000 : i * 7];
+                Arrays.fill(value, (byte) i);
+                CacheSnapshotFile.Record record = new CacheSnapshotFile.Record("键-" + i, value,
+                        i % 2 == 0 ? -1 : i * 1_000_000L, 1000L + i, 2000L + i, i, i % 16, i + 1,
+                        i % 3 == 0 ? Set.of() : Set.of("tag" + i, "购物车"));
+                writer.append(record);
+                records.add(record);
+            }
+            writer.commit();
+        }
+        return records;
+    }
+
+    private static List<CacheSnapshotFile.Record> readAll(CacheSnapshotFile.Reader reader) {
+        List<CacheSnapshotFile.Record> records = new ArrayList<>();
+        CacheSnapshotFile.Record record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void assertRecordEquals(CacheSnapshotFile.Record expected, CacheSnapshotFile.Record actual) {
+        assertEquals(expected.key(), actual.key());
+        assertArrayEquals(expected.value(), actual.value());
+        assertEquals(expected.ttlNanos(), actual.ttlNanos());
+        assertEquals(expected.createMillis(), actual.createMillis());
+        assertEquals(expected.lastAccessMillis(), actual.lastAccessMillis());
+        assertEquals(expected.accessCount(), actual.accessCount());
+        assertEquals(expected.frequency(), actual.frequency());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.tags(), actual.tags());
+    }
+}
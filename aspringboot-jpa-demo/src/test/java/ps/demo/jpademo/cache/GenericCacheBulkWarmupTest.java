@@ -0,0 +1,57 @@
+package ps.demo.jpademo.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量预热测试：向已满的缓存写入 10k 个新键，逐个 put 与 putAll 的结果一致
+ * 吞吐对比见 jmh profile 中的 GenericCacheBulkBenchmark
+ */
+@DisplayName("批量预热测试")
+class GenericCacheBulkWarmupTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    @DisplayName("10k 键预热 - putAll 与逐个 put 淘汰同样的旧键")
+    void testWarmupIntoFullCache() {
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            batch.put("warm-" + i, "value-" + i);
+        }
+
+        InMemoryGenericCache<String> single = fullCache();
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            assertTrue(single.put(entry.getKey(), entry.getValue()));
+        }
+        InMemoryGenericCache<String> bulk = fullCache();
+        assertEquals(KEYS, bulk.putAll(batch));
+
+        for (InMemoryGenericCache<String> cache : List.of(single, bulk)) {
+            assertEquals(KEYS, cache.size());
+            assertEquals(batch.keySet(), new HashSet<>(cache.keys()));
+            assertEquals("value-42", cache.get("warm-42").orElse(null));
+            assertEquals(KEYS, cache.getStats().getEvictionCount());
+            assertEquals(0, cache.getStats().getErrorCount());
+        }
+    }
+
+    private static InMemoryGenericCache<String> fullCache() {
+        InMemoryGenericCache<String> cache = new InMemoryGenericCache<>();
+        cache.setMaxSize(KEYS);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+        Map<String, String> existing = new LinkedHashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            existing.put("old-" + i, "value-" + i);
+        }
+        cache.putAll(existing);
+        return cache;
+    }
+}
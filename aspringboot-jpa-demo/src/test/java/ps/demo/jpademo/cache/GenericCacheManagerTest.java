@@ -0,0 +1,165 @@
+package ps.demo.jpademo.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Spring CacheManager 适配单元测试
+ */
+@DisplayName("Spring CacheManager 适配测试")
+class GenericCacheManagerTest {
+
+    private static final Map<String, CacheSpec> SPECS = Map.of(
+            "books", spec(2L, null, null, "LRU"),
+            "tokens", spec(null, null, 100L, null),
+            "pages", spec(null, 10L, null, "FIFO"));
+
+    private GenericCacheManager cacheManager;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig config = new CacheConfig();
+        config.setCaches(SPECS);
+        registry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", registry));
+        cacheManager = config.cacheManager(ForkJoinPool.commonPool(), beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    @DisplayName("按缓存名称使用各自的容量和过期时间，未配置的名称按默认配置创建")
+    void testPerCacheSpec() {
+        assertEquals(Set.of("books", "tokens", "pages"), Set.copyOf(cacheManager.getCacheNames()));
+
+        Cache books = cacheManager.getCache("books");
+        books.put(1L, "book1");
+        books.put(2L, "book2");
+        books.get(1L);
+        books.put(3L, "book3");
+        assertEquals("book1", books.get(1L, String.class));
+        assertNull(books.get(2L));
+        assertEquals(EvictionPolicy.LRU, ((GenericSpringCache) books).getNativeCache().getEvictionPolicy());
+
+        Cache tokens = cacheManager.getCache("tokens");
+        tokens.put("token", "abc");
+        assertEquals("abc", tokens.get("token").get());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> tokens.get("token") == null);
+
+        // 权重上限为10，条目大小按字符串长度计算
+        GenericSpringCache pages = (GenericSpringCache) cacheManager.getCache("pages");
+        pages.getNativeCache().setWeigher(value -> value.toString().length());
+        pages.put("page1", "12345");
+        pages.put("page2", "1234");
+        assertEquals(9, pages.getNativeCache().dataSize());
+        pages.put("page3", "123");
+        assertNull(pages.get("page1"));
+        assertEquals(7, pages.getNativeCache().dataSize());
+
+        Cache other = cacheManager.getCache("other");
+        assertSame(other, cacheManager.getCache("other"));
+        // 未配置的名称沿用全局配置
+        assertEquals(100 * 1024 * 1024, ((GenericSpringCache) other).getNativeCache().getStats().getMaxCacheSize());
+        assertTrue(cacheManager.getCacheNames().contains("other"));
+    }
+
+    @Test
+    @DisplayName("缓存 null 值、删除和清空")
+    void testNullValuesAndEviction() {
+        Cache cache = cacheManager.getCache("books");
+        cache.put("missing", null);
+        Cache.ValueWrapper wrapper = cache.get("missing");
+        assertNotNull(wrapper);
+        assertNull(wrapper.get());
+
+        assertNull(cache.putIfAbsent("key", "value"));
+        assertEquals("value", cache.putIfAbsent("key", "other").get());
+
+        assertTrue(cache.evictIfPresent("key"));
+        assertFalse(cache.evictIfPresent("key"));
+        assertTrue(cache.invalidate());
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    @DisplayName("sync 加载 - 并发未命中只调用一次，异常包装为 ValueRetrievalException")
+    void testValueLoader() throws Exception {
+        Cache cache = cacheManager.getCache("books");
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            calls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "loaded";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.get("key", loader)));
+            }
+            await().atMost(2, TimeUnit.SECONDS).until(() -> calls.get() == 1);
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("loaded", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals("loaded", cache.get("key", String.class));
+
+        assertNull(cache.get("nothing", () -> null));
+        assertNotNull(cache.get("nothing"));
+
+        Exception failure = new Exception("db down");
+        Cache.ValueRetrievalException e = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get("failing", () -> {
+                    throw failure;
+                }));
+        assertSame(failure, e.getCause());
+        assertNull(cache.get("failing"));
+    }
+
+    @Test
+    @DisplayName("每个缓存以自己的名称暴露指标")
+    void testPerCacheMetrics() {
+        cacheManager.getCache("books").get("missing");
+        Cache other = cacheManager.getCache("other");
+        other.put("key", "value");
+        other.get("key");
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "books").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "other").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.size").tag("cache", "other").tag("cache.manager", "cacheManager")
+                .gauge().value());
+        assertEquals(0, registry.get("cache.size").tag("cache", "tokens").gauge().value());
+    }
+
+    private static CacheSpec spec(Long maxSize, Long maxDataSize, Long ttl, String evictionPolicy) {
+        CacheSpec spec = new CacheSpec();
+        spec.setMaxSize(maxSize);
+        spec.setMaxDataSize(maxDataSize);
+        spec.setTtl(ttl);
+        spec.setEvictionPolicy(evictionPolicy);
+        return spec;
+    }
+}
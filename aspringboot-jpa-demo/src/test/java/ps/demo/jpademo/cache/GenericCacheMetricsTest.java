@@ -0,0 +1,82 @@
+package ps.demo.jpademo.cache;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 缓存指标绑定单元测试
+ */
+@DisplayName("缓存指标绑定测试")
+class GenericCacheMetricsTest {
+
+    private InMemoryGenericCache<String> cache;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        cache = new InMemoryGenericCache<>();
+        cache.setMaxSize(2);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+        registry = new SimpleMeterRegistry();
+        new GenericCacheMetrics(cache, "test", Tags.empty()).bindTo(registry);
+    }
+
+    @Test
+    @DisplayName("命中、未命中、写入和淘汰指标")
+    void testCountersAndGauges() {
+        cache.put("key1", "value1", 0, TimeUnit.MILLISECONDS, 10);
+        cache.put("key2", "value2", 0, TimeUnit.MILLISECONDS, 20);
+        cache.put("key3", "value3", 0, TimeUnit.MILLISECONDS, 30);
+        cache.get("key3");
+        cache.get("key3");
+        cache.get("key3");
+        cache.get("missing");
+
+        assertEquals(3, registry.get("cache.gets").tag("cache", "test").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertEquals(3, registry.get("cache.puts").functionCounter().count());
+        assertEquals(1, registry.get("cache.evictions").functionCounter().count());
+        assertEquals(2, registry.get("cache.size").gauge().value());
+        assertEquals(50, registry.get("cache.weighted.size").gauge().value());
+        assertEquals(0.75, registry.get("cache.hit.rate").gauge().value(), 0.0001);
+        assertEquals(0.25, registry.get("cache.miss.rate").gauge().value(), 0.0001);
+    }
+
+    @Test
+    @DisplayName("抓取指标只读取计数快照，不调用加锁的 getStats")
+    void testScrapeDoesNotCallGetStats() {
+        @SuppressWarnings("unchecked")
+        GenericCache<String> mockCache = mock(GenericCache.class);
+        CacheStats counters = new CacheStats();
+        counters.setHitCount(3);
+        counters.setMissCount(1);
+        counters.updateRates();
+        when(mockCache.getCounterStats()).thenReturn(counters);
+        SimpleMeterRegistry mockRegistry = new SimpleMeterRegistry();
+        new GenericCacheMetrics(mockCache, "mock", Tags.empty()).bindTo(mockRegistry);
+
+        mockRegistry.getMeters().forEach(meter -> meter.measure().forEach(measurement -> measurement.getValue()));
+
+        assertEquals(0.75, mockRegistry.get("cache.hit.rate").gauge().value(), 0.0001);
+        verify(mockCache, never()).getStats();
+    }
+
+    @Test
+    @DisplayName("加载指标初始为零")
+    void testLoadMetrics() {
+        assertEquals(0, registry.get("cache.load").tag("result", "success").functionCounter().count());
+        assertEquals(0, registry.get("cache.load").tag("result", "failure").functionCounter().count());
+        FunctionTimer timer = registry.get("cache.load.duration").functionTimer();
+        assertEquals(0, timer.count());
+        assertEquals(0, timer.totalTime(TimeUnit.NANOSECONDS));
+    }
+}
@@ -14,6 +14,10 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -190,6 +194,49 @@ class InMemoryGenericCacheTest {
         assertTrue(cache.contains("permanent"));
     }
 
+    @Test
+    @DisplayName("过期时间测试 - 读取过期键不创建线程，清理计数准确")
+    void testExpiredReadThenCleanup() throws InterruptedException {
+        cache.put("expired1", "value1", 50, TimeUnit.MILLISECONDS);
+        cache.put("expired2", "value2", 50, TimeUnit.MILLISECONDS);
+        cache.put("expired3", "value3", 2, TimeUnit.SECONDS);
+        cache.put("permanent", "value4");
+
+        Thread.sleep(100);
+
+        int threadsBefore = Thread.activeCount();
+        assertFalse(cache.get("expired1").isPresent());
+        assertFalse(cache.getEntry("expired2").isPresent());
+        assertEquals(threadsBefore, Thread.activeCount());
+
+        // 读路径不删除，过期条目统一由清理回收
+        assertEquals(2, cache.cleanup());
+        assertEquals(0, cache.cleanup());
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.dataSize());
+    }
+
+    @Test
+    @DisplayName("过期时间测试 - 未回收的过期条目不计入键列表、条目数和有效条目统计")
+    void testExpiredEntriesNotCountedBeforeCleanup() throws InterruptedException {
+        cache.put("expired1", "value1", 50, TimeUnit.MILLISECONDS);
+        cache.put("expired2", "value2", 50, TimeUnit.MILLISECONDS);
+        cache.put("permanent", "value3");
+
+        Thread.sleep(100);
+
+        // 期间没有写入和清理，过期条目仍在表中
+        CacheStats stats = cache.getStats();
+        assertEquals(3, stats.getTotalEntries());
+        assertEquals(1, stats.getActiveEntries());
+        assertEquals(2, stats.getExpiredEntries());
+        assertEquals(List.of("permanent"), cache.keys());
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getStats().getTotalEntries());
+        assertEquals(0, cache.getStats().getExpiredEntries());
+    }
+
     @ParameterizedTest
     @EnumSource(value = TimeUnit.class, names = {"MILLISECONDS", "MICROSECONDS", "NANOSECONDS"})
     @DisplayName("短时间单位过期测试")
@@ -371,6 +418,158 @@ class InMemoryGenericCacheTest {
         assertFalse(cache.contains("key2"));
     }
 
+    @Test
+    @DisplayName("W-TinyLFU淘汰策略测试 - 高频键不被新键挤出")
+    void testTinyLFUEviction() {
+        cache.setMaxSize(10);
+        cache.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("hot" + i, "value" + i);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("hot" + i);
+            }
+        }
+
+        // 一次性访问的键不应冲掉热点工作集
+        for (int i = 0; i < 30; i++) {
+            cache.put("once" + i, "value" + i);
+        }
+
+        assertEquals(10, cache.size());
+        int hotRemaining = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.contains("hot" + i)) {
+                hotRemaining++;
+            }
+        }
+        assertTrue(hotRemaining >= 9, "Hot keys remaining: " + hotRemaining);
+    }
+
+    @Test
+    @DisplayName("W-TinyLFU命中率对比测试 - Zipf分布")
+    void testTinyLFUHitRateOnZipfTrace() {
+        int[] trace = zipfTrace(2000, 0.9, 30000, 42);
+
+        double lru = replayHitRate(EvictionPolicy.LRU, 100, trace);
+        double lfu = replayHitRate(EvictionPolicy.LFU, 100, trace);
+        double tinyLfu = replayHitRate(EvictionPolicy.TINY_LFU, 100, trace);
+
+        assertTrue(tinyLfu > lru, "TINY_LFU " + tinyLfu + " should beat LRU " + lru);
+    }
+
+    @Test
+    @DisplayName("W-TinyLFU命中率对比测试 - Zipf分布混合一次性扫描")
+    void testTinyLFUHitRateOnZipfTraceWithScans() {
+        int[] zipf = zipfTrace(2000, 0.9, 30000, 7);
+        // 每访问一个Zipf键就插入一个只出现一次的键
+        int[] trace = new int[zipf.length * 2];
+        for (int i = 0; i < zipf.length; i++) {
+            trace[2 * i] = zipf[i];
+            trace[2 * i + 1] = 1_000_000 + i;
+        }
+
+        double lru = replayHitRate(EvictionPolicy.LRU, 100, trace);
+        double tinyLfu = replayHitRate(EvictionPolicy.TINY_LFU, 100, trace);
+
+        assertTrue(tinyLfu > lru * 1.5, "TINY_LFU " + tinyLfu + " should clearly beat LRU " + lru);
+    }
+
+    @Test
+    @DisplayName("W-TinyLFU并发读测试 - 读缓冲区有损记录，热点键仍被保留")
+    void testTinyLFUConcurrentReads() throws Exception {
+        cache.setMaxSize(100);
+        cache.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, "value" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        assertTrue(cache.get("hot" + (i % 50)).isPresent());
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < 500; i++) {
+            cache.put("once" + i, "value" + i);
+        }
+        assertEquals(100, cache.size());
+        int hotRemaining = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.contains("hot" + i)) {
+                hotRemaining++;
+            }
+        }
+        assertTrue(hotRemaining >= 45, "Hot keys remaining: " + hotRemaining);
+    }
+
+    /**
+     * 按给定淘汰策略回放访问序列（未命中则写入），返回命中率
+     */
+    private double replayHitRate(EvictionPolicy policy, int capacity, int[] trace) {
+        InMemoryGenericCache<String> replayCache = new InMemoryGenericCache<>();
+        replayCache.setMaxSize(capacity);
+        replayCache.setEvictionPolicy(policy);
+
+        int hits = 0;
+        for (int keyId : trace) {
+            String key = "k" + keyId;
+            if (replayCache.get(key).isPresent()) {
+                hits++;
+            } else {
+                replayCache.put(key, key);
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    /**
+     * 生成Zipf分布的键序列（固定随机种子，结果可复现）
+     */
+    private static int[] zipfTrace(int keySpace, double exponent, int length, long seed) {
+        double[] cdf = new double[keySpace];
+        double sum = 0;
+        for (int i = 0; i < keySpace; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            double u = random.nextDouble() * sum;
+            int index = Arrays.binarySearch(cdf, u);
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        // 打乱键编号与热度的对应关系，避免与哈希顺序巧合
+        int[] shuffle = new int[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            shuffle[i] = i;
+        }
+        for (int i = keySpace - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffle[i];
+            shuffle[i] = shuffle[j];
+            shuffle[j] = tmp;
+        }
+        for (int i = 0; i < length; i++) {
+            trace[i] = shuffle[trace[i]];
+        }
+        return trace;
+    }
+
     @Test
     @DisplayName("手动淘汰测试")
     void testManualEviction() {
@@ -423,6 +622,38 @@ class InMemoryGenericCacheTest {
         assertEquals(1, stats.getErrorCount());
     }
 
+    @Test
+    @DisplayName("并发读写下统计计数准确")
+    void testConcurrentStatsAccuracy() throws InterruptedException {
+        int threadCount = 8;
+        int operationsPerThread = 5000;
+        cache.put("hot", "value");
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < operationsPerThread; j++) {
+                        cache.get("hot");
+                        cache.get("missing");
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        CacheStats stats = cache.getStats();
+        assertEquals((long) threadCount * operationsPerThread, stats.getHitCount());
+        assertEquals((long) threadCount * operationsPerThread, stats.getMissCount());
+        assertEquals(1, stats.getPutCount());
+        assertEquals(0.5, stats.getHitRate(), 0.0001);
+    }
+
     @Test
     @DisplayName("并发读写测试")
     void testConcurrentAccess() throws InterruptedException {
@@ -550,6 +781,24 @@ class InMemoryGenericCacheTest {
         assertEquals(0, cache.size());
     }
 
+    @Test
+    @DisplayName("TTL为0表示永不过期 - put、putAll 一致，TimeUnit 可为 null")
+    void testZeroTtlNeverExpires() throws InterruptedException {
+        assertTrue(cache.put("key1", "value1", 0, TimeUnit.MILLISECONDS));
+        assertTrue(cache.put("key2", "value2", 0, null));
+        assertTrue(cache.put("key3", "value3", 0, null, 1));
+        assertEquals(2, cache.putAll(Map.of("key4", "value4", "key5", "value5"), 0, TimeUnit.MILLISECONDS));
+        assertEquals(1, cache.putAll(Map.of("key6", "value6"), 0, null));
+
+        Thread.sleep(20);
+        assertEquals(0, cache.cleanup());
+        for (int i = 1; i <= 6; i++) {
+            assertTrue(cache.contains("key" + i), "key" + i);
+        }
+        assertFalse(cache.getEntry("key1").orElseThrow().isExpirable());
+        assertEquals(0, cache.getStats().getErrorCount());
+    }
+
     @Test
     @DisplayName("非法参数测试")
     void testInvalidParameters() {
@@ -669,4 +918,540 @@ class InMemoryGenericCacheTest {
         assertTrue(stats.getEvictionCount() > 0);
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("加载 - 同一个键的并发未命中只加载一次")
+    void testLoaderCoalescesConcurrentMisses() throws Exception {
+        int threadCount = 16;
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            results.add(executor.submit(() -> cache.get("key", key -> {
+                loadCount.incrementAndGet();
+                release.await();
+                return "loaded-" + key;
+            })));
+        }
+        // 等所有线程都进入未命中路径后再放行加载
+        await().atMost(5, TimeUnit.SECONDS).until(() -> cache.getStats().getMissCount() == threadCount);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("loaded-key", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, loadCount.get());
+        assertEquals("loaded-key", cache.get("key").orElse(null));
+        assertEquals("loaded-key", cache.get("key", key -> "reloaded"));
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertTrue(stats.getTotalLoadTime() > 0);
+    }
+
+    @Test
+    @DisplayName("加载 - 失败原样抛出且不缓存，null 不写入缓存")
+    void testLoaderFailure() {
+        IllegalStateException failure = new IllegalStateException("db down");
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> cache.get("key", key -> {
+            throw failure;
+        })));
+        CacheException wrapped = assertThrows(CacheException.class, () -> cache.get("key", key -> {
+            throw new java.io.IOException("io");
+        }));
+        assertInstanceOf(java.io.IOException.class, wrapped.getCause());
+        assertFalse(cache.contains("key"));
+
+        assertNull(cache.get("absent", key -> null));
+        assertFalse(cache.contains("absent"));
+
+        assertEquals("value", cache.get("key", key -> "value"));
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getLoadSuccessCount());
+        assertEquals(3, stats.getLoadFailureCount());
+    }
+
+    @Test
+    @DisplayName("异步加载 - 并发调用方共享同一个 Future")
+    void testGetAsyncSharesFuture() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CacheLoader<String> loader = key -> {
+            loadCount.incrementAndGet();
+            release.await();
+            return "async-" + key;
+        };
+
+        CompletableFuture<String> first = cache.getAsync("key", loader, executor);
+        CompletableFuture<String> second = cache.getAsync("key", loader, executor);
+        assertSame(first, second);
+        release.countDown();
+
+        assertEquals("async-key", first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loadCount.get());
+        assertTrue(cache.getAsync("key", loader).isDone());
+
+        CompletableFuture<String> failed = cache.getAsync("bad", key -> {
+            throw new IllegalArgumentException("bad key");
+        }, executor);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        assertFalse(cache.contains("bad"));
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("批量操作 - putAll、getAll、invalidateAll")
+    void testBulkOperations() {
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            batch.put("key" + i, "value" + i);
+        }
+        assertEquals(10, cache.putAll(batch));
+        assertEquals(10, cache.size());
+
+        Map<String, String> result = cache.getAll(List.of("key3", "missing", "key1"));
+        assertEquals(List.of("key3", "key1"), new ArrayList<>(result.keySet()));
+        assertEquals("value3", result.get("key3"));
+
+        assertEquals(2, cache.invalidateAll(List.of("key1", "key2", "missing")));
+        assertEquals(8, cache.size());
+
+        CacheStats stats = cache.getStats();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(10, stats.getPutCount());
+
+        assertEquals(2, cache.putAll(Map.of("ttl1", "v1", "ttl2", "v2"), 1, TimeUnit.MINUTES));
+        assertTrue(cache.getEntry("ttl1").map(CacheEntry::isExpirable).orElse(false));
+    }
+
+    @Test
+    @DisplayName("批量操作 - 一次淘汰为整批腾出空间，超过容量的部分写入失败")
+    void testPutAllEvictsOnce() {
+        cache.setMaxSize(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("old" + i, "value");
+        }
+        cache.get("old0");
+
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            batch.put("new" + i, "value");
+        }
+        assertEquals(5, cache.putAll(batch));
+        assertEquals(10, cache.size());
+        // LRU：最近访问的 old0 保留，最久未访问的 old1..old5 被淘汰
+        assertTrue(cache.contains("old0"));
+        assertFalse(cache.contains("old1"));
+        assertFalse(cache.contains("old5"));
+        assertTrue(cache.contains("old6"));
+        assertEquals(5, cache.getStats().getEvictionCount());
+
+        Map<String, String> huge = new LinkedHashMap<>();
+        for (int i = 0; i < 15; i++) {
+            huge.put("huge" + i, "value");
+        }
+        assertEquals(10, cache.putAll(huge));
+        assertEquals(10, cache.size());
+        assertEquals(5, cache.getStats().getErrorCount());
+    }
+
+    @Test
+    @DisplayName("批量操作 - 覆盖已有键的值放不下时保留旧值")
+    void testPutAllKeepsOldValueWhenReplacementRejected() {
+        cache.setWeigher(String::length);
+        cache.setMaxDataSize(10);
+        cache.put("key1", "12345");
+        cache.put("key2", "67");
+
+        assertEquals(0, cache.putAll(Map.of("key1", "x".repeat(20))));
+        assertEquals("12345", cache.get("key1").orElse(null));
+        assertEquals(1, cache.getStats().getErrorCount());
+
+        // 覆盖已有键时按净增量腾出空间，不淘汰本批的键
+        assertEquals(1, cache.putAll(Map.of("key1", "123456789")));
+        assertEquals("123456789", cache.get("key1").orElse(null));
+        assertFalse(cache.contains("key2"));
+    }
+
+    @Test
+    @DisplayName("批量加载 - 所有未命中的键通过一次调用加载")
+    void testGetAllWithBulkLoader() {
+        cache.put("key1", "cached1");
+        List<Set<String>> calls = new ArrayList<>();
+        BulkCacheLoader<String> loader = keys -> {
+            calls.add(new HashSet<>(keys));
+            Map<String, String> loaded = new HashMap<>();
+            for (String key : keys) {
+                if (!key.equals("absent")) {
+                    loaded.put(key, "loaded-" + key);
+                }
+            }
+            return loaded;
+        };
+
+        Map<String, String> result = cache.getAll(List.of("key1", "key2", "key3", "absent"), loader);
+        assertEquals(Map.of("key1", "cached1", "key2", "loaded-key2", "key3", "loaded-key3"), result);
+        assertEquals(List.of(Set.of("key2", "key3", "absent")), calls);
+        assertEquals("loaded-key2", cache.get("key2").orElse(null));
+        assertFalse(cache.contains("absent"));
+
+        // 全部命中时不调用 loader
+        cache.getAll(List.of("key1", "key2"), loader);
+        assertEquals(1, calls.size());
+
+        IllegalStateException failure = new IllegalStateException("db down");
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> cache.getAll(List.of("key4"), keys -> {
+                    throw failure;
+                })));
+        assertFalse(cache.contains("key4"));
+        assertEquals(1, cache.getStats().getLoadSuccessCount());
+    }
+
+    @Test
+    @DisplayName("刷新 - 到期后返回旧值并在后台重新加载")
+    void testRefreshAfterServesStaleValue() throws InterruptedException {
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setExecutor(tasks::add);
+        AtomicInteger version = new AtomicInteger();
+        CacheLoader<String> loader = key -> "v" + version.incrementAndGet();
+
+        assertEquals("v1", cache.get("key", loader, 0, 50, TimeUnit.MILLISECONDS));
+        assertEquals("v1", cache.get("key", loader, 0, 50, TimeUnit.MILLISECONDS));
+        assertTrue(tasks.isEmpty());
+
+        Thread.sleep(80);
+        // 到期后仍返回旧值，多次读取只提交一次刷新
+        assertEquals("v1", cache.get("key", loader, 0, 50, TimeUnit.MILLISECONDS));
+        assertEquals("v1", cache.get("key", loader, 0, 50, TimeUnit.MILLISECONDS));
+        assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        assertEquals("v2", cache.get("key").orElse(null));
+        assertEquals("v2", cache.get("key", loader, 0, 50, TimeUnit.MILLISECONDS));
+        assertTrue(tasks.isEmpty());
+        assertEquals(1, cache.getStats().getRefreshSuccessCount());
+    }
+
+    @Test
+    @DisplayName("刷新 - 失败保留旧值，硬过期仍然生效")
+    void testRefreshFailureKeepsValueUntilExpiry() throws InterruptedException {
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setExecutor(tasks::add);
+        cache.setRefreshAfter(20, TimeUnit.MILLISECONDS);
+        AtomicInteger calls = new AtomicInteger();
+        CacheLoader<String> loader = key -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("db down");
+            }
+            return "v1";
+        };
+
+        assertEquals("v1", cache.get("key", loader, 150, 0, TimeUnit.MILLISECONDS));
+        Thread.sleep(40);
+        assertEquals("v1", cache.get("key", loader, 150, 0, TimeUnit.MILLISECONDS));
+        tasks.remove(0).run();
+
+        assertEquals("v1", cache.get("key").orElse(null));
+        CacheStats stats = cache.getStats();
+        assertEquals(0, stats.getRefreshSuccessCount());
+        assertEquals(1, stats.getRefreshFailureCount());
+
+        Thread.sleep(150);
+        assertFalse(cache.get("key").isPresent());
+        assertThrows(IllegalStateException.class, () -> cache.get("key", loader, 150, 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("刷新 - 不指定过期时间的读取触发刷新，刷新结果沿用原来的过期时刻")
+    void testRefreshKeepsOriginalExpiry() throws InterruptedException {
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setExecutor(tasks::add);
+        cache.setRefreshAfter(20, TimeUnit.MILLISECONDS);
+        AtomicInteger version = new AtomicInteger();
+        CacheLoader<String> loader = key -> "v" + version.incrementAndGet();
+
+        assertEquals("v1", cache.get("key", loader, 150, 0, TimeUnit.MILLISECONDS));
+        long expireAt = cache.getEntry("key").orElseThrow().getExpireAtNanos();
+        Thread.sleep(40);
+        assertEquals("v1", cache.get("key", loader));
+        tasks.remove(0).run();
+
+        CacheEntry<String> refreshed = cache.getEntry("key").orElseThrow();
+        assertEquals("v2", refreshed.getValue());
+        assertTrue(refreshed.isExpirable());
+        // 写回时按剩余时间重新计算，只差读取两次 nanoTime 之间的间隔
+        assertTrue(refreshed.getExpireAtNanos() - expireAt < TimeUnit.MILLISECONDS.toNanos(10));
+
+        Thread.sleep(150);
+        assertFalse(cache.get("key").isPresent());
+    }
+
+    @Test
+    @DisplayName("刷新 - 刷新期间写入的新值不被刷新结果覆盖")
+    void testRefreshDoesNotOverwriteConcurrentPut() throws InterruptedException {
+        List<Runnable> tasks = new ArrayList<>();
+        cache.setExecutor(tasks::add);
+        AtomicInteger version = new AtomicInteger();
+        CacheLoader<String> loader = key -> "v" + version.incrementAndGet();
+
+        assertEquals("v1", cache.get("key", loader, 0, 20, TimeUnit.MILLISECONDS));
+        Thread.sleep(40);
+        assertEquals("v1", cache.get("key", loader, 0, 20, TimeUnit.MILLISECONDS));
+        assertEquals(1, tasks.size());
+
+        // 刷新开始后、写回之前有新的写入
+        cache.put("key", "manual");
+        tasks.remove(0).run();
+        assertEquals("manual", cache.get("key").orElse(null));
+
+        // 数据源返回 null 时同样不删除新写入的值
+        cache.get("other", loader, 0, 20, TimeUnit.MILLISECONDS);
+        Thread.sleep(40);
+        cache.get("other", key -> null, 0, 20, TimeUnit.MILLISECONDS);
+        cache.put("other", "manual");
+        tasks.remove(0).run();
+        assertEquals("manual", cache.get("other").orElse(null));
+    }
+
+    @Test
+    @DisplayName("堆外层 - 条目大小为序列化字节数，冷条目降级后可读回")
+    void testOffHeapDemoteAndPromote() {
+        JdkCacheSerializer<String> serializer = new JdkCacheSerializer<>();
+        int valueBytes = serializer.serialize("value-00").length;
+        // 堆上最多保留约4个值
+        cache.enableOffHeap(serializer, valueBytes * 4L, 64, 4096);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cache.put(String.format("key-%02d", i), String.format("value-%02d", i), 0, TimeUnit.MILLISECONDS, 1));
+        }
+
+        assertEquals(20L * valueBytes, cache.dataSize());
+        assertTrue(cache.heapDataSize() <= valueBytes * 4L);
+        assertTrue(cache.offHeapDataSize() >= cache.dataSize());
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(String.format("value-%02d", i), cache.get(String.format("key-%02d", i)).orElse(null));
+        }
+        assertEquals("value-03", cache.getEntry("key-03").map(CacheEntry::getValue).orElse(null));
+
+        // 读路径提升后由清理降级回水位线以下
+        cache.cleanup();
+        assertTrue(cache.heapDataSize() <= valueBytes * 4L);
+
+        assertTrue(cache.remove("key-00"));
+        cache.clear();
+        assertEquals(0, cache.heapDataSize());
+        assertEquals(0, cache.offHeapDataSize());
+    }
+
+    @Test
+    @DisplayName("堆外层 - 降级跳过进入堆上后被访问过的条目")
+    void testOffHeapDemotionKeepsRecentlyAccessed() {
+        JdkCacheSerializer<String> serializer = new JdkCacheSerializer<>();
+        int valueBytes = serializer.serialize("value-00").length;
+        cache.enableOffHeap(serializer, valueBytes * 4L, 64, 4096);
+
+        for (int i = 0; i < 3; i++) {
+            cache.put(String.format("key-%02d", i), String.format("value-%02d", i));
+        }
+        cache.get("key-00");
+        // 第 5 个值超过堆上限，降到 80% 水位线以下：key-00 被访问过移到队尾，降级 key-01、key-02
+        cache.put("key-03", "value-03");
+        cache.put("key-04", "value-04");
+        assertEquals(3L * valueBytes, cache.heapDataSize());
+
+        cache.get("key-00");
+        assertEquals(3L * valueBytes, cache.heapDataSize());
+        cache.get("key-01");
+        assertEquals(4L * valueBytes, cache.heapDataSize());
+    }
+
+    @Test
+    @DisplayName("堆外层 - 超出容量时按淘汰策略腾出空间")
+    void testOffHeapCapacityEviction() {
+        JdkCacheSerializer<String> serializer = new JdkCacheSerializer<>();
+        int valueBytes = serializer.serialize("value-00").length;
+        cache.setMaxDataSize(valueBytes * 5L);
+        cache.enableOffHeap(serializer, valueBytes, 64, 4096);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.put(String.format("key-%02d", i), String.format("value-%02d", i)));
+        }
+
+        assertTrue(cache.size() <= 5);
+        assertTrue(cache.dataSize() <= valueBytes * 5L);
+        assertTrue(cache.contains("key-09"));
+        assertEquals("value-09", cache.get("key-09").orElse(null));
+    }
+
+    @Test
+    @DisplayName("堆外层 - 不可序列化的值写入失败，缓存非空时不能启用")
+    void testOffHeapErrors() {
+        cache.put("key1", "value1");
+        assertThrows(CacheException.class, () -> cache.enableOffHeap(new JdkCacheSerializer<>(), 1024));
+
+        objectCache.enableOffHeap(new JdkCacheSerializer<>(), 1024);
+        assertFalse(objectCache.put("obj", new ComplexObject("1", "name")));
+        assertEquals(1, objectCache.getStats().getErrorCount());
+    }
+
+    @Test
+    @DisplayName("快照 - 恢复条目、剩余存活时间和访问次数，过期条目被跳过")
+    void testSnapshotRoundTrip(@TempDir Path tempDir) {
+        Path file = tempDir.resolve("cache.snapshot");
+        cache.put("key1", "value1");
+        cache.put("key2", "value2", 1, TimeUnit.HOURS);
+        cache.put("expiring", "value3", 50, TimeUnit.MILLISECONDS);
+        cache.get("key1");
+        cache.get("key1");
+        assertEquals(3, cache.saveSnapshot(file));
+
+        await().pollDelay(100, TimeUnit.MILLISECONDS).until(() -> true);
+        InMemoryGenericCache<String> restored = new InMemoryGenericCache<>();
+        restored.put("key2", "newer");
+        assertEquals(1, restored.loadSnapshot(file));
+
+        assertEquals("newer", restored.get("key2").orElse(null));
+        assertFalse(restored.contains("expiring"));
+        CacheEntry<String> entry = restored.getEntry("key1").orElseThrow();
+        assertEquals("value1", entry.getValue());
+        // 两次 get 加上本次 getEntry
+        assertEquals(3, entry.getAccessCount());
+        assertFalse(entry.isExpirable());
+
+        InMemoryGenericCache<String> withTtl = new InMemoryGenericCache<>();
+        assertEquals(2, withTtl.loadSnapshot(file));
+        long remaining = withTtl.getEntry("key2").orElseThrow().getRemainingTime();
+        assertTrue(remaining > 3500 && remaining <= 3600, "remaining: " + remaining);
+
+        assertEquals(0, withTtl.loadSnapshot(tempDir.resolve("missing.snapshot")));
+    }
+
+    @Test
+    @DisplayName("快照 - 容量不足时优先恢复最近访问的条目，TinyLFU 频率随快照恢复")
+    void testSnapshotKeepsHotEntries(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("cache.snapshot");
+        cache.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            cache.get("key7");
+        }
+        Thread.sleep(5);
+        cache.get("key3");
+        assertEquals(10, cache.saveSnapshot(file));
+
+        InMemoryGenericCache<String> restored = new InMemoryGenericCache<>();
+        restored.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        restored.setMaxSize(2);
+        assertEquals(2, restored.loadSnapshot(file));
+        assertEquals(Set.of("key3", "key7"), new HashSet<>(restored.keys()));
+
+        InMemoryGenericCache<String> loaded = new InMemoryGenericCache<>();
+        loaded.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        assertEquals(10, loaded.loadSnapshotAsync(file, Executors.newSingleThreadExecutor()).get(5, TimeUnit.SECONDS));
+        assertEquals(10, loaded.size());
+    }
+
+    @Test
+    @DisplayName("快照 - 堆外层直接写出字节，文件截断时恢复已完整的条目")
+    void testSnapshotOffHeapAndTruncation(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("cache.snapshot");
+        cache.enableOffHeap(new JdkCacheSerializer<>(), 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, "value-" + i + "-" + "x".repeat(100));
+        }
+        assertTrue(cache.heapDataSize() < cache.dataSize());
+        assertEquals(20, cache.saveSnapshot(file));
+
+        InMemoryGenericCache<String> restored = new InMemoryGenericCache<>();
+        restored.enableOffHeap(new JdkCacheSerializer<>(), 1024);
+        assertEquals(20, restored.loadSnapshot(file));
+        assertEquals(cache.dataSize(), restored.dataSize());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(cache.get("key" + i), restored.get("key" + i));
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        InMemoryGenericCache<String> partial = new InMemoryGenericCache<>();
+        int count = partial.loadSnapshot(file);
+        assertTrue(count > 0 && count < 20, "restored: " + count);
+        assertEquals(count, partial.size());
+    }
+
+    @Test
+    @DisplayName("标签和前缀失效 - 只移除匹配的条目，覆盖写入替换旧标签")
+    void testInvalidateByTagAndPrefix() {
+        cache.put("cart:1:item:1", "a", List.of("product:42", "cart:1"));
+        cache.put("cart:1:item:2", "b", List.of("product:7", "cart:1"));
+        cache.put("cart:2:item:1", "c", 1, TimeUnit.HOURS, List.of("product:42"));
+        cache.put("cart:10:item:1", "d");
+        cache.put("cart", "e");
+        cache.put("order:1", "f", List.of("product:42"));
+
+        assertEquals(3, cache.invalidateByTag("product:42"));
+        assertEquals(Set.of("cart:1:item:2", "cart:10:item:1", "cart"), new HashSet<>(cache.keys()));
+        assertEquals(0, cache.invalidateByTag("product:42"));
+        assertEquals(0, cache.invalidateByTag("unknown"));
+
+        assertEquals(1, cache.invalidateByPrefix("cart:1:"));
+        assertEquals(Set.of("cart:10:item:1", "cart"), new HashSet<>(cache.keys()));
+        assertEquals(2, cache.invalidateByPrefix("cart"));
+        assertEquals(0, cache.size());
+
+        // 覆盖写入时旧标签失效，删除和淘汰时索引同步清理
+        cache.put("key1", "v1", List.of("old"));
+        cache.put("key1", "v2", List.of("new"));
+        assertEquals(0, cache.invalidateByTag("old"));
+        assertEquals(1, cache.invalidateByTag("new"));
+
+        cache.setMaxSize(2);
+        cache.put("k1", "v", List.of("t"));
+        cache.put("k2", "v", List.of("t"));
+        cache.put("k3", "v", List.of("t"));
+        assertEquals(2, cache.invalidateByTag("t"));
+        assertEquals(0, cache.invalidateByPrefix("k"));
+
+        // 索引建立后的写入同步加入索引
+        cache.put("k4", "v");
+        assertEquals(1, cache.invalidateByPrefix("k"));
+    }
+
+    @Test
+    @DisplayName("标签和前缀失效 - 只删除匹配的条目，标签随快照恢复")
+    void testTagAndPrefixInvalidation(@TempDir Path tempDir) {
+        // 耗时与匹配条目数成正比的对比见 jmh profile 中的 CacheInvalidationBenchmark
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            entries.put("user:" + i, "value");
+        }
+        cache.setMaxSize(2_000);
+        cache.putAll(entries);
+        for (int i = 0; i < 10; i++) {
+            cache.put("cart:" + i, "value", List.of("product:1"));
+            cache.put("order:" + i, "value", List.of("product:2"));
+        }
+
+        assertEquals(10, cache.invalidateByPrefix("cart:"));
+        assertEquals(0, cache.invalidateByTag("product:1"));
+        assertEquals(10, cache.invalidateByTag("product:2"));
+        assertEquals(0, cache.invalidateByPrefix("order:"));
+        assertEquals(entries.keySet(), new HashSet<>(cache.keys()));
+
+        cache.clear();
+        cache.put("cart:1", "value", List.of("product:1", "cart"));
+        cache.saveSnapshot(tempDir.resolve("cache.snapshot"));
+        InMemoryGenericCache<String> restored = new InMemoryGenericCache<>();
+        assertEquals(1, restored.loadSnapshot(tempDir.resolve("cache.snapshot")));
+        assertEquals(1, restored.invalidateByTag("product:1"));
+    }
+
+}
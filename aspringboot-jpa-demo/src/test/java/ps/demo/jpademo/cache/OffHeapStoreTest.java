@@ -0,0 +1,61 @@
+package ps.demo.jpademo.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 堆外块存储单元测试
+ */
+@DisplayName("堆外块存储测试")
+class OffHeapStoreTest {
+
+    @Test
+    @DisplayName("跨块写入和读取")
+    void testWriteAndReadAcrossBlocks() {
+        OffHeapStore store = new OffHeapStore(1024 * 1024, 32, 1024);
+        Random random = new Random(7);
+        Map<Integer, byte[]> written = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] bytes = new byte[random.nextInt(300)];
+            random.nextBytes(bytes);
+            int block = store.write(bytes);
+            assertNotEquals(OffHeapStore.NIL, block);
+            written.put(block, bytes);
+        }
+        for (Map.Entry<Integer, byte[]> entry : written.entrySet()) {
+            assertArrayEquals(entry.getValue(), store.read(entry.getKey(), entry.getValue().length));
+        }
+    }
+
+    @Test
+    @DisplayName("容量不足时写入失败，释放后块被复用")
+    void testCapacityAndReuse() {
+        // 每块28字节数据，容量4块
+        OffHeapStore store = new OffHeapStore(112, 32, 64);
+        byte[] value = "0123456789012345678901234567890123456789".getBytes(StandardCharsets.UTF_8);
+
+        int first = store.write(value);
+        int second = store.write(value);
+        assertNotEquals(OffHeapStore.NIL, first);
+        assertNotEquals(OffHeapStore.NIL, second);
+        assertEquals(OffHeapStore.NIL, store.write(value));
+        assertEquals(128, store.usedBytes());
+
+        store.free(first);
+        long reserved = store.reservedBytes();
+        int third = store.write("reuse".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(OffHeapStore.NIL, third);
+        assertEquals(reserved, store.reservedBytes());
+        assertEquals("reuse", new String(store.read(third, 5), StandardCharsets.UTF_8));
+        assertArrayEquals(value, store.read(second, value.length));
+
+        store.clear();
+        assertEquals(0, store.usedBytes());
+        assertEquals(reserved, store.reservedBytes());
+    }
+}
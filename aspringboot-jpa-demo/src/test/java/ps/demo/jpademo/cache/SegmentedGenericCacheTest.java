@@ -0,0 +1,375 @@
+package ps.demo.jpademo.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段锁内存缓存单元测试
+ */
+@DisplayName("分段锁内存缓存测试")
+class SegmentedGenericCacheTest {
+
+    private SegmentedGenericCache<String> cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SegmentedGenericCache<>(8);
+        cache.setMaxSize(100);
+        cache.setMaxDataSize(10 * 1024 * 1024); // 10MB
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+    }
+
+    @Test
+    @DisplayName("基本存储、覆盖和删除测试")
+    void testBasicOperations() {
+        assertTrue(cache.put("key1", "value1"));
+        assertEquals("value1", cache.get("key1").orElse(null));
+
+        assertTrue(cache.put("key1", "value2"));
+        assertEquals("value2", cache.get("key1").orElse(null));
+        assertEquals(1, cache.size());
+
+        assertTrue(cache.remove("key1"));
+        assertFalse(cache.remove("key1"));
+        assertFalse(cache.get("key1").isPresent());
+        assertEquals(0, cache.dataSize());
+    }
+
+    @Test
+    @DisplayName("空键和空值测试")
+    void testNullKeysAndValues() {
+        NullPointerException exception = assertThrows(NullPointerException.class, () -> cache.put(null, "value"));
+        assertEquals("Key cannot be null", exception.getMessage());
+        exception = assertThrows(NullPointerException.class, () -> cache.put("key", null));
+        assertEquals("Value cannot be null", exception.getMessage());
+
+        assertFalse(cache.contains(null));
+        assertFalse(cache.remove(null));
+        assertFalse(cache.get(null).isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("过期条目不会被返回，清理计数准确")
+    void testExpiration() throws InterruptedException {
+        cache.put("expired1", "value1", 50, TimeUnit.MILLISECONDS);
+        cache.put("expired2", "value2", 50, TimeUnit.MILLISECONDS);
+        cache.put("permanent", "value3");
+
+        Thread.sleep(100);
+
+        assertFalse(cache.get("expired1").isPresent());
+        // expired1 已在读取时被惰性删除
+        assertEquals(1, cache.cleanup());
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains("permanent"));
+    }
+
+    @Test
+    @DisplayName("定时清理回收只读段中的过期条目")
+    void testScheduledCleanup() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            cache.put("expired" + i, "value", 50, TimeUnit.MILLISECONDS);
+        }
+        cache.put("permanent", "value");
+
+        Thread.sleep(100);
+
+        // 没有读写触发段内回收，由定时任务推进各段时间轮
+        cache.scheduledCleanup();
+        assertEquals(1, cache.dataSize());
+        assertTrue(cache.contains("permanent"));
+    }
+
+    @Test
+    @DisplayName("LRU淘汰策略测试")
+    void testLRUEviction() {
+        cache.setMaxSize(3);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        cache.get("key1");
+
+        cache.put("key4", "value4");
+
+        assertTrue(cache.contains("key1"));
+        assertFalse(cache.contains("key2"));
+        assertTrue(cache.contains("key3"));
+        assertTrue(cache.contains("key4"));
+    }
+
+    @Test
+    @DisplayName("LFU淘汰策略测试")
+    void testLFUEviction() {
+        cache.setMaxSize(3);
+        cache.setEvictionPolicy(EvictionPolicy.LFU);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        cache.get("key1");
+        cache.get("key1");
+        cache.get("key3");
+
+        cache.put("key4", "value4");
+
+        assertTrue(cache.contains("key1"));
+        assertFalse(cache.contains("key2"));
+        assertTrue(cache.contains("key3"));
+        assertTrue(cache.contains("key4"));
+    }
+
+    @Test
+    @DisplayName("FIFO淘汰策略测试")
+    void testFIFOEviction() {
+        cache.setMaxSize(3);
+        cache.setEvictionPolicy(EvictionPolicy.FIFO);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        cache.get("key1");
+
+        cache.put("key4", "value4");
+
+        assertFalse(cache.contains("key1"));
+        assertTrue(cache.contains("key2"));
+        assertTrue(cache.contains("key3"));
+        assertTrue(cache.contains("key4"));
+    }
+
+    @Test
+    @DisplayName("TTL淘汰策略测试 - 最早过期者优先，无过期时间的条目不淘汰")
+    void testTTLEviction() {
+        cache.setMaxSize(3);
+        cache.setEvictionPolicy(EvictionPolicy.TTL);
+
+        cache.put("late", "value1", 10, TimeUnit.MINUTES);
+        cache.put("early", "value2", 1, TimeUnit.MINUTES);
+        cache.put("permanent", "value3");
+
+        assertTrue(cache.put("key4", "value4"));
+        assertFalse(cache.contains("early"));
+        assertTrue(cache.contains("late"));
+
+        assertTrue(cache.put("key5", "value5"));
+        assertFalse(cache.contains("late"));
+
+        // 剩余条目均无过期时间，无法淘汰
+        assertFalse(cache.put("key6", "value6"));
+        assertFalse(cache.contains("key6"));
+        assertEquals(3, cache.size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = EvictionPolicy.class, names = "TINY_LFU", mode = EnumSource.Mode.EXCLUDE)
+    @DisplayName("所有淘汰策略的容量限制测试")
+    void testAllEvictionPolicies(EvictionPolicy policy) {
+        cache.setMaxSize(2);
+        cache.setEvictionPolicy(policy);
+
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("不支持的淘汰策略测试")
+    void testUnsupportedPolicy() {
+        assertThrows(CacheException.class, () -> cache.setEvictionPolicy(EvictionPolicy.TINY_LFU));
+        assertEquals(EvictionPolicy.LRU, cache.getEvictionPolicy());
+    }
+
+    @Test
+    @DisplayName("TTL为0表示永不过期 - put、putAll 一致，TimeUnit 可为 null")
+    void testZeroTtlNeverExpires() throws InterruptedException {
+        assertTrue(cache.put("key1", "value1", 0, TimeUnit.MILLISECONDS));
+        assertTrue(cache.put("key2", "value2", 0, null));
+        assertTrue(cache.put("key3", "value3", 0, null, 1));
+        assertEquals(2, cache.putAll(Map.of("key4", "value4", "key5", "value5"), 0, TimeUnit.MILLISECONDS));
+        assertEquals(1, cache.putAll(Map.of("key6", "value6"), 0, null));
+
+        Thread.sleep(20);
+        assertEquals(0, cache.cleanup());
+        for (int i = 1; i <= 6; i++) {
+            assertTrue(cache.contains("key" + i), "key" + i);
+        }
+        assertFalse(cache.getEntry("key1").orElseThrow().isExpirable());
+        assertEquals(0, cache.getStats().getErrorCount());
+    }
+
+    @Test
+    @DisplayName("数据大小限制测试")
+    void testMaxDataSizeLimit() {
+        cache.setMaxDataSize(10);
+
+        assertTrue(cache.put("key1", "val1", 0, TimeUnit.MILLISECONDS, 5));
+        assertTrue(cache.put("key2", "val2", 0, TimeUnit.MILLISECONDS, 3));
+        assertTrue(cache.put("key3", "val3", 0, TimeUnit.MILLISECONDS, 4));
+
+        assertEquals(2, cache.size());
+        assertEquals(7, cache.dataSize());
+        assertFalse(cache.contains("key1"));
+
+        // 单个条目超过上限
+        assertFalse(cache.put("huge", "value", 0, TimeUnit.MILLISECONDS, 11));
+    }
+
+    @Test
+    @DisplayName("零容量限制测试")
+    void testZeroCapacity() {
+        cache.setMaxSize(0);
+
+        assertFalse(cache.put("key1", "value1"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getStats().getErrorCount());
+    }
+
+    @Test
+    @DisplayName("切换淘汰策略后保留已有条目")
+    void testSwitchPolicy() {
+        cache.setMaxSize(3);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.put("key3", "value3");
+        cache.get("key1");
+
+        cache.setEvictionPolicy(EvictionPolicy.FIFO);
+        assertEquals(3, cache.size());
+
+        cache.put("key4", "value4");
+        assertFalse(cache.contains("key1"));
+        assertTrue(cache.contains("key2"));
+    }
+
+    @Test
+    @DisplayName("手动淘汰和统计信息测试")
+    void testManualEvictionAndStats() {
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        cache.get("key0");
+        cache.get("missing");
+
+        assertEquals(2, cache.evict(2));
+        assertEquals(3, cache.size());
+
+        CacheStats stats = cache.getStats();
+        assertEquals(3, stats.getTotalEntries());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(2, stats.getEvictionCount());
+        assertEquals(0.5, stats.getHitRate(), 0.0001);
+    }
+
+    @Test
+    @DisplayName("批量写入、读取和删除")
+    void testBulkOperations() {
+        // 段数不超过淘汰采样数时，淘汰顺序与全局 LRU 一致
+        cache = new SegmentedGenericCache<>(4);
+        cache.setMaxSize(20);
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < 30; i++) {
+            batch.put("key" + i, "value" + i);
+        }
+        // 整批超过容量时最早写入的条目被淘汰
+        assertEquals(20, cache.putAll(batch));
+        assertEquals(20, cache.size());
+        assertEquals(10, cache.getStats().getEvictionCount());
+
+        Map<String, String> result = cache.getAll(List.of("key29", "key0", "key10"));
+        assertEquals(List.of("key29", "key10"), new ArrayList<>(result.keySet()));
+
+        assertEquals(2, cache.invalidateAll(List.of("key29", "key10", "key0")));
+        assertEquals(18, cache.size());
+
+        Map<String, String> loaded = cache.getAll(List.of("key11", "x", "y"),
+                keys -> Map.of("x", "loaded-x"));
+        assertEquals(Map.of("key11", "value11", "x", "loaded-x"), loaded);
+        assertTrue(cache.contains("x"));
+        assertFalse(cache.contains("y"));
+    }
+
+    @Test
+    @DisplayName("同一个键的并发未命中只加载一次")
+    void testLoaderCoalescesConcurrentMisses() throws Exception {
+        int threadCount = 8;
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            results.add(executor.submit(() -> cache.get("key", key -> {
+                loadCount.incrementAndGet();
+                release.await();
+                return "loaded";
+            })));
+        }
+        while (cache.getStats().getMissCount() < threadCount) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("loaded", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, loadCount.get());
+        assertTrue(cache.contains("key"));
+        assertEquals(1, cache.getStats().getLoadSuccessCount());
+    }
+
+    @Test
+    @DisplayName("并发写入不超过容量限制")
+    void testConcurrentEviction() throws InterruptedException {
+        cache.setMaxSize(100);
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger successCount = new AtomicInteger();
+
+        for (int t = 0; t < threadCount; t++) {
+            final int threadId = t;
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < 2000; j++) {
+                        String key = "key-" + threadId + "-" + j;
+                        if (cache.put(key, "value")) {
+                            successCount.incrementAndGet();
+                        }
+                        cache.get(key);
+                        cache.get("key-" + threadId + "-" + (j / 2));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(threadCount * 2000, successCount.get());
+        assertTrue(cache.size() <= 100);
+        assertEquals(cache.size(), cache.dataSize());
+        assertEquals(0, cache.getStats().getErrorCount());
+    }
+}
@@ -0,0 +1,92 @@
+package ps.demo.jpademo.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分层时间轮单元测试（使用虚拟时钟，不依赖真实时间）
+ */
+@DisplayName("分层时间轮测试")
+class TimerWheelTest {
+
+    @Test
+    @DisplayName("只回收到期的键，且每个键只回收一次")
+    void testAdvanceExpiresDueKeysOnce() {
+        TimerWheel wheel = new TimerWheel(0);
+        Random random = new Random(1);
+        Map<String, Long> expireAt = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // 覆盖从微秒到数天的各层
+            long delay = (long) Math.pow(10, 3 + random.nextDouble() * 11);
+            expireAt.put("k" + i, delay);
+            wheel.schedule("k" + i, delay);
+        }
+
+        Set<String> expired = new HashSet<>();
+        long now = 0;
+        while (now < TimeUnit.DAYS.toNanos(2)) {
+            now += (long) (random.nextDouble() * TimeUnit.MINUTES.toNanos(7));
+            long current = now;
+            wheel.advance(now, key -> {
+                assertTrue(expireAt.get(key) <= current, "Expired too early: " + key);
+                assertTrue(expired.add(key), "Expired twice: " + key);
+                return true;
+            });
+            for (Map.Entry<String, Long> entry : expireAt.entrySet()) {
+                if (entry.getValue() <= now) {
+                    assertTrue(expired.contains(entry.getKey()), "Not expired in time: " + entry.getKey());
+                }
+            }
+        }
+        assertEquals(expireAt.size() - expired.size(), wheel.size());
+    }
+
+    @Test
+    @DisplayName("取消和重新调度")
+    void testDescheduleAndReschedule() {
+        TimerWheel wheel = new TimerWheel(0);
+        wheel.schedule("a", TimeUnit.MILLISECONDS.toNanos(10));
+        wheel.schedule("b", TimeUnit.MILLISECONDS.toNanos(10));
+        wheel.schedule("c", TimeUnit.MILLISECONDS.toNanos(10));
+
+        wheel.deschedule("a");
+        wheel.schedule("b", TimeUnit.SECONDS.toNanos(10));
+
+        List<String> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(TimeUnit.MILLISECONDS.toNanos(20), expired::add));
+        assertEquals(List.of("c"), expired);
+
+        assertEquals(1, wheel.advance(TimeUnit.SECONDS.toNanos(11), expired::add));
+        assertEquals(List.of("c", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("调度时已到期的键在下次推进时回收")
+    void testAlreadyDue() {
+        TimerWheel wheel = new TimerWheel(TimeUnit.SECONDS.toNanos(5));
+        wheel.schedule("past", TimeUnit.SECONDS.toNanos(1));
+        wheel.schedule("now", TimeUnit.SECONDS.toNanos(5));
+
+        List<String> expired = new ArrayList<>();
+        assertEquals(2, wheel.advance(TimeUnit.SECONDS.toNanos(5), expired::add));
+        assertTrue(expired.containsAll(List.of("past", "now")));
+    }
+
+    @Test
+    @DisplayName("清空时间轮")
+    void testClear() {
+        TimerWheel wheel = new TimerWheel(0);
+        for (int i = 0; i < 100; i++) {
+            wheel.schedule("k" + i, TimeUnit.MILLISECONDS.toNanos(i + 1));
+        }
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertEquals(0, wheel.advance(TimeUnit.SECONDS.toNanos(1), key -> true));
+    }
+}
@@ -0,0 +1,165 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 准入控制单元测试，积压由模拟的 MessageStore 提供
+ */
+@DisplayName("消息准入控制测试")
+class AdmissionControlTest {
+
+    private final Map<String, Long> backlog = new ConcurrentHashMap<>();
+    private MessageStore messageStore;
+    private AdmissionControl admission;
+
+    @BeforeEach
+    void setUp() {
+        messageStore = mock(MessageStore.class);
+        when(messageStore.countBacklog()).thenAnswer(invocation -> new HashMap<>(backlog));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (admission != null) {
+            admission.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("积压达到高水位后拒绝，降到低水位以下才重新接收")
+    void testWatermarkHysteresis() {
+        admission = start(properties(100, 50));
+        backlog.put("text", 99L);
+        admission.sample();
+        admission.admit("text");
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, () -> admission.admit("text"));
+        assertEquals(AdmissionControl.DEFAULT_LANE, rejected.getLane());
+        assertEquals(2, rejected.getRetryAfterSeconds());
+        assertTrue(admission.isSaturated(AdmissionControl.DEFAULT_LANE));
+
+        backlog.put("text", 60L);
+        admission.sample();
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("text"));
+        backlog.put("text", 50L);
+        admission.sample();
+        assertFalse(admission.isSaturated(AdmissionControl.DEFAULT_LANE));
+        admission.admit("text");
+    }
+
+    @Test
+    @DisplayName("采样之间本实例接收的消息计入深度，下次采样后由存储中的积压代替")
+    void testDepthBetweenSamples() {
+        admission = start(properties(10, 5));
+        for (int i = 0; i < 10; i++) {
+            admission.admit("text");
+        }
+        assertEquals(10, admission.depth());
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("text"));
+
+        backlog.put("text", 3L);
+        admission.sample();
+        assertEquals(3, admission.depth());
+        admission.admit("text");
+        assertEquals(4, admission.depth());
+    }
+
+    @Test
+    @DisplayName("按 contentType 分配优先级通道，低优先级通道先被拒绝")
+    void testPriorityLanes() {
+        AdmissionProperties properties = properties(100, 80);
+        properties.getLanes().put("critical", lane(List.of("alert"), 200, 150));
+        properties.getLanes().put("bulk", lane(List.of("report", "export"), 50, 20));
+        admission = start(properties);
+        assertEquals("critical", admission.laneOf("alert"));
+        assertEquals("bulk", admission.laneOf("export"));
+        assertEquals(AdmissionControl.DEFAULT_LANE, admission.laneOf("text"));
+        assertEquals(AdmissionControl.DEFAULT_LANE, admission.laneOf(null));
+
+        backlog.put("text", 40L);
+        backlog.put("report", 30L);
+        backlog.put("alert", 50L);
+        admission.sample();
+        assertEquals(40, admission.depth(AdmissionControl.DEFAULT_LANE));
+        assertEquals(30, admission.depth("bulk"));
+        assertEquals(50, admission.depth("critical"));
+
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("report"));
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("text"));
+        admission.admit("alert");
+        assertEquals(121, admission.depth());
+    }
+
+    @Test
+    @DisplayName("关闭时只统计不拒绝，采样失败保留上次的积压")
+    void testDisabledAndSampleFailure() {
+        AdmissionProperties properties = properties(1, 0);
+        properties.setEnabled(false);
+        backlog.put("text", 5L);
+        admission = start(properties);
+        admission.admit("text");
+        assertEquals(6, admission.depth());
+
+        when(messageStore.countBacklog()).thenThrow(new IllegalStateException("database down"));
+        admission.sample();
+        assertEquals(6, admission.depth());
+    }
+
+    @Test
+    @DisplayName("注册积压、拒绝数和排队时间指标")
+    void testMetrics() {
+        AdmissionProperties properties = properties(1, 0);
+        properties.getLanes().put("bulk", lane(List.of("report"), 1000, 500));
+        admission = start(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        admission.bindTo(registry);
+        backlog.put("text", 3L);
+        admission.sample();
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit("text"));
+        admission.admit("report");
+        admission.recordQueueTime("report", Duration.ofMillis(250));
+
+        assertEquals(3, registry.get("mq.admission.queue.depth").tag("lane", "default").gauge().value());
+        assertEquals(1, registry.get("mq.admission.queue.depth").tag("lane", "bulk").gauge().value());
+        assertEquals(1, registry.get("mq.admission.saturated").tag("lane", "default").gauge().value());
+        assertEquals(1, registry.get("mq.admission.rejected").tag("lane", "default").functionCounter().count());
+        assertEquals(1, registry.get("mq.admission.admitted").tag("lane", "bulk").functionCounter().count());
+        assertEquals(1, registry.get("mq.admission.queue.time").tag("lane", "bulk").timer().count());
+    }
+
+    private AdmissionControl start(AdmissionProperties properties) {
+        AdmissionControl admission = new AdmissionControl(messageStore, properties);
+        admission.afterPropertiesSet();
+        return admission;
+    }
+
+    private static AdmissionProperties properties(long highWatermark, long lowWatermark) {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setHighWatermark(highWatermark);
+        properties.setLowWatermark(lowWatermark);
+        properties.setRetryAfter(2);
+        properties.setSampleInterval(60_000);
+        return properties;
+    }
+
+    private static AdmissionProperties.LaneProperties lane(List<String> contentTypes, long highWatermark, long lowWatermark) {
+        AdmissionProperties.LaneProperties lane = new AdmissionProperties.LaneProperties();
+        lane.setContentTypes(contentTypes);
+        lane.setHighWatermark(highWatermark);
+        lane.setLowWatermark(lowWatermark);
+        return lane;
+    }
+}
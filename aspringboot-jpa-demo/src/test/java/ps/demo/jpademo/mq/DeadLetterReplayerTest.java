@@ -0,0 +1,274 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 死信重放测试，H2 + Hibernate 建表，MessageService 为模拟对象，由测试控制每条重放何时结束
+ */
+@DisplayName("死信重放测试")
+class DeadLetterReplayerTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private H2JpaTestDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private JpaDeadLetterStore deadLetterStore;
+    private DeadLetterReplayRepository repository;
+    private MessageService messageService;
+    private ReplayProperties properties;
+    private final List<DeadLetterReplayer> replayers = new ArrayList<>();
+
+    private final List<Long> replayed = new CopyOnWriteArrayList<>();
+    private final Map<Long, CompletableFuture<DeadLetterReplayer.Outcome>> replays = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean completeImmediately = true;
+
+    @BeforeEach
+    void setUp() {
+        database = new H2JpaTestDatabase("dead-letter-replay-" + System.nanoTime());
+        jdbcTemplate = database.jdbcTemplate();
+        deadLetterStore = new JpaDeadLetterStore(database.repository(DeadLetterRepository.class));
+        repository = database.repository(DeadLetterReplayRepository.class);
+
+        // 200 条死信，订阅者 1 - 4 轮流，每 2 条时间相同，原因交替为 timeout / refused
+        jdbcTemplate.batchUpdate("insert into dead_letters (message_id, subscriber_id, reason, created_at, created_by) "
+                + "values (?, ?, ?, ?, ?)", sequence(200), 200, (ps, i) -> {
+            ps.setLong(1, i);
+            ps.setLong(2, i % 4 + 1);
+            ps.setString(3, (i % 2 == 0 ? "timeout after " : "connection refused by ") + i);
+            ps.setTimestamp(4, Timestamp.valueOf(BASE.plusSeconds(i / 2)));
+            ps.setString(5, "system");
+        });
+
+        messageService = mock(MessageService.class);
+        when(messageService.replay(any(DeadLetterEntity.class))).thenAnswer(invocation -> {
+            DeadLetterEntity deadLetter = invocation.getArgument(0);
+            replayed.add(deadLetter.getId());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            CompletableFuture<DeadLetterReplayer.Outcome> replay = new CompletableFuture<>();
+            // 返回的 future 在计数减一之后才完成，重放器的回调看到结果时这一条已不在重放中
+            CompletableFuture<DeadLetterReplayer.Outcome> counted = replay.thenApply(outcome -> {
+                inFlight.decrementAndGet();
+                return outcome;
+            });
+            replays.put(deadLetter.getId(), replay);
+            if (completeImmediately) {
+                replay.complete(deadLetter.getMessageId() % 10 == 0 ? DeadLetterReplayer.Outcome.FAILED : DeadLetterReplayer.Outcome.DELIVERED);
+            }
+            return counted;
+        });
+
+        properties = new ReplayProperties();
+        properties.setBatchSize(16);
+        properties.setCheckpointInterval(50);
+        properties.setStaleTimeout(1000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        completeImmediately = true;
+        replays.values().forEach(replay -> replay.complete(DeadLetterReplayer.Outcome.DELIVERED));
+        for (DeadLetterReplayer replayer : replayers) {
+            replayer.destroy();
+        }
+        database.close();
+    }
+
+    @Test
+    @DisplayName("按订阅者、时间范围和原因筛选，游标逐段读取与 SQL 结果一致")
+    void testScrollByFilter() {
+        DeadLetterFilter filter = new DeadLetterFilter(2L, BASE.plusSeconds(10), BASE.plusSeconds(80), "refused");
+        List<Long> expected = jdbcTemplate.queryForList("select id from dead_letters where subscriber_id = 2 "
+                + "and created_at >= ? and created_at < ? and reason like '%refused%' order by created_at, id", Long.class,
+                Timestamp.valueOf(BASE.plusSeconds(10)), Timestamp.valueOf(BASE.plusSeconds(80)));
+        assertFalse(expected.isEmpty());
+
+        List<Long> ids = new ArrayList<>();
+        KeysetScrollPosition position = ScrollPosition.keyset();
+        Window<DeadLetterEntity> window;
+        do {
+            window = deadLetterStore.scrollByFilter(filter, position, 7);
+            window.forEach(deadLetter -> {
+                assertTrue(filter.matches(deadLetter));
+                ids.add(deadLetter.getId());
+            });
+            if (!window.isEmpty()) {
+                position = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+            }
+        } while (window.hasNext());
+        assertEquals(expected, ids);
+        assertEquals(expected.size(), deadLetterStore.countByFilter(filter));
+        assertEquals(200, deadLetterStore.countByFilter(new DeadLetterFilter(null, null, null, null)));
+    }
+
+    @Test
+    @DisplayName("重放全部匹配的死信各一次，记录结果后任务完成")
+    void testReplayToCompletion() {
+        DeadLetterReplayer replayer = replayer();
+        DeadLetterReplayRequest request = new DeadLetterReplayRequest();
+        request.setSubscriberId(1L);
+        request.setRate(10_000);
+        request.setParallelism(4);
+        DeadLetterReplayEntity job = replayer.start(request);
+        assertEquals(50, job.getTotal());
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status(job.getId()).equals(DeadLetterReplayEntity.COMPLETED));
+        List<Long> expected = jdbcTemplate.queryForList(
+                "select id from dead_letters where subscriber_id = 1 order by created_at, id", Long.class);
+        assertEquals(expected, replayed);
+        assertTrue(maxInFlight.get() <= 4);
+
+        DeadLetterReplayEntity completed = repository.findById(job.getId()).orElseThrow();
+        assertEquals(10, completed.getFailed());
+        assertEquals(40, completed.getDelivered());
+        assertEquals(1.0, completed.getProgress());
+        assertEquals(expected.get(expected.size() - 1), completed.getCursorId());
+        assertNotNull(completed.getCompletedAt());
+        assertEquals(0, replayer.getRunning());
+    }
+
+    @Test
+    @DisplayName("同时重放中的死信不超过 parallelism，按 rate 限速")
+    void testParallelismAndRate() {
+        completeImmediately = false;
+        DeadLetterReplayer replayer = replayer();
+        DeadLetterReplayRequest request = new DeadLetterReplayRequest();
+        request.setRate(50);
+        request.setParallelism(3);
+        long start = System.nanoTime();
+        replayer.start(request);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> replayed.size() == 3);
+        await().during(200, TimeUnit.MILLISECONDS).atMost(1, TimeUnit.SECONDS).until(() -> replayed.size() == 3);
+        assertEquals(3, maxInFlight.get());
+
+        completeImmediately = true;
+        replays.values().forEach(replay -> replay.complete(DeadLetterReplayer.Outcome.DELIVERED));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> replayed.size() >= 28);
+        // 50/s 限速，28 条至少需要约 27 * 20 ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    @DisplayName("断点只推进到之前全部已结束的死信，暂停后从断点继续，每条只重放一次")
+    void testCheckpointPauseAndResume() {
+        completeImmediately = false;
+        DeadLetterReplayer replayer = replayer();
+        DeadLetterReplayRequest request = new DeadLetterReplayRequest();
+        request.setRate(10_000);
+        request.setParallelism(4);
+        DeadLetterReplayEntity job = replayer.start(request);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> replayed.size() == 4);
+        // 后面的先结束，断点不动
+        replays.get(replayed.get(1)).complete(DeadLetterReplayer.Outcome.DELIVERED);
+        replays.get(replayed.get(2)).complete(DeadLetterReplayer.Outcome.SKIPPED);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> replayed.size() == 6);
+        await().during(150, TimeUnit.MILLISECONDS).atMost(1, TimeUnit.SECONDS)
+                .until(() -> repository.findById(job.getId()).orElseThrow().getCursorId() == null);
+
+        replays.get(replayed.get(0)).complete(DeadLetterReplayer.Outcome.DELIVERED);
+        Long third = replayed.get(2);
+        await().atMost(2, TimeUnit.SECONDS)
+                .until(() -> third.equals(repository.findById(job.getId()).orElseThrow().getCursorId()));
+
+        assertEquals(DeadLetterReplayEntity.PAUSED, replayer.pause(job.getId()).getStatus());
+        assertThrows(IllegalStateException.class, () -> replayer.pause(job.getId()));
+        completeImmediately = true;
+        replays.values().forEach(replay -> replay.complete(DeadLetterReplayer.Outcome.DELIVERED));
+        await().atMost(2, TimeUnit.SECONDS).until(() -> replayer.getRunning() == 0);
+        int beforeResume = replayed.size();
+        assertTrue(beforeResume < 200);
+        assertEquals(replayed.get(beforeResume - 1), repository.findById(job.getId()).orElseThrow().getCursorId());
+
+        replayer.resume(job.getId());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status(job.getId()).equals(DeadLetterReplayEntity.COMPLETED));
+        assertEquals(jdbcTemplate.queryForList("select id from dead_letters order by created_at, id", Long.class), replayed);
+        DeadLetterReplayEntity completed = repository.findById(job.getId()).orElseThrow();
+        assertEquals(1, completed.getSkipped());
+        assertEquals(199, completed.getDelivered() + completed.getFailed());
+        assertThrows(IllegalStateException.class, () -> replayer.cancel(job.getId()));
+        assertThrows(IllegalArgumentException.class, () -> replayer.cancel(-1L));
+    }
+
+    @Test
+    @DisplayName("心跳超时的任务由其他实例从断点接管")
+    void testTakeOverStaleJob() {
+        List<Long> ids = jdbcTemplate.queryForList("select id from dead_letters order by created_at, id", Long.class);
+        DeadLetterEntity cursor = deadLetterStore.findAll(PageRequest.of(0, 200)).stream()
+                .filter(deadLetter -> deadLetter.getId().equals(ids.get(149)))
+                .findFirst().orElseThrow();
+        DeadLetterReplayEntity job = new DeadLetterReplayEntity();
+        job.setStatus(DeadLetterReplayEntity.RUNNING);
+        job.setCreatedTo(LocalDateTime.now());
+        job.setRate(10_000);
+        job.setParallelism(4);
+        job.setCursorCreatedAt(cursor.getCreatedAt());
+        job.setCursorId(cursor.getId());
+        job.setTotal(200L);
+        job.setDelivered(150L);
+        job.setFailed(0L);
+        job.setSkipped(0L);
+        job.setOwner("crashed-pod");
+        job.setHeartbeatAt(LocalDateTime.now().minusMinutes(1));
+        job.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+        job.setUpdatedAt(job.getHeartbeatAt());
+        repository.save(job);
+
+        DeadLetterReplayer replayer = replayer();
+        DeadLetterReplayer other = replayer();
+        replayer.takeOverStaleJobs();
+        other.takeOverStaleJobs();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> status(job.getId()).equals(DeadLetterReplayEntity.COMPLETED));
+        assertEquals(ids.subList(150, 200), replayed);
+        DeadLetterReplayEntity completed = repository.findById(job.getId()).orElseThrow();
+        assertEquals(replayer.getOwner(), completed.getOwner());
+        assertEquals(200, completed.getDelivered() + completed.getFailed());
+    }
+
+    private DeadLetterReplayer replayer() {
+        DeadLetterReplayer replayer = new DeadLetterReplayer(deadLetterStore, repository, messageService, properties);
+        replayers.add(replayer);
+        return replayer;
+    }
+
+    private String status(Long id) {
+        return repository.findStatusById(id);
+    }
+
+    private static List<Integer> sequence(int count) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
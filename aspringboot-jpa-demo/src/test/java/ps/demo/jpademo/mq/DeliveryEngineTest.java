@@ -0,0 +1,155 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 投递引擎单元测试
+ */
+@DisplayName("投递引擎测试")
+class DeliveryEngineTest {
+
+    private DeliveryEngine engine;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (engine != null) {
+            engine.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("投递不在公共 ForkJoinPool 中执行，Java 21 以下退回专用线程池")
+    void testDedicatedExecutor() throws Exception {
+        engine = new DeliveryEngine(properties(4, 1000));
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        engine.deliver(1L, () -> thread.set(Thread.currentThread())).get(1, TimeUnit.SECONDS);
+
+        assertFalse(thread.get() instanceof ForkJoinWorkerThread);
+        if (Runtime.version().feature() < 21) {
+            assertTrue(thread.get().getName().startsWith("mq-delivery-"), thread.get().getName());
+        }
+    }
+
+    @Test
+    @DisplayName("同一订阅者的并发投递数不超过上限，慢订阅者不影响其他订阅者")
+    void testPerSubscriberConcurrency() throws Exception {
+        engine = new DeliveryEngine(properties(2, 5000));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Void>> slow = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            slow.add(engine.deliver(1L, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+        }
+        await().atMost(1, TimeUnit.SECONDS).until(() -> running.get() == 2);
+        assertEquals(0, engine.availablePermits(1L));
+
+        // 订阅者 1 的许可用完时，其他订阅者照常投递
+        for (long subscriberId = 2; subscriberId < 6; subscriberId++) {
+            engine.deliver(subscriberId, () -> {
+            }).get(1, TimeUnit.SECONDS);
+        }
+        assertTrue(slow.stream().noneMatch(CompletableFuture::isDone));
+
+        release.countDown();
+        CompletableFuture.allOf(slow.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        assertEquals(2, peak.get());
+        assertEquals(2, engine.availablePermits(1L));
+    }
+
+    @Test
+    @DisplayName("推送失败时以推送异常结束")
+    void testFailure() {
+        engine = new DeliveryEngine(properties(4, 1000));
+        IllegalStateException failure = new IllegalStateException("endpoint down");
+        CompletableFuture<Void> delivery = engine.deliver(1L, () -> {
+            throw failure;
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> delivery.get(1, TimeUnit.SECONDS));
+        assertSame(failure, e.getCause());
+        assertEquals(4, engine.availablePermits(1L));
+    }
+
+    @Test
+    @DisplayName("超时后中断投递线程、释放许可，并以 TimeoutException 结束")
+    void testTimeout() {
+        engine = new DeliveryEngine(properties(1, 200));
+        AtomicInteger interrupted = new AtomicInteger();
+        CompletableFuture<Void> delivery = engine.deliver(1L, () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                throw e;
+            }
+        });
+
+        long start = System.nanoTime();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> delivery.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        await().atMost(1, TimeUnit.SECONDS).until(() -> engine.availablePermits(1L) == 1);
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test
+    @DisplayName("不响应中断的推送按时超时，但在返回前一直占用许可，等待许可的投递同样超时")
+    void testTimeoutOfUninterruptiblePush() throws Exception {
+        engine = new DeliveryEngine(properties(1, 200));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> delivery = engine.deliver(1L, () -> {
+            boolean done = false;
+            while (!done) {
+                try {
+                    done = release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                    // 模拟不响应中断的阻塞调用
+                }
+            }
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> delivery.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(0, engine.availablePermits(1L));
+
+        // 等待许可的投递同样会超时
+        CompletableFuture<Void> waiting = engine.deliver(1L, () -> {
+        });
+        e = assertThrows(ExecutionException.class, () -> waiting.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        release.countDown();
+        await().atMost(1, TimeUnit.SECONDS).until(() -> engine.availablePermits(1L) == 1);
+        engine.deliver(1L, () -> {
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    private static DeliveryProperties properties(int maxConcurrency, long timeout) {
+        DeliveryProperties properties = new DeliveryProperties();
+        properties.setPoolSize(16);
+        properties.setMaxConcurrencyPerSubscriber(maxConcurrency);
+        properties.setTimeout(timeout);
+        return properties;
+    }
+}
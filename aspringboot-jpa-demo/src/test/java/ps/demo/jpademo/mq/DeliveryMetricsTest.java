@@ -0,0 +1,142 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 投递指标和 /actuator/mqdelivery 单元测试，MockClock 推进滚动窗口
+ */
+@DisplayName("投递指标测试")
+class DeliveryMetricsTest {
+
+    private final MockClock clock = new MockClock();
+    private SimpleMeterRegistry registry;
+    private MetricsProperties properties;
+    private DeliveryMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        properties = new MetricsProperties();
+        properties.setWindow(60_000);
+        properties.setBuffers(3);
+        properties.setLatencyObjective(500);
+        metrics = new DeliveryMetrics(registry, properties);
+    }
+
+    @Test
+    @DisplayName("按订阅者和 contentType 注册带标签的计时器、重试分布和计数器")
+    void testMetersTaggedBySubscriberAndContentType() {
+        SubscriberEntity fast = subscriber(1L, "fast");
+        metrics.recordAttempt(fast, "text", TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.recordDelivered(fast, "text", LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(50)), 0);
+        metrics.recordAttempt(fast, "json", TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.recordFailedAttempt(fast, "json");
+        metrics.recordDeadLetter(fast, "json", 3);
+
+        assertEquals(1, registry.get("mq.delivery.attempt").tags("subscriber", "fast", "content.type", "text").timer().count());
+        assertEquals(1, registry.get("mq.delivery.latency").tags("subscriber", "fast", "content.type", "text").timer().count());
+        assertEquals(0, registry.get("mq.delivery.latency").tags("subscriber", "fast", "content.type", "json").timer().count());
+        assertEquals(1, registry.get("mq.delivery.delivered").tags("content.type", "text").counter().count());
+        assertEquals(1, registry.get("mq.delivery.dead.letters").tags("content.type", "json").counter().count());
+        assertEquals(1, registry.get("mq.delivery.attempt.failures").tags("content.type", "json").counter().count());
+        assertEquals(3, registry.get("mq.delivery.retries").tags("content.type", "json").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("摘要给出 p50/p99/p999 和死信率，最慢的订阅者排在最前")
+    void testSlowestSubscriberFirst() {
+        SubscriberEntity fast = subscriber(1L, "fast");
+        SubscriberEntity slow = subscriber(2L, "slow");
+        for (int i = 0; i < 1000; i++) {
+            metrics.recordAttempt(fast, "text", TimeUnit.MILLISECONDS.toNanos(10));
+            metrics.recordDelivered(fast, "text", LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(20)), 0);
+            // 每 100 次中有一次很慢，只影响 p99 及以上
+            long attempt = i % 100 == 0 ? 2000 : 10;
+            metrics.recordAttempt(slow, "text", TimeUnit.MILLISECONDS.toNanos(attempt));
+            if (i % 10 == 5) {
+                metrics.recordDeadLetter(slow, "text", 3);
+            } else {
+                metrics.recordDelivered(slow, "text", LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(attempt + 10)), 1);
+            }
+        }
+
+        List<DeliveryMetrics.SubscriberSummary> summaries = metrics.summaries();
+        assertEquals(List.of("slow", "fast"), summaries.stream().map(DeliveryMetrics.SubscriberSummary::subscriber).toList());
+
+        DeliveryMetrics.SubscriberSummary slowSummary = summaries.get(0);
+        assertEquals(2L, slowSummary.subscriberId());
+        assertEquals(900, slowSummary.delivered());
+        assertEquals(100, slowSummary.deadLetters());
+        assertEquals(0.1, slowSummary.deadLetterRate(), 1e-9);
+        assertEquals(1.2, slowSummary.retriesPerDelivery(), 1e-9);
+        assertEquals(10, slowSummary.attempt().p50(), 1);
+        assertTrue(slowSummary.attempt().p999() > 1900, "p999: " + slowSummary.attempt().p999());
+        assertTrue(slowSummary.latency().p99() > 1900, "p99: " + slowSummary.latency().p99());
+        assertFalse(slowSummary.withinObjective());
+
+        DeliveryMetrics.SubscriberSummary fastSummary = summaries.get(1);
+        assertEquals(0, fastSummary.deadLetterRate());
+        assertTrue(fastSummary.latency().p999() < 100, "p999: " + fastSummary.latency().p999());
+        assertTrue(fastSummary.withinObjective());
+    }
+
+    @Test
+    @DisplayName("百分位只统计滚动窗口内的投递，计数从启动开始累计")
+    void testRollingWindow() {
+        SubscriberEntity subscriber = subscriber(1L, "sub");
+        for (int i = 0; i < 100; i++) {
+            metrics.recordAttempt(subscriber, "text", TimeUnit.MILLISECONDS.toNanos(800));
+            metrics.recordDelivered(subscriber, "text", null, 0);
+        }
+        assertEquals(800, metrics.summaries().get(0).attempt().p99(), 10);
+
+        clock.add(61, TimeUnit.SECONDS);
+        for (int i = 0; i < 100; i++) {
+            metrics.recordAttempt(subscriber, "text", TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        DeliveryMetrics.SubscriberSummary summary = metrics.summaries().get(0);
+        assertEquals(5, summary.attempt().p99(), 1);
+        assertEquals(100, summary.delivered());
+        assertEquals(0, summary.latency().p99());
+    }
+
+    @Test
+    @DisplayName("端点汇总全部订阅者，按订阅者名或 id 查看单个订阅者")
+    @SuppressWarnings("unchecked")
+    void testEndpoint() {
+        metrics.recordAttempt(subscriber(1L, "a"), "text", TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordAttempt(subscriber(2L, "b"), "text", TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordAttempt(subscriber(2L, "b"), null, TimeUnit.MILLISECONDS.toNanos(10));
+        DeliveryMetricsEndpoint endpoint = new DeliveryMetricsEndpoint(metrics);
+
+        Map<String, Object> summary = endpoint.summary();
+        assertEquals(60_000L, summary.get("windowMillis"));
+        assertEquals(500L, summary.get("latencyObjectiveMillis"));
+        assertEquals(3, ((List<DeliveryMetrics.SubscriberSummary>) summary.get("subscribers")).size());
+
+        List<DeliveryMetrics.SubscriberSummary> b = (List<DeliveryMetrics.SubscriberSummary>) endpoint.subscriber("b").get("subscribers");
+        assertEquals(2, b.size());
+        assertTrue(b.stream().anyMatch(s -> "none".equals(s.contentType())));
+        assertEquals(1, ((List<?>) endpoint.subscriber("1").get("subscribers")).size());
+    }
+
+    private static SubscriberEntity subscriber(Long id, String name) {
+        SubscriberEntity subscriber = new SubscriberEntity();
+        subscriber.setId(id);
+        subscriber.setName(name);
+        subscriber.setEndpoint("http://localhost/" + name);
+        return subscriber;
+    }
+}
@@ -0,0 +1,71 @@
+package ps.demo.jpademo.mq;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Properties;
+
+/**
+ * 不启动 Spring 上下文的 H2 + Hibernate 测试库，由 Hibernate 按 mq 包中的实体建表，
+ * 列名和索引与应用中 Spring Boot 建出来的一致
+ */
+class H2JpaTestDatabase implements AutoCloseable {
+
+    private final LocalContainerEntityManagerFactoryBean factoryBean;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final JpaTransactionManager transactionManager;
+    private final TransactionTemplate transactionTemplate;
+
+    H2JpaTestDatabase(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";MODE=MYSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan(MessageEntity.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties jpaProperties = new Properties();
+        jpaProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+        // 与 Spring Boot 默认的列名一致
+        jpaProperties.put("hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName());
+        factoryBean.setJpaProperties(jpaProperties);
+        factoryBean.afterPropertiesSet();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(factoryBean.getObject());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new JpaTransactionManager(factoryBean.getObject());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 和应用中一样按 @Transactional 开启事务，@Modifying 查询和 save 可以直接调用
+     */
+    <R> R repository(Class<R> repositoryInterface) {
+        JpaRepositoryFactory factory = new JpaRepositoryFactory(entityManager);
+        factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(
+                new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource())));
+        return factory.getRepository(repositoryInterface);
+    }
+
+    JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    TransactionTemplate transactionTemplate() {
+        return transactionTemplate;
+    }
+
+    @Override
+    public void close() {
+        factoryBean.destroy();
+    }
+}
@@ -0,0 +1,146 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * tracking 和死信的游标分页测试，H2 + Hibernate 建表
+ */
+@DisplayName("游标分页测试")
+class KeysetPaginationTest {
+
+    private static final int RECORDS = 3_000;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static H2JpaTestDatabase database;
+    private static JdbcTemplate jdbcTemplate;
+    private static JpaTrackingStore trackingStore;
+    private static JpaDeadLetterStore deadLetterStore;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2JpaTestDatabase("keyset-pagination");
+        jdbcTemplate = database.jdbcTemplate();
+        trackingStore = new JpaTrackingStore(null, database.repository(TrackingRepository.class));
+        deadLetterStore = new JpaDeadLetterStore(database.repository(DeadLetterRepository.class));
+
+        // 写入顺序打乱，每 3 条时间相同，id 顺序与时间顺序不一致
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        jdbcTemplate.batchUpdate(TrackingWriter.INSERT_SQL, order, 500, (ps, i) -> {
+            ps.setLong(1, i % 7);
+            ps.setLong(2, i % 5);
+            ps.setString(3, "sub-" + i % 5);
+            ps.setString(4, "http://localhost/sub-" + i % 5);
+            ps.setString(5, i % 4 == 0 ? "FAILED" : "DELIVERED");
+            ps.setString(6, "event " + i);
+            ps.setTimestamp(7, Timestamp.valueOf(BASE.plusSeconds(i / 3)));
+        });
+        jdbcTemplate.batchUpdate("insert into dead_letters (message_id, subscriber_id, reason, created_at, created_by) "
+                + "values (?, ?, ?, ?, ?)", order.subList(0, 500), 500, (ps, i) -> {
+            ps.setLong(1, i % 3);
+            ps.setLong(2, 1);
+            ps.setString(3, "timeout " + i);
+            ps.setTimestamp(4, Timestamp.valueOf(BASE.plusSeconds(i / 2)));
+            ps.setString(5, "system");
+        });
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.close();
+    }
+
+    @Test
+    @DisplayName("按 (timestamp, id) 逐页读完全部记录，不重复不遗漏")
+    void testScrollAllTracking() {
+        List<Long> expected = jdbcTemplate.queryForList("select id from tracking order by timestamp, id", Long.class);
+        assertEquals(expected, scrollIds(position -> trackingStore.scrollAll(position, 128), "timestamp"));
+        assertEquals(RECORDS, trackingStore.count());
+    }
+
+    @Test
+    @DisplayName("按消息和状态过滤的游标分页")
+    void testScrollTrackingByMessageIdAndStatus() {
+        assertEquals(jdbcTemplate.queryForList("select id from tracking where message_id = 3 order by timestamp, id", Long.class),
+                scrollIds(position -> trackingStore.scrollByMessageId(3L, position, 50), "timestamp"));
+        assertEquals(jdbcTemplate.queryForList("select id from tracking where status = 'FAILED' order by timestamp, id", Long.class),
+                scrollIds(position -> trackingStore.scrollByStatus("FAILED", position, 100), "timestamp"));
+        assertEquals(RECORDS / 4, trackingStore.countByStatus("FAILED"));
+        assertEquals(0, trackingStore.scrollByStatus("SENT", KeysetCursor.decode(null, "timestamp"), 10).size());
+    }
+
+    @Test
+    @DisplayName("死信按 (createdAt, id) 游标分页")
+    void testScrollDeadLetters() {
+        assertEquals(jdbcTemplate.queryForList("select id from dead_letters order by created_at, id", Long.class),
+                scrollIds(position -> deadLetterStore.scrollAll(position, 64), "createdAt"));
+        assertEquals(jdbcTemplate.queryForList("select id from dead_letters where message_id = 1 order by created_at, id", Long.class),
+                scrollIds(position -> deadLetterStore.scrollByMessageId(1L, position, 16), "createdAt"));
+        assertEquals(500, deadLetterStore.count());
+    }
+
+    @Test
+    @DisplayName("游标查询使用的复合索引存在")
+    void testIndexes() {
+        List<String> indexes = jdbcTemplate.queryForList("select index_name from information_schema.indexes "
+                + "where table_name in ('TRACKING', 'DEAD_LETTERS')", String.class);
+        assertTrue(indexes.containsAll(List.of("IDX_TRACKING_TIMESTAMP_ID", "IDX_TRACKING_MESSAGE_ID_TIMESTAMP",
+                "IDX_TRACKING_STATUS_TIMESTAMP", "IDX_DEAD_LETTERS_CREATED_AT_ID", "IDX_DEAD_LETTERS_MESSAGE_ID_CREATED_AT")),
+                indexes.toString());
+    }
+
+    @Test
+    @DisplayName("格式错误的游标返回 400")
+    void testInvalidCursor() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode("not-a-cursor", "timestamp"));
+        assertEquals(400, e.getStatusCode().value());
+        assertTrue(KeysetCursor.decode("", "timestamp").isInitial());
+    }
+
+    @Test
+    @DisplayName("每页记录数不在 1 到 1000 之间时返回 400")
+    void testInvalidSize() {
+        for (int size : new int[]{-1, 0, KeysetCursor.MAX_SIZE + 1, Integer.MAX_VALUE}) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> KeysetCursor.size(size));
+            assertEquals(400, e.getStatusCode().value());
+        }
+        assertEquals(1, KeysetCursor.size(1));
+        assertEquals(KeysetCursor.MAX_SIZE, KeysetCursor.size(KeysetCursor.MAX_SIZE));
+    }
+
+    /**
+     * 像调用方一样只通过 nextCursor 翻页
+     */
+    private static <T> List<Long> scrollIds(Function<KeysetScrollPosition, Window<T>> query, String timeProperty) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<T> page = KeysetPage.of(query.apply(KeysetCursor.decode(cursor, timeProperty)), timeProperty, null);
+            page.getContent().forEach(entity -> ids.add(entity instanceof TrackingEntity tracking
+                    ? tracking.getId() : ((DeadLetterEntity) entity).getId()));
+            assertEquals(page.getNextCursor() != null, page.isHasNext());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+}
@@ -0,0 +1,274 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Window;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基于分段日志的消息、tracking、死信存储单元测试
+ */
+@DisplayName("分段日志存储测试")
+class LogStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private StorageProperties properties;
+    private LogStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentBytes(16 * 1024);
+        storage = new LogStorage(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (storage != null) {
+            storage.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("消息保存时分配 id，更新追加新版本，findById 读到最新版本")
+    void testMessageVersions() {
+        LogMessageStore store = new LogMessageStore(storage.messages());
+        MessageEntity first = store.save(message("hello"));
+        MessageEntity second = store.save(message("world"));
+        assertEquals(1L, first.getId());
+        assertEquals(2L, second.getId());
+
+        first.setStatus("SENT");
+        store.save(first);
+        assertEquals("SENT", store.findById(1L).orElseThrow().getStatus());
+        assertEquals("hello", store.findById(1L).orElseThrow().getContent());
+        assertEquals("PENDING", store.findById(2L).orElseThrow().getStatus());
+        assertTrue(store.findById(3L).isEmpty());
+        assertEquals(3, storage.messages().endOffset());
+    }
+
+    @Test
+    @DisplayName("按 id 顺序认领待分发消息，认领超时后放回")
+    void testClaimAndRelease() {
+        LogMessageStore store = new LogMessageStore(storage.messages());
+        for (int i = 0; i < 5; i++) {
+            store.save(message("m" + i));
+        }
+
+        List<MessageEntity> claimed = store.claimPending("pod-a", 3);
+        assertEquals(List.of(1L, 2L, 3L), claimed.stream().map(MessageEntity::getId).toList());
+        assertTrue(claimed.stream().allMatch(m -> "DISPATCHING".equals(m.getStatus()) && "pod-a".equals(m.getClaimedBy())));
+        assertEquals("DISPATCHING", store.findById(2L).orElseThrow().getStatus());
+
+        claimed.get(0).setStatus("SENT");
+        store.save(claimed.get(0));
+        assertEquals(List.of(4L, 5L), store.claimPending("pod-a", 10).stream().map(MessageEntity::getId).toList());
+        assertTrue(store.claimPending("pod-a", 10).isEmpty());
+
+        assertEquals(0, store.releaseExpiredClaims(LocalDateTime.now().minusMinutes(1)));
+        assertEquals(4, store.releaseExpiredClaims(LocalDateTime.now().plusSeconds(1)));
+        assertEquals("PENDING", store.findById(2L).orElseThrow().getStatus());
+        assertNull(store.findById(2L).orElseThrow().getClaimedBy());
+        assertEquals(List.of(2L, 3L, 4L, 5L), store.claimPending("pod-b", 10).stream().map(MessageEntity::getId).toList());
+    }
+
+    @Test
+    @DisplayName("重启后恢复 id 序列、最新版本和待分发状态")
+    void testMessageRestore() {
+        LogMessageStore store = new LogMessageStore(storage.messages());
+        for (int i = 0; i < 200; i++) {
+            store.save(message("m" + i));
+        }
+        List<MessageEntity> claimed = store.claimPending("pod-a", 150);
+        for (MessageEntity message : claimed.subList(0, 100)) {
+            message.setStatus("SENT");
+            store.save(message);
+        }
+        assertTrue(storage.messages().segmentCount() > 1);
+        storage.destroy();
+
+        storage = new LogStorage(properties);
+        LogMessageStore restored = new LogMessageStore(storage.messages());
+        assertEquals("SENT", restored.findById(1L).orElseThrow().getStatus());
+        assertEquals("DISPATCHING", restored.findById(101L).orElseThrow().getStatus());
+        assertEquals(201L, restored.save(message("next")).getId());
+        assertEquals(Map.of("text", 101L), restored.countBacklog());
+        // 宕机前认领的 50 条在认领超时后放回，和未认领的 50 条、新消息一起按 id 顺序认领
+        assertEquals(50, restored.releaseExpiredClaims(LocalDateTime.now().plusSeconds(1)));
+        List<MessageEntity> reclaimed = restored.claimPending("pod-b", 200);
+        assertEquals(101, reclaimed.size());
+        assertEquals(101L, reclaimed.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("保留策略删除段之前重新追加待分发、已认领和失败的消息，已发送的消息随段删除")
+    void testRetentionKeepsLiveMessages() {
+        LogMessageStore store = new LogMessageStore(storage.messages());
+        MessageEntity pending = store.save(message("pending"));
+        MessageEntity claimed = store.save(message("claimed"));
+        MessageEntity failed = store.save(message("failed"));
+        MessageEntity sent = store.save(message("sent"));
+        store.claimPending("pod-a", 1);
+        // claimPending 按 id 顺序认领了 pending，放回后认领 claimed
+        assertEquals(1, store.releaseExpiredClaims(LocalDateTime.now().plusSeconds(1)));
+        failed.setStatus("FAILED");
+        store.save(failed);
+        sent.setStatus("SENT");
+        store.save(sent);
+        MessageEntity dispatching = store.findById(claimed.getId()).orElseThrow();
+        dispatching.setStatus("DISPATCHING");
+        dispatching.setClaimedBy("pod-a");
+        dispatching.setClaimedAt(LocalDateTime.now());
+        store.save(dispatching);
+        for (int i = 0; i < 200; i++) {
+            MessageEntity filler = message("filler-" + i);
+            filler.setStatus("SENT");
+            store.save(filler);
+        }
+        assertTrue(storage.messages().segmentCount() > 2);
+
+        properties.setRetentionBytes(1);
+        assertTrue(storage.messages().deleteExpiredSegments() > 0);
+        assertTrue(storage.messages().startOffset() > 0);
+        assertTrue(store.findById(sent.getId()).isEmpty());
+        assertEquals("FAILED", store.findById(failed.getId()).orElseThrow().getStatus());
+        assertEquals("DISPATCHING", store.findById(claimed.getId()).orElseThrow().getStatus());
+        assertEquals(List.of(pending.getId()), store.claimPending("pod-b", 10).stream().map(MessageEntity::getId).toList());
+
+        // 重新追加的版本在重启后同样能恢复
+        storage.destroy();
+        storage = new LogStorage(properties);
+        LogMessageStore restored = new LogMessageStore(storage.messages());
+        assertEquals("failed", restored.findById(failed.getId()).orElseThrow().getContent());
+        assertEquals(2, restored.releaseExpiredClaims(LocalDateTime.now().plusSeconds(1)));
+    }
+
+    @Test
+    @DisplayName("最大 id 的消息随段删除后，重启不会重复分配已用过的 id")
+    void testRetentionKeepsIdHighWaterMark() {
+        LogMessageStore store = new LogMessageStore(storage.messages());
+        List<MessageEntity> messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            messages.add(store.save(message("m" + i)));
+        }
+        // 倒序标记为已发送，活动段中只剩 id 较小的消息
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            messages.get(i).setStatus("SENT");
+            store.save(messages.get(i));
+        }
+        properties.setRetentionBytes(1);
+        assertTrue(storage.messages().deleteExpiredSegments() > 0);
+        assertTrue(store.findById(200L).isEmpty());
+
+        storage.destroy();
+        storage = new LogStorage(properties);
+        LogMessageStore restored = new LogMessageStore(storage.messages());
+        assertEquals(201L, restored.save(message("next")).getId());
+    }
+
+    @Test
+    @DisplayName("tracking 按偏移分页，按消息和状态扫描过滤")
+    void testTrackingQueries() {
+        LogTrackingStore store = new LogTrackingStore(storage.tracking());
+        SubscriberEntity subscriber = new SubscriberEntity();
+        subscriber.setId(7L);
+        subscriber.setName("sub-7");
+        subscriber.setEndpoint("http://localhost/sub-7");
+        for (long i = 0; i < 100; i++) {
+            store.track(TrackingEvent.of(i % 10, i % 2 == 0 ? subscriber : null, i % 3 == 0 ? "FAILED" : "DELIVERED", "event " + i));
+        }
+
+        Page<TrackingEntity> page = store.findAll(PageRequest.of(2, 15));
+        assertEquals(100, page.getTotalElements());
+        assertEquals(15, page.getContent().size());
+        assertEquals(30L, page.getContent().get(0).getId());
+        assertEquals("event 30", page.getContent().get(0).getDetails());
+        assertEquals("sub-7", page.getContent().get(0).getSubscriberName());
+        assertNotNull(page.getContent().get(0).getTimestamp());
+
+        Page<TrackingEntity> byMessage = store.findByMessageId(3L, PageRequest.of(1, 4));
+        assertEquals(10, byMessage.getTotalElements());
+        assertEquals(List.of("event 43", "event 53", "event 63", "event 73"),
+                byMessage.getContent().stream().map(TrackingEntity::getDetails).toList());
+
+        assertEquals(34, store.findByStatus("FAILED", PageRequest.of(0, 10)).getTotalElements());
+        assertEquals(0, store.findByStatus("SENT", PageRequest.of(0, 10)).getTotalElements());
+    }
+
+    @Test
+    @DisplayName("tracking 游标分页从游标的下一个偏移开始读取")
+    void testTrackingScroll() {
+        LogTrackingStore store = new LogTrackingStore(storage.tracking());
+        for (long i = 0; i < 100; i++) {
+            store.track(TrackingEvent.of(i % 10, null, i % 3 == 0 ? "FAILED" : "DELIVERED", "event " + i));
+        }
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<TrackingEntity> page = KeysetPage.of(
+                    store.scrollAll(KeysetCursor.decode(cursor, "timestamp"), 30), "timestamp", null);
+            page.getContent().forEach(entity -> ids.add(entity.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(100, ids.size());
+        assertEquals(99L, ids.get(99));
+
+        Window<TrackingEntity> failed = store.scrollByStatus("FAILED", KeysetCursor.of("timestamp", LocalDateTime.now(), 50L), 5);
+        assertEquals(List.of(51L, 54L, 57L, 60L, 63L), failed.stream().map(TrackingEntity::getId).toList());
+        assertTrue(failed.hasNext());
+        assertEquals(100, store.count());
+        assertEquals(10, store.countByMessageId(3L));
+        assertEquals(34, store.countByStatus("FAILED"));
+    }
+
+    @Test
+    @DisplayName("死信保存后以偏移为 id 查询")
+    void testDeadLetters() {
+        LogDeadLetterStore store = new LogDeadLetterStore(storage.deadLetters());
+        for (long i = 0; i < 5; i++) {
+            DeadLetterEntity deadLetter = new DeadLetterEntity();
+            deadLetter.setMessageId(i % 2);
+            deadLetter.setReason("timeout " + i);
+            deadLetter.setCreatedAt(LocalDateTime.now());
+            deadLetter.setCreatedBy("system");
+            assertEquals(i, store.save(deadLetter).getId());
+        }
+
+        assertEquals(5, store.findAll(PageRequest.of(0, 10)).getTotalElements());
+        Page<DeadLetterEntity> byMessage = store.findByMessageId(1L, PageRequest.of(0, 10));
+        assertEquals(List.of(1L, 3L), byMessage.getContent().stream().map(DeadLetterEntity::getId).toList());
+        assertEquals("timeout 3", byMessage.getContent().get(1).getReason());
+    }
+
+    private static MessageEntity message(String content) {
+        MessageEntity message = new MessageEntity();
+        message.setContent(content);
+        message.setRecipient("user-1");
+        message.setContentType("text");
+        message.setStatus("PENDING");
+        message.setRetryCount(0);
+        message.setMaxRetryCount(3);
+        message.setOrdered(false);
+        message.setCreatedAt(LocalDateTime.now());
+        message.setCreatedBy("system");
+        message.setUpdatedAt(LocalDateTime.now());
+        message.setUpdatedBy("system");
+        return message;
+    }
+}
@@ -0,0 +1,104 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量写入测试：H2 + Hibernate 建表，单条发送的写库方式（每条消息一个事务、一次 IDENTITY 插入）
+ * 与批量发送的写库方式（一个事务、JDBC 批量插入）写入的结果一致
+ * 吞吐对比见 jmh profile 中的 MessageBatchBenchmark
+ */
+@DisplayName("批量写入测试")
+class MessageBatchInsertTest {
+
+    private static final int MESSAGES = 2_000;
+
+    private static H2JpaTestDatabase database;
+    private static MessageRepository repository;
+    private static TransactionTemplate transactionTemplate;
+    private static JpaMessageStore store;
+
+    @BeforeAll
+    static void setUp() {
+        database = new H2JpaTestDatabase("message-batch-insert");
+        repository = database.repository(MessageRepository.class);
+        transactionTemplate = database.transactionTemplate();
+        store = new JpaMessageStore(repository, database.jdbcTemplate(), 500);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        database.close();
+    }
+
+    @Test
+    @DisplayName("批量插入按顺序分配 id，所有列与 JPA 保存的一致")
+    void testSaveAllRoundTrip() {
+        List<MessageEntity> messages = messages(1_200, "round-trip");
+        messages.get(1).setPartitionKey("p-1");
+        messages.get(2).setOrdered(true);
+        transactionTemplate.executeWithoutResult(status -> store.saveAll(messages));
+
+        for (int i = 1; i < messages.size(); i++) {
+            assertTrue(messages.get(i).getId() > messages.get(i - 1).getId());
+        }
+        MessageEntity loaded = repository.findById(messages.get(1).getId()).orElseThrow();
+        assertEquals("round-trip-1", loaded.getContent());
+        assertEquals("p-1", loaded.getPartitionKey());
+        assertEquals("PENDING", loaded.getStatus());
+        assertEquals(3, loaded.getMaxRetryCount());
+        assertTrue(repository.findById(messages.get(2).getId()).orElseThrow().getOrdered());
+        assertEquals(1_200L, store.countBacklog().get("round-trip"));
+
+        // 一个事务：中途失败时整批回滚
+        List<MessageEntity> broken = messages(10, "broken");
+        broken.get(9).setContent(null);
+        assertThrows(RuntimeException.class, () -> transactionTemplate.executeWithoutResult(status -> store.saveAll(broken)));
+        assertNull(store.countBacklog().get("broken"));
+    }
+
+    @Test
+    @DisplayName("2k 条消息写库 - 逐条事务与批量插入写入同样的消息")
+    void testSingleAndBatchIngest() {
+        List<MessageEntity> single = messages(MESSAGES, "single");
+        for (MessageEntity message : single) {
+            transactionTemplate.executeWithoutResult(status -> store.save(message));
+        }
+        List<MessageEntity> batch = messages(MESSAGES, "batch");
+        transactionTemplate.executeWithoutResult(status -> store.saveAll(batch));
+
+        Map<String, Long> backlog = store.countBacklog();
+        assertEquals(MESSAGES, backlog.get("single"));
+        assertEquals(MESSAGES, backlog.get("batch"));
+        MessageEntity first = repository.findById(single.get(7).getId()).orElseThrow();
+        MessageEntity second = repository.findById(batch.get(7).getId()).orElseThrow();
+        assertEquals(first.getRecipient(), second.getRecipient());
+        assertEquals(first.getStatus(), second.getStatus());
+        assertEquals(first.getMaxRetryCount(), second.getMaxRetryCount());
+    }
+
+    private static List<MessageEntity> messages(int count, String contentType) {
+        List<MessageEntity> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MessageRequest request = new MessageRequest();
+            request.setContent(contentType + "-" + i);
+            request.setRecipient("user-" + i % 100);
+            request.setContentType(contentType);
+            MessageEntity message = MessageConverter.toEntity(request, "system");
+            message.setMaxRetryCount(3);
+            message.setCreatedAt(LocalDateTime.now());
+            messages.add(message);
+        }
+        return messages;
+    }
+}
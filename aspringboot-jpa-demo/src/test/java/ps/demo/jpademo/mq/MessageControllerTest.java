@@ -0,0 +1,129 @@
+package ps.demo.jpademo.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ps.demo.jpademo.error.CustomGlobalExceptionHandler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 消息接口单元测试，MessageService 和 AdmissionControl 为模拟对象
+ */
+@DisplayName("消息接口测试")
+class MessageControllerTest {
+
+    private final AtomicLong ids = new AtomicLong();
+    private MessageService messageService;
+    private AdmissionControl admissionControl;
+    private MqConfig mqConfig;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        messageService = mock(MessageService.class);
+        when(messageService.sendMessages(anyList())).thenAnswer(invocation -> {
+            List<MessageRequest> requests = invocation.getArgument(0);
+            return requests.stream().map(request -> {
+                MessageResponse response = new MessageResponse();
+                response.setId(ids.incrementAndGet());
+                response.setStatus("PENDING");
+                return response;
+            }).toList();
+        });
+        admissionControl = mock(AdmissionControl.class);
+        mqConfig = new MqConfig();
+
+        MessageController controller = new MessageController();
+        ReflectionTestUtils.setField(controller, "messageService", messageService);
+        ReflectionTestUtils.setField(controller, "admissionControl", admissionControl);
+        ReflectionTestUtils.setField(controller, "mqConfig", mqConfig);
+        ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new CustomGlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    @DisplayName("积压超过高水位时单条发送返回 429 和 Retry-After")
+    void testSendRejected() throws Exception {
+        doThrow(new AdmissionRejectedException("default", 100, 3)).when(admissionControl).admit("text");
+
+        mockMvc.perform(post("/api/messages").contentType(MediaType.APPLICATION_JSON).content(message("text")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.code").value("429"));
+        verifyNoInteractions(messageService);
+    }
+
+    @Test
+    @DisplayName("批量发送逐条返回结果，通过校验和准入的消息一次写入")
+    void testBatchPerItemResults() throws Exception {
+        doThrow(new AdmissionRejectedException("bulk", 100, 2)).when(admissionControl).admit("report");
+        String body = "[" + message("text") + ",{\"content\":\"no recipient\",\"contentType\":\"text\"},"
+                + message("report") + "," + message("json") + "]";
+
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.items[0].result").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("PENDING"))
+                .andExpect(jsonPath("$.items[1].result").value("INVALID"))
+                .andExpect(jsonPath("$.items[2].result").value("REJECTED"))
+                .andExpect(jsonPath("$.items[3].result").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[3].id").value(2));
+        verify(messageService, times(1)).sendMessages(argThat(requests -> requests.size() == 2
+                && "json".equals(requests.get(1).getContentType())));
+    }
+
+    @Test
+    @DisplayName("NDJSON 批量发送，全部被准入控制拒绝时返回 429")
+    void testNdjsonAllRejected() throws Exception {
+        String body = message("text") + "\n" + message("text") + "\n\n" + message("json") + "\n";
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(3));
+
+        doThrow(new AdmissionRejectedException("default", 100, 1)).when(admissionControl).admit(anyString());
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.rejected").value(3));
+        verify(messageService, times(1)).sendMessages(anyList());
+    }
+
+    @Test
+    @DisplayName("超过 max-size 返回 413，NDJSON 格式错误返回 400，都不写入")
+    void testBatchLimits() throws Exception {
+        mqConfig.getBatch().setMaxSize(2);
+        String array = "[" + message("text") + "," + message("text") + "," + message("text") + "]";
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_JSON).content(array))
+                .andExpect(status().isPayloadTooLarge());
+        String ndjson = message("text") + "\n" + message("text") + "\n" + message("text") + "\n";
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+                .andExpect(status().isPayloadTooLarge());
+        mockMvc.perform(post("/api/messages/batch").contentType(MediaType.APPLICATION_NDJSON).content(message("text") + "\n{oops"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Malformed message batch"));
+
+        verifyNoInteractions(messageService);
+    }
+
+    private static String message(String contentType) {
+        return "{\"content\":\"hello\",\"recipient\":\"user-1\",\"contentType\":\"" + contentType + "\"}";
+    }
+}
@@ -0,0 +1,137 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 消息分发和死信重放单元测试，投递引擎、存储和重试调度为模拟对象
+ */
+@DisplayName("消息分发测试")
+class MessageServiceTest {
+
+    private final Set<Long> failingSubscribers = ConcurrentHashMap.newKeySet();
+    private MessageService messageService;
+    private MessageStore messageStore;
+    private DeadLetterStore deadLetterStore;
+    private RetryScheduler retryScheduler;
+    private DeliveryEngine deliveryEngine;
+    private MessageEntity message;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        message = new MessageEntity();
+        message.setId(1L);
+        message.setContent("hello");
+        message.setContentType("text");
+        message.setStatus("PENDING");
+        message.setOrdered(false);
+        message.setMaxRetryCount(3);
+        message.setCreatedAt(LocalDateTime.now());
+
+        messageStore = mock(MessageStore.class);
+        when(messageStore.save(any(MessageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(messageStore.findById(1L)).thenReturn(Optional.of(message));
+        deadLetterStore = mock(DeadLetterStore.class);
+        retryScheduler = mock(RetryScheduler.class);
+        deliveryEngine = mock(DeliveryEngine.class);
+        when(deliveryEngine.deliver(anyLong(), any())).thenAnswer(invocation -> failingSubscribers.contains(invocation.<Long>getArgument(0))
+                ? CompletableFuture.failedFuture(new IllegalStateException("connection refused"))
+                : CompletableFuture.completedFuture(null));
+        SubscriptionRoutingTable routingTable = mock(SubscriptionRoutingTable.class);
+        when(routingTable.route("text")).thenReturn(List.of(subscriber(10L), subscriber(20L)));
+
+        messageService = new MessageService();
+        ReflectionTestUtils.setField(messageService, "messageStore", messageStore);
+        ReflectionTestUtils.setField(messageService, "deadLetterStore", deadLetterStore);
+        ReflectionTestUtils.setField(messageService, "trackingStore", mock(TrackingStore.class));
+        ReflectionTestUtils.setField(messageService, "deliveryEngine", deliveryEngine);
+        ReflectionTestUtils.setField(messageService, "retryScheduler", retryScheduler);
+        ReflectionTestUtils.setField(messageService, "admissionControl", mock(AdmissionControl.class));
+        ReflectionTestUtils.setField(messageService, "deliveryMetrics", mock(DeliveryMetrics.class));
+        ReflectionTestUtils.setField(messageService, "subscriberRepository", mock(SubscriberRepository.class));
+        ReflectionTestUtils.setField(messageService, "subscriptionRoutingTable", routingTable);
+        ReflectionTestUtils.setField(messageService, "outboxDispatcher", mock(ObjectProvider.class));
+    }
+
+    @Test
+    @DisplayName("有订阅者进入死信时消息保持 FAILED，不被改为 SENT")
+    void testDispatchKeepsFailedStatus() throws Exception {
+        failingSubscribers.add(20L);
+        when(retryScheduler.scheduleRetry(eq(1L), eq(20L), anyInt(), any())).thenReturn(false);
+
+        messageService.dispatch(message).get(5, TimeUnit.SECONDS);
+
+        assertEquals("FAILED", message.getStatus());
+        verify(deadLetterStore).save(argThat(deadLetter -> Long.valueOf(20L).equals(deadLetter.getSubscriberId())));
+        verify(messageStore, times(1)).save(message);
+    }
+
+    @Test
+    @DisplayName("消息级死信重放 - 按每个订阅者的投递结果计算，不按消息状态")
+    void testReplayOutcomeFromSubscriberResults() throws Exception {
+        DeadLetterEntity deadLetter = new DeadLetterEntity();
+        deadLetter.setId(100L);
+        deadLetter.setMessageId(1L);
+        message.setStatus("FAILED");
+
+        assertEquals(DeadLetterReplayer.Outcome.DELIVERED, messageService.replay(deadLetter).get(5, TimeUnit.SECONDS));
+        assertEquals("SENT", message.getStatus());
+
+        // 已安排重试：消息改为 SENT，但这次重放没有投递成功
+        failingSubscribers.add(20L);
+        when(retryScheduler.scheduleRetry(eq(1L), eq(20L), anyInt(), any())).thenReturn(true);
+        assertEquals(DeadLetterReplayer.Outcome.FAILED, messageService.replay(deadLetter).get(5, TimeUnit.SECONDS));
+        assertEquals("SENT", message.getStatus());
+
+        // 再次进入死信
+        when(retryScheduler.scheduleRetry(eq(1L), eq(20L), anyInt(), any())).thenReturn(false);
+        assertEquals(DeadLetterReplayer.Outcome.FAILED, messageService.replay(deadLetter).get(5, TimeUnit.SECONDS));
+        assertEquals("FAILED", message.getStatus());
+    }
+
+    @Test
+    @DisplayName("未启用发件箱时事务提交后才开始投递")
+    void testDeliversAfterCommitWithoutOutbox() {
+        MessageRequest request = new MessageRequest();
+        request.setContent("hello");
+        request.setRecipient("user");
+        request.setContentType("text");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            messageService.sendMessage(request);
+            verifyNoInteractions(deliveryEngine);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(deliveryEngine).deliver(eq(10L), any());
+        verify(deliveryEngine).deliver(eq(20L), any());
+    }
+
+    private static SubscriberEntity subscriber(Long id) {
+        SubscriberEntity subscriber = new SubscriberEntity();
+        subscriber.setId(id);
+        subscriber.setName("subscriber-" + id);
+        return subscriber;
+    }
+}
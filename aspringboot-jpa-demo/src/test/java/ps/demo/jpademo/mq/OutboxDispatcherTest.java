@@ -0,0 +1,235 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 发件箱分发单元测试，经 JpaMessageStore 认领，MessageRepository 用内存中的 Map 模拟认领语义
+ */
+@DisplayName("消息发件箱分发测试")
+class OutboxDispatcherTest {
+
+    private final Map<Long, MessageEntity> table = new ConcurrentSkipListMap<>();
+    private final List<Long> dispatched = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Void>> deliveries = new CopyOnWriteArrayList<>();
+    private MessageRepository repository;
+    private MessageService messageService;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(MessageRepository.class);
+        when(repository.findIdsByStatus(anyString(), any(Pageable.class))).thenAnswer(invocation -> {
+            String status = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return table.values().stream()
+                    .filter(m -> status.equals(m.getStatus()))
+                    .map(MessageEntity::getId)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(repository.claim(anyCollection(), anyString(), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            int count = 0;
+            for (Long id : ids) {
+                MessageEntity m = table.get(id);
+                if ("PENDING".equals(m.getStatus())) {
+                    m.setStatus("DISPATCHING");
+                    m.setClaimedBy(invocation.getArgument(1));
+                    m.setClaimedAt(invocation.getArgument(2));
+                    count++;
+                }
+            }
+            return count;
+        });
+        when(repository.findByIdInAndClaimedByAndStatusOrderById(anyCollection(), anyString(), anyString())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(m -> ids.contains(m.getId()))
+                    .filter(m -> invocation.getArgument(1).equals(m.getClaimedBy()) && invocation.getArgument(2).equals(m.getStatus()))
+                    .toList();
+        });
+        when(repository.releaseExpiredClaims(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            LocalDateTime before = invocation.getArgument(0);
+            int count = 0;
+            for (MessageEntity m : table.values()) {
+                if ("DISPATCHING".equals(m.getStatus()) && m.getClaimedAt().isBefore(before)) {
+                    m.setStatus("PENDING");
+                    m.setClaimedBy(null);
+                    m.setClaimedAt(null);
+                    count++;
+                }
+            }
+            return count;
+        });
+
+        messageService = mock(MessageService.class);
+        when(messageService.dispatch(any(MessageEntity.class))).thenAnswer(invocation -> {
+            MessageEntity m = invocation.getArgument(0);
+            dispatched.add(m.getId());
+            CompletableFuture<Void> delivery = new CompletableFuture<>();
+            deliveries.add(delivery);
+            return delivery;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("按 id 顺序分批认领并投递，有积压时不等轮询间隔")
+    void testClaimInBatches() {
+        insert(1, 250);
+        dispatcher = start(properties(60_000, 100, 1000));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> dispatched.size() == 250);
+        assertEquals(sequence(1, 250), dispatched);
+        assertTrue(table.values().stream().allMatch(m -> "DISPATCHING".equals(m.getStatus())
+                && dispatcher.getOwner().equals(m.getClaimedBy())));
+        verify(repository, atLeast(3)).findIdsByStatus(eq("PENDING"), argThat(p -> p.getPageSize() == 100));
+        assertEquals(250, dispatcher.getInFlight());
+    }
+
+    @Test
+    @DisplayName("已被其他实例认领的消息不投递")
+    void testSkipMessagesClaimedByOthers() {
+        insert(1, 10);
+        // 另一个实例在本实例查询之后、认领之前认领了偶数 id 的消息
+        when(repository.findIdsByStatus(anyString(), any(Pageable.class))).thenAnswer(invocation -> {
+            List<Long> ids = table.values().stream()
+                    .filter(m -> "PENDING".equals(m.getStatus()))
+                    .map(MessageEntity::getId)
+                    .toList();
+            ids.stream().filter(id -> id % 2 == 0).forEach(id -> {
+                table.get(id).setStatus("DISPATCHING");
+                table.get(id).setClaimedBy("other-pod");
+                table.get(id).setClaimedAt(LocalDateTime.now());
+            });
+            return ids;
+        });
+        dispatcher = start(properties(60_000, 100, 1000));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> dispatched.size() == 5);
+        assertEquals(List.of(1L, 3L, 5L, 7L, 9L), dispatched);
+        assertEquals("other-pod", table.get(2L).getClaimedBy());
+    }
+
+    @Test
+    @DisplayName("投递中的消息达到 max-in-flight 时暂停认领，投递结束后立即继续")
+    void testMaxInFlight() {
+        insert(1, 30);
+        dispatcher = start(properties(60_000, 100, 10));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> dispatched.size() == 10);
+        assertEquals(10, dispatcher.getInFlight());
+        assertEquals(20, table.values().stream().filter(m -> "PENDING".equals(m.getStatus())).count());
+
+        // 轮询间隔很长，靠投递结束时的唤醒继续认领
+        deliveries.get(0).complete(null);
+        deliveries.get(1).completeExceptionally(new IllegalStateException("push failed"));
+        await().atMost(2, TimeUnit.SECONDS).until(() -> dispatched.size() == 12);
+        assertEquals(sequence(1, 12), dispatched);
+        assertEquals(10, dispatcher.getInFlight());
+    }
+
+    @Test
+    @DisplayName("认领超时的消息放回 PENDING 后重新认领")
+    void testReleaseExpiredClaims() {
+        insert(1, 2);
+        table.get(1L).setStatus("DISPATCHING");
+        table.get(1L).setClaimedBy("crashed-pod");
+        table.get(1L).setClaimedAt(LocalDateTime.now().minusSeconds(10));
+        table.get(2L).setStatus("DISPATCHING");
+        table.get(2L).setClaimedBy("live-pod");
+        table.get(2L).setClaimedAt(LocalDateTime.now());
+        OutboxProperties properties = properties(20, 100, 1000);
+        properties.setClaimTimeout(1000);
+        dispatcher = start(properties);
+
+        await().atMost(3, TimeUnit.SECONDS).until(() -> dispatched.size() == 1);
+        assertEquals(List.of(1L), dispatched);
+        assertEquals(dispatcher.getOwner(), table.get(1L).getClaimedBy());
+        assertEquals("live-pod", table.get(2L).getClaimedBy());
+    }
+
+    @Test
+    @DisplayName("单条消息分发失败不影响同批其他消息，失败的留给认领超时处理")
+    void testDispatchFailureIsolated() {
+        insert(1, 3);
+        when(messageService.dispatch(argThat(m -> m != null && m.getId() == 2L))).thenThrow(new IllegalStateException("broken"));
+        dispatcher = start(properties(60_000, 100, 1000));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> dispatched.size() == 2);
+        assertEquals(List.of(1L, 3L), dispatched);
+        assertEquals(2, dispatcher.getInFlight());
+        assertEquals("DISPATCHING", table.get(2L).getStatus());
+    }
+
+    @Test
+    @DisplayName("空闲时按轮询间隔等待，wakeUp 立即认领新消息")
+    void testWakeUp() throws InterruptedException {
+        dispatcher = start(properties(60_000, 100, 1000));
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> verify(repository).findIdsByStatus(anyString(), any(Pageable.class)));
+
+        insert(1, 1);
+        Thread.sleep(100);
+        assertTrue(dispatched.isEmpty());
+        dispatcher.wakeUp();
+        await().atMost(1, TimeUnit.SECONDS).until(() -> dispatched.size() == 1);
+    }
+
+    private OutboxDispatcher start(OutboxProperties properties) {
+        OutboxDispatcher dispatcher = new OutboxDispatcher(new JpaMessageStore(repository, mock(JdbcTemplate.class), 500), messageService, properties);
+        dispatcher.afterPropertiesSet();
+        return dispatcher;
+    }
+
+    private void insert(long from, long to) {
+        for (long id = from; id <= to; id++) {
+            MessageEntity m = new MessageEntity();
+            m.setId(id);
+            m.setStatus("PENDING");
+            table.put(id, m);
+        }
+    }
+
+    private static List<Long> sequence(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static OutboxProperties properties(long pollInterval, int batchSize, int maxInFlight) {
+        OutboxProperties properties = new OutboxProperties();
+        properties.setPollInterval(pollInterval);
+        properties.setBatchSize(batchSize);
+        properties.setMaxInFlight(maxInFlight);
+        return properties;
+    }
+}
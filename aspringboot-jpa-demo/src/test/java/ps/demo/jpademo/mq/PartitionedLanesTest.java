@@ -0,0 +1,173 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有序消息分区通道单元测试
+ */
+@DisplayName("有序消息分区通道测试")
+class PartitionedLanesTest {
+
+    private PartitionedLanes lanes;
+    private final ExecutorService async = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (lanes != null) {
+            lanes.destroy();
+        }
+        async.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("同一分区键按提交顺序执行，异步任务完成后才执行下一个")
+    void testFifoPerKey() throws Exception {
+        lanes = start(4, 1000);
+        Map<String, List<Integer>> executed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String key = "recipient-" + (i % 10);
+            int seq = i;
+            results.add(lanes.submit(key, () -> CompletableFuture.supplyAsync(() -> {
+                // 异步任务随机耗时，如果通道不等待就会乱序
+                sleep(ThreadLocalRandom.current().nextInt(2));
+                executed.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(seq);
+                return seq;
+            }, async)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        assertEquals(10, executed.size());
+        executed.forEach((key, seqs) -> {
+            assertEquals(20, seqs.size());
+            for (int i = 1; i < seqs.size(); i++) {
+                assertTrue(seqs.get(i - 1) < seqs.get(i), key + " out of order: " + seqs);
+            }
+        });
+        assertEquals(199, results.get(199).get());
+    }
+
+    @Test
+    @DisplayName("不同通道的分区键并行执行，一个通道阻塞不影响其他通道")
+    void testLanesRunInParallel() throws Exception {
+        lanes = start(4, 1000);
+        String blockedKey = "a";
+        String otherKey = keyOnOtherLane(blockedKey);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+
+        CompletableFuture<Void> blocked = lanes.submit(blockedKey, () -> gate);
+        CompletableFuture<String> queued = lanes.submit(blockedKey, () -> CompletableFuture.completedFuture("queued"));
+        CompletableFuture<String> other = lanes.submit(otherKey, () -> CompletableFuture.completedFuture("other"));
+
+        assertEquals("other", other.get(2, TimeUnit.SECONDS));
+        assertFalse(queued.isDone());
+        assertEquals(1, lanes.depth(lanes.laneOf(blockedKey)));
+
+        gate.complete(null);
+        assertEquals("queued", queued.get(2, TimeUnit.SECONDS));
+        assertTrue(blocked.isDone());
+    }
+
+    @Test
+    @DisplayName("任务失败只影响自己的结果，通道继续执行后续任务")
+    void testFailureDoesNotStopLane() throws Exception {
+        lanes = start(1, 1000);
+        CompletableFuture<String> failed = lanes.submit("k", () -> CompletableFuture.failedFuture(new IllegalStateException("push failed")));
+        CompletableFuture<String> thrown = lanes.submit("k", () -> {
+            throw new IllegalArgumentException("no subscribers");
+        });
+        CompletableFuture<String> next = lanes.submit("k", () -> CompletableFuture.completedFuture("next"));
+
+        assertEquals("next", next.get(2, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        e = assertThrows(ExecutionException.class, thrown::get);
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+
+    @Test
+    @DisplayName("通道队列满时拒绝，并记录队列深度和拒绝数指标")
+    void testQueueFullAndMetrics() throws Exception {
+        lanes = start(2, 2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        lanes.bindTo(registry);
+        String key = "k";
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        CompletableFuture<Void> running = lanes.submit(key, () -> gate);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> lanes.depth(lanes.laneOf(key)) == 0);
+
+        lanes.submit(key, () -> CompletableFuture.completedFuture(null));
+        lanes.submit(key, () -> CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> rejected = lanes.submit(key, () -> CompletableFuture.completedFuture(null));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(2.0, registry.get("mq.ordering.lane.depth").tag("lane", String.valueOf(lanes.laneOf(key))).gauge().value());
+        assertEquals(1.0, registry.get("mq.ordering.rejected").functionCounter().count());
+
+        gate.complete(null);
+        running.get(2, TimeUnit.SECONDS);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> lanes.depth(lanes.laneOf(key)) == 0);
+    }
+
+    @Test
+    @DisplayName("关闭时处理完已提交的任务，之后提交的任务被拒绝")
+    void testShutdownDrains() throws Exception {
+        lanes = start(2, 1000);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int seq = i;
+            results.add(lanes.submit("k" + i, () -> CompletableFuture.supplyAsync(() -> {
+                sleep(5);
+                return seq;
+            }, async)));
+        }
+        lanes.destroy();
+
+        for (CompletableFuture<Integer> result : results) {
+            assertTrue(result.isDone());
+            assertFalse(result.isCompletedExceptionally());
+        }
+        CompletableFuture<Void> late = lanes.submit("k", () -> CompletableFuture.completedFuture(null));
+        ExecutionException e = assertThrows(ExecutionException.class, late::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        lanes = null;
+    }
+
+    private static PartitionedLanes start(int count, int capacity) {
+        OrderingProperties properties = new OrderingProperties();
+        properties.setLanes(count);
+        properties.setQueueCapacity(capacity);
+        properties.setShutdownTimeout(5000);
+        PartitionedLanes lanes = new PartitionedLanes(properties);
+        lanes.afterPropertiesSet();
+        return lanes;
+    }
+
+    private String keyOnOtherLane(String key) {
+        for (int i = 0; ; i++) {
+            if (lanes.laneOf("other-" + i) != lanes.laneOf(key)) {
+                return "other-" + i;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 投递重试调度单元测试，RetryRepository 用内存中的 Map 模拟
+ */
+@DisplayName("投递重试调度测试")
+class RetrySchedulerTest {
+
+    private final Map<String, RetryEntity> table = new ConcurrentHashMap<>();
+    private RetryRepository repository;
+    private RetryScheduler scheduler;
+
+    private record Retry(Long messageId, Long subscriberId, int attempt, String thread, long at) {
+    }
+
+    private final List<Retry> retries = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RetryRepository.class);
+        when(repository.save(any(RetryEntity.class))).thenAnswer(invocation -> {
+            RetryEntity entity = invocation.getArgument(0);
+            table.put(entity.getMessageId() + ":" + entity.getSubscriberId(), entity);
+            return entity;
+        });
+        when(repository.findByMessageIdAndSubscriberId(anyLong(), anyLong())).thenAnswer(invocation ->
+                Optional.ofNullable(table.get(invocation.getArgument(0) + ":" + invocation.getArgument(1))));
+        when(repository.deleteByMessageIdAndSubscriberId(anyLong(), anyLong())).thenAnswer(invocation ->
+                table.remove(invocation.getArgument(0) + ":" + invocation.getArgument(1)) != null ? 1 : 0);
+        when(repository.findClaimable(any())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(retry -> retry.getOwner() == null || retry.getLeaseUntil().isBefore(now))
+                    .toList();
+        });
+        when(repository.claim(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            synchronized (table) {
+                RetryEntity retry = table.get(invocation.getArgument(0) + ":" + invocation.getArgument(1));
+                String owner = invocation.getArgument(3);
+                LocalDateTime now = invocation.getArgument(4);
+                if (retry == null || !retry.getAttempt().equals(invocation.getArgument(2))
+                        || !(owner.equals(retry.getOwner()) || retry.getOwner() == null || retry.getLeaseUntil().isBefore(now))) {
+                    return 0;
+                }
+                retry.setOwner(owner);
+                retry.setLeaseUntil(invocation.getArgument(5));
+                return 1;
+            }
+        });
+        when(repository.releaseLeases(any())).thenAnswer(invocation -> {
+            int released = 0;
+            for (RetryEntity retry : table.values()) {
+                if (retry.getOwner() != null && retry.getOwner().equals(invocation.getArgument(0))) {
+                    retry.setOwner(null);
+                    retry.setLeaseUntil(null);
+                    released++;
+                }
+            }
+            return released;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("指数退避，延迟不超过上限，抖动在配置比例之内")
+    void testBackoff() {
+        scheduler = new RetryScheduler(repository, properties(100, 0.2));
+        for (int i = 0; i < 100; i++) {
+            assertBetween(80, 120, scheduler.backoff(1));
+            assertBetween(160, 240, scheduler.backoff(2));
+            assertBetween(320, 480, scheduler.backoff(3));
+            assertBetween(800, 1200, scheduler.backoff(10));
+        }
+
+        RetryScheduler noJitter = new RetryScheduler(repository, properties(100, 0));
+        assertEquals(List.of(100L, 200L, 400L, 800L, 1000L, 1000L),
+                List.of(noJitter.backoff(1), noJitter.backoff(2), noJitter.backoff(3),
+                        noJitter.backoff(4), noJitter.backoff(5), noJitter.backoff(6)));
+    }
+
+    @Test
+    @DisplayName("每个订阅者有自己的重试次数，用完后清除状态交给死信处理")
+    void testPerSubscriberBudget() {
+        scheduler = new RetryScheduler(repository, properties(60_000, 0));
+        scheduler.start(this::record);
+
+        assertTrue(scheduler.scheduleRetry(1L, 10L, 2, "timeout"));
+        assertTrue(scheduler.scheduleRetry(1L, 10L, 2, "timeout"));
+        assertEquals(2, table.get("1:10").getAttempt());
+        assertTrue(table.get("1:10").getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(50)));
+
+        // 同一消息的另一个订阅者不受影响
+        assertTrue(scheduler.scheduleRetry(1L, 20L, 2, "refused"));
+        assertEquals(1, table.get("1:20").getAttempt());
+        assertEquals("refused", table.get("1:20").getLastError());
+
+        assertFalse(scheduler.scheduleRetry(1L, 10L, 2, "timeout"));
+        assertNull(table.get("1:10"));
+        assertNotNull(table.get("1:20"));
+        assertTrue(retries.isEmpty());
+    }
+
+    @Test
+    @DisplayName("到期后在调度线程中重试，投递成功后删除重试状态")
+    void testDispatchAfterDelay() {
+        scheduler = new RetryScheduler(repository, properties(300, 0));
+        scheduler.start(this::record);
+
+        long start = System.nanoTime();
+        assertTrue(scheduler.scheduleRetry(1L, 10L, 3, "timeout"));
+        assertEquals(1, scheduler.pendingCount());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> retries.size() == 1);
+
+        Retry retry = retries.get(0);
+        assertEquals(new Retry(1L, 10L, 1, "mq-retry-scheduler", retry.at()), retry);
+        assertTrue(retry.at() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(0, scheduler.pendingCount());
+
+        scheduler.completed(1L, 10L);
+        assertTrue(table.isEmpty());
+        // 没有重试状态时不访问数据库
+        scheduler.completed(2L, 10L);
+        verify(repository, times(1)).deleteByMessageIdAndSubscriberId(anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("重启后按持久化的下次重试时间恢复，过期的立即重试")
+    void testRestoreAfterRestart() {
+        table.put("1:10", persisted(1L, 10L, 2, LocalDateTime.now().minusMinutes(1)));
+        table.put("2:10", persisted(2L, 10L, 1, LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(500))));
+
+        scheduler = new RetryScheduler(repository, properties(60_000, 0));
+        assertEquals(2, scheduler.start(this::record));
+
+        await().atMost(300, TimeUnit.MILLISECONDS).until(() -> retries.size() == 1);
+        assertEquals(1L, retries.get(0).messageId());
+        assertEquals(2, retries.get(0).attempt());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> retries.size() == 2);
+        assertEquals(2L, retries.get(1).messageId());
+
+        // 恢复的状态继续计数
+        assertFalse(scheduler.scheduleRetry(1L, 10L, 2, "timeout"));
+        assertTrue(scheduler.scheduleRetry(2L, 10L, 2, "timeout"));
+        assertEquals(2, table.get("2:10").getAttempt());
+    }
+
+    @Test
+    @DisplayName("启动前或其他实例写入的重试状态 - 在已有记录上计数，不重复插入")
+    void testScheduleRetryUsesExistingRow() {
+        RetryEntity existing = persisted(1L, 10L, 1, LocalDateTime.now().plusMinutes(1));
+        existing.setOwner("other-pod");
+        existing.setLeaseUntil(LocalDateTime.now().plusMinutes(5));
+        table.put("1:10", existing);
+
+        scheduler = new RetryScheduler(repository, properties(60_000, 0));
+        assertTrue(scheduler.scheduleRetry(1L, 10L, 3, "timeout"));
+        assertSame(existing, table.get("1:10"));
+        assertEquals(2, existing.getAttempt());
+        assertEquals(scheduler.getOwner(), existing.getOwner());
+        assertTrue(existing.getLeaseUntil().isAfter(existing.getNextAttemptAt()));
+
+        assertTrue(scheduler.scheduleRetry(1L, 10L, 3, "timeout"));
+        assertFalse(scheduler.scheduleRetry(1L, 10L, 3, "timeout"));
+        assertNull(table.get("1:10"));
+    }
+
+    @Test
+    @DisplayName("多个实例 - 只加载租约过期的重试，被其他实例接管的重试不再执行")
+    void testLeasePreventsDuplicateRetries() throws InterruptedException {
+        RetryEntity expired = persisted(1L, 10L, 1, LocalDateTime.now().minusMinutes(10));
+        expired.setOwner("dead-pod");
+        expired.setLeaseUntil(LocalDateTime.now().minusMinutes(5));
+        table.put("1:10", expired);
+        RetryEntity leased = persisted(2L, 10L, 1, LocalDateTime.now().minusSeconds(1));
+        leased.setOwner("live-pod");
+        leased.setLeaseUntil(LocalDateTime.now().plusMinutes(5));
+        table.put("2:10", leased);
+
+        scheduler = new RetryScheduler(repository, properties(300, 0));
+        assertEquals(1, scheduler.start(this::record));
+        await().atMost(1, TimeUnit.SECONDS).until(() -> retries.size() == 1);
+        assertEquals(1L, retries.get(0).messageId());
+        assertEquals(scheduler.getOwner(), expired.getOwner());
+        assertEquals("live-pod", leased.getOwner());
+
+        // 另一个实例在本实例的重试到期前安排了下一次重试，本实例到期时认领失败
+        List<Retry> otherRetries = new CopyOnWriteArrayList<>();
+        RetryScheduler other = new RetryScheduler(repository, properties(300, 0));
+        try {
+            other.start((messageId, subscriberId, attempt) ->
+                    otherRetries.add(new Retry(messageId, subscriberId, attempt, "other", System.nanoTime())));
+            assertTrue(scheduler.scheduleRetry(3L, 10L, 3, "timeout"));
+            assertTrue(other.scheduleRetry(3L, 10L, 3, "timeout"));
+            await().atMost(2, TimeUnit.SECONDS).until(() -> otherRetries.size() == 1);
+            assertEquals(2, otherRetries.get(0).attempt());
+            assertEquals(1, retries.size());
+        } finally {
+            other.destroy();
+        }
+        assertNull(table.get("3:10").getOwner());
+    }
+
+    @Test
+    @DisplayName("停机时释放租约，重启后立即恢复")
+    void testReleaseLeasesOnShutdown() throws InterruptedException {
+        RetryScheduler first = new RetryScheduler(repository, properties(60_000, 0));
+        first.start(this::record);
+        assertTrue(first.scheduleRetry(1L, 10L, 3, "timeout"));
+        first.destroy();
+        assertNull(table.get("1:10").getOwner());
+
+        scheduler = new RetryScheduler(repository, properties(60_000, 0));
+        assertEquals(1, scheduler.start(this::record));
+        assertEquals(1, scheduler.pendingCount());
+    }
+
+    @Test
+    @DisplayName("重试启动失败时稍后再试同一次重试")
+    void testHandlerFailureRescheduled() {
+        scheduler = new RetryScheduler(repository, properties(50, 0));
+        AtomicInteger calls = new AtomicInteger();
+        scheduler.start((messageId, subscriberId, attempt) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("database unavailable");
+            }
+            record(messageId, subscriberId, attempt);
+        });
+
+        scheduler.scheduleRetry(1L, 10L, 3, "timeout");
+        await().atMost(2, TimeUnit.SECONDS).until(() -> retries.size() == 1);
+        assertEquals(2, calls.get());
+        assertEquals(1, retries.get(0).attempt());
+    }
+
+    private void record(Long messageId, Long subscriberId, int attempt) {
+        retries.add(new Retry(messageId, subscriberId, attempt, Thread.currentThread().getName(), System.nanoTime()));
+    }
+
+    private static RetryEntity persisted(Long messageId, Long subscriberId, int attempt, LocalDateTime nextAttemptAt) {
+        RetryEntity entity = new RetryEntity();
+        entity.setMessageId(messageId);
+        entity.setSubscriberId(subscriberId);
+        entity.setAttempt(attempt);
+        entity.setNextAttemptAt(nextAttemptAt);
+        entity.setCreatedAt(LocalDateTime.now());
+        entity.setUpdatedAt(LocalDateTime.now());
+        return entity;
+    }
+
+    private static RetryProperties properties(long initialDelay, double jitter) {
+        RetryProperties properties = new RetryProperties();
+        properties.setInitialDelay(initialDelay);
+        properties.setMultiplier(2.0);
+        properties.setMaxDelay(Math.max(1000, initialDelay));
+        properties.setJitter(jitter);
+        return properties;
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual >= min && actual <= max, actual + " not in [" + min + ", " + max + "]");
+    }
+}
@@ -0,0 +1,212 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段日志单元测试
+ */
+@DisplayName("分段日志测试")
+class SegmentedLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    @DisplayName("偏移连续分配，按偏移读取和顺序读取跨越多个段")
+    void testAppendAndReadAcrossSegments() {
+        SegmentedLog log = open(properties(1024, 4096));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, log.append(payload(i)));
+        }
+        assertTrue(log.segmentCount() > 1, "segments: " + log.segmentCount());
+        assertEquals(0, log.startOffset());
+        assertEquals(100, log.endOffset());
+
+        assertEquals("record-42", text(log.read(42).orElseThrow()));
+        assertTrue(log.read(100).isEmpty());
+
+        List<LogRecord> records = log.read(5, 60);
+        assertEquals(60, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(5 + i, records.get(i).offset());
+            assertEquals("record-" + (5 + i), text(records.get(i)));
+        }
+        assertEquals(3, log.read(97, 10).size());
+        log.close();
+    }
+
+    @Test
+    @DisplayName("索引写满或超过 segment-ms 时滚动，超过段容量的记录被拒绝")
+    void testRollBySizeIndexAndTime() {
+        StorageProperties properties = properties(1024 * 1024, 40);
+        properties.setSegmentMs(60_000);
+        SegmentedLog log = open(properties);
+        for (int i = 0; i < 10; i++) {
+            log.append(payload(i));
+        }
+        assertEquals(1, log.segmentCount());
+        log.append(payload(10));
+        assertEquals(2, log.segmentCount());
+
+        clock.addAndGet(60_000);
+        log.append(payload(11));
+        assertEquals(3, log.segmentCount());
+        assertEquals("record-11", text(log.read(11).orElseThrow()));
+
+        assertThrows(IllegalArgumentException.class, () -> log.append(new byte[1024 * 1024]));
+        log.close();
+    }
+
+    @Test
+    @DisplayName("重新打开后恢复全部记录并继续追加")
+    void testReopen() {
+        StorageProperties properties = properties(1024, 4096);
+        SegmentedLog log = open(properties);
+        for (int i = 0; i < 50; i++) {
+            log.append(payload(i));
+        }
+        int segments = log.segmentCount();
+        log.close();
+
+        SegmentedLog reopened = open(properties);
+        assertEquals(segments, reopened.segmentCount());
+        assertEquals(50, reopened.endOffset());
+        assertEquals(50, reopened.append(payload(50)));
+        List<LogRecord> records = reopened.read(0, 100);
+        assertEquals(51, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals("record-" + i, text(records.get(i)));
+        }
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("活动段中写了一半的记录在恢复时被丢弃，之前的记录完整保留")
+    void testRecoverTornWrite() throws IOException {
+        StorageProperties properties = properties(64 * 1024, 4096);
+        SegmentedLog log = open(properties);
+        for (int i = 0; i < 10; i++) {
+            log.append(payload(i));
+        }
+        log.close();
+
+        // 第 11 条记录只写了头部：长度和错误的校验和
+        Path segment = directory.resolve(LogSegment.fileName(0, ".log"));
+        int end = 0;
+        for (int i = 0; i < 10; i++) {
+            end += LogSegment.RECORD_HEADER_SIZE + payload(i).length;
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(100).putInt(12345).flip(), end);
+        }
+
+        SegmentedLog reopened = open(properties);
+        assertEquals(10, reopened.endOffset());
+        assertEquals(10, reopened.append(payload(10)));
+        assertEquals("record-10", text(reopened.read(10).orElseThrow()));
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("保留策略按时间和总大小删除最早的已封存段，不删除活动段")
+    void testRetention() {
+        StorageProperties properties = properties(1024, 4096);
+        properties.setRetentionMs(10_000);
+        SegmentedLog log = open(properties);
+        for (int i = 0; i < 100; i++) {
+            log.append(payload(i));
+        }
+        int segments = log.segmentCount();
+        assertTrue(segments > 2, "segments: " + segments);
+        assertEquals(0, log.deleteExpiredSegments());
+
+        clock.addAndGet(20_000);
+        for (int i = 100; i < 105; i++) {
+            log.append(payload(i));
+        }
+        assertTrue(log.deleteExpiredSegments() >= segments - 1);
+        assertTrue(log.startOffset() > 0);
+        assertTrue(log.read(0).isEmpty());
+        assertEquals(log.startOffset(), log.read(0, 1).get(0).offset());
+        assertEquals("record-104", text(log.read(104).orElseThrow()));
+
+        properties.setRetentionMs(0);
+        properties.setRetentionBytes(1);
+        for (int i = 105; i < 200; i++) {
+            log.append(payload(i));
+        }
+        log.deleteExpiredSegments();
+        assertEquals(1, log.segmentCount());
+        assertEquals(200, log.endOffset());
+        assertFalse(Files.exists(directory.resolve(LogSegment.fileName(0, ".log"))));
+        log.close();
+    }
+
+    @Test
+    @DisplayName("读取与追加并发进行，读到的记录总是完整的")
+    void testConcurrentReadAndAppend() throws Exception {
+        SegmentedLog log = open(properties(8 * 1024, 4096));
+        int total = 20_000;
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            results.add(readers.submit(() -> {
+                long offset = 0;
+                while (offset < total) {
+                    for (LogRecord record : log.read(offset, 500)) {
+                        assertEquals(record.offset(), offset);
+                        assertEquals("record-" + offset, text(record));
+                        offset++;
+                    }
+                }
+                return offset;
+            }));
+        }
+        for (int i = 0; i < total; i++) {
+            log.append(payload(i));
+        }
+        for (Future<Long> result : results) {
+            assertEquals(total, result.get(10, TimeUnit.SECONDS));
+        }
+        readers.shutdown();
+        log.close();
+    }
+
+    private SegmentedLog open(StorageProperties properties) {
+        return new SegmentedLog(directory, properties, clock::get);
+    }
+
+    private static StorageProperties properties(int segmentBytes, int indexBytes) {
+        StorageProperties properties = new StorageProperties();
+        properties.setSegmentBytes(segmentBytes);
+        properties.setIndexBytes(indexBytes);
+        properties.setRetentionMs(0);
+        return properties;
+    }
+
+    private static byte[] payload(long i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(LogRecord record) {
+        return new String(record.payload(), StandardCharsets.UTF_8);
+    }
+}
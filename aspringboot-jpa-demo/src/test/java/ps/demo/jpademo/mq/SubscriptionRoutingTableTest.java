@@ -0,0 +1,159 @@
+package ps.demo.jpademo.mq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订阅路由表单元测试，SubscriptionRepository 用内存中的订阅列表模拟
+ */
+@DisplayName("订阅路由表测试")
+class SubscriptionRoutingTableTest {
+
+    private final List<SubscriptionEntity> subscriptions = new CopyOnWriteArrayList<>();
+    private SubscriptionRepository repository;
+    private SubscriptionRoutingTable table;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SubscriptionRepository.class);
+        when(repository.findAllWithSubscriber()).thenAnswer(invocation -> List.copyOf(subscriptions));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (table != null) {
+            table.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("启动时一次查询加载，路由不访问数据库")
+    void testRouteWithoutDatabaseAccess() {
+        SubscriberEntity a = subscriber(1, "a");
+        SubscriberEntity b = subscriber(2, "b");
+        subscribe(a, "text");
+        subscribe(b, "text");
+        subscribe(a, "json");
+        subscribe(a, "json");
+        table = start(0);
+
+        assertEquals(List.of("a", "b"), names(table.route("text")));
+        assertEquals(List.of("a"), names(table.route("json")));
+        assertTrue(table.route("xml").isEmpty());
+        assertTrue(table.route(null).isEmpty());
+        assertSame(table.route("text").get(0), table.route("json").get(0));
+        assertThrows(UnsupportedOperationException.class, () -> table.route("text").add(b));
+        assertEquals(1, table.getVersion());
+        verify(repository, times(1)).findAllWithSubscriber();
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    @DisplayName("快照是脱离持久化上下文的副本，实体修改在重新加载前不影响路由")
+    void testSnapshotIsDetached() {
+        SubscriberEntity a = subscriber(1, "a");
+        subscribe(a, "text");
+        table = start(0);
+        a.setEndpoint("http://localhost/changed");
+
+        assertEquals("http://localhost/a", table.route("text").get(0).getEndpoint());
+        table.reload();
+        assertEquals("http://localhost/changed", table.route("text").get(0).getEndpoint());
+        assertEquals(2, table.getVersion());
+    }
+
+    @Test
+    @DisplayName("订阅变化后在后台重新加载并整体替换快照")
+    void testReloadOnChange() {
+        subscribe(subscriber(1, "a"), "text");
+        table = start(0);
+        List<SubscriberEntity> before = table.route("text");
+
+        subscribe(subscriber(2, "b"), "text");
+        table.onSubscriptionChanged(new SubscriptionChangedEvent(subscriptions.get(1)));
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> table.getVersion() == 2);
+        assertEquals(List.of("a", "b"), names(table.route("text")));
+        assertEquals(List.of("a"), names(before));
+    }
+
+    @Test
+    @DisplayName("重新加载排队期间的多次变化合并为一次")
+    void testCoalesceReloads() throws InterruptedException {
+        table = start(0);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findAllWithSubscriber()).thenAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return List.copyOf(subscriptions);
+        });
+
+        table.requestReload();
+        assertTrue(blocked.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            table.requestReload();
+        }
+        release.countDown();
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> table.getVersion() == 3);
+        Thread.sleep(100);
+        assertEquals(3, table.getVersion());
+        verify(repository, times(3)).findAllWithSubscriber();
+    }
+
+    @Test
+    @DisplayName("定期重新加载兜底，加载失败时保留旧快照")
+    void testReconcileKeepsSnapshotOnFailure() {
+        subscribe(subscriber(1, "a"), "text");
+        table = start(50);
+        when(repository.findAllWithSubscriber()).thenThrow(new IllegalStateException("database down"));
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> verify(repository, atLeast(3)).findAllWithSubscriber());
+        assertEquals(1, table.getVersion());
+        assertEquals(List.of("a"), names(table.route("text")));
+
+        doAnswer(invocation -> List.copyOf(subscriptions)).when(repository).findAllWithSubscriber();
+        subscribe(subscriber(2, "b"), "json");
+        await().atMost(2, TimeUnit.SECONDS).until(() -> !table.route("json").isEmpty());
+    }
+
+    private SubscriptionRoutingTable start(long reconcileInterval) {
+        RoutingProperties properties = new RoutingProperties();
+        properties.setReconcileInterval(reconcileInterval);
+        SubscriptionRoutingTable table = new SubscriptionRoutingTable(repository, properties);
+        table.afterPropertiesSet();
+        return table;
+    }
+
+    private void subscribe(SubscriberEntity subscriber, String messageType) {
+        SubscriptionEntity subscription = new SubscriptionEntity();
+        subscription.setId((long) subscriptions.size() + 1);
+        subscription.setSubscriber(subscriber);
+        subscription.setMessageType(messageType);
+        subscriptions.add(subscription);
+    }
+
+    private static SubscriberEntity subscriber(long id, String name) {
+        SubscriberEntity subscriber = new SubscriberEntity();
+        subscriber.setId(id);
+        subscriber.setName(name);
+        subscriber.setEndpoint("http://localhost/" + name);
+        return subscriber;
+    }
+
+    private static List<String> names(List<SubscriberEntity> subscribers) {
+        return subscribers.stream().map(SubscriberEntity::getName).toList();
+    }
+}
@@ -0,0 +1,174 @@
+package ps.demo.jpademo.mq;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * tracking 异步批量写入单元测试，使用独立的 H2 内存库
+ */
+@DisplayName("tracking 批量写入测试")
+class TrackingWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private TrackingWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:tracking-" + UUID.randomUUID() + ";MODE=MYSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                           ParameterizedPreparedStatementSetter<T> pss) {
+                batchSizes.add(batchArgs.size());
+                return super.batchUpdate(sql, batchArgs, batchSize, pss);
+            }
+        };
+        // 与 Hibernate 按 TrackingEntity 生成的表结构一致
+        jdbcTemplate.execute("create table tracking (id bigint generated by default as identity, "
+                + "details varchar(255) not null, message_id bigint not null, status varchar(255) not null, "
+                + "subscriber_endpoint varchar(255), subscriber_id bigint, subscriber_name varchar(255), "
+                + "timestamp timestamp(6) not null, primary key (id))");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("攒满 batch-size 即批量写入，消息级事件的订阅者为空")
+    void testBatchBySize() throws InterruptedException {
+        writer = start(properties(50, 500, 1000));
+        SubscriberEntity subscriber = subscriber();
+        for (int i = 0; i < 120; i++) {
+            writer.track(TrackingEvent.of((long) i, i % 2 == 0 ? subscriber : null, "DELIVERED", "event " + i));
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> writer.getWrittenCount() >= 100);
+        writer.destroy();
+        writer = null;
+
+        assertEquals(120, count());
+        assertEquals(List.of(50, 50, 20), batchSizes);
+        assertEquals(60, jdbcTemplate.queryForObject(
+                "select count(*) from tracking where subscriber_id = 7 and subscriber_name = 'sub-7' "
+                        + "and subscriber_endpoint = 'http://localhost/sub-7'", Integer.class));
+        assertEquals(60, jdbcTemplate.queryForObject(
+                "select count(*) from tracking where subscriber_id is null", Integer.class));
+    }
+
+    @Test
+    @DisplayName("批次未满时按 flush-interval 写入")
+    void testBatchByTime() {
+        writer = start(properties(1000, 50, 1000));
+        for (int i = 0; i < 3; i++) {
+            writer.track(TrackingEvent.of(1L, null, "PENDING", "Message created"));
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> count() == 3);
+        assertEquals(0, writer.pendingCount());
+        assertEquals(List.of(3), batchSizes);
+    }
+
+    @Test
+    @DisplayName("关闭时写完队列中的全部事件")
+    void testFlushOnShutdown() throws InterruptedException {
+        writer = start(properties(100, 100, 1000));
+        for (int i = 0; i < 1000; i++) {
+            writer.track(TrackingEvent.of((long) i, null, "SENT", "event " + i));
+        }
+        writer.destroy();
+        assertEquals(1000, count());
+        assertEquals(0, writer.pendingCount());
+
+        // 关闭后提交的事件直接写入
+        writer.track(TrackingEvent.of(1L, null, "SENT", "late"));
+        assertEquals(1001, count());
+        writer = null;
+    }
+
+    @Test
+    @DisplayName("批量写入失败时逐条重试，只丢弃写不进去的事件")
+    void testFailedBatchRetriedOneByOne() throws InterruptedException {
+        writer = start(properties(100, 50, 1000));
+        for (int i = 0; i < 10; i++) {
+            // status 非空约束
+            writer.track(TrackingEvent.of((long) i, null, i == 5 ? null : "SENT", "event " + i));
+        }
+        writer.destroy();
+        writer = null;
+
+        assertEquals(9, count());
+    }
+
+    @Test
+    @DisplayName("队列满时在调用线程中写入，并暴露队列深度和写入耗时指标")
+    void testOverflowAndMetrics() throws InterruptedException {
+        TrackingProperties properties = properties(100, 50, 5);
+        properties.setOfferTimeout(0);
+        // 不启动写入线程，让队列保持满
+        writer = new TrackingWriter(jdbcTemplate, properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writer.bindTo(registry);
+
+        for (int i = 0; i < 6; i++) {
+            writer.track(TrackingEvent.of((long) i, null, "SENT", "event " + i));
+        }
+        assertEquals(1, count());
+        assertEquals(5, registry.get("mq.tracking.queue.depth").gauge().value());
+        assertEquals(1, registry.get("mq.tracking.overflow").functionCounter().count());
+        assertEquals(1, registry.get("mq.tracking.flush").timer().count());
+
+        writer.destroy();
+        writer = null;
+        assertEquals(6, count());
+        assertEquals(0, registry.get("mq.tracking.queue.depth").gauge().value());
+        assertEquals(6, registry.get("mq.tracking.written").functionCounter().count());
+        assertEquals(0, registry.get("mq.tracking.failed").functionCounter().count());
+    }
+
+    private TrackingWriter start(TrackingProperties properties) {
+        TrackingWriter trackingWriter = new TrackingWriter(jdbcTemplate, properties);
+        trackingWriter.afterPropertiesSet();
+        return trackingWriter;
+    }
+
+    private static TrackingProperties properties(int batchSize, long flushInterval, int queueCapacity) {
+        TrackingProperties properties = new TrackingProperties();
+        properties.setBatchSize(batchSize);
+        properties.setFlushInterval(flushInterval);
+        properties.setQueueCapacity(queueCapacity);
+        return properties;
+    }
+
+    private static SubscriberEntity subscriber() {
+        SubscriberEntity subscriber = new SubscriberEntity();
+        subscriber.setId(7L);
+        subscriber.setName("sub-7");
+        subscriber.setEndpoint("http://localhost/sub-7");
+        subscriber.setCreatedAt(LocalDateTime.now());
+        return subscriber;
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("select count(*) from tracking", Integer.class);
+    }
+}
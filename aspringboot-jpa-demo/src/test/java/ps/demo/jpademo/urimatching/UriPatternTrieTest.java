@@ -0,0 +1,190 @@
+package ps.demo.jpademo.urimatching;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 前缀树与逐个正则匹配的差分测试：同样的模式和 URI，两种实现的查找结果必须一致
+ * 查找耗时对比见 jmh profile 中的 UriPatternMatcherBenchmark（trie 参数）
+ */
+@DisplayName("URI 模式前缀树测试")
+class UriPatternTrieTest {
+
+    // UriPatternMatcherTest 中的全部 (模式, URI) 用例
+    private static final String[][] MATCHER_TEST_CASES = {
+            {"api/users", "api/users"},
+            {"api/users", "api/posts"},
+            {"api/us.rs", "api/users"},
+            {"api/us.rs", "api/usars"},
+            {"api/us.rs", "api/user"},
+            {"api/*/detail", "api/users/detail"},
+            {"api/*/detail", "api/posts/detail"},
+            {"api/*/detail", "api/users/posts/detail"},
+            {"api/**", "api/users/123/details"},
+            {"api/**/detail", "api/users/123/detail"},
+            {"**/detail", "api/users/detail"},
+            {"api/*/u*rs/**", "api/v1/users/123/details"},
+            {"*.html", "index.html"},
+            {"static/**/*.css", "static/css/main.css"},
+            {"/", ""},
+            {"/", "/"},
+            {"**/api", "v1/api"},
+            {"**/api", "api"},
+            {"invalid[pattern", "api/users"},
+            {"api/users/*", "api/users/123"},
+            {"api/posts/**", "api/posts/123/comments"},
+            {"static/*.css", "static/main.css"},
+            {"api/users/*", "api/comments/123"},
+            {"api/posts/**", "api/comments/123"},
+            {"static/*.css", "api/comments/123"},
+            {"**/api", "a/b/c/api"},
+            {"api/**", "api/v1"},
+            {"api/**", "api/v1/users"},
+            {"api/**", "api"},
+            {"api/**/detail", "api/detail"},
+            {"api/**/detail", "api/v1/detail"},
+            {"api/**/detail", "api/v1/v2/detail"},
+            {"**/api/**", "v1/api/v2"},
+            {"a/**/b/**/c", "a/x/b/y/c"},
+            {"**", "any/path"},
+            {"**", ""}
+    };
+
+    private static final List<String> PRIORITY_PATTERNS = Arrays.asList("api/**", "api/users/*", "api/users/123");
+
+    private static final String[] SEGMENTS = {
+            "a", "b", "c", "*", "**", "{id}", "a*", "*.css", ".", "b.", "a\\.b", "x\\*", "{", "*a*"
+    };
+
+    private static final String[] TOKENS = {"a", "b", "c", "", "ab", "bb", "a.b", "x.css", "x*", "{id}", "{", "axa"};
+
+    @Test
+    @DisplayName("UriPatternMatcherTest 的全部用例 - 两种实现结果一致")
+    void testMatcherTestCases() {
+        for (String[] testCase : MATCHER_TEST_CASES) {
+            String pattern = testCase[0];
+            String uri = UriPatternMatcher.normalizeUri(testCase[1]);
+            UriPatternMatcher regex = UriPatternMatcher.precompile(List.of(pattern), false);
+            UriPatternMatcher trie = UriPatternMatcher.precompile(List.of(pattern), true);
+
+            String expected = UriPatternMatcher.match(pattern, testCase[1]) ? pattern : null;
+            assertEquals(expected, regex.findFirstMatchingPattern(uri), pattern + " -> " + testCase[1]);
+            assertEquals(expected, trie.findFirstMatchingPattern(uri), pattern + " -> " + testCase[1]);
+        }
+
+        UriPatternMatcher regex = UriPatternMatcher.precompile(PRIORITY_PATTERNS, false);
+        UriPatternMatcher trie = UriPatternMatcher.precompile(PRIORITY_PATTERNS, true);
+        for (String uri : Arrays.asList("api/users/123", "api/users/456", "api/posts/123", "api")) {
+            assertEquals(regex.findFirstMatchingPattern(uri), trie.findFirstMatchingPattern(uri), uri);
+            assertEquals(regex.findAllMatchingPatterns(uri), trie.findAllMatchingPatterns(uri), uri);
+        }
+        assertEquals("api/users/123", trie.findFirstMatchingPattern("api/users/123"));
+        assertEquals("api/users/*", trie.findFirstMatchingPattern("api/users/456"));
+        assertEquals("api/**", trie.findFirstMatchingPattern("api/posts/123"));
+
+        for (String invalid : Arrays.asList("api/\\", "")) {
+            List<String> patterns = Arrays.asList(invalid);
+            assertThrows(PatternSyntaxException.class, () -> UriPatternMatcher.precompile(patterns, false));
+            assertThrows(PatternSyntaxException.class, () -> UriPatternMatcher.precompile(patterns, true));
+        }
+    }
+
+    @Test
+    @DisplayName("未规范化的 URI - 空段、开头和结尾的斜杠")
+    void testRawUris() {
+        List<String> patterns = Arrays.asList("/", "///", "**", "**/api", "api/**", "api/*", "a/**/b", "/api/users/");
+        List<String> uris = Arrays.asList("", "/", "//", "api", "/api", "api/", "//api", "api//", "a//b", "a/b",
+                "api/users", "/api/users/", "a/x/b/", "a\nb");
+        for (String pattern : patterns) {
+            UriPatternMatcher regex = UriPatternMatcher.precompile(List.of(pattern), false);
+            UriPatternMatcher trie = UriPatternMatcher.precompile(List.of(pattern), true);
+            for (String uri : uris) {
+                assertEquals(regex.findFirstMatchingPattern(uri), trie.findFirstMatchingPattern(uri),
+                        pattern + " -> " + uri);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("随机模式和 URI - findFirst / findAll 结果一致，移除后仍一致")
+    void testRandomPatterns() {
+        Random random = new Random(42);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            patterns.add(randomPattern(random));
+        }
+        UriPatternMatcher regex = UriPatternMatcher.precompile(patterns, false);
+        UriPatternMatcher trie = UriPatternMatcher.precompile(patterns, true);
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            uris.add(randomUri(random));
+        }
+        assertAgree(regex, trie, uris);
+
+        for (int i = 0; i < 100; i++) {
+            String pattern = patterns.get(random.nextInt(patterns.size()));
+            assertEquals(regex.removePattern(pattern), trie.removePattern(pattern), pattern);
+        }
+        assertEquals(regex.getPatternCount(), trie.getPatternCount());
+        assertAgree(regex, trie, uris);
+    }
+
+    @Test
+    @DisplayName("路径变量 {var} 匹配一个非空段，优先级低于字面量段")
+    void testVariableSegment() {
+        UriPatternMatcher trie = UriPatternMatcher.precompile(Arrays.asList("api/users/{id}", "api/users/me"), true);
+        assertEquals("api/users/me", trie.findFirstMatchingPattern("api/users/me"));
+        assertEquals("api/users/{id}", trie.findFirstMatchingPattern("api/users/42"));
+        assertNull(trie.findFirstMatchingPattern("api/users"));
+        assertNull(trie.findFirstMatchingPattern("api/users/"));
+        assertNull(trie.findFirstMatchingPattern("api/users/42/posts"));
+
+        assertTrue(UriPatternMatcher.match("api/users/{id}", "api/users/42"));
+        assertTrue(UriPatternMatcher.match("a\\.b", "a.b"));
+        assertFalse(UriPatternMatcher.match("a\\.b", "axb"));
+    }
+
+    private static void assertAgree(UriPatternMatcher regex, UriPatternMatcher trie, List<String> uris) {
+        for (String uri : uris) {
+            assertEquals(regex.findFirstMatchingPattern(uri), trie.findFirstMatchingPattern(uri), uri);
+            assertEquals(regex.findAllMatchingPatterns(uri), trie.findAllMatchingPatterns(uri), uri);
+        }
+    }
+
+    private static String randomPattern(Random random) {
+        StringBuilder pattern = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            pattern.append('/');
+        }
+        int segments = 1 + random.nextInt(5);
+        for (int i = 0; i < segments; i++) {
+            if (i > 0) {
+                pattern.append(random.nextInt(10) == 0 ? "//" : "/");
+            }
+            pattern.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        if (random.nextInt(4) == 0) {
+            pattern.append('/');
+        }
+        return pattern.toString();
+    }
+
+    private static String randomUri(Random random) {
+        StringBuilder uri = new StringBuilder();
+        int tokens = 1 + random.nextInt(6);
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                uri.append('/');
+            }
+            uri.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return uri.toString();
+    }
+}